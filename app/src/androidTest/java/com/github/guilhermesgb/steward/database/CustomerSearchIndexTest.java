@@ -0,0 +1,151 @@
+package com.github.guilhermesgb.steward.database;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.db.SupportSQLiteOpenHelper;
+import android.arch.persistence.db.framework.FrameworkSQLiteOpenHelperFactory;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.github.guilhermesgb.steward.mvi.customer.schema.CustomerSearchIndex;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+
+@RunWith(AndroidJUnit4.class)
+public class CustomerSearchIndexTest {
+
+    private SupportSQLiteOpenHelper openHelper;
+
+    @Before
+    public void setUp() {
+        //An in-memory database laid out as version 6 was, customers not yet indexed.
+        openHelper = new FrameworkSQLiteOpenHelperFactory().create(SupportSQLiteOpenHelper.Configuration
+            .builder(InstrumentationRegistry.getTargetContext())
+            .name(null)
+            .callback(new SupportSQLiteOpenHelper.Callback(6) {
+                @Override
+                public void onCreate(SupportSQLiteDatabase database) {
+                    database.execSQL("CREATE TABLE IF NOT EXISTS `customer` (`id` TEXT NOT NULL, "
+                        + "`firstName` TEXT, `lastName` TEXT, PRIMARY KEY(`id`))");
+                }
+
+                @Override
+                public void onUpgrade(SupportSQLiteDatabase database, int oldVersion, int newVersion) {}
+            })
+            .build());
+    }
+
+    @After
+    public void tearDown() {
+        openHelper.close();
+    }
+
+    @Test
+    public void migrate6To7_customersAlreadyThere_shouldBeIndexedAndKeptInSyncFromThenOn() {
+        // ### SETUP PHASE ###
+
+        SupportSQLiteDatabase database = openHelper.getWritableDatabase();
+        insertCustomer(database, "1", "John", "Doe");
+        insertCustomer(database, "2", "Jane", "Doe");
+
+        // ### EXECUTION PHASE ###
+
+        DatabaseResource.MIGRATION_6_7.migrate(database);
+        List<String> indexedRightAfterMigration = match(database, "doe");
+        updateCustomer(database, "2", "Jane", "Roe");
+        List<String> doesAfterUpdate = match(database, "doe");
+        List<String> roesAfterUpdate = match(database, "roe");
+
+        // ### VERIFICATION PHASE ###
+
+        assertThat(indexedRightAfterMigration, containsInAnyOrder("1", "2"));
+        assertThat(doesAfterUpdate, contains("1"));
+        assertThat(roesAfterUpdate, contains("2"));
+    }
+
+    @Test
+    public void writesToCustomers_insertReplaceUpdateAndDelete_shouldKeepIndexInSync() {
+        // ### SETUP PHASE ###
+
+        SupportSQLiteDatabase database = openHelper.getWritableDatabase();
+        //As done on fresh installs.
+        CustomerSearchIndex.create(database);
+
+        // ### EXECUTION PHASE ###
+
+        insertCustomer(database, "1", "John", "Doe");
+        insertCustomer(database, "2", "\u00c9lio", "M\u00fcller");
+        List<String> johnsAfterInsert = match(database, "john");
+        //Replacing customer 1 (as the sync does) must drop what was indexed for it before.
+        insertCustomer(database, "1", "Johnny", "Smith");
+        List<String> doesAfterReplace = match(database, "doe");
+        List<String> johnsAfterReplace = match(database, "john");
+        updateCustomer(database, "1", "Mary", "Smith");
+        List<String> johnsAfterUpdate = match(database, "john");
+        List<String> marysAfterUpdate = match(database, "mary");
+        List<String> eliosTypedInCapitals = search(database, "\u00c9LIO");
+        database.execSQL("DELETE FROM `customer` WHERE `id` = ?", new Object[] { "2" });
+        List<String> eliosAfterDelete = match(database, "\u00c9lio");
+
+        // ### VERIFICATION PHASE ###
+
+        assertThat(johnsAfterInsert, contains("1"));
+        assertThat(doesAfterReplace, empty());
+        assertThat(johnsAfterReplace, contains("1"));
+        assertThat(johnsAfterUpdate, empty());
+        assertThat(marysAfterUpdate, contains("1"));
+        assertThat(eliosTypedInCapitals, contains("2"));
+        assertThat(eliosAfterDelete, empty());
+    }
+
+    private static void insertCustomer(SupportSQLiteDatabase database, String id,
+                                       String firstName, String lastName) {
+        database.execSQL("INSERT OR REPLACE INTO `customer` (`id`, `firstName`, `lastName`) "
+            + "VALUES (?, ?, ?)", new Object[] { id, firstName, lastName });
+    }
+
+    private static void updateCustomer(SupportSQLiteDatabase database, String id,
+                                       String firstName, String lastName) {
+        database.execSQL("UPDATE `customer` SET `firstName` = ?, `lastName` = ? WHERE `id` = ?",
+            new Object[] { firstName, lastName, id });
+    }
+
+    /**
+     * Ids of the customers indexed under a prefix of the given term. Index entries left behind by
+     * writes the triggers missed no longer point at any customer, so they come out as null ids.
+     */
+    private static List<String> match(SupportSQLiteDatabase database, String term) {
+        return readIds(database.query("SELECT `customer`.`id` FROM `customer_fts` "
+            + "LEFT JOIN `customer` ON `customer`.`rowid` = `customer_fts`.`docid` "
+            + "WHERE `customer_fts` MATCH ?", new Object[] { "\"" + term + "*\"" }));
+    }
+
+    private static List<String> search(SupportSQLiteDatabase database, String text) {
+        return readIds(database.query(CustomerSearchIndex.newSearchQuery(text, 20)));
+    }
+
+    private static List<String> readIds(Cursor cursor) {
+        List<String> ids = new ArrayList<>();
+        try {
+            int idColumn = cursor.getColumnIndexOrThrow("id");
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getString(idColumn));
+            }
+        } finally {
+            cursor.close();
+        }
+        return ids;
+    }
+
+}
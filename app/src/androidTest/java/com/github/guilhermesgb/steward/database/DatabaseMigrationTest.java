@@ -0,0 +1,97 @@
+package com.github.guilhermesgb.steward.database;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.db.SupportSQLiteOpenHelper;
+import android.arch.persistence.db.framework.FrameworkSQLiteOpenHelperFactory;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+@RunWith(AndroidJUnit4.class)
+public class DatabaseMigrationTest {
+
+    private SupportSQLiteOpenHelper openHelper;
+
+    @Before
+    public void setUp() {
+        //An in-memory database laid out as version 5 was, reservations still carrying formatted dates.
+        openHelper = new FrameworkSQLiteOpenHelperFactory().create(SupportSQLiteOpenHelper.Configuration
+            .builder(InstrumentationRegistry.getTargetContext())
+            .name(null)
+            .callback(new SupportSQLiteOpenHelper.Callback(5) {
+                @Override
+                public void onCreate(SupportSQLiteDatabase database) {
+                    database.execSQL("CREATE TABLE IF NOT EXISTS `reservation` (`customerId` TEXT NOT NULL, "
+                        + "`tableNumber` INTEGER NOT NULL, `expirationDate` TEXT, "
+                        + "PRIMARY KEY(`customerId`, `tableNumber`))");
+                    database.execSQL("CREATE INDEX IF NOT EXISTS `index_reservation_tableNumber` "
+                        + "ON `reservation` (`tableNumber`)");
+                }
+
+                @Override
+                public void onUpgrade(SupportSQLiteDatabase database, int oldVersion, int newVersion) {}
+            })
+            .build());
+    }
+
+    @After
+    public void tearDown() {
+        openHelper.close();
+    }
+
+    @Test
+    public void migrate5To6_datesWithOffsets_shouldBeStoredAsTheInstantsTheyStandFor() {
+        // ### SETUP PHASE ###
+
+        SupportSQLiteDatabase database = openHelper.getWritableDatabase();
+        insertReservation(database, "1", 1, "2018-04-20T18:00:00.000-0300");
+        insertReservation(database, "2", 2, "2018-04-21T02:30:00.000+05:30");
+        insertReservation(database, "3", 3, "2018-04-20T21:00:00.000+0000");
+        insertReservation(database, "4", 4, null);
+        insertReservation(database, "5", 5, "not a date");
+
+        // ### EXECUTION PHASE ###
+
+        DatabaseResource.MIGRATION_5_6.migrate(database);
+
+        // ### VERIFICATION PHASE ###
+
+        long expectedExpiration = new DateTime(2018, 4, 20, 21, 0, DateTimeZone.UTC).getMillis();
+        Map<String, Long> expirations = new HashMap<>();
+        Cursor cursor = database.query("SELECT `customerId`, `expiresAt` FROM `reservation`");
+        try {
+            while (cursor.moveToNext()) {
+                expirations.put(cursor.getString(0), cursor.getLong(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        assertThat(expirations.size(), is(5));
+        assertThat(expirations.get("1"), is(expectedExpiration));
+        assertThat(expirations.get("2"), is(expectedExpiration));
+        assertThat(expirations.get("3"), is(expectedExpiration));
+        //Missing or unreadable dates are taken as long expired.
+        assertThat(expirations.get("4"), is(0L));
+        assertThat(expirations.get("5"), is(0L));
+    }
+
+    private static void insertReservation(SupportSQLiteDatabase database, String customerId,
+                                          int tableNumber, String expirationDate) {
+        database.execSQL("INSERT INTO `reservation` (`customerId`, `tableNumber`, `expirationDate`) "
+            + "VALUES (?, ?, ?)", new Object[] { customerId, tableNumber, expirationDate });
+    }
+
+}
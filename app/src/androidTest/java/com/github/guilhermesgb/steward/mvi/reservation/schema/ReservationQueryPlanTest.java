@@ -0,0 +1,129 @@
+package com.github.guilhermesgb.steward.mvi.reservation.schema;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.room.Room;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.github.guilhermesgb.steward.database.DatabaseResource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
+
+//Queries in ReservationDao (the very ones Room compiles) are checked against the plans SQLite
+// comes up with for them, so that none of them falls back to going through the whole reservation table.
+@RunWith(AndroidJUnit4.class)
+public class ReservationQueryPlanTest {
+
+    private DatabaseResource database;
+
+    @Before
+    public void setUp() {
+        database = Room.inMemoryDatabaseBuilder(InstrumentationRegistry.getTargetContext(),
+            DatabaseResource.class).build();
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void findTablesForGivenCustomer_shouldSearchReservationsByCustomer() {
+        List<String> plan = explain(ReservationDao.FIND_TABLES_FOR_GIVEN_CUSTOMER);
+        assertNeverScans(plan, "reservation");
+        assertNeverScans(plan, "stand");
+    }
+
+    @Test
+    public void deleteAllForCustomer_shouldSearchReservationsByCustomer() {
+        List<String> plan = explain(ReservationDao.DELETE_ALL_FOR_CUSTOMER);
+        assertNeverScans(plan, "reservation");
+    }
+
+    @Test
+    public void deleteUnusedCustomers_shouldSearchReservationsOfEachCustomer() {
+        List<String> plan = explain(ReservationDao.DELETE_UNUSED_CUSTOMERS);
+        assertNeverScans(plan, "reservation");
+    }
+
+    @Test
+    public void deleteUnusedCustomersById_shouldSearchBothCustomersAndTheirReservations() {
+        List<String> plan = explain(ReservationDao.DELETE_UNUSED_CUSTOMERS_BY_ID);
+        assertNeverScans(plan, "reservation");
+        assertNeverScans(plan, "customer");
+    }
+
+    @Test
+    public void deleteUnusedTables_shouldSearchReservationsOfEachTable() {
+        List<String> plan = explain(ReservationDao.DELETE_UNUSED_TABLES);
+        assertNeverScans(plan, "reservation");
+        assertThat(plan, hasItem(startsWith("SEARCH TABLE reservation USING COVERING INDEX "
+            + "index_reservation_tableNumber")));
+    }
+
+    @Test
+    public void deleteUnusedTablesByNumber_shouldSearchBothTablesAndTheirReservations() {
+        List<String> plan = explain(ReservationDao.DELETE_UNUSED_TABLES_BY_NUMBER);
+        assertNeverScans(plan, "reservation");
+        assertNeverScans(plan, "stand");
+    }
+
+    @Test
+    public void updateUnreservedTableAvailability_shouldSearchBothTableAndItsReservations() {
+        List<String> plan = explain(ReservationDao.UPDATE_UNRESERVED_TABLE_AVAILABILITY);
+        assertNeverScans(plan, "reservation");
+        assertNeverScans(plan, "stand");
+    }
+
+    @Test
+    public void findExpired_shouldSearchReservationsByExpiration() {
+        List<String> plan = explain(ReservationDao.FIND_EXPIRED);
+        assertNeverScans(plan, "reservation");
+        assertThat(plan, hasItem(startsWith("SEARCH TABLE reservation USING INDEX "
+            + "index_reservation_expiresAt")));
+    }
+
+    @Test
+    public void releaseUnreservedTables_shouldSearchBothTablesAndTheirReservations() {
+        List<String> plan = explain(ReservationDao.RELEASE_UNRESERVED_TABLES);
+        assertNeverScans(plan, "reservation");
+        assertNeverScans(plan, "stand");
+    }
+
+    //Plans don't depend on the values bound, so named parameters are left unbound (i.e. null),
+    // and lists are expanded into two parameters each, just like Room does for lists of two.
+    private List<String> explain(String daoQuery) {
+        SupportSQLiteDatabase sqliteDatabase = database.getOpenHelper().getWritableDatabase();
+        List<String> plan = new LinkedList<>();
+        Cursor cursor = sqliteDatabase.query("EXPLAIN QUERY PLAN "
+            + daoQuery.replaceAll("IN\\(:\\w+\\)", "IN(?, ?)"));
+        try {
+            int detail = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                //Newer SQLite versions leave the TABLE keyword out of their plans.
+                plan.add(cursor.getString(detail).replaceFirst("^(SCAN|SEARCH) (?!TABLE )", "$1 TABLE "));
+            }
+        } finally {
+            cursor.close();
+        }
+        return plan;
+    }
+
+    private static void assertNeverScans(List<String> plan, String table) {
+        assertThat(plan.toString(), plan, not(hasItem(startsWith("SCAN TABLE " + table + " "))));
+        assertThat(plan.toString(), plan, not(hasItem("SCAN TABLE " + table)));
+    }
+
+}
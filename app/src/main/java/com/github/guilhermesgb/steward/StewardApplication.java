@@ -9,9 +9,17 @@ import com.evernote.android.job.JobCreator;
 import com.evernote.android.job.JobManager;
 import com.evernote.android.job.JobRequest;
 import com.github.guilhermesgb.steward.database.DatabaseResource;
+import com.github.guilhermesgb.steward.mvi.customer.FetchCustomersUseCase;
+import com.github.guilhermesgb.steward.mvi.reservation.ReservationExpiryScheduler;
+import com.github.guilhermesgb.steward.mvi.reservation.SyncReservationsUseCase;
+import com.github.guilhermesgb.steward.mvi.table.FetchTablesUseCase;
+import com.github.guilhermesgb.steward.network.ApiResource;
+import com.github.guilhermesgb.steward.network.RequestPriority;
 import com.github.guilhermesgb.steward.utils.FontAwesomeBrands;
 import com.github.guilhermesgb.steward.utils.FontAwesomeRegular;
 import com.github.guilhermesgb.steward.utils.FontAwesomeSolid;
+import com.github.guilhermesgb.steward.worker.CacheWarmingWorker;
+import com.github.guilhermesgb.steward.worker.OutboxSyncWorker;
 import com.github.guilhermesgb.steward.worker.ReservationsCleanupWorker;
 import com.joanzapata.iconify.Icon;
 import com.joanzapata.iconify.Iconify;
@@ -19,6 +27,7 @@ import com.joanzapata.iconify.fonts.FontAwesomeModule;
 
 import net.danlew.android.joda.JodaTimeAndroid;
 
+import java.io.File;
 import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
 
@@ -32,6 +41,8 @@ import retrofit2.HttpException;
 import timber.log.Timber;
 import uk.co.chrisjenx.calligraphy.CalligraphyConfig;
 
+import static com.github.guilhermesgb.steward.network.ApiResource.WILL_USE_REAL_API;
+
 public class StewardApplication extends Application {
 
     @Override
@@ -59,6 +70,8 @@ public class StewardApplication extends Application {
             }
         });
         JodaTimeAndroid.init(this);
+        ApiResource.setCacheDirectory(new File(getCacheDir(), "http"));
+        ApiResource.prewarm(BuildConfig.API_BASE_URL);
         Iconify.with(new FontAwesomeModule() {
             @Override
             public String ttfFileName() {
@@ -100,17 +113,62 @@ public class StewardApplication extends Application {
                         return new ReservationsCleanupWorker
                             (DatabaseResource.getInstance
                                 (getApplicationContext()));
+                    case CacheWarmingWorker.TAG:
+                    case CacheWarmingWorker.TAG_WHILE_CHARGING:
+                        //Warming caches up must never get in the way of someone actually using the app.
+                        FetchCustomersUseCase fetchCustomersUseCase = new FetchCustomersUseCase
+                            (WILL_USE_REAL_API, getApplicationContext());
+                        fetchCustomersUseCase.setIngestionChunkSize
+                            (FetchCustomersUseCase.DEFAULT_INGESTION_CHUNK_SIZE);
+                        fetchCustomersUseCase.setRequestPriority(RequestPriority.BACKGROUND);
+                        fetchCustomersUseCase.setWritingDiffsOnly(true);
+                        FetchTablesUseCase fetchTablesUseCase = new FetchTablesUseCase
+                            (WILL_USE_REAL_API, getApplicationContext());
+                        fetchTablesUseCase.setRequestPriority(RequestPriority.BACKGROUND);
+                        fetchTablesUseCase.setWritingDiffsOnly(true);
+                        return new CacheWarmingWorker(fetchCustomersUseCase, fetchTablesUseCase);
+                    case OutboxSyncWorker.TAG:
+                    case OutboxSyncWorker.TAG_SOON:
+                        SyncReservationsUseCase syncReservationsUseCase = new SyncReservationsUseCase
+                            (WILL_USE_REAL_API, getApplicationContext());
+                        syncReservationsUseCase.setRequestPriority(RequestPriority.BACKGROUND);
+                        return new OutboxSyncWorker(syncReservationsUseCase);
                     default:
                         return null;
                 }
             }
         });
+        //Reservations made before the app last went away are picked up where they were left.
+        ReservationExpiryScheduler.getInstance(this).start();
+        //The cleanup below is then a mere safety net, for whatever the scheduler above failed to release.
         new JobRequest.Builder(ReservationsCleanupWorker.TAG)
             .setPeriodic(TimeUnit.MINUTES.toMillis(15), //Minimum is 15 minutes
                 TimeUnit.MINUTES.toMillis(10))         //but we set the flexMs to 10 min
             .setUpdateCurrent(true)
             .build()                                           //so that it may try running the required
             .schedule();                                      //reservations cleanup work around this time.
+        new JobRequest.Builder(CacheWarmingWorker.TAG)
+            .setPeriodic(TimeUnit.MINUTES.toMillis(30),
+                TimeUnit.MINUTES.toMillis(10))
+            .setRequiredNetworkType(JobRequest.NetworkType.CONNECTED)
+            .setUpdateCurrent(true)
+            .build()
+            .schedule();
+        new JobRequest.Builder(CacheWarmingWorker.TAG_WHILE_CHARGING)
+            .setPeriodic(TimeUnit.HOURS.toMillis(2),
+                TimeUnit.MINUTES.toMillis(30))
+            .setRequiredNetworkType(JobRequest.NetworkType.UNMETERED)
+            .setRequiresCharging(true)
+            .setUpdateCurrent(true)
+            .build()
+            .schedule();
+        new JobRequest.Builder(OutboxSyncWorker.TAG)
+            .setPeriodic(TimeUnit.MINUTES.toMillis(15),
+                TimeUnit.MINUTES.toMillis(10))
+            .setRequiredNetworkType(JobRequest.NetworkType.CONNECTED)
+            .setUpdateCurrent(true)
+            .build()
+            .schedule();
     }
 
 }
@@ -1,34 +1,152 @@
 package com.github.guilhermesgb.steward.database;
 
+import android.arch.persistence.db.SupportSQLiteDatabase;
 import android.arch.persistence.room.Database;
 import android.arch.persistence.room.Room;
 import android.arch.persistence.room.RoomDatabase;
+import android.arch.persistence.room.migration.Migration;
 import android.content.Context;
+import android.database.Cursor;
+import android.support.annotation.NonNull;
 
 import com.github.guilhermesgb.steward.mvi.customer.schema.Customer;
 import com.github.guilhermesgb.steward.mvi.customer.schema.CustomerDao;
+import com.github.guilhermesgb.steward.mvi.customer.schema.CustomerSearchIndex;
 import com.github.guilhermesgb.steward.mvi.reservation.schema.Reservation;
 import com.github.guilhermesgb.steward.mvi.reservation.schema.ReservationDao;
+import com.github.guilhermesgb.steward.mvi.reservation.schema.ReservationMutation;
+import com.github.guilhermesgb.steward.mvi.reservation.schema.ReservationOutboxDao;
 import com.github.guilhermesgb.steward.mvi.table.schema.Table;
 import com.github.guilhermesgb.steward.mvi.table.schema.TableDao;
+import com.github.guilhermesgb.steward.utils.DateUtils;
+
+import timber.log.Timber;
 
 @Database(
-    version = 1,
+    version = 8,
     exportSchema = false,
     entities = {
         Customer.class,
         Table.class,
-        Reservation.class
+        Reservation.class,
+        SyncState.class,
+        ReservationMutation.class
     }
 )
 public abstract class DatabaseResource extends RoomDatabase {
 
     private static DatabaseResource instance;
 
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `sync_state` (`resource` TEXT NOT NULL, "
+                + "`cursor` TEXT, PRIMARY KEY(`resource`))");
+        }
+    };
+
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE `sync_state` ADD COLUMN `syncedAt` INTEGER");
+        }
+    };
+
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `reservation_outbox` (`id` INTEGER PRIMARY KEY "
+                + "AUTOINCREMENT NOT NULL, `idempotencyKey` TEXT NOT NULL, `customerId` TEXT NOT NULL, "
+                + "`tableNumber` INTEGER NOT NULL, `expirationDate` TEXT, `createdAt` INTEGER NOT NULL)");
+            database.execSQL("CREATE UNIQUE INDEX `index_reservation_outbox_customerId` "
+                + "ON `reservation_outbox` (`customerId`)");
+        }
+    };
+
+    //Lets reservations be looked up by table (e.g. for foreign key checks when tables get deleted).
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_reservation_tableNumber` "
+                + "ON `reservation` (`tableNumber`)");
+        }
+    };
+
+    //Expiration dates used to be stored formatted, which SQLite can't compare, so the table is rebuilt
+    // with them as milliseconds since the epoch (those missing, if any, being taken as long expired).
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `reservation_new` (`customerId` TEXT NOT NULL, "
+                + "`tableNumber` INTEGER NOT NULL, `expiresAt` INTEGER NOT NULL, "
+                + "PRIMARY KEY(`customerId`, `tableNumber`), "
+                + "FOREIGN KEY(`customerId`) REFERENCES `customer`(`id`) ON UPDATE NO ACTION ON DELETE NO ACTION , "
+                + "FOREIGN KEY(`tableNumber`) REFERENCES `stand`(`number`) ON UPDATE NO ACTION ON DELETE NO ACTION )");
+            //Dates are parsed here rather than by SQLite, whose date functions can't take offsets such
+            // as -0300 (which dates from the server may well carry), only those written as -03:00.
+            Cursor cursor = database.query("SELECT `customerId`, `tableNumber`, `expirationDate` FROM `reservation`");
+            try {
+                while (cursor.moveToNext()) {
+                    database.execSQL("INSERT INTO `reservation_new` (`customerId`, `tableNumber`, `expiresAt`) "
+                        + "VALUES (?, ?, ?)", new Object[] { cursor.getString(0), cursor.getInt(1),
+                        parseExpirationDate(cursor.isNull(2) ? null : cursor.getString(2)) });
+                }
+            } finally {
+                cursor.close();
+            }
+            database.execSQL("DROP TABLE `reservation`");
+            database.execSQL("ALTER TABLE `reservation_new` RENAME TO `reservation`");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_reservation_tableNumber` "
+                + "ON `reservation` (`tableNumber`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_reservation_expiresAt` "
+                + "ON `reservation` (`expiresAt`)");
+        }
+    };
+
+    private static long parseExpirationDate(String expirationDate) {
+        if (expirationDate == null) {
+            return 0;
+        }
+        try {
+            return DateUtils.parseDate(expirationDate);
+        } catch (IllegalArgumentException exception) {
+            Timber.w(exception, "Couldn't parse expiration date %s, taking it as long expired.", expirationDate);
+            return 0;
+        }
+    }
+
+    //Customers get looked up by name through a full-text index, kept in sync by triggers.
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            CustomerSearchIndex.create(database);
+            CustomerSearchIndex.rebuild(database);
+        }
+    };
+
+    //Mutations the server rejects are set aside in the outbox, rather than dropped from it.
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE `reservation_outbox` ADD COLUMN `rejected` INTEGER NOT NULL DEFAULT 0");
+        }
+    };
+
+    //Room only creates tables for entities, so the full-text index is made here on fresh installs.
+    static final Callback CREATE_CUSTOMER_SEARCH_INDEX = new Callback() {
+        @Override
+        public void onCreate(@NonNull SupportSQLiteDatabase database) {
+            CustomerSearchIndex.create(database);
+        }
+    };
+
     public static DatabaseResource getInstance(Context context) {
         if (instance == null && context != null) {
             instance = Room.databaseBuilder(context,
                 DatabaseResource.class, "steward-db")
+                    .addMigrations(MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5,
+                        MIGRATION_5_6, MIGRATION_6_7, MIGRATION_7_8)
+                    .addCallback(CREATE_CUSTOMER_SEARCH_INDEX)
                     .build();
         }
         return instance;
@@ -40,4 +158,8 @@ public abstract class DatabaseResource extends RoomDatabase {
 
     public abstract ReservationDao reservationDao();
 
+    public abstract SyncStateDao syncStateDao();
+
+    public abstract ReservationOutboxDao reservationOutboxDao();
+
 }
@@ -0,0 +1,57 @@
+package com.github.guilhermesgb.steward.database;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tells apart which incoming rows are new, which differ from the rows already stored under the
+ * same key and which stored rows are no longer around, so that syncing them takes only the writes
+ * actually needed instead of rewriting every row. Subclasses tell what the key of each row is.
+ * @param <K> the type of the key rows are told apart by (i.e. their primary key).
+ * @param <T> the type of the rows.
+ */
+public abstract class SyncDiff<K extends Comparable<K>, T> {
+
+    private final List<T> inserted = new ArrayList<>();
+    private final List<T> updated = new ArrayList<>();
+    private final List<K> deleted = new ArrayList<>();
+
+    protected abstract K keyOf(T row);
+
+    public SyncDiff<K, T> compute(List<T> storedRows, List<T> incomingRows) {
+        inserted.clear();
+        updated.clear();
+        deleted.clear();
+        Map<K, T> rowsLeft = new HashMap<>();
+        for (T row : storedRows) {
+            rowsLeft.put(keyOf(row), row);
+        }
+        for (T row : incomingRows) {
+            T storedRow = rowsLeft.remove(keyOf(row));
+            if (storedRow == null) {
+                inserted.add(row);
+            } else if (!storedRow.equals(row)) {
+                updated.add(row);
+            }
+        }
+        deleted.addAll(rowsLeft.keySet());
+        Collections.sort(deleted);
+        return this;
+    }
+
+    public List<T> getInserted() {
+        return inserted;
+    }
+
+    public List<T> getUpdated() {
+        return updated;
+    }
+
+    public List<K> getDeleted() {
+        return deleted;
+    }
+
+}
@@ -0,0 +1,59 @@
+package com.github.guilhermesgb.steward.database;
+
+//Tells how many rows a sync of some resource actually wrote to the local database, and how
+// many rows it was given to begin with, so that its write amplification can be told at a glance.
+public class SyncReport {
+
+    private final String resource;
+    private final int incomingRows;
+    private final int insertedRows;
+    private final int updatedRows;
+    private final int deletedRows;
+
+    public SyncReport(String resource, int incomingRows, int insertedRows, int updatedRows, int deletedRows) {
+        this.resource = resource;
+        this.incomingRows = incomingRows;
+        this.insertedRows = insertedRows;
+        this.updatedRows = updatedRows;
+        this.deletedRows = deletedRows;
+    }
+
+    public String getResource() {
+        return resource;
+    }
+
+    public int getIncomingRows() {
+        return incomingRows;
+    }
+
+    public int getInsertedRows() {
+        return insertedRows;
+    }
+
+    public int getUpdatedRows() {
+        return updatedRows;
+    }
+
+    //Rows no longer around but held by local reservations stay, so they aren't counted.
+    public int getDeletedRows() {
+        return deletedRows;
+    }
+
+    public int getWrittenRows() {
+        return insertedRows + updatedRows + deletedRows;
+    }
+
+    //Sums up syncs of parts of the same resource (e.g. chunks of it).
+    public SyncReport plus(SyncReport other) {
+        return new SyncReport(resource, incomingRows + other.incomingRows, insertedRows + other.insertedRows,
+            updatedRows + other.updatedRows, deletedRows + other.deletedRows);
+    }
+
+    @Override
+    public String toString() {
+        return "SyncReport{resource=" + resource + ", incomingRows=" + incomingRows
+            + ", insertedRows=" + insertedRows + ", updatedRows=" + updatedRows
+            + ", deletedRows=" + deletedRows + "}";
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.github.guilhermesgb.steward.database;
+
+import android.arch.persistence.room.Entity;
+import android.arch.persistence.room.Ignore;
+import android.arch.persistence.room.PrimaryKey;
+import android.support.annotation.NonNull;
+
+import java.util.Arrays;
+
+//Keeps track of how far along each synchronized resource is with respect to the server,
+// and of when it was last brought up to date with it (in milliseconds since the epoch).
+@Entity(tableName = "sync_state")
+public class SyncState {
+
+    @PrimaryKey @NonNull private String resource;
+    private String cursor;
+    private Long syncedAt;
+
+    public SyncState(@NonNull String resource, String cursor, Long syncedAt) {
+        this.resource = resource;
+        this.cursor = cursor;
+        this.syncedAt = syncedAt;
+    }
+
+    @Ignore
+    public SyncState(@NonNull String resource, String cursor) {
+        this(resource, cursor, null);
+    }
+
+    @NonNull
+    public String getResource() {
+        return resource;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public Long getSyncedAt() {
+        return syncedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "SyncState{resource=" + resource + ", cursor=" + cursor + ", syncedAt=" + syncedAt + "}";
+    }
+
+    //Two states are equal whenever they stand for the same position in the sync,
+    // no matter when each one of them was reached.
+    @Override
+    @SuppressWarnings({"ConstantConditions", "StringEquality"})
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SyncState syncState = (SyncState) o;
+        return ((resource == syncState.resource) || (resource != null && resource.equals(syncState.resource))) &&
+            ((cursor == syncState.cursor) || (cursor != null && cursor.equals(syncState.cursor)));
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(new Object[] { resource, cursor });
+    }
+
+}
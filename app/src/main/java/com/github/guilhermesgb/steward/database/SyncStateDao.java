@@ -0,0 +1,19 @@
+package com.github.guilhermesgb.steward.database;
+
+import android.arch.persistence.room.Dao;
+import android.arch.persistence.room.Insert;
+import android.arch.persistence.room.OnConflictStrategy;
+import android.arch.persistence.room.Query;
+
+import io.reactivex.Maybe;
+
+@Dao
+public interface SyncStateDao {
+
+    @Query("SELECT * FROM sync_state WHERE resource = :resource LIMIT 1")
+    Maybe<SyncState> findByResource(String resource);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insert(SyncState syncState);
+
+}
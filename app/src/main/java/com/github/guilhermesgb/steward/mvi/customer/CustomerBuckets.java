@@ -0,0 +1,109 @@
+package com.github.guilhermesgb.steward.mvi.customer;
+
+import com.github.guilhermesgb.steward.mvi.customer.schema.Customer;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+//Splits the customer directory into buckets of consecutive ids and digests each one of them,
+// so that client and server can tell which parts of the directory differ by comparing just a
+// few bytes per bucket. Both sides must agree on this exact layout for the hashes to match.
+public final class CustomerBuckets {
+
+    //Customers whose ids aren't non-negative numbers all share this bucket.
+    public static final long UNNUMBERED_BUCKET = -1;
+
+    private static final int HASH_LENGTH_IN_BYTES = 8;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    //Numeric ids (without leading zeros) come out in numeric order, any other ids in a stable one.
+    // Customers without ids (which may well come from the server) come out first.
+    private static final Comparator<Customer> BY_ID = new Comparator<Customer>() {
+        @Override
+        public int compare(Customer first, Customer second) {
+            String firstId = first.getId(), secondId = second.getId();
+            if (firstId == null || secondId == null) {
+                return firstId == null ? (secondId == null ? 0 : -1) : 1;
+            }
+            return firstId.length() != secondId.length()
+                ? firstId.length() - secondId.length() : firstId.compareTo(secondId);
+        }
+    };
+
+    private CustomerBuckets() {}
+
+    public static long bucketOf(String customerId, int width) {
+        try {
+            long id = Long.parseLong(customerId);
+            return id < 0 ? UNNUMBERED_BUCKET : id / width;
+        } catch (NumberFormatException exception) {
+            return UNNUMBERED_BUCKET;
+        }
+    }
+
+    public static Map<Long, List<Customer>> group(Collection<Customer> customers, int width) {
+        Map<Long, List<Customer>> buckets = new TreeMap<>();
+        for (Customer customer : customers) {
+            long bucket = bucketOf(customer.getId(), width);
+            List<Customer> bucketCustomers = buckets.get(bucket);
+            if (bucketCustomers == null) {
+                bucketCustomers = new LinkedList<>();
+                buckets.put(bucket, bucketCustomers);
+            }
+            bucketCustomers.add(customer);
+        }
+        return buckets;
+    }
+
+    public static Map<Long, String> hash(Map<Long, List<Customer>> buckets) {
+        Map<Long, String> hashes = new TreeMap<>();
+        for (Map.Entry<Long, List<Customer>> bucket : buckets.entrySet()) {
+            hashes.put(bucket.getKey(), hashOf(bucket.getValue()));
+        }
+        return hashes;
+    }
+
+    public static String hashOf(List<Customer> customers) {
+        List<Customer> sortedCustomers = new ArrayList<>(customers);
+        Collections.sort(sortedCustomers, BY_ID);
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException(exception);
+        }
+        for (Customer customer : sortedCustomers) {
+            update(digest, customer.getId());
+            update(digest, customer.getFirstName());
+            update(digest, customer.getLastName());
+        }
+        byte[] hash = digest.digest();
+        char[] hex = new char[HASH_LENGTH_IN_BYTES * 2];
+        for (int i=0; i<HASH_LENGTH_IN_BYTES; i++) {
+            hex[i * 2] = HEX_DIGITS[(hash[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = HEX_DIGITS[hash[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    //Every field goes in length-prefixed (-1 standing for null), so that no two
+    // different sequences of fields could ever be digested as the same bytes.
+    private static void update(MessageDigest digest, String field) {
+        byte[] bytes = field == null ? new byte[0] : field.getBytes(UTF_8);
+        int length = field == null ? -1 : bytes.length;
+        digest.update(new byte[] { (byte) (length >>> 24), (byte) (length >>> 16),
+            (byte) (length >>> 8), (byte) length });
+        digest.update(bytes);
+    }
+
+}
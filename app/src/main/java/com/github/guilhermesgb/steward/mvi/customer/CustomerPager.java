@@ -0,0 +1,89 @@
+package com.github.guilhermesgb.steward.mvi.customer;
+
+import com.github.guilhermesgb.steward.mvi.customer.schema.Customer;
+import com.github.guilhermesgb.steward.mvi.customer.schema.CustomerDao;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the customer directory a page at a time, in order of id, so that no one ever needs to hold
+ * every customer in memory at once. Pages are read by keyset (i.e. every page starts right after the
+ * last id of the page before it), and the pages read are kept for as long as they're shown, i.e. up
+ * to the number of pages last asked for: loading one more page reads that page alone, and shedding
+ * pages lets go of them. Once the directory changes, whatever was read must be invalidated.
+ */
+public class CustomerPager {
+
+    private final int pageSize;
+    //The pages read so far, from the first one on, with no gaps.
+    private final List<List<Customer>> pages = new ArrayList<>();
+    //The number of the last page there is, once known (-1 until then).
+    private int lastPage = -1;
+
+    public CustomerPager(int pageSize) {
+        this.pageSize = Math.max(1, pageSize);
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * @param customerDao where pages are read from, whenever not read yet.
+     * @param page the number of the page, starting from zero.
+     * @return the customers in the given page, which is empty if there's no such page.
+     */
+    public synchronized List<Customer> getPage(CustomerDao customerDao, int page) {
+        if (page < 0) {
+            return new ArrayList<>();
+        }
+        //Pages are only ever reached from the one before them.
+        while (pages.size() <= page && (lastPage < 0 || pages.size() <= lastPage)) {
+            List<Customer> customers = pages.isEmpty() ? customerDao.findFirstPage(pageSize)
+                : customerDao.findPageAfter(lastIdOf(pages.get(pages.size() - 1)), pageSize);
+            if (customers.size() < pageSize) {
+                lastPage = pages.size();
+            }
+            pages.add(customers);
+        }
+        return page < pages.size() ? pages.get(page) : new ArrayList<Customer>();
+    }
+
+    /**
+     * Keeps no more pages than the ones asked for, reading only those not read yet.
+     * @param customerDao where pages are read from, whenever not read yet.
+     * @param count how many pages, starting from the first one.
+     * @return the customers in the given pages, which may be fewer than asked for.
+     */
+    public synchronized List<Customer> getPages(CustomerDao customerDao, int count) {
+        getPage(customerDao, count - 1);
+        while (pages.size() > Math.max(0, count)) {
+            pages.remove(pages.size() - 1);
+        }
+        List<Customer> customers = new ArrayList<>(pages.size() * pageSize);
+        for (List<Customer> page : pages) {
+            customers.addAll(page);
+        }
+        return customers;
+    }
+
+    //Whether there may be pages past the given count, as far as what was read so far tells.
+    public synchronized boolean hasPagesAfter(int count) {
+        return lastPage < 0 || lastPage >= count;
+    }
+
+    public synchronized int getCachedPageCount() {
+        return pages.size();
+    }
+
+    public synchronized void invalidate() {
+        pages.clear();
+        lastPage = -1;
+    }
+
+    private static String lastIdOf(List<Customer> page) {
+        return page.get(page.size() - 1).getId();
+    }
+
+}
@@ -1,35 +1,167 @@
 package com.github.guilhermesgb.steward.mvi.customer;
 
+import android.arch.persistence.db.SupportSQLiteQuery;
 import android.content.Context;
 
+import com.github.guilhermesgb.steward.database.SyncDiff;
+import com.github.guilhermesgb.steward.database.SyncReport;
+import com.github.guilhermesgb.steward.database.SyncState;
 import com.github.guilhermesgb.steward.mvi.customer.intent.FetchCustomersAction;
+import com.github.guilhermesgb.steward.mvi.customer.intent.SearchCustomersAction;
 import com.github.guilhermesgb.steward.mvi.customer.model.FetchCustomersViewState;
 import com.github.guilhermesgb.steward.mvi.customer.schema.Customer;
+import com.github.guilhermesgb.steward.mvi.customer.schema.CustomerBucketHashes;
+import com.github.guilhermesgb.steward.mvi.customer.schema.CustomerChanges;
+import com.github.guilhermesgb.steward.mvi.customer.schema.CustomerSearchIndex;
+import com.github.guilhermesgb.steward.network.CacheOutcome;
 import com.github.guilhermesgb.steward.utils.UseCase;
+import com.google.gson.stream.JsonReader;
 
+import java.net.HttpURLConnection;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 
 import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.ObservableOnSubscribe;
 import io.reactivex.ObservableSource;
+import io.reactivex.Single;
+import io.reactivex.SingleSource;
 import io.reactivex.functions.BiFunction;
 import io.reactivex.functions.Consumer;
 import io.reactivex.functions.Function;
+import okhttp3.ResponseBody;
+import retrofit2.HttpException;
+import retrofit2.Response;
 import timber.log.Timber;
 
 public class FetchCustomersUseCase extends UseCase {
 
+    public static final int DEFAULT_INGESTION_CHUNK_SIZE = 500;
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_SEARCH_RESULTS = 20;
+    public static final String SYNC_RESOURCE = "customer";
+    private static final String CUSTOMER_TABLE = "customer";
+
+    //Keeps every statement well below SQLite's limit of bound variables (999).
+    private static final int MAX_IDS_PER_STATEMENT = 500;
+    //Keeps the query string of each request for customers in given buckets reasonably short.
+    private static final int MAX_BUCKETS_PER_REQUEST = 64;
+
+    private SyncStrategy syncStrategy = SyncStrategy.FULL;
+
+    //When greater than zero, remote customers are parsed incrementally and committed
+    // to the database in chunks of this size, instead of all at once in the end.
+    private int ingestionChunkSize = 0;
+
+    private boolean writingDiffsOnly = false;
+    private boolean observingLocalChanges = false;
+
+    //When set, local customers are read a page at a time, rather than all at once.
+    private CustomerPager customerPager;
+    //How many pages were asked for last, which is how many pages are read again on changes.
+    private volatile int pagesWanted = 1;
+    private volatile SyncReport lastSyncReport;
+
     public FetchCustomersUseCase(String apiBaseUrl, Context context) {
         super(apiBaseUrl, context);
     }
 
+    public SyncStrategy getSyncStrategy() {
+        return syncStrategy;
+    }
+
+    /**
+     * Chooses how remote customers are brought in. FULL (the default) downloads the whole
+     * directory, as ingested according to the ingestion chunk size. DELTA keeps a sync cursor
+     * in the database and only downloads (and applies) what changed since then, falling back
+     * to a full reset of the directory whenever the server rejects the cursor. MERKLE needs no
+     * cursor: it compares hashes over id-range buckets of both directories, only downloading
+     * (and writing) the buckets that differ, so unchanged customers cost a few hash bytes.
+     * @param syncStrategy the strategy to be used by subsequent fetches.
+     */
+    public void setSyncStrategy(SyncStrategy syncStrategy) {
+        this.syncStrategy = syncStrategy;
+    }
+
+    public int getIngestionChunkSize() {
+        return ingestionChunkSize;
+    }
+
+    /**
+     * Enables (or disables) the chunked ingestion mode, in which the customer list is parsed
+     * straight from the response stream and committed to the database a chunk at a time, a
+     * partial SuccessFetchingCustomers state being emitted after every committed chunk. This
+     * way the list fills in progressively and only one chunk is ever pending a write.
+     * @param ingestionChunkSize how many customers go in each transaction -- zero or less
+     *                           brings back the default mode, which persists all at once.
+     */
+    public void setIngestionChunkSize(int ingestionChunkSize) {
+        this.ingestionChunkSize = ingestionChunkSize;
+    }
+
+    /**
+     * Enables (or disables) writing only what differs whenever the whole remote directory is
+     * persisted at once: rather than deleting every customer and inserting them all over again,
+     * remote customers are told apart from local ones by id (see SyncDiff), new ones being inserted,
+     * changed ones updated in place and missing ones deleted, so that a directory which didn't
+     * change at all is read and compared, but not written. Chunked ingestion writes only what
+     * differs too, chunk by chunk, deleting missing customers along with the last chunk.
+     * @param writingDiffsOnly whether only the customers that differ should be written.
+     */
+    public void setWritingDiffsOnly(boolean writingDiffsOnly) {
+        this.writingDiffsOnly = writingDiffsOnly;
+    }
+
+    /**
+     * Enables (or disables) observing the local customers once fetched, in which case doFetchCustomers
+     * no longer completes: whenever customers get written to the local database, no matter where from,
+     * they're read again and a SuccessFetchingCustomers state emitted, bursts of writes being read
+     * again only once (see UseCase.localChanges).
+     * @param observingLocalChanges whether local customers should be observed.
+     */
+    public void setObservingLocalChanges(boolean observingLocalChanges) {
+        this.observingLocalChanges = observingLocalChanges;
+    }
+
+    /**
+     * Enables (or disables) paging local customers, in which case states carry only the pages of
+     * customers loaded so far (i.e. the first one, to begin with), further pages being loaded on
+     * demand through doLoadMoreCustomers. Remote customers end up in the database all the same,
+     * but are read back from there a page at a time. Pages loaded are kept for as long as they're
+     * carried, so that loading more of them reads only the new ones.
+     * @param pageSize how many customers go in each page -- zero or less disables paging.
+     */
+    public void setPageSize(int pageSize) {
+        this.customerPager = pageSize > 0 ? new CustomerPager(pageSize) : null;
+    }
+
+    //How many rows the last time the whole remote directory got persisted wrote, if ever.
+    public SyncReport getLastSyncReport() {
+        return lastSyncReport;
+    }
+
     public Observable<FetchCustomersViewState> doFetchCustomers(final FetchCustomersAction action) {
-        Observable<FetchCustomersViewState> fetchRemoteCustomers
-            = mapListOfCustomersToStates(action, getApi().fetchCustomers().toObservable(), false);
+        final Observable<FetchCustomersViewState> syncRemoteCustomers = fetchRemoteCustomers(action);
+        Observable<FetchCustomersViewState> fetchRemoteCustomers = Observable
+            .defer(new Callable<ObservableSource<FetchCustomersViewState>>() {
+                @Override
+                public ObservableSource<FetchCustomersViewState> call() {
+                    //Recently synced customers (e.g. by cache warming) are served from the database alone.
+                    return isFresh(SYNC_RESOURCE) ? Observable.<FetchCustomersViewState>empty()
+                        : syncRemoteCustomers;
+                }
+            });
 
-        final Observable<FetchCustomersViewState> fetchLocalCustomers = mapListOfCustomersToStates
-            (action, getDatabase().customerDao().findAll().toObservable(), true);
+        pagesWanted = action.getPages();
+        final Observable<FetchCustomersViewState> fetchLocalCustomers = customerPager != null
+            ? readCustomerPages(action, false)
+            : mapListOfCustomersToStates(action, getDatabase().customerDao().findAll().toObservable(), true);
 
         return Observable.combineLatest(fetchLocalCustomers, fetchRemoteCustomers.cache(),
             new BiFunction<FetchCustomersViewState, FetchCustomersViewState, FetchCustomersViewState>() {
@@ -41,25 +173,31 @@ public class FetchCustomersUseCase extends UseCase {
                             new Function<FetchCustomersViewState.SuccessFetchingCustomers, FetchCustomersViewState>() {
                                 @Override
                                 public FetchCustomersViewState apply(FetchCustomersViewState.SuccessFetchingCustomers success) {
+                                    success.setCircuitState(getCircuitBreaker().getState());
                                     //In case we have remote customers, we discard local state in favor of remote state.
-                                    //Persisting merged state in the local database.
-                                    try {
-                                        getDatabase().beginTransaction();
-                                        getDatabase().reservationDao().deleteUnusedCustomers();
-                                        getDatabase().customerDao().insertAll(success.getCustomers());
-                                        getDatabase().setTransactionSuccessful();
-                                    } finally {
-                                        getDatabase().endTransaction();
+                                    if (success.isPersisted()) {
+                                        //These were committed chunk by chunk while being ingested.
+                                        return readBackCustomerPages(action, success);
+                                    }
+                                    if (success.getCacheOutcome().isUnchanged() && !localCustomers.isEmpty()) {
+                                        //The server told us these are the very customers we persisted last time,
+                                        // so there's no point in rewriting them all over again.
+                                        return readBackCustomerPages(action, success);
                                     }
-                                    return success;
+                                    //Persisting merged state in the local database.
+                                    persistRemoteCustomers(success.getCustomers());
+                                    return readBackCustomerPages(action, success);
                                 }
                             },
                             new Function<FetchCustomersViewState.ErrorFetchingCustomers, FetchCustomersViewState>() {
                                 @Override
                                 public FetchCustomersViewState apply(FetchCustomersViewState.ErrorFetchingCustomers error) {
                                     //In case we can't fetch remote customers, we merge the remote error state with our local customers.
+                                    // The error also tells whether the circuit breaker kept the call from going out.
                                     return new FetchCustomersViewState.ErrorFetchingCustomers
-                                        (action, error.getThrowable()).setCachedCustomers(localCustomers);
+                                        (action, error.getThrowable()).setCachedCustomers(error
+                                            .getCachedCustomers() != null ? error.getCachedCustomers() : localCustomers)
+                                        .setCircuitState(getCircuitBreaker().getState());
                                 }
                             }
                         );
@@ -100,7 +238,9 @@ public class FetchCustomersUseCase extends UseCase {
                     //So the resulting stream below will return local customer states as soon as possible
                     // and then rely remote customer states merged with local customer states to simulate
                     // a caching effect in case of network errors preventing retrieval of remote state.
-                    operations.add(fetchRemoteCustomers);
+                    //Once that is done, local customers may be observed from then on.
+                    operations.add(observingLocalChanges
+                        ? fetchRemoteCustomers.concatWith(observeLocalCustomers(action)) : fetchRemoteCustomers);
                     return Observable.concatEager(operations)
                         .startWith(new FetchCustomersViewState.FetchingCustomers(action))
                         .doOnNext(new Consumer<FetchCustomersViewState>() {
@@ -119,10 +259,9 @@ public class FetchCustomersUseCase extends UseCase {
                                     = (FetchCustomersViewState.ErrorFetchingCustomers) state;
                                 FetchCustomersViewState.Initial initial
                                     = new FetchCustomersViewState.Initial(error.getCachedCustomers());
-                                // Whenever an error occurs, we want to follow up with the initial state again after a 5 seconds.
-                                // That's achieved with the combination of zip and take operations below.
-                                return Observable.zip(Observable.interval(5, !isBeingTested() ? TimeUnit.SECONDS
-                                        : TimeUnit.MILLISECONDS).take(2), Observable.fromArray(error, initial),
+                                // Whenever an error occurs, we want to follow up with the initial state again after a while
+                                // (at least 5 seconds, longer while the circuit is open). That's achieved by zipping below.
+                                return Observable.zip(errorBounceTicks(), Observable.fromArray(error, initial),
                                     new BiFunction<Long, FetchCustomersViewState, FetchCustomersViewState>() {
                                         @Override
                                         public FetchCustomersViewState apply(Long ignore, FetchCustomersViewState state) {
@@ -135,6 +274,595 @@ public class FetchCustomersUseCase extends UseCase {
             });
     }
 
+    private Observable<FetchCustomersViewState> observeLocalCustomers(final FetchCustomersAction action) {
+        return localChanges(CUSTOMER_TABLE)
+            .concatMap(new Function<Object, ObservableSource<FetchCustomersViewState>>() {
+                @Override
+                public ObservableSource<FetchCustomersViewState> apply(Object ignore) {
+                    if (customerPager != null) {
+                        customerPager.invalidate();
+                        return readCustomerPages(action, true);
+                    }
+                    return getDatabase().customerDao().findAll().toObservable()
+                        .map(new Function<List<Customer>, FetchCustomersViewState>() {
+                            @Override
+                            public FetchCustomersViewState apply(List<Customer> customers) {
+                                return new FetchCustomersViewState.SuccessFetchingCustomers(action, customers)
+                                    .setPersisted(true);
+                            }
+                        })
+                        .onErrorResumeNext(new Function<Throwable, ObservableSource<FetchCustomersViewState>>() {
+                            @Override
+                            public ObservableSource<FetchCustomersViewState> apply(Throwable throwable) {
+                                //The customers shown last are kept until the next change reads fine.
+                                Timber.w(throwable, "Couldn't read local customers again.");
+                                return Observable.empty();
+                            }
+                        });
+                }
+            })
+            .map(new Function<FetchCustomersViewState, FetchCustomersViewState>() {
+                @Override
+                public FetchCustomersViewState apply(FetchCustomersViewState state) {
+                    return ((FetchCustomersViewState.SuccessFetchingCustomers) state).setUpdate(true);
+                }
+            });
+    }
+
+    /**
+     * Loads as many pages of local customers as the given action asks for, whenever customers are
+     * paged (see setPageSize), only the pages not loaded before being read.
+     * Goes nowhere near the network.
+     * @param action the action telling how many pages are wanted.
+     * @return a SuccessFetchingCustomers state with the customers in the pages wanted, if paging.
+     */
+    public Observable<FetchCustomersViewState> doLoadMoreCustomers(final FetchCustomersAction action) {
+        if (customerPager == null) {
+            return Observable.empty();
+        }
+        pagesWanted = action.getPages();
+        return readCustomerPages(action, true);
+    }
+
+    /**
+     * Looks customers up by name through the full-text index (see CustomerSearchIndex), so that
+     * searching costs the same no matter how many customers there are, or how many were paged in.
+     * @param action carries what's being searched for; blank queries find no one.
+     * @return the customers found, as search results -- or nothing at all, should the search fail.
+     */
+    public Observable<FetchCustomersViewState> doSearchCustomers(final SearchCustomersAction action) {
+        return Observable.fromCallable(new Callable<FetchCustomersViewState>() {
+            @Override
+            public FetchCustomersViewState call() {
+                SupportSQLiteQuery query = CustomerSearchIndex
+                    .newSearchQuery(action.getQuery(), MAX_SEARCH_RESULTS);
+                List<Customer> customers = query == null ? new LinkedList<Customer>()
+                    : getDatabase().customerDao().search(query);
+                return new FetchCustomersViewState.SuccessFetchingCustomers
+                    (new FetchCustomersAction(), customers)
+                        .setSearchQuery(action.getQuery());
+            }
+        }).onErrorResumeNext(new Function<Throwable, ObservableSource<FetchCustomersViewState>>() {
+            @Override
+            public ObservableSource<FetchCustomersViewState> apply(Throwable throwable) {
+                Timber.w(throwable, "Couldn't search local customers.");
+                return Observable.empty();
+            }
+        });
+    }
+
+    //Pages are read on demand, so errors reading them keep the customers shown last, unless there are none.
+    private Observable<FetchCustomersViewState> readCustomerPages(final FetchCustomersAction action,
+                                                                  final boolean keepingShownOnError) {
+        return Observable.fromCallable(new Callable<FetchCustomersViewState>() {
+            @Override
+            public FetchCustomersViewState call() {
+                return newPagedSuccessFetchingCustomers(action);
+            }
+        }).onErrorResumeNext(new Function<Throwable, ObservableSource<FetchCustomersViewState>>() {
+            @Override
+            public ObservableSource<FetchCustomersViewState> apply(Throwable throwable) {
+                Timber.w(throwable, "Couldn't read local customer pages.");
+                return keepingShownOnError ? Observable.<FetchCustomersViewState>empty()
+                    : Observable.<FetchCustomersViewState>just(new FetchCustomersViewState
+                        .SuccessFetchingCustomers(action, new LinkedList<Customer>()));
+            }
+        });
+    }
+
+    private FetchCustomersViewState.SuccessFetchingCustomers newPagedSuccessFetchingCustomers(FetchCustomersAction action) {
+        int pages = pagesWanted;
+        return new FetchCustomersViewState.SuccessFetchingCustomers(action,
+            customerPager.getPages(getDatabase().customerDao(), pages))
+                .setPages(pages, customerPager.hasPagesAfter(pages))
+                .setPersisted(true);
+    }
+
+    //Whenever paging, remote customers are read back from the database, which they've just been written to.
+    private FetchCustomersViewState readBackCustomerPages(FetchCustomersAction action,
+                                                          FetchCustomersViewState.SuccessFetchingCustomers success) {
+        if (customerPager == null) {
+            return success;
+        }
+        customerPager.invalidate();
+        return newPagedSuccessFetchingCustomers(action)
+            .setCacheOutcome(success.getCacheOutcome())
+            .setCircuitState(success.getCircuitState())
+            .setPartial(success.isPartial());
+    }
+
+    /**
+     * Runs the remote half of doFetchCustomers alone: remote customers are fetched and persisted
+     * (according to the sync strategy and ingestion chunk size) without emitting any states, and
+     * the time of this sync is recorded, so that foreground fetches within the freshness threshold
+     * may be served from the database alone. Blocks until done, being meant for background work.
+     * @return whether the local customers are now up to date with the remote ones.
+     */
+    public boolean refreshLocalCustomers() {
+        FetchCustomersViewState finalState = fetchRemoteCustomers(new FetchCustomersAction()).blockingLast(null);
+        if (!(finalState instanceof FetchCustomersViewState.SuccessFetchingCustomers)) {
+            return false;
+        }
+        FetchCustomersViewState.SuccessFetchingCustomers success
+            = (FetchCustomersViewState.SuccessFetchingCustomers) finalState;
+        SyncState syncState = getDatabase().syncStateDao().findByResource(SYNC_RESOURCE).blockingGet();
+        boolean persistedBefore = syncState != null && syncState.getSyncedAt() != null;
+        //Unchanged customers were already persisted by the previous sync, if there was one.
+        if (!success.isPersisted() && !(success.getCacheOutcome().isUnchanged() && persistedBefore)) {
+            persistRemoteCustomers(success.getCustomers());
+        }
+        markSynced(SYNC_RESOURCE);
+        return true;
+    }
+
+    private Observable<FetchCustomersViewState> fetchRemoteCustomers(FetchCustomersAction action) {
+        switch (syncStrategy) {
+            case DELTA:
+                return syncCustomerChanges(action);
+            case MERKLE:
+                return syncCustomerBuckets(action);
+            case FULL:
+            default:
+                return ingestionChunkSize > 0
+                    ? ingestRemoteCustomersInChunks(action, ingestionChunkSize)
+                    : mapResponseOfCustomersToStates(action, getApi().fetchCustomers().toObservable());
+        }
+    }
+
+    private void persistRemoteCustomers(List<Customer> customers) {
+        if (writingDiffsOnly) {
+            persistRemoteCustomerDiff(customers);
+            return;
+        }
+        try {
+            getDatabase().beginTransaction();
+            getDatabase().reservationDao().deleteUnusedCustomers();
+            getDatabase().customerDao().insertAll(customers);
+            getDatabase().setTransactionSuccessful();
+        } finally {
+            getDatabase().endTransaction();
+        }
+        //Every customer gets rewritten by REPLACE, whether it changed or not.
+        reportSync(new SyncReport(SYNC_RESOURCE, customers.size(), customers.size(), 0, 0));
+    }
+
+    private void persistRemoteCustomerDiff(List<Customer> customers) {
+        SyncDiff<String, Customer> diff;
+        int deletedRows = 0;
+        try {
+            getDatabase().beginTransaction();
+            //Local customers are read within the transaction, so that the diff is never out of date.
+            diff = newCustomerDiff().compute(getDatabase().customerDao().findAll().blockingGet(), customers);
+            List<String> deleted = diff.getDeleted();
+            for (int i=0; i<deleted.size(); i+=MAX_IDS_PER_STATEMENT) {
+                deletedRows += getDatabase().reservationDao().deleteUnusedCustomers(deleted
+                    .subList(i, Math.min(deleted.size(), i + MAX_IDS_PER_STATEMENT)));
+            }
+            if (!diff.getUpdated().isEmpty()) {
+                getDatabase().customerDao().updateAll(diff.getUpdated());
+            }
+            if (!diff.getInserted().isEmpty()) {
+                getDatabase().customerDao().insertAll(diff.getInserted());
+            }
+            getDatabase().setTransactionSuccessful();
+        } finally {
+            getDatabase().endTransaction();
+        }
+        reportSync(new SyncReport(SYNC_RESOURCE, customers.size(), diff.getInserted().size(),
+            diff.getUpdated().size(), deletedRows));
+    }
+
+    private static SyncDiff<String, Customer> newCustomerDiff() {
+        return new SyncDiff<String, Customer>() {
+            @Override
+            protected String keyOf(Customer customer) {
+                return customer.getId();
+            }
+        };
+    }
+
+    private void reportSync(SyncReport syncReport) {
+        lastSyncReport = syncReport;
+        Timber.d("Customers persisted: %s.", syncReport);
+    }
+
+    private Observable<FetchCustomersViewState> mapResponseOfCustomersToStates(final FetchCustomersAction action,
+                                                                               Observable<Response<List<Customer>>> responses) {
+        return responses.map(new Function<Response<List<Customer>>, FetchCustomersViewState>() {
+            @Override
+            public FetchCustomersViewState apply(Response<List<Customer>> response) {
+                if (!response.isSuccessful()) {
+                    throw new HttpException(response);
+                }
+                return new FetchCustomersViewState.SuccessFetchingCustomers(action, response.body())
+                    .setCacheOutcome(CacheOutcome.of(response));
+            }
+        }).onErrorReturn(new Function<Throwable, FetchCustomersViewState>() {
+            @Override
+            public FetchCustomersViewState apply(Throwable throwable) {
+                return new FetchCustomersViewState.ErrorFetchingCustomers(action, throwable);
+            }
+        });
+    }
+
+    private Observable<FetchCustomersViewState> ingestRemoteCustomersInChunks(final FetchCustomersAction action,
+                                                                              final int chunkSize) {
+        return getApi().streamCustomers().toObservable()
+            .flatMap(new Function<Response<ResponseBody>, ObservableSource<FetchCustomersViewState>>() {
+                @Override
+                public ObservableSource<FetchCustomersViewState> apply(final Response<ResponseBody> response) {
+                    if (!response.isSuccessful()) {
+                        throw new HttpException(response);
+                    }
+                    final CacheOutcome cacheOutcome = CacheOutcome.of(response);
+                    return Observable.create(new ObservableOnSubscribe<FetchCustomersViewState>() {
+                        @Override
+                        public void subscribe(ObservableEmitter<FetchCustomersViewState> emitter) throws Exception {
+                            //noinspection ConstantConditions
+                            JsonReader reader = new JsonReader(response.body().charStream());
+                            try {
+                                if (cacheOutcome.isUnchanged()) {
+                                    //Nothing changed since last time, so most likely there is nothing
+                                    // to write either: the usual merge gets to decide that for us.
+                                    emitter.onNext(new FetchCustomersViewState.SuccessFetchingCustomers
+                                        (action, readAllCustomers(reader)).setCacheOutcome(cacheOutcome));
+                                } else {
+                                    ingestAllCustomers(action, reader, chunkSize, cacheOutcome, emitter);
+                                }
+                                emitter.onComplete();
+                            } finally {
+                                reader.close();
+                            }
+                        }
+                    });
+                }
+            }).onErrorReturn(new Function<Throwable, FetchCustomersViewState>() {
+                @Override
+                public FetchCustomersViewState apply(Throwable throwable) {
+                    return new FetchCustomersViewState.ErrorFetchingCustomers(action, throwable);
+                }
+            });
+    }
+
+    private List<Customer> readAllCustomers(JsonReader reader) throws Exception {
+        List<Customer> customers = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            Customer customer = Customer.readFrom(reader);
+            if (customer != null) {
+                customers.add(customer);
+            }
+        }
+        reader.endArray();
+        return customers;
+    }
+
+    //Partial states only carry the chunk just committed, so nothing grows with the directory but the
+    // ids seen so far -- and, when not paging, the customers the final state must carry all of.
+    //Customers no longer around are only deleted along with the last chunk, so that a stream failing
+    // midway leaves the local directory whole (if partly updated) rather than cut short.
+    private void ingestAllCustomers(FetchCustomersAction action, JsonReader reader, int chunkSize,
+                                    CacheOutcome cacheOutcome, ObservableEmitter<FetchCustomersViewState> emitter) {
+        Set<String> keptIds = new HashSet<>();
+        List<Customer> ingestedCustomers = customerPager == null ? new ArrayList<Customer>() : null;
+        List<Customer> chunk = new ArrayList<>(chunkSize);
+        SyncReport syncReport = new SyncReport(SYNC_RESOURCE, 0, 0, 0, 0);
+        try {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                if (emitter.isDisposed()) {
+                    return;
+                }
+                Customer customer = Customer.readFrom(reader);
+                if (customer != null) {
+                    chunk.add(customer);
+                    keptIds.add(customer.getId());
+                }
+                if (chunk.size() >= chunkSize && reader.hasNext()) {
+                    if (writingDiffsOnly) {
+                        syncReport = syncReport.plus(commitChunkOfCustomerDiff(chunk, null));
+                    } else {
+                        commitChunkOfCustomers(chunk, null);
+                    }
+                    if (ingestedCustomers != null) {
+                        ingestedCustomers.addAll(chunk);
+                    }
+                    emitter.onNext(new FetchCustomersViewState.SuccessFetchingCustomers(action, chunk)
+                        .setPartial(true).setPersisted(true));
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+            reader.endArray();
+            //The last chunk is always committed, even if empty, so that an empty remote
+            // list still clears the customers that are no longer around.
+            if (writingDiffsOnly) {
+                reportSync(syncReport.plus(commitChunkOfCustomerDiff(chunk, keptIds)));
+            } else {
+                commitChunkOfCustomers(chunk, keptIds);
+            }
+            if (ingestedCustomers != null) {
+                ingestedCustomers.addAll(chunk);
+            }
+            emitter.onNext(new FetchCustomersViewState.SuccessFetchingCustomers(action,
+                ingestedCustomers != null ? ingestedCustomers : chunk)
+                    .setCacheOutcome(cacheOutcome).setPersisted(true));
+        } catch (Exception exception) {
+            //Nothing was deleted yet, so the local customers are still the ones to fall back on.
+            emitter.onNext(new FetchCustomersViewState.ErrorFetchingCustomers(action, exception));
+        }
+    }
+
+    //Customers no longer around are only known (and deleted) once the last chunk is in, i.e. once kept ids are given.
+    private void commitChunkOfCustomers(List<Customer> chunk, Set<String> keptIds) {
+        try {
+            getDatabase().beginTransaction();
+            getDatabase().customerDao().insertAll(chunk);
+            if (keptIds != null) {
+                deleteCustomersMissingFrom(keptIds);
+            }
+            getDatabase().setTransactionSuccessful();
+        } finally {
+            getDatabase().endTransaction();
+        }
+    }
+
+    //Only customers not tied to reservations are deleted, as in the default mode.
+    private int deleteCustomersMissingFrom(Set<String> keptIds) {
+        List<String> deleted = new ArrayList<>();
+        for (String id : getDatabase().customerDao().findAllIds()) {
+            if (!keptIds.contains(id)) {
+                deleted.add(id);
+            }
+        }
+        int deletedRows = 0;
+        for (int i=0; i<deleted.size(); i+=MAX_IDS_PER_STATEMENT) {
+            deletedRows += getDatabase().reservationDao().deleteUnusedCustomers(deleted
+                .subList(i, Math.min(deleted.size(), i + MAX_IDS_PER_STATEMENT)));
+        }
+        return deletedRows;
+    }
+
+    //Only the customers of this chunk are compared with their local counterparts, so customers no longer
+    // around are only known (and deleted) once the last chunk is in, i.e. once kept ids are given.
+    private SyncReport commitChunkOfCustomerDiff(List<Customer> chunk, Set<String> keptIds) {
+        SyncDiff<String, Customer> diff;
+        int deletedRows = 0;
+        try {
+            getDatabase().beginTransaction();
+            List<String> ids = new ArrayList<>(chunk.size());
+            for (Customer customer : chunk) {
+                ids.add(customer.getId());
+            }
+            List<Customer> storedCustomers = new ArrayList<>(chunk.size());
+            for (int i=0; i<ids.size(); i+=MAX_IDS_PER_STATEMENT) {
+                storedCustomers.addAll(getDatabase().customerDao()
+                    .findByIds(ids.subList(i, Math.min(ids.size(), i + MAX_IDS_PER_STATEMENT))));
+            }
+            diff = newCustomerDiff().compute(storedCustomers, chunk);
+            if (!diff.getUpdated().isEmpty()) {
+                getDatabase().customerDao().updateAll(diff.getUpdated());
+            }
+            if (!diff.getInserted().isEmpty()) {
+                getDatabase().customerDao().insertAll(diff.getInserted());
+            }
+            if (keptIds != null) {
+                deletedRows = deleteCustomersMissingFrom(keptIds);
+            }
+            getDatabase().setTransactionSuccessful();
+        } finally {
+            getDatabase().endTransaction();
+        }
+        return new SyncReport(SYNC_RESOURCE, chunk.size(), diff.getInserted().size(),
+            diff.getUpdated().size(), deletedRows);
+    }
+
+    private Observable<FetchCustomersViewState> syncCustomerChanges(final FetchCustomersAction action) {
+        return getDatabase().syncStateDao().findByResource(SYNC_RESOURCE)
+            .toSingle(new SyncState(SYNC_RESOURCE, null))
+            .flatMap(new Function<SyncState, SingleSource<CustomerChanges>>() {
+                @Override
+                public SingleSource<CustomerChanges> apply(SyncState syncState) {
+                    return fetchCustomerChanges(syncState.getCursor());
+                }
+            })
+            .map(new Function<CustomerChanges, FetchCustomersViewState>() {
+                @Override
+                public FetchCustomersViewState apply(CustomerChanges changes) {
+                    applyCustomerChanges(changes);
+                    //Only the changes came through the network, so the resulting directory is read back.
+                    return new FetchCustomersViewState.SuccessFetchingCustomers(action,
+                        getDatabase().customerDao().findAll().blockingGet()).setPersisted(true);
+                }
+            })
+            .toObservable()
+            .onErrorReturn(new Function<Throwable, FetchCustomersViewState>() {
+                @Override
+                public FetchCustomersViewState apply(Throwable throwable) {
+                    return new FetchCustomersViewState.ErrorFetchingCustomers(action, throwable);
+                }
+            });
+    }
+
+    private Single<CustomerChanges> fetchCustomerChanges(final String cursor) {
+        return getApi().fetchCustomerChanges(cursor)
+            .flatMap(new Function<Response<CustomerChanges>, SingleSource<CustomerChanges>>() {
+                @Override
+                public SingleSource<CustomerChanges> apply(Response<CustomerChanges> response) {
+                    if (response.code() == HttpURLConnection.HTTP_GONE && cursor != null) {
+                        //The server no longer knows our cursor (e.g. its change log got compacted),
+                        // so we start over asking for the whole directory, which comes as a reset.
+                        Timber.d("Customer sync cursor %s rejected, falling back to full sync.", cursor);
+                        return fetchCustomerChanges(null);
+                    }
+                    if (!response.isSuccessful()) {
+                        throw new HttpException(response);
+                    }
+                    return Single.just(response.body());
+                }
+            });
+    }
+
+    private void applyCustomerChanges(CustomerChanges changes) {
+        try {
+            getDatabase().beginTransaction();
+            if (changes.isReset()) {
+                getDatabase().reservationDao().deleteUnusedCustomers();
+            } else {
+                List<String> deleted = changes.getDeleted();
+                for (int i=0; i<deleted.size(); i+=MAX_IDS_PER_STATEMENT) {
+                    getDatabase().reservationDao().deleteUnusedCustomers(deleted
+                        .subList(i, Math.min(deleted.size(), i + MAX_IDS_PER_STATEMENT)));
+                }
+            }
+            getDatabase().customerDao().insertAll(changes.getChanged());
+            //The cursor only advances together with the changes it stands for.
+            getDatabase().syncStateDao().insert(new SyncState
+                (SYNC_RESOURCE, changes.getCursor(), System.currentTimeMillis()));
+            getDatabase().setTransactionSuccessful();
+        } finally {
+            getDatabase().endTransaction();
+        }
+    }
+
+    private Observable<FetchCustomersViewState> syncCustomerBuckets(final FetchCustomersAction action) {
+        Single<CustomerBucketHashes> fetchRemoteBucketHashes = getApi().fetchCustomerBuckets()
+            .map(new Function<Response<CustomerBucketHashes>, CustomerBucketHashes>() {
+                @Override
+                public CustomerBucketHashes apply(Response<CustomerBucketHashes> response) {
+                    if (!response.isSuccessful()) {
+                        throw new HttpException(response);
+                    }
+                    return response.body();
+                }
+            });
+        return Single.zip(fetchRemoteBucketHashes, getDatabase().customerDao().findAll(),
+            new BiFunction<CustomerBucketHashes, List<Customer>, FetchCustomersViewState>() {
+                @Override
+                public FetchCustomersViewState apply(CustomerBucketHashes remoteBucketHashes,
+                                                     List<Customer> localCustomers) {
+                    reconcileCustomerBuckets(remoteBucketHashes, localCustomers);
+                    return new FetchCustomersViewState.SuccessFetchingCustomers(action,
+                        getDatabase().customerDao().findAll().blockingGet()).setPersisted(true);
+                }
+            })
+            .toObservable()
+            .onErrorReturn(new Function<Throwable, FetchCustomersViewState>() {
+                @Override
+                public FetchCustomersViewState apply(Throwable throwable) {
+                    return new FetchCustomersViewState.ErrorFetchingCustomers(action, throwable);
+                }
+            });
+    }
+
+    private void reconcileCustomerBuckets(CustomerBucketHashes remoteBucketHashes, List<Customer> localCustomers) {
+        int width = remoteBucketHashes.getWidth();
+        if (width <= 0) {
+            throw new IllegalStateException("Invalid customer bucket width: " + width);
+        }
+        Map<Long, String> remoteHashes = remoteBucketHashes.getHashes();
+        Map<Long, List<Customer>> localBuckets = CustomerBuckets.group(localCustomers, width);
+        Map<Long, String> localHashes = CustomerBuckets.hash(localBuckets);
+
+        List<Long> staleBuckets = new ArrayList<>();
+        for (Map.Entry<Long, String> remoteHash : remoteHashes.entrySet()) {
+            if (!remoteHash.getValue().equals(localHashes.get(remoteHash.getKey()))) {
+                staleBuckets.add(remoteHash.getKey());
+            }
+        }
+        List<String> deletedIds = new ArrayList<>();
+        for (Map.Entry<Long, List<Customer>> localBucket : localBuckets.entrySet()) {
+            if (!remoteHashes.containsKey(localBucket.getKey())) {
+                //The server has nobody left in this bucket.
+                for (Customer customer : localBucket.getValue()) {
+                    deletedIds.add(customer.getId());
+                }
+            }
+        }
+        List<Customer> changedCustomers = new ArrayList<>();
+        if (!staleBuckets.isEmpty()) {
+            //Past a certain point, asking for the whole directory is cheaper than for most of it.
+            Map<Long, List<Customer>> remoteBuckets = CustomerBuckets.group(staleBuckets.size() * 2
+                > remoteHashes.size() ? fetchAllCustomers() : fetchCustomersInBuckets(width, staleBuckets), width);
+            for (Long bucket : staleBuckets) {
+                Set<Customer> bucketLocalCustomers = new HashSet<>();
+                if (localBuckets.containsKey(bucket)) {
+                    bucketLocalCustomers.addAll(localBuckets.get(bucket));
+                }
+                Set<String> bucketRemoteIds = new HashSet<>();
+                if (remoteBuckets.containsKey(bucket)) {
+                    for (Customer customer : remoteBuckets.get(bucket)) {
+                        bucketRemoteIds.add(customer.getId());
+                        if (!bucketLocalCustomers.contains(customer)) {
+                            changedCustomers.add(customer);
+                        }
+                    }
+                }
+                for (Customer customer : bucketLocalCustomers) {
+                    if (!bucketRemoteIds.contains(customer.getId())) {
+                        deletedIds.add(customer.getId());
+                    }
+                }
+            }
+        }
+        if (deletedIds.isEmpty() && changedCustomers.isEmpty()) {
+            return;
+        }
+        try {
+            getDatabase().beginTransaction();
+            for (int i=0; i<deletedIds.size(); i+=MAX_IDS_PER_STATEMENT) {
+                getDatabase().reservationDao().deleteUnusedCustomers(deletedIds
+                    .subList(i, Math.min(deletedIds.size(), i + MAX_IDS_PER_STATEMENT)));
+            }
+            if (!changedCustomers.isEmpty()) {
+                getDatabase().customerDao().insertAll(changedCustomers);
+            }
+            getDatabase().setTransactionSuccessful();
+        } finally {
+            getDatabase().endTransaction();
+        }
+    }
+
+    private List<Customer> fetchAllCustomers() {
+        Response<List<Customer>> response = getApi().fetchCustomers().blockingGet();
+        if (!response.isSuccessful()) {
+            throw new HttpException(response);
+        }
+        return response.body();
+    }
+
+    private List<Customer> fetchCustomersInBuckets(int width, List<Long> buckets) {
+        List<Customer> customers = new ArrayList<>();
+        for (int i=0; i<buckets.size(); i+=MAX_BUCKETS_PER_REQUEST) {
+            Response<List<Customer>> response = getApi().fetchCustomersInBuckets(width, buckets
+                .subList(i, Math.min(buckets.size(), i + MAX_BUCKETS_PER_REQUEST))).blockingGet();
+            if (!response.isSuccessful()) {
+                throw new HttpException(response);
+            }
+            customers.addAll(response.body());
+        }
+        return customers;
+    }
+
     private Observable<FetchCustomersViewState> mapListOfCustomersToStates(final FetchCustomersAction action,
                                                                            Observable<List<Customer>> customers,
                                                                            final boolean localSource) {
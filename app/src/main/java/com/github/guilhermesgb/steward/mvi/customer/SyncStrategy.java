@@ -0,0 +1,10 @@
+package com.github.guilhermesgb.steward.mvi.customer;
+
+//How the local customer directory is brought up to date with the server's one.
+public enum SyncStrategy {
+
+    FULL,   //Downloads the whole directory every time, replacing all local customers.
+    DELTA,  //Downloads only what changed since the last sync cursor, applying just that.
+    MERKLE  //Compares hashes of id-range buckets, downloading only the buckets that differ.
+
+}
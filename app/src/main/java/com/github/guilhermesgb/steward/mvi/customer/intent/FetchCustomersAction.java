@@ -1,3 +1,20 @@
 package com.github.guilhermesgb.steward.mvi.customer.intent;
 
-public class FetchCustomersAction {}
+public class FetchCustomersAction {
+
+    //How many pages of customers are wanted, whenever customers are paged (see CustomerPager).
+    private final int pages;
+
+    public FetchCustomersAction() {
+        this(1);
+    }
+
+    public FetchCustomersAction(int pages) {
+        this.pages = Math.max(1, pages);
+    }
+
+    public int getPages() {
+        return pages;
+    }
+
+}
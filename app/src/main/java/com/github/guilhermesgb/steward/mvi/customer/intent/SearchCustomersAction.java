@@ -0,0 +1,15 @@
+package com.github.guilhermesgb.steward.mvi.customer.intent;
+
+public class SearchCustomersAction {
+
+    private final String query;
+
+    public SearchCustomersAction(String query) {
+        this.query = query;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+}
@@ -2,6 +2,8 @@ package com.github.guilhermesgb.steward.mvi.customer.model;
 
 import com.github.guilhermesgb.steward.mvi.customer.intent.FetchCustomersAction;
 import com.github.guilhermesgb.steward.mvi.customer.schema.Customer;
+import com.github.guilhermesgb.steward.network.CacheOutcome;
+import com.github.guilhermesgb.steward.network.CircuitBreaker;
 import com.github.guilhermesgb.steward.utils.ViewStateOption;
 import com.pacoworks.rxsealedunions2.Union4;
 
@@ -88,6 +90,21 @@ public interface FetchCustomersViewState extends Union4<FetchCustomersViewState.
 
         private final FetchCustomersAction action;
         private final List<Customer> customers;
+        private CacheOutcome cacheOutcome = CacheOutcome.MISS;
+        private CircuitBreaker.State circuitState = CircuitBreaker.State.CLOSED;
+        //Set when customers are ingested in chunks: a partial state carries only the chunk
+        // just committed, more of them following; persisted ones are already in the database.
+        private boolean partial = false;
+        private boolean persisted = false;
+        //Set when customers are paged: only the pages loaded so far are carried, more of them
+        // being loaded on demand (see CustomerPager).
+        private int pagesLoaded = 0;
+        private boolean morePages = false;
+        //Set when customers are the results of a search rather than the directory (see CustomerSearchIndex).
+        private String searchQuery = null;
+        //Set when customers are read again because they changed after being fetched (see
+        // setObservingLocalChanges), rather than because they were asked for.
+        private boolean update = false;
 
         public SuccessFetchingCustomers(FetchCustomersAction action, List<Customer> customers) {
             this.action = action;
@@ -102,6 +119,78 @@ public interface FetchCustomersViewState extends Union4<FetchCustomersViewState.
             return customers;
         }
 
+        public CacheOutcome getCacheOutcome() {
+            return cacheOutcome;
+        }
+
+        public SuccessFetchingCustomers setCacheOutcome(CacheOutcome cacheOutcome) {
+            this.cacheOutcome = cacheOutcome;
+            return this;
+        }
+
+        public CircuitBreaker.State getCircuitState() {
+            return circuitState;
+        }
+
+        public SuccessFetchingCustomers setCircuitState(CircuitBreaker.State circuitState) {
+            this.circuitState = circuitState;
+            return this;
+        }
+
+        public boolean isPartial() {
+            return partial;
+        }
+
+        public SuccessFetchingCustomers setPartial(boolean partial) {
+            this.partial = partial;
+            return this;
+        }
+
+        public boolean isPersisted() {
+            return persisted;
+        }
+
+        public SuccessFetchingCustomers setPersisted(boolean persisted) {
+            this.persisted = persisted;
+            return this;
+        }
+
+        public int getPagesLoaded() {
+            return pagesLoaded;
+        }
+
+        public boolean hasMorePages() {
+            return morePages;
+        }
+
+        public SuccessFetchingCustomers setPages(int pagesLoaded, boolean morePages) {
+            this.pagesLoaded = pagesLoaded;
+            this.morePages = morePages;
+            return this;
+        }
+
+        public boolean isSearchResult() {
+            return searchQuery != null;
+        }
+
+        public String getSearchQuery() {
+            return searchQuery;
+        }
+
+        public SuccessFetchingCustomers setSearchQuery(String searchQuery) {
+            this.searchQuery = searchQuery;
+            return this;
+        }
+
+        public boolean isUpdate() {
+            return update;
+        }
+
+        public SuccessFetchingCustomers setUpdate(boolean update) {
+            this.update = update;
+            return this;
+        }
+
         @Override
         public void continued(Consumer<Initial> initial,
                               Consumer<FetchingCustomers> fetchingCustomers,
@@ -130,6 +219,8 @@ public interface FetchCustomersViewState extends Union4<FetchCustomersViewState.
         private final FetchCustomersAction action;
         private final Throwable throwable;
         private List<Customer> cachedCustomers;
+        //Whenever the circuit is open, no call was even attempted (the cached customers being all there is).
+        private CircuitBreaker.State circuitState = CircuitBreaker.State.CLOSED;
 
         public ErrorFetchingCustomers(FetchCustomersAction action, Throwable throwable) {
             this.action = action;
@@ -153,6 +244,15 @@ public interface FetchCustomersViewState extends Union4<FetchCustomersViewState.
             return this;
         }
 
+        public CircuitBreaker.State getCircuitState() {
+            return circuitState;
+        }
+
+        public ErrorFetchingCustomers setCircuitState(CircuitBreaker.State circuitState) {
+            this.circuitState = circuitState;
+            return this;
+        }
+
         @Override
         public void continued(Consumer<Initial> initial,
                               Consumer<FetchingCustomers> fetchingCustomers,
@@ -7,11 +7,24 @@ import android.os.Parcelable;
 import android.support.annotation.NonNull;
 
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.Arrays;
 
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+
+import static com.github.guilhermesgb.steward.utils.BinaryUtils.readOptionalString;
+import static com.github.guilhermesgb.steward.utils.BinaryUtils.readVarint;
+import static com.github.guilhermesgb.steward.utils.BinaryUtils.writeOptionalString;
+import static com.github.guilhermesgb.steward.utils.BinaryUtils.writeVarint;
 import static com.github.guilhermesgb.steward.utils.JsonUtils.getOptionalString;
+import static com.github.guilhermesgb.steward.utils.JsonUtils.nextOptionalString;
 
 @Entity(tableName = "customer")
 public class Customer implements Serializable, Parcelable {
@@ -77,6 +90,67 @@ public class Customer implements Serializable, Parcelable {
         );
     }
 
+    public static Customer readFrom(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        String id = null, firstName = null, lastName = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "id":
+                    id = nextOptionalString(reader);
+                    break;
+                case "customerFirstName":
+                    firstName = nextOptionalString(reader);
+                    break;
+                case "customerLastName":
+                    lastName = nextOptionalString(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new Customer(id, firstName, lastName);
+    }
+
+    public static void writeTo(JsonWriter writer, Customer customer) throws IOException {
+        if (customer == null) {
+            writer.nullValue();
+            return;
+        }
+        writer.beginObject();
+        writer.name("id").value(customer.id);
+        writer.name("customerFirstName").value(customer.firstName);
+        writer.name("customerLastName").value(customer.lastName);
+        writer.endObject();
+    }
+
+    //A record is its length in bytes (as a varint) followed by id, first and last names,
+    // so that fields appended to records in the future can be skipped by older readers.
+    public static Customer unpackFrom(BufferedSource source) throws IOException {
+        long recordLength = readVarint(source);
+        Buffer record = new Buffer();
+        source.readFully(record, recordLength);
+        //Whatever is left in the record belongs to fields unknown to us, being dropped along with it.
+        return new Customer(
+            readOptionalString(record),
+            readOptionalString(record),
+            readOptionalString(record)
+        );
+    }
+
+    public static void packInto(BufferedSink sink, Customer customer) throws IOException {
+        Buffer record = new Buffer();
+        writeOptionalString(record, customer.id);
+        writeOptionalString(record, customer.firstName);
+        writeOptionalString(record, customer.lastName);
+        writeVarint(sink, record.size());
+        sink.writeAll(record);
+    }
+
     public static JsonObject jsonizeFrom(Customer customer) {
         if (customer == null) {
             return null;
@@ -0,0 +1,87 @@
+package com.github.guilhermesgb.steward.mvi.customer.schema;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static com.github.guilhermesgb.steward.utils.JsonUtils.nextInt;
+import static com.github.guilhermesgb.steward.utils.JsonUtils.nextOptionalString;
+
+//The server's digest of the customer directory: one hash per bucket of ids, each bucket
+// spanning width consecutive ids (see CustomerBuckets for how buckets are laid out and hashed).
+public class CustomerBucketHashes {
+
+    private final int width;
+    private final Map<Long, String> hashes;
+
+    public CustomerBucketHashes(int width, Map<Long, String> hashes) {
+        this.width = width;
+        this.hashes = hashes;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public Map<Long, String> getHashes() {
+        return hashes;
+    }
+
+    public static CustomerBucketHashes readFrom(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        int width = 0;
+        Map<Long, String> hashes = new TreeMap<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "width":
+                    width = nextInt(reader, 0);
+                    break;
+                case "hashes":
+                    if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                        reader.skipValue();
+                        break;
+                    }
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        String bucket = reader.nextName();
+                        String hash = nextOptionalString(reader);
+                        try {
+                            if (hash != null) {
+                                hashes.put(Long.parseLong(bucket), hash);
+                            }
+                        } catch (NumberFormatException ignore) {}
+                    }
+                    reader.endObject();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new CustomerBucketHashes(width, hashes);
+    }
+
+    public static void writeTo(JsonWriter writer, CustomerBucketHashes bucketHashes) throws IOException {
+        if (bucketHashes == null) {
+            writer.nullValue();
+            return;
+        }
+        writer.beginObject();
+        writer.name("width").value(bucketHashes.width);
+        writer.name("hashes").beginObject();
+        for (Map.Entry<Long, String> hash : bucketHashes.hashes.entrySet()) {
+            writer.name(String.valueOf(hash.getKey())).value(hash.getValue());
+        }
+        writer.endObject();
+        writer.endObject();
+    }
+
+}
@@ -0,0 +1,122 @@
+package com.github.guilhermesgb.steward.mvi.customer.schema;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.github.guilhermesgb.steward.utils.JsonUtils.nextBoolean;
+import static com.github.guilhermesgb.steward.utils.JsonUtils.nextOptionalString;
+
+//What changed in the customer directory since a given sync cursor: customers to be upserted,
+// ids of customers to be removed and the cursor to be used next time. A reset means the server
+// could not (or was not asked to) compute a delta, so changed holds the whole directory instead.
+public class CustomerChanges {
+
+    private final String cursor;
+    private final boolean reset;
+    private final List<Customer> changed;
+    private final List<String> deleted;
+
+    public CustomerChanges(String cursor, boolean reset, List<Customer> changed, List<String> deleted) {
+        this.cursor = cursor;
+        this.reset = reset;
+        this.changed = changed;
+        this.deleted = deleted;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public boolean isReset() {
+        return reset;
+    }
+
+    public List<Customer> getChanged() {
+        return changed;
+    }
+
+    public List<String> getDeleted() {
+        return deleted;
+    }
+
+    public static CustomerChanges readFrom(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        String cursor = null;
+        boolean reset = false;
+        List<Customer> changed = new ArrayList<>();
+        List<String> deleted = new ArrayList<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "cursor":
+                    cursor = nextOptionalString(reader);
+                    break;
+                case "reset":
+                    reset = nextBoolean(reader, false);
+                    break;
+                case "changed":
+                    if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+                        reader.skipValue();
+                        break;
+                    }
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        Customer customer = Customer.readFrom(reader);
+                        if (customer != null) {
+                            changed.add(customer);
+                        }
+                    }
+                    reader.endArray();
+                    break;
+                case "deleted":
+                    if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+                        reader.skipValue();
+                        break;
+                    }
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        String id = nextOptionalString(reader);
+                        if (id != null) {
+                            deleted.add(id);
+                        }
+                    }
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new CustomerChanges(cursor, reset, changed, deleted);
+    }
+
+    public static void writeTo(JsonWriter writer, CustomerChanges changes) throws IOException {
+        if (changes == null) {
+            writer.nullValue();
+            return;
+        }
+        writer.beginObject();
+        writer.name("cursor").value(changes.cursor);
+        writer.name("reset").value(changes.reset);
+        writer.name("changed").beginArray();
+        for (Customer customer : changes.changed) {
+            Customer.writeTo(writer, customer);
+        }
+        writer.endArray();
+        writer.name("deleted").beginArray();
+        for (String id : changes.deleted) {
+            writer.value(id);
+        }
+        writer.endArray();
+        writer.endObject();
+    }
+
+}
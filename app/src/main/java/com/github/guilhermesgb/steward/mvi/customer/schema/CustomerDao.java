@@ -1,9 +1,12 @@
 package com.github.guilhermesgb.steward.mvi.customer.schema;
 
+import android.arch.persistence.db.SupportSQLiteQuery;
 import android.arch.persistence.room.Dao;
 import android.arch.persistence.room.Insert;
 import android.arch.persistence.room.OnConflictStrategy;
 import android.arch.persistence.room.Query;
+import android.arch.persistence.room.RawQuery;
+import android.arch.persistence.room.Update;
 
 import java.util.List;
 
@@ -15,10 +18,33 @@ public interface CustomerDao {
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     void insertAll(List<Customer> customers);
 
+    //Unlike REPLACE, rows are changed in place, rather than deleted and then inserted again.
+    @Update
+    int updateAll(List<Customer> customers);
+
     @Query("SELECT * FROM customer")
     Single<List<Customer>> findAll();
 
     @Query("SELECT * FROM customer WHERE id = :id LIMIT 1")
     Single<Customer> findById(String id);
 
+    @Query("SELECT * FROM customer WHERE id IN(:ids)")
+    List<Customer> findByIds(List<String> ids);
+
+    @Query("SELECT id FROM customer")
+    List<String> findAllIds();
+
+    //Pages are keyed by the last id of the page before them (keyset pagination), so reading any
+    // page is a seek through the primary key index, no matter how deep into the directory it is.
+
+    @Query("SELECT * FROM customer ORDER BY id LIMIT :limit")
+    List<Customer> findFirstPage(int limit);
+
+    @Query("SELECT * FROM customer WHERE id > :afterId ORDER BY id LIMIT :limit")
+    List<Customer> findPageAfter(String afterId, int limit);
+
+    //Searches go through the full-text index, with queries made by CustomerSearchIndex.newSearchQuery.
+    @RawQuery
+    List<Customer> search(SupportSQLiteQuery query);
+
 }
@@ -0,0 +1,109 @@
+package com.github.guilhermesgb.steward.mvi.customer.schema;
+
+import android.arch.persistence.db.SimpleSQLiteQuery;
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.db.SupportSQLiteQuery;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Full-text index over the first and last names of customers (an FTS4 table whose content is the
+ * customer table itself), so that looking customers up by name is an index lookup rather than a
+ * scan of the whole directory. Room can't declare such tables, so they're made here, along with the
+ * triggers that keep the index in sync with every write made to the customer table.
+ */
+public final class CustomerSearchIndex {
+
+    private static final String[] CREATE_STATEMENTS = {
+        "CREATE VIRTUAL TABLE IF NOT EXISTS `customer_fts` USING fts4(content=`customer`, "
+            + "`firstName`, `lastName`)",
+        //Inserts replacing an existing customer don't fire delete triggers, so that one is dropped here.
+        "CREATE TRIGGER IF NOT EXISTS `customer_fts_before_insert` BEFORE INSERT ON `customer` BEGIN "
+            + "DELETE FROM `customer_fts` WHERE `docid` IN "
+            + "(SELECT `rowid` FROM `customer` WHERE `id` = new.`id`); END",
+        "CREATE TRIGGER IF NOT EXISTS `customer_fts_after_insert` AFTER INSERT ON `customer` BEGIN "
+            + "INSERT INTO `customer_fts` (`docid`, `firstName`, `lastName`) "
+            + "VALUES (new.`rowid`, new.`firstName`, new.`lastName`); END",
+        "CREATE TRIGGER IF NOT EXISTS `customer_fts_before_update` BEFORE UPDATE ON `customer` BEGIN "
+            + "DELETE FROM `customer_fts` WHERE `docid` = old.`rowid`; END",
+        "CREATE TRIGGER IF NOT EXISTS `customer_fts_after_update` AFTER UPDATE ON `customer` BEGIN "
+            + "INSERT INTO `customer_fts` (`docid`, `firstName`, `lastName`) "
+            + "VALUES (new.`rowid`, new.`firstName`, new.`lastName`); END",
+        "CREATE TRIGGER IF NOT EXISTS `customer_fts_before_delete` BEFORE DELETE ON `customer` BEGIN "
+            + "DELETE FROM `customer_fts` WHERE `docid` = old.`rowid`; END"
+    };
+
+    //Customers whose first name starts with the first term come first, then those whose last name does.
+    private static final String SEARCH_QUERY = "SELECT `customer`.* FROM `customer_fts` "
+        + "JOIN `customer` ON `customer`.`rowid` = `customer_fts`.`docid` "
+        + "WHERE `customer_fts` MATCH ? "
+        + "ORDER BY CASE WHEN `customer`.`firstName` LIKE ? THEN 0 "
+        + "WHEN `customer`.`lastName` LIKE ? THEN 1 ELSE 2 END, "
+        + "`customer`.`firstName`, `customer`.`lastName` LIMIT ?";
+
+    private CustomerSearchIndex() {}
+
+    public static void create(SupportSQLiteDatabase database) {
+        for (String statement : CREATE_STATEMENTS) {
+            database.execSQL(statement);
+        }
+    }
+
+    //Indexes every customer already there (e.g. right after the index gets created by a migration).
+    public static void rebuild(SupportSQLiteDatabase database) {
+        database.execSQL("INSERT INTO `customer_fts` (`customer_fts`) VALUES ('rebuild')");
+    }
+
+    /**
+     * @param text what's being searched for, as typed: every word in it is taken as a prefix,
+     *             and customers must match all of them (in either of their names).
+     * @param limit how many customers, at most.
+     * @return the query to be run through CustomerDao.search, or null if there's nothing to search for.
+     */
+    public static SupportSQLiteQuery newSearchQuery(String text, int limit) {
+        List<String> terms = tokenize(text);
+        if (terms.isEmpty()) {
+            return null;
+        }
+        StringBuilder match = new StringBuilder();
+        for (String term : terms) {
+            if (match.length() > 0) {
+                match.append(' ');
+            }
+            //Terms are quoted so that none of them is ever taken as an operator (e.g. OR, NEAR).
+            match.append('"').append(term).append("*\"");
+        }
+        String firstTermPrefix = terms.get(0) + "%";
+        return new SimpleSQLiteQuery(SEARCH_QUERY, new Object[] {
+            match.toString(), firstTermPrefix, firstTermPrefix, limit
+        });
+    }
+
+    /**
+     * Splits text the way the index's (simple) tokenizer splits names: terms are runs of ASCII letters
+     * and digits along with any characters beyond ASCII, and only ASCII letters get folded to lowercase.
+     * Anything else would make terms the index never holds (e.g. "élio" when "Élio" was indexed).
+     */
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        StringBuilder term = new StringBuilder();
+        for (int i=0; i<=text.length(); i++) {
+            char character = i < text.length() ? text.charAt(i) : ' ';
+            if (character >= 0x80 || (character >= '0' && character <= '9')
+                    || (character >= 'a' && character <= 'z')) {
+                term.append(character);
+            } else if (character >= 'A' && character <= 'Z') {
+                term.append((char) (character - 'A' + 'a'));
+            } else if (term.length() > 0) {
+                terms.add(term.toString());
+                term.setLength(0);
+            }
+        }
+        return terms;
+    }
+
+}
@@ -1,6 +1,7 @@
 package com.github.guilhermesgb.steward.mvi.customer.view;
 
 import com.github.guilhermesgb.steward.mvi.customer.intent.FetchCustomersAction;
+import com.github.guilhermesgb.steward.mvi.customer.intent.SearchCustomersAction;
 import com.hannesdorfmann.mosby3.mvp.MvpView;
 
 import io.reactivex.Observable;
@@ -9,4 +10,8 @@ public interface FetchCustomersView extends MvpView {
 
     Observable<FetchCustomersAction> fetchCustomersIntent();
 
+    Observable<FetchCustomersAction> loadMoreCustomersIntent();
+
+    Observable<SearchCustomersAction> searchCustomersIntent();
+
 }
@@ -1,32 +1,37 @@
 package com.github.guilhermesgb.steward.mvi.reservation;
 
-import android.annotation.SuppressLint;
 import android.content.Context;
 
 import com.github.guilhermesgb.steward.mvi.customer.FetchCustomersUseCase;
 import com.github.guilhermesgb.steward.mvi.customer.intent.FetchCustomersAction;
+import com.github.guilhermesgb.steward.mvi.customer.intent.SearchCustomersAction;
 import com.github.guilhermesgb.steward.mvi.customer.model.FetchCustomersViewState;
 import com.github.guilhermesgb.steward.mvi.customer.schema.Customer;
 import com.github.guilhermesgb.steward.mvi.reservation.intent.ChooseCustomerAction;
 import com.github.guilhermesgb.steward.mvi.reservation.intent.ChooseTableAction;
 import com.github.guilhermesgb.steward.mvi.reservation.intent.ConfirmReservationAction;
+import com.github.guilhermesgb.steward.mvi.reservation.intent.ConfirmReservationsAction;
+import com.github.guilhermesgb.steward.mvi.reservation.model.MakeGroupReservationsViewState;
 import com.github.guilhermesgb.steward.mvi.reservation.model.MakeReservationsViewState;
 import com.github.guilhermesgb.steward.mvi.reservation.model.ReservationException;
 import com.github.guilhermesgb.steward.mvi.reservation.schema.Reservation;
+import com.github.guilhermesgb.steward.mvi.reservation.schema.ReservationDao;
+import com.github.guilhermesgb.steward.mvi.reservation.schema.ReservationOutcome;
 import com.github.guilhermesgb.steward.mvi.table.FetchTablesUseCase;
+import com.github.guilhermesgb.steward.mvi.table.TableAvailabilityIndex;
 import com.github.guilhermesgb.steward.mvi.table.model.FetchTablesViewState;
 import com.github.guilhermesgb.steward.mvi.table.schema.Table;
 import com.github.guilhermesgb.steward.utils.UseCase;
 
 import org.joda.time.DateTime;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import io.reactivex.Observable;
-import io.reactivex.ObservableSource;
 import io.reactivex.functions.Consumer;
 import io.reactivex.functions.Function;
-import io.reactivex.schedulers.Schedulers;
 import timber.log.Timber;
 
 import static com.github.guilhermesgb.steward.mvi.reservation.model.ReservationException.Code.CUSTOMER_BUSY;
@@ -35,12 +40,14 @@ import static com.github.guilhermesgb.steward.mvi.reservation.model.ReservationE
 import static com.github.guilhermesgb.steward.mvi.reservation.model.ReservationException.Code.RESERVATION_IN_PLACE;
 import static com.github.guilhermesgb.steward.mvi.reservation.model.ReservationException.Code.TABLE_NOT_FOUND;
 import static com.github.guilhermesgb.steward.mvi.reservation.model.ReservationException.Code.TABLE_UNAVAILABLE;
-import static com.github.guilhermesgb.steward.utils.DateUtils.formatDate;
+import static com.github.guilhermesgb.steward.mvi.reservation.model.ReservationException.Code.TOO_MANY_RESERVATIONS;
 
 public class MakeReservationsUseCase extends UseCase {
 
     private FetchCustomersUseCase fetchCustomersUseCase;
     private FetchTablesUseCase fetchTablesUseCase;
+    private ReservationExpiryScheduler expiryScheduler;
+    private TableAvailabilityIndex availabilityIndex;
 
     public MakeReservationsUseCase(String apiBaseUrl, Context context) {
         super(apiBaseUrl, context);
@@ -71,6 +78,26 @@ public class MakeReservationsUseCase extends UseCase {
         this.fetchTablesUseCase = fetchTablesUseCase;
     }
 
+    /**
+     * Sets the scheduler every confirmed reservation is handed over to, so that its table is
+     * released as soon as it expires. Without one, tables are only released by the
+     * ReservationsCleanupWorker.
+     * @param expiryScheduler the scheduler to hand confirmed reservations over to.
+     */
+    public void setExpiryScheduler(ReservationExpiryScheduler expiryScheduler) {
+        this.expiryScheduler = expiryScheduler;
+    }
+
+    /**
+     * Sets the index consulted before making reservations: those of tables it knows to be taken fail
+     * without going through the reservation transaction, as long as the customer holds no table.
+     * Confirmed reservations (and tables found taken) are reflected on it as well.
+     * @param availabilityIndex the index to consult and keep in sync, or null for none.
+     */
+    public void setAvailabilityIndex(TableAvailabilityIndex availabilityIndex) {
+        this.availabilityIndex = availabilityIndex;
+    }
+
     public Observable<MakeReservationsViewState> fetchCustomers(final FetchCustomersAction action) {
         return fetchCustomersUseCase.doFetchCustomers(action)
             .map(new Function<FetchCustomersViewState, MakeReservationsViewState>() {
@@ -87,6 +114,32 @@ public class MakeReservationsUseCase extends UseCase {
             });
     }
 
+    public Observable<MakeReservationsViewState> loadMoreCustomers(final FetchCustomersAction action) {
+        return fetchCustomersUseCase.doLoadMoreCustomers(action)
+            .map(new Function<FetchCustomersViewState, MakeReservationsViewState>() {
+                @Override
+                public MakeReservationsViewState apply(FetchCustomersViewState firstSubstate) {
+                    return new MakeReservationsViewState.Initial(firstSubstate);
+                }
+            })
+            .doOnNext(new Consumer<MakeReservationsViewState>() {
+                @Override
+                public void accept(MakeReservationsViewState state) {
+                    Timber.d("PASSING FOLLOWING STATE DOWNSTREAM: %s.", state);
+                }
+            });
+    }
+
+    public Observable<MakeReservationsViewState> searchCustomers(final SearchCustomersAction action) {
+        return fetchCustomersUseCase.doSearchCustomers(action)
+            .map(new Function<FetchCustomersViewState, MakeReservationsViewState>() {
+                @Override
+                public MakeReservationsViewState apply(FetchCustomersViewState firstSubstate) {
+                    return new MakeReservationsViewState.Initial(firstSubstate);
+                }
+            });
+    }
+
     public Observable<MakeReservationsViewState> chooseCustomer(final ChooseCustomerAction action) {
         return refreshTables(action);
     }
@@ -119,93 +172,71 @@ public class MakeReservationsUseCase extends UseCase {
             });
     }
 
-    @SuppressLint("CheckResult")
     public Observable<MakeReservationsViewState> confirmReservation(final ConfirmReservationAction action) {
         final MakeReservationsViewState.TableChosen finalSubstate = action.getFinalSubstate();
         final Table chosenTable = finalSubstate.getChosenTable();
         final Customer chosenCustomer = finalSubstate.getFirstSubstate().getChosenCustomer();
-        //I need to do the following things here:
-        //First, I need to check that the chosen customer still exists...
-        try {
-            getDatabase().customerDao().findById(chosenCustomer.getId())
-                .subscribeOn(Schedulers.io()).blockingGet();
-        } catch (Throwable throwable) {
-            ReservationException reservationException
-                = new ReservationException(CUSTOMER_NOT_FOUND, throwable);
-            return Observable.<MakeReservationsViewState>just
-                (new MakeReservationsViewState.ErrorMakingReservation
-                    (finalSubstate, reservationException))
-                    .startWith(new MakeReservationsViewState
-                        .MakingReservation(finalSubstate));
-        }
-        // ...and then check the chosen customer does not have an active reservation.
-        return getDatabase().reservationDao().findTablesForGivenCustomer(chosenCustomer.getId()).toObservable()
-            .switchMap(new Function<List<Table>, ObservableSource<MakeReservationsViewState>>() {
-                @Override
-                public ObservableSource<MakeReservationsViewState> apply(List<Table> tables) {
-                    if (tables.isEmpty()) {
-                        //Second, I need to check that the chosen table is still available.
-                        return getDatabase().tableDao().findByNumber(chosenTable.getNumber()).toObservable()
-                            .switchMap(new Function<Table, ObservableSource<MakeReservationsViewState>>() {
-                                @Override
-                                public ObservableSource<MakeReservationsViewState> apply(Table table) {
-                                    if (table.isAvailable()) {
-                                        //Finally, I need to create a new reservation for the given customer at given table, set to expire
-                                        //  in 10 minutes from now (simulating the time needed for the customer to use the table for their needs).
-                                        table.setAvailable(false);
-                                        try {
-                                            getDatabase().beginTransaction();
-                                            getDatabase().tableDao().insert(table);
-                                            getDatabase().reservationDao().deleteAllForCustomer(chosenCustomer.getId());
-                                            getDatabase().reservationDao().insert(new Reservation(chosenCustomer.getId(),
-                                                chosenTable.getNumber(), formatDate(DateTime.now().plusMinutes(10))));
-                                            getDatabase().setTransactionSuccessful();
-                                            return Observable.<MakeReservationsViewState>just(new MakeReservationsViewState
-                                                .SuccessMakingReservation(new MakeReservationsViewState
-                                                    .TableChosen(finalSubstate.getFirstSubstate(),
-                                                    finalSubstate.getSecondSubstate(), table)));
-                                        } catch (Throwable throwable) {
-                                            ReservationException reservationException
-                                                = new ReservationException(DATABASE_FAILURE, throwable);
-                                            return Observable.<MakeReservationsViewState>just
-                                                (new MakeReservationsViewState.ErrorMakingReservation
-                                                    (finalSubstate, reservationException));
-                                        } finally {
-                                            getDatabase().endTransaction();
-                                        }
-                                    } else {
-                                        ReservationException reservationException
-                                            = new ReservationException(TABLE_UNAVAILABLE);
-                                        return Observable.<MakeReservationsViewState>just
-                                            (new MakeReservationsViewState.ErrorMakingReservation
-                                                (new MakeReservationsViewState.TableChosen
-                                                    (finalSubstate.getFirstSubstate(),
-                                                        finalSubstate.getSecondSubstate(),
-                                                            table), reservationException));
-                                    }
-                                }
-                            });
-                    } else {
-                        //The customer already has a reservation - check whether the customer isn't already in the desired table,
-                        // in which case I shall issue a friendly reminder that the customer is already placed at given table.
-                        ReservationException reservationException = null;
-                        MakeReservationsViewState.ErrorMakingReservation errorState = null;
-                        for (Table table : tables) {
-                            if (table.getNumber() == chosenTable.getNumber()) {
-                                reservationException = new ReservationException(RESERVATION_IN_PLACE);
-                                errorState = new MakeReservationsViewState.ErrorMakingReservation
-                                    (new MakeReservationsViewState.TableChosen(finalSubstate.getFirstSubstate(),
-                                        finalSubstate.getSecondSubstate(), table), reservationException);
-                                break;
+        //The chosen customer must still exist and not have an active reservation, and the chosen table
+        // must still be available: all of that is checked as the reservation is made, in one go, so that
+        // no one else gets to reserve the very same table in between (see ReservationDao.reserve).
+        //The reservation is set to expire in 10 minutes from now (simulating the time needed
+        // for the customer to use the table for their needs).
+        //Tables known to be taken already are turned down without going through the reservation
+        // transaction, though, unless the customer holds any table, in which case the customer is
+        // either at the chosen table already or busy at another one (as the transaction would tell).
+        final TableAvailabilityIndex availabilityIndex = this.availabilityIndex;
+        return Observable.fromCallable(new Callable<ReservationOutcome>() {
+                @Override
+                public ReservationOutcome call() {
+                    if (availabilityIndex != null
+                            && Boolean.FALSE.equals(availabilityIndex.isAvailable(chosenTable.getNumber()))
+                            && getDatabase().reservationDao().findTablesForGivenCustomer(chosenCustomer.getId()).isEmpty()) {
+                        return new ReservationOutcome(ReservationOutcome.Status.TABLE_UNAVAILABLE)
+                            .setTable(new Table(chosenTable.getNumber(), false));
+                    }
+                    return getDatabase().reservationDao().reserve(chosenCustomer.getId(),
+                        chosenTable.getNumber(), DateTime.now().plusMinutes(10).getMillis());
+                }
+            })
+            .map(new Function<ReservationOutcome, MakeReservationsViewState>() {
+                @Override
+                public MakeReservationsViewState apply(ReservationOutcome outcome) {
+                    switch (outcome.getStatus()) {
+                        case RESERVED:
+                            if (availabilityIndex != null) {
+                                availabilityIndex.update(outcome.getTable().getNumber(), false);
                             }
-                        }
-                        if (reservationException == null) {
-                            reservationException = new ReservationException(CUSTOMER_BUSY);
-                            errorState = new MakeReservationsViewState.ErrorMakingReservation
-                                (finalSubstate, reservationException);
-                            errorState.setPayload(tables);
-                        }
-                        return Observable.<MakeReservationsViewState>just(errorState);
+                            if (expiryScheduler != null) {
+                                expiryScheduler.schedule(outcome.getReservation());
+                            }
+                            return new MakeReservationsViewState.SuccessMakingReservation
+                                (withChosenTable(finalSubstate, outcome.getTable()));
+                        case CUSTOMER_NOT_FOUND:
+                            return new MakeReservationsViewState.ErrorMakingReservation
+                                (finalSubstate, new ReservationException(CUSTOMER_NOT_FOUND));
+                        case RESERVATION_IN_PLACE:
+                            //The customer is already at the chosen table, so this is but a friendly reminder.
+                            return new MakeReservationsViewState.ErrorMakingReservation
+                                (withChosenTable(finalSubstate, outcome.getTable()),
+                                    new ReservationException(RESERVATION_IN_PLACE));
+                        case CUSTOMER_BUSY:
+                            MakeReservationsViewState.ErrorMakingReservation errorState
+                                = new MakeReservationsViewState.ErrorMakingReservation
+                                    (finalSubstate, new ReservationException(CUSTOMER_BUSY));
+                            errorState.setPayload(outcome.getTablesHeld());
+                            return errorState;
+                        case TABLE_UNAVAILABLE:
+                            //The index may have thought otherwise (e.g. the table got taken behind its back).
+                            if (availabilityIndex != null) {
+                                availabilityIndex.update(outcome.getTable().getNumber(), false);
+                            }
+                            return new MakeReservationsViewState.ErrorMakingReservation
+                                (withChosenTable(finalSubstate, outcome.getTable()),
+                                    new ReservationException(TABLE_UNAVAILABLE));
+                        case TABLE_NOT_FOUND:
+                        default:
+                            return new MakeReservationsViewState.ErrorMakingReservation
+                                (finalSubstate, new ReservationException(TABLE_NOT_FOUND));
                     }
                 }
             })
@@ -213,7 +244,7 @@ public class MakeReservationsUseCase extends UseCase {
                 @Override
                 public MakeReservationsViewState apply(Throwable throwable) {
                     ReservationException reservationException
-                        = new ReservationException(TABLE_NOT_FOUND, throwable);
+                        = new ReservationException(DATABASE_FAILURE, throwable);
                     return new MakeReservationsViewState.ErrorMakingReservation
                         (finalSubstate, reservationException);
                 }
@@ -227,4 +258,172 @@ public class MakeReservationsUseCase extends UseCase {
             });
     }
 
+    /**
+     * Confirms many reservations at once (e.g. when seating a party), all of them checked and made
+     * within a single transaction (see ReservationDao.reserveAll), rather than one by one.
+     * @param action which customer goes to which table, and whether reservations that can be made
+     *               are made even if others can't (best-effort) or not at all (all-or-nothing).
+     * @return the outcome of every reservation, all in one state -- unless the batch as a whole failed
+     *  (e.g. TOO_MANY_RESERVATIONS when it holds more than ReservationDao.MAX_RESERVATIONS_PER_BATCH).
+     */
+    public Observable<MakeGroupReservationsViewState> confirmReservations(final ConfirmReservationsAction action) {
+        //Batches too large for the DAO to take are turned down before the database is ever reached.
+        if (action.getCustomers().size() > ReservationDao.MAX_RESERVATIONS_PER_BATCH) {
+            return Observable.<MakeGroupReservationsViewState>just(
+                    new MakeGroupReservationsViewState.ErrorMakingReservations
+                        (action, new ReservationException(TOO_MANY_RESERVATIONS)))
+                .startWith(new MakeGroupReservationsViewState.MakingReservations(action));
+        }
+        final TableAvailabilityIndex availabilityIndex = this.availabilityIndex;
+        return Observable.fromCallable(new Callable<List<ReservationOutcome>>() {
+                @Override
+                public List<ReservationOutcome> call() {
+                    //Every reservation in the batch expires at the same time.
+                    long expiresAt = DateTime.now().plusMinutes(10).getMillis();
+                    List<Reservation> reservations = new ArrayList<>();
+                    for (int i=0; i<action.getCustomers().size(); i++) {
+                        reservations.add(new Reservation(action.getCustomers().get(i).getId(),
+                            action.getTables().get(i).getNumber(), expiresAt));
+                    }
+                    return getDatabase().reservationDao().reserveAll(reservations,
+                        action.getPolicy() == ConfirmReservationsAction.Policy.ALL_OR_NOTHING);
+                }
+            })
+            .map(new Function<List<ReservationOutcome>, MakeGroupReservationsViewState>() {
+                @Override
+                public MakeGroupReservationsViewState apply(List<ReservationOutcome> outcomes) {
+                    for (ReservationOutcome outcome : outcomes) {
+                        if (outcome.getStatus() != ReservationOutcome.Status.RESERVED) {
+                            continue;
+                        }
+                        if (availabilityIndex != null) {
+                            availabilityIndex.update(outcome.getTable().getNumber(), false);
+                        }
+                        if (expiryScheduler != null) {
+                            expiryScheduler.schedule(outcome.getReservation());
+                        }
+                    }
+                    return new MakeGroupReservationsViewState.SuccessMakingReservations(action, outcomes);
+                }
+            })
+            .onErrorReturn(new Function<Throwable, MakeGroupReservationsViewState>() {
+                @Override
+                public MakeGroupReservationsViewState apply(Throwable throwable) {
+                    return new MakeGroupReservationsViewState.ErrorMakingReservations
+                        (action, new ReservationException(DATABASE_FAILURE, throwable));
+                }
+            })
+            .startWith(new MakeGroupReservationsViewState.MakingReservations(action))
+            .doOnNext(new Consumer<MakeGroupReservationsViewState>() {
+                @Override
+                public void accept(MakeGroupReservationsViewState state) {
+                    Timber.d("PASSING FOLLOWING STATE DOWNSTREAM: %s.", state);
+                }
+            });
+    }
+
+    /**
+     * Folds a state into the one before it. Customers and tables that changed after being fetched
+     * (see SuccessFetchingCustomers.isUpdate and SuccessFetchingTables.isUpdate) only refresh the
+     * lists carried by the state before, leaving whoever and whatever was chosen (and any outcome of
+     * making the reservation) as it is. Every other state simply takes over.
+     * @param previousState the state before.
+     * @param state the state coming in.
+     * @return the state to go with from now on.
+     */
+    public MakeReservationsViewState reduce(MakeReservationsViewState previousState,
+                                            MakeReservationsViewState state) {
+        if (state instanceof MakeReservationsViewState.Initial) {
+            FetchCustomersViewState substate = ((MakeReservationsViewState.Initial) state).getSubstate();
+            if (substate instanceof FetchCustomersViewState.SuccessFetchingCustomers
+                    && ((FetchCustomersViewState.SuccessFetchingCustomers) substate).isUpdate()) {
+                return withCustomers(previousState, (FetchCustomersViewState.SuccessFetchingCustomers) substate);
+            }
+        } else if (state instanceof MakeReservationsViewState.CustomerChosen) {
+            FetchTablesViewState substate = ((MakeReservationsViewState.CustomerChosen) state).getSecondSubstate();
+            if (substate instanceof FetchTablesViewState.SuccessFetchingTables
+                    && ((FetchTablesViewState.SuccessFetchingTables) substate).isUpdate()) {
+                return withTables(previousState, (FetchTablesViewState.SuccessFetchingTables) substate);
+            }
+        }
+        return state;
+    }
+
+    private static MakeReservationsViewState withCustomers(MakeReservationsViewState state,
+                                                           FetchCustomersViewState.SuccessFetchingCustomers customers) {
+        if (state instanceof MakeReservationsViewState.Initial) {
+            return new MakeReservationsViewState.Initial(customers);
+        }
+        if (state instanceof MakeReservationsViewState.CustomerChosen) {
+            return withCustomers((MakeReservationsViewState.CustomerChosen) state, customers);
+        }
+        MakeReservationsViewState.TableChosen finalSubstate = finalSubstateOf(state);
+        return withFinalSubstate(state, new MakeReservationsViewState.TableChosen
+            (withCustomers(finalSubstate.getFirstSubstate(), customers),
+                finalSubstate.getSecondSubstate(), finalSubstate.getChosenTable()));
+    }
+
+    private static MakeReservationsViewState.CustomerChosen withCustomers(MakeReservationsViewState.CustomerChosen substate,
+                                                                          FetchCustomersViewState.SuccessFetchingCustomers customers) {
+        return new MakeReservationsViewState.CustomerChosen(customers,
+            substate.getChosenCustomer(), substate.getSecondSubstate());
+    }
+
+    //Tables of a customer no longer chosen (i.e. going back to the initial state) are left out.
+    private static MakeReservationsViewState withTables(MakeReservationsViewState state,
+                                                        FetchTablesViewState.SuccessFetchingTables tables) {
+        if (state instanceof MakeReservationsViewState.Initial) {
+            return state;
+        }
+        if (state instanceof MakeReservationsViewState.CustomerChosen) {
+            return withTables((MakeReservationsViewState.CustomerChosen) state, tables);
+        }
+        MakeReservationsViewState.TableChosen finalSubstate = finalSubstateOf(state);
+        return withFinalSubstate(state, new MakeReservationsViewState.TableChosen
+            (withTables(finalSubstate.getFirstSubstate(), tables), tables, finalSubstate.getChosenTable()));
+    }
+
+    private static MakeReservationsViewState.CustomerChosen withTables(MakeReservationsViewState.CustomerChosen substate,
+                                                                       FetchTablesViewState.SuccessFetchingTables tables) {
+        return new MakeReservationsViewState.CustomerChosen(substate.getFirstSubstate(),
+            substate.getChosenCustomer(), tables);
+    }
+
+    private static MakeReservationsViewState.TableChosen finalSubstateOf(MakeReservationsViewState state) {
+        if (state instanceof MakeReservationsViewState.TableChosen) {
+            return (MakeReservationsViewState.TableChosen) state;
+        }
+        if (state instanceof MakeReservationsViewState.MakingReservation) {
+            return ((MakeReservationsViewState.MakingReservation) state).getFinalSubstate();
+        }
+        if (state instanceof MakeReservationsViewState.SuccessMakingReservation) {
+            return ((MakeReservationsViewState.SuccessMakingReservation) state).getFinalSubstate();
+        }
+        return ((MakeReservationsViewState.ErrorMakingReservation) state).getFinalSubstate();
+    }
+
+    private static MakeReservationsViewState withFinalSubstate(MakeReservationsViewState state,
+                                                               MakeReservationsViewState.TableChosen finalSubstate) {
+        if (state instanceof MakeReservationsViewState.TableChosen) {
+            return finalSubstate;
+        }
+        if (state instanceof MakeReservationsViewState.MakingReservation) {
+            return new MakeReservationsViewState.MakingReservation(finalSubstate);
+        }
+        if (state instanceof MakeReservationsViewState.SuccessMakingReservation) {
+            return new MakeReservationsViewState.SuccessMakingReservation(finalSubstate);
+        }
+        MakeReservationsViewState.ErrorMakingReservation error = (MakeReservationsViewState.ErrorMakingReservation) state;
+        MakeReservationsViewState.ErrorMakingReservation errorState
+            = new MakeReservationsViewState.ErrorMakingReservation(finalSubstate, error.getException());
+        errorState.setPayload(error.getPayload());
+        return errorState;
+    }
+
+    private static MakeReservationsViewState.TableChosen withChosenTable(MakeReservationsViewState.TableChosen substate,
+                                                                          Table table) {
+        return new MakeReservationsViewState.TableChosen(substate.getFirstSubstate(),
+            substate.getSecondSubstate(), table);
+    }
+
 }
@@ -0,0 +1,159 @@
+package com.github.guilhermesgb.steward.mvi.reservation;
+
+import android.content.Context;
+
+import com.github.guilhermesgb.steward.database.DatabaseResource;
+import com.github.guilhermesgb.steward.mvi.reservation.schema.Reservation;
+import com.github.guilhermesgb.steward.mvi.table.TableAvailabilityBus;
+import com.github.guilhermesgb.steward.mvi.table.TableAvailabilityIndex;
+import com.github.guilhermesgb.steward.mvi.table.schema.Table;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import timber.log.Timber;
+
+/**
+ * Releases every reserved table right as its reservation expires, rather than whenever the
+ * ReservationsCleanupWorker gets to run (which is then left as a mere safety net). Reservations
+ * wait in a queue ordered by expiration time, a single timer being armed for the earliest of
+ * them; each one expiring is removed in a tiny transaction of its own, its table being made
+ * available again, the TableAvailabilityIndex updated and the change published to the
+ * TableAvailabilityBus.
+ */
+public class ReservationExpiryScheduler {
+
+    private static ReservationExpiryScheduler instance;
+
+    private final DatabaseResource database;
+    private final ScheduledExecutorService executor;
+    private final PriorityQueue<Reservation> pendingExpirations = new PriorityQueue<>(11,
+        new Comparator<Reservation>() {
+            @Override
+            public int compare(Reservation first, Reservation second) {
+                return first.getExpiresAt() < second.getExpiresAt() ? -1
+                    : first.getExpiresAt() == second.getExpiresAt() ? 0 : 1;
+            }
+        });
+    private ScheduledFuture<?> nextRelease;
+    private long nextReleaseAt = Long.MAX_VALUE;
+
+    public static synchronized ReservationExpiryScheduler getInstance(Context context) {
+        if (instance == null && context != null) {
+            instance = new ReservationExpiryScheduler(DatabaseResource.getInstance(context));
+        }
+        return instance;
+    }
+
+    public ReservationExpiryScheduler(DatabaseResource database) {
+        this.database = database;
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "reservation-expiry");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        //Timers replaced by earlier ones are cancelled, so they shouldn't linger in the queue.
+        executor.setRemoveOnCancelPolicy(true);
+        this.executor = executor;
+    }
+
+    /**
+     * Loads every reservation in the database into the queue, those already expired being released
+     * right away. Meant to be called once, at startup, reservations made from then on being scheduled
+     * as they are confirmed.
+     */
+    public void start() {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                List<Reservation> reservations;
+                try {
+                    reservations = database.reservationDao().findAllByExpiration();
+                } catch (Throwable throwable) {
+                    Timber.e(throwable, "Couldn't load reservations to expire.");
+                    return;
+                }
+                scheduleAll(reservations);
+            }
+        });
+    }
+
+    public void schedule(Reservation reservation) {
+        scheduleAll(Collections.singletonList(reservation));
+    }
+
+    private synchronized void scheduleAll(List<Reservation> reservations) {
+        pendingExpirations.addAll(reservations);
+        armTimer();
+    }
+
+    //Makes sure the timer goes off by the time the earliest reservation in the queue expires.
+    private synchronized void armTimer() {
+        Reservation earliest = pendingExpirations.peek();
+        if (earliest == null || earliest.getExpiresAt() >= nextReleaseAt) {
+            return;
+        }
+        if (nextRelease != null) {
+            nextRelease.cancel(false);
+        }
+        nextReleaseAt = earliest.getExpiresAt();
+        nextRelease = executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                releaseExpiredReservations();
+            }
+        }, Math.max(0, nextReleaseAt - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+    }
+
+    private void releaseExpiredReservations() {
+        long now = System.currentTimeMillis();
+        while (true) {
+            Reservation expired;
+            synchronized (this) {
+                Reservation earliest = pendingExpirations.peek();
+                if (earliest == null || earliest.getExpiresAt() > now) {
+                    nextRelease = null;
+                    nextReleaseAt = Long.MAX_VALUE;
+                    armTimer();
+                    return;
+                }
+                expired = pendingExpirations.poll();
+            }
+            try {
+                if (release(expired, now)) {
+                    TableAvailabilityIndex.getInstance().update(expired.getTableNumber(), true);
+                    TableAvailabilityBus.publish(new Table(expired.getTableNumber(), true));
+                }
+            } catch (Throwable throwable) {
+                //Left for the ReservationsCleanupWorker to clean up later on.
+                Timber.e(throwable, "Couldn't release expired reservation: %s.", expired);
+            }
+        }
+    }
+
+    //The reservation may have been renewed or replaced meanwhile, in which case there's nothing to release.
+    private boolean release(Reservation reservation, long now) {
+        try {
+            database.beginTransaction();
+            boolean released = database.reservationDao().deleteIfExpired(reservation.getCustomerId(),
+                    reservation.getTableNumber(), now) > 0
+                && database.reservationDao().releaseUnreservedTables
+                    (Collections.singletonList(reservation.getTableNumber())) > 0;
+            database.setTransactionSuccessful();
+            return released;
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.github.guilhermesgb.steward.mvi.reservation;
+
+import android.content.Context;
+
+import com.github.guilhermesgb.steward.mvi.reservation.schema.ReservationMutation;
+import com.github.guilhermesgb.steward.mvi.reservation.schema.ReservationOutboxDao;
+import com.github.guilhermesgb.steward.utils.UseCase;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import retrofit2.Response;
+import timber.log.Timber;
+
+public class SyncReservationsUseCase extends UseCase {
+
+    public static final String SYNC_RESOURCE = "reservation";
+    public static final int DEFAULT_BATCH_SIZE = 50;
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    public SyncReservationsUseCase(String apiBaseUrl, Context context) {
+        super(apiBaseUrl, context);
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Uploads every reservation mutation waiting in the outbox, a batch at a time, each batch
+     * leaving the outbox once acknowledged by the server. Batches the server rejects for good
+     * are set aside (see ReservationOutboxDao.reject), as uploading them again would make no
+     * difference, yet the server never heard of those reservations, so they're kept until no
+     * longer held locally. Failures that may go away (i.e. network errors, server errors and
+     * authentication errors) stop the upload altogether, for it to be resumed later.
+     * Blocks until done, being meant for background work.
+     * @return whether every mutation waiting got through or was set aside, none being left to upload.
+     */
+    public boolean uploadPendingMutations() {
+        ReservationOutboxDao outbox = getDatabase().reservationOutboxDao();
+        outbox.removeRejectedWithoutReservation();
+        List<ReservationMutation> batch;
+        while (!(batch = outbox.peek(batchSize)).isEmpty()) {
+            Response<Void> response;
+            try {
+                response = getApi().uploadReservationMutations(idempotencyKeyOf(batch), batch).blockingGet();
+            } catch (Throwable throwable) {
+                Timber.w(throwable, "Couldn't upload %d reservation mutations.", batch.size());
+                return false;
+            }
+            if (!response.isSuccessful() && isWorthRetrying(response.code())) {
+                Timber.w("Couldn't upload %d reservation mutations: HTTP %d.", batch.size(), response.code());
+                return false;
+            }
+            List<Long> ids = new ArrayList<>(batch.size());
+            for (ReservationMutation mutation : batch) {
+                ids.add(mutation.getId());
+            }
+            if (response.isSuccessful()) {
+                outbox.remove(ids);
+            } else {
+                Timber.e("Server rejected %d reservation mutations: HTTP %d.", batch.size(), response.code());
+                outbox.reject(ids);
+            }
+        }
+        markSynced(SYNC_RESOURCE);
+        return true;
+    }
+
+    //The same batch always gets the same key, so the server can tell a retried batch apart from a new one.
+    static String idempotencyKeyOf(List<ReservationMutation> batch) {
+        StringBuilder keys = new StringBuilder();
+        for (ReservationMutation mutation : batch) {
+            keys.append(mutation.getIdempotencyKey()).append(',');
+        }
+        return UUID.nameUUIDFromBytes(keys.toString().getBytes(Charset.forName("UTF-8"))).toString();
+    }
+
+    //Credentials may well be refreshed in the meantime, so batches turned away for them are kept too.
+    private static boolean isWorthRetrying(int code) {
+        return code >= 500 || code == 408 || code == 429 || code == 401 || code == 403;
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.github.guilhermesgb.steward.mvi.reservation.intent;
+
+import com.github.guilhermesgb.steward.mvi.customer.schema.Customer;
+import com.github.guilhermesgb.steward.mvi.table.schema.Table;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//Confirms many reservations at once (e.g. seating a party), each customer added going to the table added along.
+public class ConfirmReservationsAction {
+
+    public enum Policy {
+        ALL_OR_NOTHING, //Nothing is reserved unless everything can be.
+        BEST_EFFORT //Whatever can be reserved is, no matter the rest.
+    }
+
+    private final Policy policy;
+    private final List<Customer> customers = new ArrayList<>();
+    private final List<Table> tables = new ArrayList<>();
+
+    public ConfirmReservationsAction(Policy policy) {
+        this.policy = policy;
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    public ConfirmReservationsAction add(Customer customer, Table table) {
+        customers.add(customer);
+        tables.add(table);
+        return this;
+    }
+
+    public List<Customer> getCustomers() {
+        return customers;
+    }
+
+    public List<Table> getTables() {
+        return tables;
+    }
+
+}
@@ -0,0 +1,144 @@
+package com.github.guilhermesgb.steward.mvi.reservation.model;
+
+import com.github.guilhermesgb.steward.mvi.reservation.intent.ConfirmReservationsAction;
+import com.github.guilhermesgb.steward.mvi.reservation.schema.ReservationOutcome;
+import com.github.guilhermesgb.steward.utils.ViewStateOption;
+import com.pacoworks.rxsealedunions2.Union3;
+
+import java.util.List;
+
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+
+public interface MakeGroupReservationsViewState extends Union3<MakeGroupReservationsViewState.MakingReservations,
+        MakeGroupReservationsViewState.SuccessMakingReservations, MakeGroupReservationsViewState.ErrorMakingReservations> {
+
+    final class MakingReservations extends ViewStateOption implements MakeGroupReservationsViewState {
+
+        private final ConfirmReservationsAction action;
+
+        public MakingReservations(ConfirmReservationsAction action) {
+            this.action = action;
+        }
+
+        public ConfirmReservationsAction getAction() {
+            return action;
+        }
+
+        @Override
+        public void continued(Consumer<MakingReservations> makingReservations,
+                              Consumer<SuccessMakingReservations> successMakingReservations,
+                              Consumer<ErrorMakingReservations> errorMakingReservations) {
+            doAccept(makingReservations, this);
+        }
+
+        @Override
+        public <R> R join(Function<MakingReservations, R> makingReservations,
+                          Function<SuccessMakingReservations, R> successMakingReservations,
+                          Function<ErrorMakingReservations, R> errorMakingReservations) {
+            return doApply(makingReservations, this);
+        }
+
+        @Override
+        protected String getOptionName() {
+            return "MakeGroupReservationsViewState.MakingReservations";
+        }
+
+    }
+
+    //The batch went through, though not necessarily every reservation in it: each one has its own outcome.
+    final class SuccessMakingReservations extends ViewStateOption implements MakeGroupReservationsViewState {
+
+        private final ConfirmReservationsAction action;
+        private final List<ReservationOutcome> outcomes;
+
+        public SuccessMakingReservations(ConfirmReservationsAction action, List<ReservationOutcome> outcomes) {
+            this.action = action;
+            this.outcomes = outcomes;
+        }
+
+        public ConfirmReservationsAction getAction() {
+            return action;
+        }
+
+        //In the same order as the customers and tables in the action.
+        public List<ReservationOutcome> getOutcomes() {
+            return outcomes;
+        }
+
+        public int getReservedCount() {
+            int reservedCount = 0;
+            for (ReservationOutcome outcome : outcomes) {
+                if (outcome.getStatus() == ReservationOutcome.Status.RESERVED) {
+                    reservedCount++;
+                }
+            }
+            return reservedCount;
+        }
+
+        public boolean isComplete() {
+            return getReservedCount() == outcomes.size();
+        }
+
+        @Override
+        public void continued(Consumer<MakingReservations> makingReservations,
+                              Consumer<SuccessMakingReservations> successMakingReservations,
+                              Consumer<ErrorMakingReservations> errorMakingReservations) {
+            doAccept(successMakingReservations, this);
+        }
+
+        @Override
+        public <R> R join(Function<MakingReservations, R> makingReservations,
+                          Function<SuccessMakingReservations, R> successMakingReservations,
+                          Function<ErrorMakingReservations, R> errorMakingReservations) {
+            return doApply(successMakingReservations, this);
+        }
+
+        @Override
+        protected String getOptionName() {
+            return "MakeGroupReservationsViewState.SuccessMakingReservations";
+        }
+
+    }
+
+    //The batch as a whole failed (e.g. the database did), so nothing in it was reserved.
+    final class ErrorMakingReservations extends ViewStateOption implements MakeGroupReservationsViewState {
+
+        private final ConfirmReservationsAction action;
+        private final ReservationException exception;
+
+        public ErrorMakingReservations(ConfirmReservationsAction action, ReservationException exception) {
+            this.action = action;
+            this.exception = exception;
+        }
+
+        public ConfirmReservationsAction getAction() {
+            return action;
+        }
+
+        public ReservationException getException() {
+            return exception;
+        }
+
+        @Override
+        public void continued(Consumer<MakingReservations> makingReservations,
+                              Consumer<SuccessMakingReservations> successMakingReservations,
+                              Consumer<ErrorMakingReservations> errorMakingReservations) {
+            doAccept(errorMakingReservations, this);
+        }
+
+        @Override
+        public <R> R join(Function<MakingReservations, R> makingReservations,
+                          Function<SuccessMakingReservations, R> successMakingReservations,
+                          Function<ErrorMakingReservations, R> errorMakingReservations) {
+            return doApply(errorMakingReservations, this);
+        }
+
+        @Override
+        protected String getOptionName() {
+            return "MakeGroupReservationsViewState.ErrorMakingReservations";
+        }
+
+    }
+
+}
@@ -12,6 +12,7 @@ public class ReservationException extends Exception {
         CUSTOMER_BUSY,
         TABLE_NOT_FOUND,
         TABLE_UNAVAILABLE,
+        TOO_MANY_RESERVATIONS,
         DATABASE_FAILURE
     }
 
@@ -3,19 +3,25 @@ package com.github.guilhermesgb.steward.mvi.reservation.presenter;
 import android.content.Context;
 import android.support.annotation.NonNull;
 
+import com.github.guilhermesgb.steward.mvi.customer.FetchCustomersUseCase;
 import com.github.guilhermesgb.steward.mvi.customer.intent.FetchCustomersAction;
+import com.github.guilhermesgb.steward.mvi.customer.intent.SearchCustomersAction;
 import com.github.guilhermesgb.steward.mvi.customer.model.FetchCustomersViewState;
 import com.github.guilhermesgb.steward.mvi.customer.schema.Customer;
 import com.github.guilhermesgb.steward.mvi.reservation.MakeReservationsUseCase;
+import com.github.guilhermesgb.steward.mvi.reservation.ReservationExpiryScheduler;
 import com.github.guilhermesgb.steward.mvi.reservation.intent.ChooseCustomerAction;
 import com.github.guilhermesgb.steward.mvi.reservation.intent.ChooseTableAction;
 import com.github.guilhermesgb.steward.mvi.reservation.intent.ConfirmReservationAction;
 import com.github.guilhermesgb.steward.mvi.reservation.model.MakeReservationsViewState;
 import com.github.guilhermesgb.steward.mvi.reservation.view.MakeReservationsView;
+import com.github.guilhermesgb.steward.mvi.table.TableAvailabilityIndex;
 import com.github.guilhermesgb.steward.mvi.table.intent.FetchTablesAction;
 import com.github.guilhermesgb.steward.utils.OnReadyPresenter;
+import com.github.guilhermesgb.steward.worker.OutboxSyncWorker;
 
 import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
 
 import io.reactivex.Observable;
 import io.reactivex.ObservableSource;
@@ -29,10 +35,38 @@ import static com.github.guilhermesgb.steward.network.ApiResource.WILL_USE_REAL_
 
 public class MakeReservationsPresenter extends OnReadyPresenter<MakeReservationsView, MakeReservationsViewState> {
 
+    private static final long FRESHNESS_THRESHOLD_IN_MINUTES = 5;
+    private static final long SEARCH_DEBOUNCE_IN_MILLISECONDS = 300;
+
     private final MakeReservationsUseCase makeReservationsUseCase;
 
     public MakeReservationsPresenter(Context context) {
         this.makeReservationsUseCase = new MakeReservationsUseCase(WILL_USE_REAL_API, context);
+        this.makeReservationsUseCase.getFetchCustomersUseCase()
+            .setIngestionChunkSize(FetchCustomersUseCase.DEFAULT_INGESTION_CHUNK_SIZE);
+        //Customers are shown a page at a time, further pages being loaded as the list is scrolled.
+        this.makeReservationsUseCase.getFetchCustomersUseCase()
+            .setPageSize(FetchCustomersUseCase.DEFAULT_PAGE_SIZE);
+        //Data warmed up by the CacheWarmingWorker within the last few minutes is good enough to begin with.
+        this.makeReservationsUseCase.getFetchCustomersUseCase()
+            .setFreshnessThreshold(FRESHNESS_THRESHOLD_IN_MINUTES, TimeUnit.MINUTES);
+        this.makeReservationsUseCase.getFetchTablesUseCase()
+            .setFreshnessThreshold(FRESHNESS_THRESHOLD_IN_MINUTES, TimeUnit.MINUTES);
+        //Syncs only ever write the customers and tables that actually changed.
+        this.makeReservationsUseCase.getFetchCustomersUseCase().setWritingDiffsOnly(true);
+        this.makeReservationsUseCase.getFetchTablesUseCase().setWritingDiffsOnly(true);
+        //Writes made anywhere (e.g. by background workers) show up without any new intents.
+        this.makeReservationsUseCase.getFetchCustomersUseCase().setObservingLocalChanges(true);
+        this.makeReservationsUseCase.getFetchTablesUseCase().setObservingLocalChanges(true);
+        //Table availability then keeps up with the server on its own, without refreshing the whole map.
+        this.makeReservationsUseCase.getFetchTablesUseCase().setFollowingTableChanges(true);
+        //Reservations made here only reach the server later on, through the OutboxSyncWorker.
+        this.makeReservationsUseCase.getFetchTablesUseCase().setTrustingServerWhenInSync(true);
+        //Tables are released right as their reservations expire, and the change reflected while following.
+        this.makeReservationsUseCase.setExpiryScheduler(ReservationExpiryScheduler.getInstance(context));
+        //Both keep the in-memory table availability index in sync, and reservations read from it first.
+        this.makeReservationsUseCase.getFetchTablesUseCase().setAvailabilityIndex(TableAvailabilityIndex.getInstance());
+        this.makeReservationsUseCase.setAvailabilityIndex(TableAvailabilityIndex.getInstance());
     }
 
     @Override
@@ -58,6 +92,42 @@ public class MakeReservationsPresenter extends OnReadyPresenter<MakeReservations
         })
         .observeOn(AndroidSchedulers.mainThread());
 
+        final Observable<MakeReservationsViewState> loadMoreCustomers = intent(
+            new ViewIntentBinder<MakeReservationsView, FetchCustomersAction>() {
+                @NonNull
+                @Override
+                public Observable<FetchCustomersAction> bind(@NonNull MakeReservationsView view) {
+                    return view.loadMoreCustomersIntent();
+                }
+            }
+        ).switchMap(new Function<FetchCustomersAction, ObservableSource<MakeReservationsViewState>>() {
+            @Override
+            public ObservableSource<MakeReservationsViewState> apply(FetchCustomersAction action) {
+                return makeReservationsUseCase.loadMoreCustomers(action)
+                    .subscribeOn(Schedulers.io());
+            }
+        })
+        .observeOn(AndroidSchedulers.mainThread());
+
+        //Searches only run once typing pauses, and any search still running is dropped by the next one.
+        final Observable<MakeReservationsViewState> searchCustomers = intent(
+            new ViewIntentBinder<MakeReservationsView, SearchCustomersAction>() {
+                @NonNull
+                @Override
+                public Observable<SearchCustomersAction> bind(@NonNull MakeReservationsView view) {
+                    return view.searchCustomersIntent();
+                }
+            }
+        ).debounce(SEARCH_DEBOUNCE_IN_MILLISECONDS, TimeUnit.MILLISECONDS)
+        .switchMap(new Function<SearchCustomersAction, ObservableSource<MakeReservationsViewState>>() {
+            @Override
+            public ObservableSource<MakeReservationsViewState> apply(SearchCustomersAction action) {
+                return makeReservationsUseCase.searchCustomers(action)
+                    .subscribeOn(Schedulers.io());
+            }
+        })
+        .observeOn(AndroidSchedulers.mainThread());
+
         final Observable<ChooseCustomerAction> chooseCustomer = intent(
             new ViewIntentBinder<MakeReservationsView, ChooseCustomerAction>() {
                 @NonNull
@@ -124,6 +194,14 @@ public class MakeReservationsPresenter extends OnReadyPresenter<MakeReservations
             @Override
             public ObservableSource<MakeReservationsViewState> apply(ConfirmReservationAction action) {
                 return makeReservationsUseCase.confirmReservation(action)
+                    .doOnNext(new Consumer<MakeReservationsViewState>() {
+                        @Override
+                        public void accept(MakeReservationsViewState state) {
+                            if (state instanceof MakeReservationsViewState.SuccessMakingReservation) {
+                                OutboxSyncWorker.scheduleSoon();
+                            }
+                        }
+                    })
                     .subscribeOn(Schedulers.io());
             }
         })
@@ -131,12 +209,23 @@ public class MakeReservationsPresenter extends OnReadyPresenter<MakeReservations
 
         MakeReservationsViewState.Initial initialState = new MakeReservationsViewState.Initial
             (new FetchCustomersViewState.Initial(new LinkedList<Customer>()));
-        subscribeViewState(Observable.merge(
+        //Every state is folded into the one before it, so that customers and tables changing later on
+        // don't take back whatever was chosen since (see MakeReservationsUseCase.reduce).
+        final Observable<MakeReservationsViewState> reducedStates = Observable.mergeArray(
                 fetchCustomers,
+                loadMoreCustomers,
                 chooseCustomerAndRefreshTables,
                 chooseTable,
                 confirmReservation
-            ).startWith(initialState),
+            ).scan(initialState, new BiFunction<MakeReservationsViewState, MakeReservationsViewState, MakeReservationsViewState>() {
+                @Override
+                public MakeReservationsViewState apply(MakeReservationsViewState previousState,
+                                                       MakeReservationsViewState state) {
+                    return makeReservationsUseCase.reduce(previousState, state);
+                }
+            });
+        //Search results are only ever suggested, leaving everything else as it is, so they're left out of it.
+        subscribeViewState(Observable.merge(reducedStates, searchCustomers),
             new ViewStateConsumer<MakeReservationsView, MakeReservationsViewState>() {
                 @Override
                 public void accept(final @NonNull MakeReservationsView view, @NonNull MakeReservationsViewState state) {
@@ -2,6 +2,8 @@ package com.github.guilhermesgb.steward.mvi.reservation.schema;
 
 import android.arch.persistence.room.Entity;
 import android.arch.persistence.room.ForeignKey;
+import android.arch.persistence.room.Ignore;
+import android.arch.persistence.room.Index;
 import android.os.Parcel;
 import android.os.Parcelable;
 import android.support.annotation.NonNull;
@@ -9,28 +11,40 @@ import android.support.annotation.NonNull;
 import com.github.guilhermesgb.steward.mvi.customer.schema.Customer;
 import com.github.guilhermesgb.steward.mvi.table.schema.Table;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.Arrays;
 
+import static com.github.guilhermesgb.steward.utils.DateUtils.formatDate;
+import static com.github.guilhermesgb.steward.utils.DateUtils.parseDate;
+import static com.github.guilhermesgb.steward.utils.JsonUtils.nextOptionalInt;
+import static com.github.guilhermesgb.steward.utils.JsonUtils.nextOptionalString;
+
 @Entity(
     tableName = "reservation",
     primaryKeys = {"customerId", "tableNumber"},
     foreignKeys = {
         @ForeignKey(entity = Customer.class, parentColumns = "id", childColumns = "customerId"),
         @ForeignKey(entity = Table.class, parentColumns = "number", childColumns = "tableNumber")
-    }
+    },
+    //Lookups by customerId are already served by the primary key, whose first column it is.
+    //Expired reservations are looked up by expiresAt, so they can be cleaned up a few at a time.
+    indices = {@Index("tableNumber"), @Index("expiresAt")}
 )
 public class Reservation implements Serializable, Parcelable {
 
     @NonNull private final String customerId;
     private final int tableNumber;
-    private String expirationDate;
+    private final long expiresAt; //In milliseconds since the epoch.
 
     private Reservation(Parcel in) {
         customerId = in.readString();
         tableNumber = in.readInt();
-        expirationDate = in.readString();
+        expiresAt = in.readLong();
     }
 
     public static final Creator<Reservation> CREATOR = new Creator<Reservation>() {
@@ -54,13 +68,18 @@ public class Reservation implements Serializable, Parcelable {
     public void writeToParcel(Parcel dest, int flags) {
         dest.writeString(customerId);
         dest.writeInt(tableNumber);
-        dest.writeString(expirationDate);
+        dest.writeLong(expiresAt);
     }
 
-    public Reservation(@NonNull String customerId, int tableNumber, String expirationDate) {
+    public Reservation(@NonNull String customerId, int tableNumber, long expiresAt) {
         this.customerId = customerId;
         this.tableNumber = tableNumber;
-        this.expirationDate = expirationDate;
+        this.expiresAt = expiresAt;
+    }
+
+    @Ignore
+    public Reservation(@NonNull String customerId, int tableNumber, String expirationDate) {
+        this(customerId, tableNumber, expirationDate == null ? 0 : parseDate(expirationDate));
     }
 
     @NonNull
@@ -72,8 +91,52 @@ public class Reservation implements Serializable, Parcelable {
         return tableNumber;
     }
 
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    //The expiration date as it goes over the wire (i.e. formatted, in UTC).
     public String getExpirationDate() {
-        return expirationDate;
+        return formatDate(expiresAt);
+    }
+
+    public static Reservation readFrom(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        String customerId = null, expirationDate = null;
+        int tableNumber = -1;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "customer_id":
+                    customerId = nextOptionalString(reader);
+                    break;
+                case "table_number":
+                    tableNumber = nextOptionalInt(reader);
+                    break;
+                case "expiration_date":
+                    expirationDate = nextOptionalString(reader);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new Reservation(customerId, tableNumber, expirationDate);
+    }
+
+    public static void writeTo(JsonWriter writer, Reservation reservation) throws IOException {
+        if (reservation == null) {
+            writer.nullValue();
+            return;
+        }
+        writer.beginObject();
+        writer.name("customer_id").value(reservation.customerId);
+        writer.name("table_number").value(reservation.tableNumber);
+        writer.name("expiration_date").value(reservation.getExpirationDate());
+        writer.endObject();
     }
 
     private static JsonObject jsonizeFrom(Reservation reservation) {
@@ -83,7 +146,7 @@ public class Reservation implements Serializable, Parcelable {
         JsonObject json = new JsonObject();
         json.addProperty("customer_id", reservation.customerId);
         json.addProperty("table_number", reservation.tableNumber);
-        json.addProperty("expiration_date", reservation.expirationDate);
+        json.addProperty("expiration_date", reservation.getExpirationDate());
         return json;
     }
 
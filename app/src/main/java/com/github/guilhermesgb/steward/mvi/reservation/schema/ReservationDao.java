@@ -5,36 +5,279 @@ import android.arch.persistence.room.Delete;
 import android.arch.persistence.room.Insert;
 import android.arch.persistence.room.OnConflictStrategy;
 import android.arch.persistence.room.Query;
-import android.arch.persistence.room.RoomWarnings;
+import android.arch.persistence.room.Transaction;
 
+import com.github.guilhermesgb.steward.mvi.customer.schema.Customer;
 import com.github.guilhermesgb.steward.mvi.table.schema.Table;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-
-import io.reactivex.Single;
+import java.util.Map;
+import java.util.Set;
 
 @Dao
-public interface ReservationDao {
+public abstract class ReservationDao {
+
+    //Keeps the bulk reads made by reserveAll well below SQLite's limit of bound variables (999).
+    public static final int MAX_RESERVATIONS_PER_BATCH = 300;
+
+    //Queries whose plans are checked (see ReservationQueryPlanTest) are kept here, so that
+    // the very queries run are the ones checked. Anti-joins among them look up each row's
+    // reservations through an index, rather than going through the whole reservation table
+    // as NOT IN(SELECT ...) may end up doing.
+    static final String FIND_TABLES_FOR_GIVEN_CUSTOMER = "SELECT stand.* FROM reservation "
+        + "INNER JOIN stand ON stand.number = reservation.tableNumber "
+        + "WHERE reservation.customerId = :customerId";
+    static final String DELETE_ALL_FOR_CUSTOMER = "DELETE FROM reservation WHERE customerId = :customerId";
+    static final String DELETE_UNUSED_CUSTOMERS = "DELETE FROM customer WHERE NOT EXISTS"
+        + "(SELECT 1 FROM reservation WHERE reservation.customerId = customer.id)";
+    static final String DELETE_UNUSED_CUSTOMERS_BY_ID = "DELETE FROM customer "
+        + "WHERE id IN(:customerIds) AND NOT EXISTS"
+        + "(SELECT 1 FROM reservation WHERE reservation.customerId = customer.id)";
+    static final String DELETE_UNUSED_TABLES = "DELETE FROM stand WHERE NOT EXISTS"
+        + "(SELECT 1 FROM reservation WHERE reservation.tableNumber = stand.number)";
+    static final String DELETE_UNUSED_TABLES_BY_NUMBER = "DELETE FROM stand "
+        + "WHERE number IN(:tableNumbers) AND NOT EXISTS"
+        + "(SELECT 1 FROM reservation WHERE reservation.tableNumber = stand.number)";
+    static final String UPDATE_UNRESERVED_TABLE_AVAILABILITY = "UPDATE stand SET available = :available "
+        + "WHERE number = :number AND NOT EXISTS"
+        + "(SELECT 1 FROM reservation WHERE reservation.tableNumber = stand.number)";
+    static final String FIND_EXPIRED = "SELECT * FROM reservation "
+        + "WHERE expiresAt <= :now ORDER BY expiresAt LIMIT :limit";
+    static final String RELEASE_UNRESERVED_TABLES = "UPDATE stand SET available = 1 "
+        + "WHERE number IN(:numbers) AND NOT EXISTS"
+        + "(SELECT 1 FROM reservation WHERE reservation.tableNumber = stand.number)";
+
+    /**
+     * Reserves the given table for the given customer, all checks and writes being made within
+     * a single transaction. The table is claimed by a conditional update, which only goes through
+     * while the table is available, so that concurrent attempts at reserving the very same table
+     * can never both succeed. The reservation is also queued for upload (see SyncReservationsUseCase).
+     * @param customerId the id of the customer to place at the table.
+     * @param tableNumber the number of the table to reserve.
+     * @param expiresAt when the reservation expires, in milliseconds since the epoch.
+     * @return the outcome of the attempt, telling why it failed if it did.
+     */
+    @Transaction
+    public ReservationOutcome reserve(String customerId, int tableNumber, long expiresAt) {
+        if (findCustomer(customerId) == null) {
+            return new ReservationOutcome(ReservationOutcome.Status.CUSTOMER_NOT_FOUND);
+        }
+        List<Table> tablesHeld = findTablesForGivenCustomer(customerId);
+        if (!tablesHeld.isEmpty()) {
+            for (Table table : tablesHeld) {
+                if (table.getNumber() == tableNumber) {
+                    return new ReservationOutcome(ReservationOutcome.Status.RESERVATION_IN_PLACE)
+                        .setTable(table).setTablesHeld(tablesHeld);
+                }
+            }
+            return new ReservationOutcome(ReservationOutcome.Status.CUSTOMER_BUSY).setTablesHeld(tablesHeld);
+        }
+        if (claimTable(tableNumber) == 0) {
+            //Only then is it worth telling whether the table is gone or simply taken.
+            Table table = findTable(tableNumber);
+            return table == null ? new ReservationOutcome(ReservationOutcome.Status.TABLE_NOT_FOUND)
+                : new ReservationOutcome(ReservationOutcome.Status.TABLE_UNAVAILABLE).setTable(table);
+        }
+        Reservation reservation = place(new Reservation(customerId, tableNumber, expiresAt));
+        return new ReservationOutcome(ReservationOutcome.Status.RESERVED)
+            .setTable(new Table(tableNumber, false)).setReservation(reservation);
+    }
+
+    /**
+     * Reserves tables for many customers at once (e.g. a party being seated), within a single
+     * transaction. Every pair is checked just like reserve does, but against one snapshot of the
+     * customers, tables and reservations involved, read in bulk; pairs earlier in the list count as
+     * reserved for those after them, so that no two of them get the same table or the same customer.
+     * Only once every pair is checked are reservations made: either for all pairs that passed, or,
+     * all-or-nothing, for none of them unless every single one passed.
+     * @param reservations which customer goes to which table, and until when.
+     * @param allOrNothing whether any pair failing keeps all the others from being reserved.
+     * @return the outcome of each pair, in the same order; pairs that passed but weren't reserved
+     *  because others failed are ABORTED.
+     */
+    @Transaction
+    public List<ReservationOutcome> reserveAll(List<Reservation> reservations, boolean allOrNothing) {
+        if (reservations.size() > MAX_RESERVATIONS_PER_BATCH) {
+            throw new IllegalArgumentException("No more than " + MAX_RESERVATIONS_PER_BATCH
+                + " reservations can be made at once, not " + reservations.size() + ".");
+        }
+        List<String> customerIds = new ArrayList<>();
+        List<Integer> tableNumbers = new ArrayList<>();
+        for (Reservation reservation : reservations) {
+            customerIds.add(reservation.getCustomerId());
+            tableNumbers.add(reservation.getTableNumber());
+        }
+        Set<String> customersFound = new HashSet<>(findCustomerIds(customerIds));
+        List<Reservation> reservationsInPlace = findAllForCustomers(customerIds);
+        for (Reservation reservation : reservationsInPlace) {
+            tableNumbers.add(reservation.getTableNumber());
+        }
+        Map<Integer, Table> tables = new HashMap<>();
+        for (Table table : findTables(tableNumbers)) {
+            tables.put(table.getNumber(), table);
+        }
+        Map<String, List<Table>> tablesHeld = new HashMap<>();
+        for (Reservation reservation : reservationsInPlace) {
+            //Same as in findTablesForGivenCustomer, reservations of tables no longer around don't count.
+            Table table = tables.get(reservation.getTableNumber());
+            if (table != null) {
+                getTablesHeld(tablesHeld, reservation.getCustomerId()).add(table);
+            }
+        }
+
+        List<ReservationOutcome> outcomes = new ArrayList<>();
+        boolean allPassed = true;
+        for (Reservation reservation : reservations) {
+            ReservationOutcome outcome = check(reservation, customersFound, tables, tablesHeld);
+            if (outcome.getStatus() == ReservationOutcome.Status.RESERVED) {
+                Table claimedTable = new Table(reservation.getTableNumber(), false);
+                tables.put(claimedTable.getNumber(), claimedTable);
+                getTablesHeld(tablesHeld, reservation.getCustomerId()).add(claimedTable);
+            } else {
+                allPassed = false;
+            }
+            outcomes.add(outcome);
+        }
+
+        for (int i=0; i<outcomes.size(); i++) {
+            if (outcomes.get(i).getStatus() != ReservationOutcome.Status.RESERVED) {
+                continue;
+            }
+            Reservation reservation = reservations.get(i);
+            if (allOrNothing && !allPassed) {
+                outcomes.set(i, new ReservationOutcome(ReservationOutcome.Status.ABORTED)
+                    .setTable(new Table(reservation.getTableNumber(), true)));
+                continue;
+            }
+            //Nothing else may write in the meantime, so this only fails if the snapshot was wrong.
+            if (claimTable(reservation.getTableNumber()) == 0) {
+                throw new IllegalStateException("Table " + reservation.getTableNumber()
+                    + " was no longer available by the time it was to be reserved.");
+            }
+            outcomes.get(i).setReservation(place(reservation));
+        }
+        return outcomes;
+    }
+
+    //Tells how reserving would go for the given pair, reserving nothing yet (RESERVED means it would go through).
+    private static ReservationOutcome check(Reservation reservation, Set<String> customersFound,
+                                            Map<Integer, Table> tables, Map<String, List<Table>> tablesHeld) {
+        if (!customersFound.contains(reservation.getCustomerId())) {
+            return new ReservationOutcome(ReservationOutcome.Status.CUSTOMER_NOT_FOUND);
+        }
+        List<Table> tablesHeldByCustomer = tablesHeld.get(reservation.getCustomerId());
+        if (tablesHeldByCustomer != null && !tablesHeldByCustomer.isEmpty()) {
+            for (Table table : tablesHeldByCustomer) {
+                if (table.getNumber() == reservation.getTableNumber()) {
+                    return new ReservationOutcome(ReservationOutcome.Status.RESERVATION_IN_PLACE)
+                        .setTable(table).setTablesHeld(new ArrayList<>(tablesHeldByCustomer));
+                }
+            }
+            return new ReservationOutcome(ReservationOutcome.Status.CUSTOMER_BUSY)
+                .setTablesHeld(new ArrayList<>(tablesHeldByCustomer));
+        }
+        Table table = tables.get(reservation.getTableNumber());
+        if (table == null) {
+            return new ReservationOutcome(ReservationOutcome.Status.TABLE_NOT_FOUND);
+        }
+        if (!table.isAvailable()) {
+            return new ReservationOutcome(ReservationOutcome.Status.TABLE_UNAVAILABLE).setTable(table);
+        }
+        return new ReservationOutcome(ReservationOutcome.Status.RESERVED)
+            .setTable(new Table(table.getNumber(), false));
+    }
+
+    private static List<Table> getTablesHeld(Map<String, List<Table>> tablesHeld, String customerId) {
+        List<Table> tablesHeldByCustomer = tablesHeld.get(customerId);
+        if (tablesHeldByCustomer == null) {
+            tablesHeldByCustomer = new ArrayList<>();
+            tablesHeld.put(customerId, tablesHeldByCustomer);
+        }
+        return tablesHeldByCustomer;
+    }
+
+    //Makes the reservation of a table already claimed, replacing whatever the customer held before.
+    private Reservation place(Reservation reservation) {
+        deleteAllForCustomer(reservation.getCustomerId());
+        insert(reservation);
+        //The server only hears of it later on, once the outbox gets uploaded.
+        enqueueMutation(new ReservationMutation(reservation));
+        return reservation;
+    }
+
+    @Query("SELECT * FROM customer WHERE id = :customerId LIMIT 1")
+    public abstract Customer findCustomer(String customerId);
+
+    @Query("SELECT id FROM customer WHERE id IN(:customerIds)")
+    public abstract List<String> findCustomerIds(List<String> customerIds);
+
+    @Query("SELECT * FROM reservation WHERE customerId IN(:customerIds)")
+    public abstract List<Reservation> findAllForCustomers(List<String> customerIds);
+
+    @Query("SELECT * FROM stand WHERE number IN(:numbers)")
+    public abstract List<Table> findTables(List<Integer> numbers);
 
-    @SuppressWarnings(RoomWarnings.CURSOR_MISMATCH)
-    @Query("SELECT * FROM stand INNER JOIN reservation "
-        + "ON stand.number=reservation.tableNumber "
-        + "WHERE reservation.customerId=:customerId")
-    Single<List<Table>> findTablesForGivenCustomer(String customerId);
+    @Query("UPDATE stand SET available = 0 WHERE number = :number AND available = 1")
+    public abstract int claimTable(int number);
 
-    @Query("DELETE FROM reservation WHERE customerId LIKE :customerId")
-    void deleteAllForCustomer(String customerId);
+    @Query("SELECT * FROM stand WHERE number = :number LIMIT 1")
+    public abstract Table findTable(int number);
 
     @Insert(onConflict = OnConflictStrategy.REPLACE)
-    void insert(Reservation reservation);
+    public abstract void enqueueMutation(ReservationMutation mutation);
 
-    @Query("DELETE FROM customer WHERE id NOT IN(SELECT reservation.customerId FROM reservation)")
-    void deleteUnusedCustomers();
+    @Query(FIND_TABLES_FOR_GIVEN_CUSTOMER)
+    public abstract List<Table> findTablesForGivenCustomer(String customerId);
 
-    @Query("DELETE FROM stand WHERE number NOT IN(SELECT reservation.tableNumber FROM reservation)")
-    void deleteUnusedTables();
+    @Query(DELETE_ALL_FOR_CUSTOMER)
+    public abstract void deleteAllForCustomer(String customerId);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    public abstract void insert(Reservation reservation);
+
+    @Query(DELETE_UNUSED_CUSTOMERS)
+    public abstract void deleteUnusedCustomers();
+
+    @Query(DELETE_UNUSED_CUSTOMERS_BY_ID)
+    //Tells how many customers were actually deleted, i.e. those given that weren't tied to reservations.
+    public abstract int deleteUnusedCustomers(List<String> customerIds);
+
+    @Query(DELETE_UNUSED_TABLES)
+    public abstract void deleteUnusedTables();
+
+    @Query(DELETE_UNUSED_TABLES_BY_NUMBER)
+    //Tells how many tables were actually deleted, i.e. those given that weren't tied to reservations.
+    public abstract int deleteUnusedTables(List<Integer> tableNumbers);
+
+    @Query("SELECT DISTINCT tableNumber FROM reservation")
+    public abstract List<Integer> findReservedTableNumbers();
+
+    //Tables held by a local reservation keep their availability, as the server may not be aware of them.
+    @Query(UPDATE_UNRESERVED_TABLE_AVAILABILITY)
+    public abstract int updateUnreservedTableAvailability(int number, boolean available);
 
     @Query("DELETE FROM reservation")
-    void deleteAll();
+    public abstract void deleteAll();
+
+    //Oldest first, so that batches of expired reservations eventually go through all of them.
+    @Query(FIND_EXPIRED)
+    public abstract List<Reservation> findExpired(long now, int limit);
+
+    @Delete
+    public abstract void delete(List<Reservation> reservations);
+
+    @Query("SELECT * FROM reservation ORDER BY expiresAt")
+    public abstract List<Reservation> findAllByExpiration();
+
+    //Reservations renewed (i.e. replaced with a later expiration) in the meantime are kept.
+    @Query("DELETE FROM reservation WHERE customerId = :customerId "
+        + "AND tableNumber = :tableNumber AND expiresAt <= :now")
+    public abstract int deleteIfExpired(String customerId, int tableNumber, long now);
+
+    @Query(RELEASE_UNRESERVED_TABLES)
+    public abstract int releaseUnreservedTables(List<Integer> numbers);
 
 }
@@ -0,0 +1,159 @@
+package com.github.guilhermesgb.steward.mvi.reservation.schema;
+
+import android.arch.persistence.room.Entity;
+import android.arch.persistence.room.Ignore;
+import android.arch.persistence.room.Index;
+import android.arch.persistence.room.PrimaryKey;
+import android.support.annotation.NonNull;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.UUID;
+
+import static com.github.guilhermesgb.steward.utils.JsonUtils.nextOptionalInt;
+import static com.github.guilhermesgb.steward.utils.JsonUtils.nextOptionalString;
+
+//A reservation made locally which the server has yet to hear about, waiting in the outbox
+// to be uploaded. Each customer has a single pending mutation at most, as a newer one for
+// the same customer supersedes (replaces) whatever was still pending for them.
+@Entity(
+    tableName = "reservation_outbox",
+    indices = {@Index(value = "customerId", unique = true)}
+)
+public class ReservationMutation {
+
+    @PrimaryKey(autoGenerate = true) private long id;
+    //Sent along with the mutation, so the server applies it only once however many times it's uploaded.
+    @NonNull private final String idempotencyKey;
+    @NonNull private final String customerId;
+    private final int tableNumber;
+    private final String expirationDate;
+    private final long createdAt; //In milliseconds since the epoch.
+    //Set aside once the server rejected it for good, no longer uploaded but still pending as far
+    // as trusting the server goes, for the server never heard of this reservation.
+    private boolean rejected;
+
+    public ReservationMutation(long id, @NonNull String idempotencyKey, @NonNull String customerId,
+                               int tableNumber, String expirationDate, long createdAt) {
+        this.id = id;
+        this.idempotencyKey = idempotencyKey;
+        this.customerId = customerId;
+        this.tableNumber = tableNumber;
+        this.expirationDate = expirationDate;
+        this.createdAt = createdAt;
+    }
+
+    @Ignore
+    public ReservationMutation(Reservation reservation) {
+        this(0, UUID.randomUUID().toString(), reservation.getCustomerId(),
+            reservation.getTableNumber(), reservation.getExpirationDate(), System.currentTimeMillis());
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    @NonNull
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    @NonNull
+    public String getCustomerId() {
+        return customerId;
+    }
+
+    public int getTableNumber() {
+        return tableNumber;
+    }
+
+    public String getExpirationDate() {
+        return expirationDate;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public boolean isRejected() {
+        return rejected;
+    }
+
+    public void setRejected(boolean rejected) {
+        this.rejected = rejected;
+    }
+
+    public static ReservationMutation readFrom(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        String idempotencyKey = null, customerId = null, expirationDate = null;
+        int tableNumber = -1;
+        long createdAt = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "idempotency_key":
+                    idempotencyKey = nextOptionalString(reader);
+                    break;
+                case "customer_id":
+                    customerId = nextOptionalString(reader);
+                    break;
+                case "table_number":
+                    tableNumber = nextOptionalInt(reader);
+                    break;
+                case "expiration_date":
+                    expirationDate = nextOptionalString(reader);
+                    break;
+                case "created_at":
+                    createdAt = reader.nextLong();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        //noinspection ConstantConditions
+        return new ReservationMutation(0, idempotencyKey, customerId, tableNumber, expirationDate, createdAt);
+    }
+
+    public static void writeTo(JsonWriter writer, ReservationMutation mutation) throws IOException {
+        if (mutation == null) {
+            writer.nullValue();
+            return;
+        }
+        writer.beginObject();
+        writer.name("idempotency_key").value(mutation.idempotencyKey);
+        writer.name("customer_id").value(mutation.customerId);
+        writer.name("table_number").value(mutation.tableNumber);
+        writer.name("expiration_date").value(mutation.expirationDate);
+        writer.name("created_at").value(mutation.createdAt);
+        writer.endObject();
+    }
+
+    @Override
+    public String toString() {
+        return "ReservationMutation{id=" + id + ", idempotencyKey=" + idempotencyKey + ", customerId="
+            + customerId + ", tableNumber=" + tableNumber + ", expirationDate=" + expirationDate
+            + ", rejected=" + rejected + "}";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ReservationMutation that = (ReservationMutation) o;
+        return id == that.id && idempotencyKey.equals(that.idempotencyKey);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(new Object[] { id, idempotencyKey });
+    }
+
+}
@@ -0,0 +1,39 @@
+package com.github.guilhermesgb.steward.mvi.reservation.schema;
+
+import android.arch.persistence.room.Dao;
+import android.arch.persistence.room.Insert;
+import android.arch.persistence.room.OnConflictStrategy;
+import android.arch.persistence.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface ReservationOutboxDao {
+
+    //Replacing is what coalesces superseded mutations (see ReservationMutation).
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void enqueue(ReservationMutation mutation);
+
+    //Rejected mutations are no longer uploaded (see reject).
+    @Query("SELECT * FROM reservation_outbox WHERE rejected = 0 ORDER BY id LIMIT :limit")
+    List<ReservationMutation> peek(int limit);
+
+    //Mutations superseded while being uploaded are left pending, as their replacements got new ids.
+    @Query("DELETE FROM reservation_outbox WHERE id IN(:ids)")
+    void remove(List<Long> ids);
+
+    //Mutations the server rejected for good stay, so that they still count as pending (see count).
+    @Query("UPDATE reservation_outbox SET rejected = 1 WHERE id IN(:ids)")
+    void reject(List<Long> ids);
+
+    //Once the rejected reservation is no longer held locally, there's nothing left for it to protect.
+    @Query("DELETE FROM reservation_outbox WHERE rejected = 1 AND NOT EXISTS"
+        + "(SELECT 1 FROM reservation WHERE reservation.customerId = reservation_outbox.customerId "
+        + "AND reservation.tableNumber = reservation_outbox.tableNumber)")
+    int removeRejectedWithoutReservation();
+
+    //Rejected mutations included, as the server isn't aware of those reservations either.
+    @Query("SELECT COUNT(*) FROM reservation_outbox")
+    int count();
+
+}
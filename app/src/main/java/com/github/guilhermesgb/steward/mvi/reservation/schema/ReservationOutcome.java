@@ -0,0 +1,69 @@
+package com.github.guilhermesgb.steward.mvi.reservation.schema;
+
+import com.github.guilhermesgb.steward.mvi.table.schema.Table;
+
+import java.util.List;
+
+/**
+ * What came out of attempting to reserve a table (see ReservationDao.reserve and reserveAll).
+ */
+public class ReservationOutcome {
+
+    public enum Status {
+        RESERVED,
+        CUSTOMER_NOT_FOUND,
+        RESERVATION_IN_PLACE,
+        CUSTOMER_BUSY,
+        TABLE_NOT_FOUND,
+        TABLE_UNAVAILABLE,
+        //Would have been reserved, were it not for others in the same all-or-nothing batch failing.
+        ABORTED
+    }
+
+    private final Status status;
+    private Reservation reservation; //The reservation made, if any.
+    private Table table; //The table as it stands after the attempt, if found.
+    private List<Table> tablesHeld; //The tables already held by the customer, if any.
+
+    public ReservationOutcome(Status status) {
+        this.status = status;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public Reservation getReservation() {
+        return reservation;
+    }
+
+    ReservationOutcome setReservation(Reservation reservation) {
+        this.reservation = reservation;
+        return this;
+    }
+
+    public Table getTable() {
+        return table;
+    }
+
+    ReservationOutcome setTable(Table table) {
+        this.table = table;
+        return this;
+    }
+
+    public List<Table> getTablesHeld() {
+        return tablesHeld;
+    }
+
+    ReservationOutcome setTablesHeld(List<Table> tablesHeld) {
+        this.tablesHeld = tablesHeld;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "ReservationOutcome{status=" + status + ", reservation=" + reservation
+            + ", table=" + table + ", tablesHeld=" + tablesHeld + "}";
+    }
+
+}
@@ -2,41 +2,154 @@ package com.github.guilhermesgb.steward.mvi.table;
 
 import android.content.Context;
 
+import com.github.guilhermesgb.steward.BuildConfig;
+import com.github.guilhermesgb.steward.database.SyncDiff;
+import com.github.guilhermesgb.steward.database.SyncReport;
 import com.github.guilhermesgb.steward.mvi.table.intent.FetchTablesAction;
 import com.github.guilhermesgb.steward.mvi.table.model.FetchTablesViewState;
 import com.github.guilhermesgb.steward.mvi.table.schema.Table;
 import com.github.guilhermesgb.steward.mvi.table.schema.Tables;
+import com.github.guilhermesgb.steward.network.Backoff;
+import com.github.guilhermesgb.steward.network.CacheOutcome;
+import com.github.guilhermesgb.steward.network.ServerSentEvent;
+import com.github.guilhermesgb.steward.network.ServerSentEventReader;
 import com.github.guilhermesgb.steward.utils.UseCase;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.ObservableOnSubscribe;
 import io.reactivex.ObservableSource;
 import io.reactivex.functions.BiFunction;
+import io.reactivex.functions.Cancellable;
 import io.reactivex.functions.Consumer;
 import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
+import okhttp3.ResponseBody;
+import retrofit2.HttpException;
+import retrofit2.Response;
 import timber.log.Timber;
 
 public class FetchTablesUseCase extends UseCase {
 
+    static final String SYNC_RESOURCE = "table";
+    static final String TABLE_AVAILABILITY_EVENT = "availability";
+    private static final String TABLE_TABLE = "stand";
+    private static final long RECONNECT_BASE_DELAY_IN_MILLIS = 1000;
+    private static final long RECONNECT_MAX_DELAY_IN_MILLIS = 30000;
+    //Keeps every statement well below SQLite's limit of bound variables (999).
+    private static final int MAX_NUMBERS_PER_STATEMENT = 500;
+
+    private boolean followingTableChanges = false;
+    private boolean trustingServerWhenInSync = false;
+    private TableAvailabilityIndex availabilityIndex;
+    private boolean writingDiffsOnly = false;
+    private boolean observingLocalChanges = false;
+    private volatile SyncReport lastSyncReport;
+    //Id of the last availability change applied, which is where reconnections resume from.
+    private volatile String lastTableEventId;
+    //How long to wait before reconnecting, as last asked for by the server (if ever).
+    private volatile long reconnectDelayHintInMillis = -1;
+
     public FetchTablesUseCase(String apiBaseUrl, Context context) {
         super(apiBaseUrl, context);
     }
 
+    /**
+     * Enables (or disables) following the table availability changes pushed by the server once
+     * the table map is fetched, in which case doFetchTables no longer completes: every change is
+     * applied to the local tables as it comes in, a SuccessFetchingTables state being emitted
+     * after each one, and dropped connections are resumed from the last change applied.
+     * Changes made locally meanwhile (i.e. published to the TableAvailabilityBus) are followed too.
+     * @param followingTableChanges whether table availability changes should be followed.
+     */
+    public void setFollowingTableChanges(boolean followingTableChanges) {
+        this.followingTableChanges = followingTableChanges;
+    }
+
+    /**
+     * Enables (or disables) taking remote tables as they are whenever the server is aware of every
+     * reservation made locally, i.e. whenever the reservation outbox is empty, mutations the server
+     * rejected included (see SyncReservationsUseCase). Otherwise local tables are always favoured over
+     * remote ones, as they may hold reservations the server has yet to hear about. Either way, tables
+     * held by a local reservation keep their availability, since the table map fetched may well be
+     * older than the reservation (e.g. fetched while the reservation was still being uploaded).
+     * @param trustingServerWhenInSync whether remote tables should be trusted while in sync.
+     */
+    public void setTrustingServerWhenInSync(boolean trustingServerWhenInSync) {
+        this.trustingServerWhenInSync = trustingServerWhenInSync;
+    }
+
+    /**
+     * Sets the index kept in sync with every table read from or written to the local database here,
+     * whose counts of free and occupied tables then come along with every SuccessFetchingTables state.
+     * @param availabilityIndex the index to keep in sync, or null for none.
+     */
+    public void setAvailabilityIndex(TableAvailabilityIndex availabilityIndex) {
+        this.availabilityIndex = availabilityIndex;
+    }
+
+    /**
+     * Enables (or disables) writing only what differs whenever tables are persisted: rather than
+     * deleting every table and inserting them all over again, tables are told apart from local
+     * ones by number (see SyncDiff), new ones being inserted, changed ones updated in place and
+     * missing ones deleted, so that tables which didn't change at all are compared, but not written.
+     * @param writingDiffsOnly whether only the tables that differ should be written.
+     */
+    public void setWritingDiffsOnly(boolean writingDiffsOnly) {
+        this.writingDiffsOnly = writingDiffsOnly;
+    }
+
+    /**
+     * Enables (or disables) observing the local tables once fetched, in which case doFetchTables
+     * no longer completes: whenever tables get written to the local database, no matter where from
+     * (e.g. reservations being confirmed, the cleanup worker), they're read again and a
+     * SuccessFetchingTables state emitted, bursts of writes being read again only once
+     * (see UseCase.localChanges). Works alongside following table changes, if enabled.
+     * @param observingLocalChanges whether local tables should be observed.
+     */
+    public void setObservingLocalChanges(boolean observingLocalChanges) {
+        this.observingLocalChanges = observingLocalChanges;
+    }
+
+    //How many rows the last time tables got persisted wrote, if ever.
+    public SyncReport getLastSyncReport() {
+        return lastSyncReport;
+    }
+
     public Observable<FetchTablesViewState> doFetchTables(final FetchTablesAction action) {
-        Observable<FetchTablesViewState> fetchRemoteTables
-            = mapListOfTablesToStates(action, getApi().fetchTables()
-                .map(new Function<Tables, List<Table>>() {
-                    @Override
-                    public List<Table> apply(Tables tables) {
-                        return tables.getTables();
-                    }
-                }).toObservable(), false);
+        final Observable<FetchTablesViewState> syncRemoteTables
+            = mapResponseOfTablesToStates(action, getApi().fetchTables().toObservable());
+        Observable<FetchTablesViewState> fetchRemoteTables = Observable
+            .defer(new Callable<ObservableSource<FetchTablesViewState>>() {
+                @Override
+                public ObservableSource<FetchTablesViewState> call() {
+                    //Recently synced tables (e.g. by cache warming) are served from the database alone.
+                    return isFresh(SYNC_RESOURCE) ? Observable.<FetchTablesViewState>empty()
+                        : syncRemoteTables;
+                }
+            });
 
         final Observable<FetchTablesViewState> fetchLocalTables = mapListOfTablesToStates
-            (action, getDatabase().tableDao().findAll().toObservable(), true);
+            (action, getDatabase().tableDao().findAll().toObservable()
+                .doOnNext(new Consumer<List<Table>>() {
+                    @Override
+                    public void accept(List<Table> tables) {
+                        indexLocalTables(tables);
+                    }
+                }), true);
 
         return Observable.combineLatest(fetchLocalTables, fetchRemoteTables.cache(),
             new BiFunction<FetchTablesViewState, FetchTablesViewState, FetchTablesViewState>() {
@@ -49,44 +162,32 @@ public class FetchTablesUseCase extends UseCase {
                                 @Override
                                 public FetchTablesViewState apply(FetchTablesViewState.SuccessFetchingTables success) {
                                     //In case we have remote tables, we merge the remote state with our local tables,
-                                    // prioritizing whatever happened locally since the server is not updated with
-                                    // our local work and we don't want to lose it.
-                                    //This merge process will be as follows: any new tables will be appended to the set,
-                                    // but if we are given less tables than what we currently have locally,
-                                    // we keep the local tables nonetheless.
-                                    List<Table> remoteTables = success.getTables();
-                                    if (remoteTables.size() > localTables.size()) {
-                                        List<Table> mergedTables = new LinkedList<>();
-                                        for (int i=0; i<remoteTables.size(); i++) {
-                                            if (i < localTables.size()) {
-                                                mergedTables.add(localTables.get(i));
-                                            } else {
-                                                mergedTables.add(remoteTables.get(i));
-                                            }
-                                        }
-                                        success = new FetchTablesViewState
-                                            .SuccessFetchingTables(action, mergedTables);
-                                    } else {
-                                        success = success.setTables(localTables);
+                                    // prioritizing whatever happened locally unless the server is aware of it all
+                                    // (see mergeTables below).
+                                    CacheOutcome cacheOutcome = success.getCacheOutcome();
+                                    boolean trustingServer = isTrustingServer();
+                                    success = new FetchTablesViewState.SuccessFetchingTables(action,
+                                        mergeTables(localTables, success.getTables(), trustingServer))
+                                            .setCacheOutcome(cacheOutcome)
+                                            .setCircuitState(getCircuitBreaker().getState());
+                                    if (cacheOutcome.isUnchanged() && !localTables.isEmpty() && !trustingServer) {
+                                        //The server told us this is the very table map we merged last time,
+                                        // so the merged state above is exactly what we have persisted already.
+                                        return success;
                                     }
                                     //Persisting merged state in the local database.
-                                    try {
-                                        getDatabase().beginTransaction();
-                                        getDatabase().reservationDao().deleteUnusedTables();
-                                        getDatabase().tableDao().insertAll(success.getTables());
-                                        getDatabase().setTransactionSuccessful();
-                                    } finally {
-                                        getDatabase().endTransaction();
-                                    }
+                                    persistTables(success.getTables());
                                     return success;
                                 }
                             },
                             new Function<FetchTablesViewState.ErrorFetchingTables, FetchTablesViewState>() {
                                 @Override
                                 public FetchTablesViewState apply(FetchTablesViewState.ErrorFetchingTables error) {
-                                    //In case we can't fetch remote tables, we merge the remote error state with our local tables.
+                                    //In case we can't fetch remote tables, we merge the remote error state with our local tables,
+                                    // also telling whether the circuit breaker kept the call from going out.
                                     return new FetchTablesViewState.ErrorFetchingTables
-                                        (action, error.getThrowable()).setCachedTables(localTables);
+                                        (action, error.getThrowable()).setCachedTables(localTables)
+                                        .setCircuitState(getCircuitBreaker().getState());
                                 }
                             }
                         );
@@ -127,8 +228,30 @@ public class FetchTablesUseCase extends UseCase {
                     //So the resulting stream below will return local table states as soon as possible
                     // and then rely remote table states merged with local table states to simulate
                     // a caching effect in case of network errors preventing retrieval of remote state.
-                    operations.add(fetchRemoteTables);
+                    //Once that is done, changes pushed by the server may be followed from then on,
+                    // and local tables observed as well.
+                    List<Observable<FetchTablesViewState>> changes = new LinkedList<>();
+                    if (followingTableChanges) {
+                        changes.add(followTableChanges(action));
+                    }
+                    if (observingLocalChanges) {
+                        changes.add(observeLocalTables(action));
+                    }
+                    operations.add(changes.isEmpty() ? fetchRemoteTables
+                        : fetchRemoteTables.concatWith(Observable.merge(changes)
+                            .map(new Function<FetchTablesViewState, FetchTablesViewState>() {
+                                @Override
+                                public FetchTablesViewState apply(FetchTablesViewState state) {
+                                    return ((FetchTablesViewState.SuccessFetchingTables) state).setUpdate(true);
+                                }
+                            })));
                     return Observable.concatEager(operations)
+                        .map(new Function<FetchTablesViewState, FetchTablesViewState>() {
+                            @Override
+                            public FetchTablesViewState apply(FetchTablesViewState state) {
+                                return withAvailabilityCounts(state);
+                            }
+                        })
                         .startWith(new FetchTablesViewState.FetchingTables(action))
                         .doOnNext(new Consumer<FetchTablesViewState>() {
                             @Override
@@ -146,10 +269,9 @@ public class FetchTablesUseCase extends UseCase {
                                     = (FetchTablesViewState.ErrorFetchingTables) state;
                                 FetchTablesViewState.Initial initial
                                     = new FetchTablesViewState.Initial(error.getCachedTables());
-                                // Whenever an error occurs, we want to follow up with the initial state again after a 5 seconds.
-                                // That's achieved with the combination of zip and take operations below.
-                                return Observable.zip(Observable.interval(5, !isBeingTested() ? TimeUnit.SECONDS
-                                        : TimeUnit.MILLISECONDS).take(2), Observable.fromArray(error, initial),
+                                // Whenever an error occurs, we want to follow up with the initial state again after a while
+                                // (at least 5 seconds, longer while the circuit is open). That's achieved by zipping below.
+                                return Observable.zip(errorBounceTicks(), Observable.fromArray(error, initial),
                                     new BiFunction<Long, FetchTablesViewState, FetchTablesViewState>() {
                                         @Override
                                         public FetchTablesViewState apply(Long ignore, FetchTablesViewState state) {
@@ -162,6 +284,366 @@ public class FetchTablesUseCase extends UseCase {
             });
     }
 
+    private Observable<FetchTablesViewState> followTableChanges(final FetchTablesAction action) {
+        final Backoff reconnectBackoff = new Backoff(RECONNECT_BASE_DELAY_IN_MILLIS,
+            RECONNECT_MAX_DELAY_IN_MILLIS, TimeUnit.MILLISECONDS);
+        final AtomicInteger reconnectAttempts = new AtomicInteger();
+        //Shared by changes pushed by the server and changes made locally (see TableAvailabilityBus).
+        final List<Table> tables = new ArrayList<>();
+        Observable<FetchTablesViewState> serverChanges = Observable
+            .defer(new Callable<ObservableSource<FetchTablesViewState>>() {
+                @Override
+                public ObservableSource<FetchTablesViewState> call() {
+                    //Changes are applied on top of the tables persisted so far, reread on every
+                    // (re)connection so that nothing written in between is overridden by stale tables.
+                    List<Table> persistedTables = getDatabase().tableDao().findAll().blockingGet();
+                    synchronized (tables) {
+                        tables.clear();
+                        tables.addAll(persistedTables);
+                    }
+                    return streamTableEvents()
+                        .concatMap(new Function<ServerSentEvent, ObservableSource<FetchTablesViewState>>() {
+                            @Override
+                            public ObservableSource<FetchTablesViewState> apply(ServerSentEvent event) {
+                                reconnectAttempts.set(0);
+                                Table change = parseTableChange(event);
+                                boolean applied = change != null && applyTableChange(change, tables);
+                                lastTableEventId = event.getId();
+                                if (!applied) {
+                                    return Observable.empty();
+                                }
+                                return Observable.just(newSuccessFetchingTables(action, tables));
+                            }
+                        });
+                }
+            })
+            .retryWhen(new Function<Observable<Throwable>, ObservableSource<Long>>() {
+                @Override
+                public ObservableSource<Long> apply(Observable<Throwable> errors) {
+                    return errors.flatMap(new Function<Throwable, ObservableSource<Long>>() {
+                        @Override
+                        public ObservableSource<Long> apply(Throwable throwable) {
+                            //Dropped connections and unavailable servers are reconnected to, but
+                            // servers which won't stream changes at all are simply no longer followed.
+                            if (!(throwable instanceof IOException || (throwable instanceof HttpException
+                                    && ((HttpException) throwable).code() >= 500))) {
+                                return Observable.error(throwable);
+                            }
+                            long delayInMillis = Math.max(reconnectDelayHintInMillis,
+                                Math.max(reconnectBackoff.delayFor(reconnectAttempts.incrementAndGet()),
+                                    getCircuitBreaker().getRemainingOpenMillis()));
+                            Timber.d("Reconnecting to table changes in %dms (%s).",
+                                delayInMillis, throwable.getMessage());
+                            //When being tested, the very same delay goes by a thousand times faster.
+                            return Observable.timer(delayInMillis, !isBeingTested()
+                                ? TimeUnit.MILLISECONDS : TimeUnit.MICROSECONDS);
+                        }
+                    });
+                }
+            })
+            .onErrorResumeNext(new Function<Throwable, ObservableSource<FetchTablesViewState>>() {
+                @Override
+                public ObservableSource<FetchTablesViewState> apply(Throwable throwable) {
+                    Timber.w(throwable, "No longer following table changes.");
+                    return Observable.empty();
+                }
+            });
+        //Local changes are already persisted by then, so they need only be reflected here.
+        Observable<FetchTablesViewState> localChanges = TableAvailabilityBus.changes()
+            .map(new Function<Table, FetchTablesViewState>() {
+                @Override
+                public FetchTablesViewState apply(Table change) {
+                    replaceTable(change, tables);
+                    return newSuccessFetchingTables(action, tables);
+                }
+            });
+        //The stream of server changes blocks whichever thread subscribes to it for as long as the
+        // connection lasts, so it gets a thread of its own, local changes being subscribed to first.
+        return Observable.merge(localChanges, serverChanges.subscribeOn(Schedulers.io()));
+    }
+
+    //Counts are read off the index as they are, so they're only there once it is loaded.
+    private FetchTablesViewState withAvailabilityCounts(FetchTablesViewState state) {
+        TableAvailabilityIndex availabilityIndex = this.availabilityIndex;
+        if (availabilityIndex == null || !(state instanceof FetchTablesViewState.SuccessFetchingTables)) {
+            return state;
+        }
+        return ((FetchTablesViewState.SuccessFetchingTables) state).setAvailabilityCounts
+            (availabilityIndex.getAvailableCount(), availabilityIndex.getOccupiedCount());
+    }
+
+    //Debug builds check that nothing wrote to the tables behind the index's back before reloading it.
+    private void indexLocalTables(List<Table> tables) {
+        TableAvailabilityIndex availabilityIndex = this.availabilityIndex;
+        if (availabilityIndex == null) {
+            return;
+        }
+        if (BuildConfig.DEBUG && availabilityIndex.isLoaded() && !availabilityIndex.matches(tables)) {
+            Timber.wtf("WTF? Table availability index drifted apart from the local tables: %s.", tables);
+        }
+        availabilityIndex.load(tables);
+    }
+
+    private Observable<FetchTablesViewState> observeLocalTables(final FetchTablesAction action) {
+        return localChanges(TABLE_TABLE)
+            .concatMap(new Function<Object, ObservableSource<FetchTablesViewState>>() {
+                @Override
+                public ObservableSource<FetchTablesViewState> apply(Object ignore) {
+                    return getDatabase().tableDao().findAll().toObservable()
+                        .map(new Function<List<Table>, FetchTablesViewState>() {
+                            @Override
+                            public FetchTablesViewState apply(List<Table> tables) {
+                                indexLocalTables(tables);
+                                return new FetchTablesViewState.SuccessFetchingTables(action, tables)
+                                    .setCircuitState(getCircuitBreaker().getState());
+                            }
+                        })
+                        .onErrorResumeNext(new Function<Throwable, ObservableSource<FetchTablesViewState>>() {
+                            @Override
+                            public ObservableSource<FetchTablesViewState> apply(Throwable throwable) {
+                                //The tables shown last are kept until the next change reads fine.
+                                Timber.w(throwable, "Couldn't read local tables again.");
+                                return Observable.empty();
+                            }
+                        });
+                }
+            });
+    }
+
+    private FetchTablesViewState newSuccessFetchingTables(FetchTablesAction action, List<Table> tables) {
+        synchronized (tables) {
+            return new FetchTablesViewState.SuccessFetchingTables(action, new ArrayList<>(tables))
+                .setCircuitState(getCircuitBreaker().getState());
+        }
+    }
+
+    //Emits events for as long as the connection lasts, failing once it is over so as to be resumed.
+    private Observable<ServerSentEvent> streamTableEvents() {
+        final String lastEventId = lastTableEventId;
+        return getApi().streamTableAvailability(lastEventId).toObservable()
+            .flatMap(new Function<Response<ResponseBody>, ObservableSource<ServerSentEvent>>() {
+                @Override
+                public ObservableSource<ServerSentEvent> apply(final Response<ResponseBody> response) {
+                    if (!response.isSuccessful()) {
+                        throw new HttpException(response);
+                    }
+                    return Observable.create(new ObservableOnSubscribe<ServerSentEvent>() {
+                        @Override
+                        public void subscribe(ObservableEmitter<ServerSentEvent> emitter) {
+                            //noinspection ConstantConditions
+                            final ResponseBody body = response.body();
+                            //Closing the body is what unblocks the read below once no longer followed.
+                            emitter.setCancellable(new Cancellable() {
+                                @Override
+                                public void cancel() {
+                                    body.close();
+                                }
+                            });
+                            ServerSentEventReader reader = new ServerSentEventReader(body.source(), lastEventId);
+                            IOException failure;
+                            try {
+                                ServerSentEvent event;
+                                while (!emitter.isDisposed() && (event = reader.next()) != null) {
+                                    emitter.onNext(event);
+                                }
+                                failure = new EOFException("Table changes stream ended.");
+                            } catch (IOException exception) {
+                                failure = exception;
+                            }
+                            if (!emitter.isDisposed()) {
+                                //Every event read so far got applied, so resuming past them all is safe.
+                                lastTableEventId = reader.getLastEventId();
+                                reconnectDelayHintInMillis = reader.getRetryInMillis();
+                                emitter.onError(failure);
+                            }
+                        }
+                    });
+                }
+            });
+    }
+
+    private static Table parseTableChange(ServerSentEvent event) {
+        if (!TABLE_AVAILABILITY_EVENT.equals(event.getType())) {
+            return null;
+        }
+        try {
+            return Table.dejsonizeFrom(new JsonParser().parse(event.getData()).getAsJsonObject());
+        } catch (JsonParseException | IllegalStateException exception) {
+            Timber.w(exception, "Skipping malformed table change: %s.", event);
+            return null;
+        }
+    }
+
+    //New tables are simply added, whereas known tables only change when not reserved locally.
+    private boolean applyTableChange(Table change, List<Table> tables) {
+        boolean applied = getDatabase().tableDao().insertIfAbsent(change) != -1
+            || getDatabase().reservationDao().updateUnreservedTableAvailability
+                (change.getNumber(), change.isAvailable()) > 0;
+        if (!applied) {
+            return false;
+        }
+        replaceTable(change, tables);
+        if (availabilityIndex != null) {
+            availabilityIndex.update(change.getNumber(), change.isAvailable());
+        }
+        return true;
+    }
+
+    private static void replaceTable(Table change, List<Table> tables) {
+        synchronized (tables) {
+            for (int i=0; i<tables.size(); i++) {
+                if (tables.get(i).getNumber() == change.getNumber()) {
+                    tables.set(i, change);
+                    return;
+                }
+            }
+            tables.add(change);
+        }
+    }
+
+    /**
+     * Runs the remote half of doFetchTables alone: remote tables are fetched, merged with local
+     * tables and persisted without emitting any states, and the time of this sync is recorded,
+     * so that foreground fetches within the freshness threshold may be served from the database
+     * alone. Blocks until done, being meant for background work.
+     * @return whether the local tables are now up to date with the remote ones.
+     */
+    public boolean refreshLocalTables() {
+        Response<Tables> response = getApi().fetchTables().blockingGet();
+        if (!response.isSuccessful()) {
+            Timber.w("Couldn't refresh local tables: %s.", new HttpException(response).getMessage());
+            return false;
+        }
+        List<Table> localTables = getDatabase().tableDao().findAll().blockingGet();
+        //noinspection ConstantConditions
+        persistTables(mergeTables(localTables, response.body().getTables(), isTrustingServer()));
+        markSynced(SYNC_RESOURCE);
+        return true;
+    }
+
+    //Once the server is aware of all our local work (i.e. reservations), its tables are taken as they are
+    // (though tables held by reservations keep their availability once persisted, see persistTables).
+    // Otherwise, any new tables get appended to the local ones, but if we are given less tables than
+    // what we currently have locally, we keep the local tables nonetheless: the server is not
+    // updated with our local work and we don't want to lose it.
+    private static List<Table> mergeTables(List<Table> localTables, List<Table> remoteTables,
+                                           boolean trustingServer) {
+        if (trustingServer) {
+            return remoteTables;
+        }
+        if (remoteTables.size() <= localTables.size()) {
+            return localTables;
+        }
+        List<Table> mergedTables = new LinkedList<>();
+        for (int i=0; i<remoteTables.size(); i++) {
+            if (i < localTables.size()) {
+                mergedTables.add(localTables.get(i));
+            } else {
+                mergedTables.add(remoteTables.get(i));
+            }
+        }
+        return mergedTables;
+    }
+
+    private boolean isTrustingServer() {
+        return trustingServerWhenInSync && getDatabase().reservationOutboxDao().count() == 0;
+    }
+
+    private void persistTables(List<Table> tables) {
+        if (writingDiffsOnly) {
+            persistTableDiff(tables);
+        } else {
+            try {
+                getDatabase().beginTransaction();
+                getDatabase().reservationDao().deleteUnusedTables();
+                //Only tables held by reservations are left, and those are kept as they are.
+                getDatabase().tableDao().insertAll(withoutReservedTables(tables));
+                getDatabase().setTransactionSuccessful();
+            } finally {
+                getDatabase().endTransaction();
+            }
+            //Every table gets rewritten by REPLACE, whether it changed or not.
+            reportSync(new SyncReport(SYNC_RESOURCE, tables.size(), tables.size(), 0, 0));
+        }
+        //Tables held by reservations are left alone above, so the index is reloaded from the database.
+        if (availabilityIndex != null) {
+            availabilityIndex.load(getDatabase().tableDao().findAll().blockingGet());
+        }
+    }
+
+    private void persistTableDiff(List<Table> tables) {
+        SyncDiff<Integer, Table> diff;
+        int updatedRows = 0;
+        int deletedRows = 0;
+        try {
+            getDatabase().beginTransaction();
+            //Local tables are read within the transaction, so that the diff is never out of date.
+            diff = new SyncDiff<Integer, Table>() {
+                @Override
+                protected Integer keyOf(Table table) {
+                    return table.getNumber();
+                }
+            }.compute(getDatabase().tableDao().findAll().blockingGet(), tables);
+            List<Integer> deleted = diff.getDeleted();
+            for (int i=0; i<deleted.size(); i+=MAX_NUMBERS_PER_STATEMENT) {
+                deletedRows += getDatabase().reservationDao().deleteUnusedTables(deleted
+                    .subList(i, Math.min(deleted.size(), i + MAX_NUMBERS_PER_STATEMENT)));
+            }
+            //Tables held by reservations are left alone, however the server sees them.
+            for (Table table : diff.getUpdated()) {
+                updatedRows += getDatabase().reservationDao()
+                    .updateUnreservedTableAvailability(table.getNumber(), table.isAvailable());
+            }
+            if (!diff.getInserted().isEmpty()) {
+                getDatabase().tableDao().insertAll(diff.getInserted());
+            }
+            getDatabase().setTransactionSuccessful();
+        } finally {
+            getDatabase().endTransaction();
+        }
+        reportSync(new SyncReport(SYNC_RESOURCE, tables.size(), diff.getInserted().size(),
+            updatedRows, deletedRows));
+    }
+
+    private List<Table> withoutReservedTables(List<Table> tables) {
+        List<Integer> reservedNumbers = getDatabase().reservationDao().findReservedTableNumbers();
+        if (reservedNumbers.isEmpty()) {
+            return tables;
+        }
+        Set<Integer> reserved = new HashSet<>(reservedNumbers);
+        List<Table> unreservedTables = new ArrayList<>(tables.size());
+        for (Table table : tables) {
+            if (!reserved.contains(table.getNumber())) {
+                unreservedTables.add(table);
+            }
+        }
+        return unreservedTables;
+    }
+
+    private void reportSync(SyncReport syncReport) {
+        lastSyncReport = syncReport;
+        Timber.d("Tables persisted: %s.", syncReport);
+    }
+
+    private Observable<FetchTablesViewState> mapResponseOfTablesToStates(final FetchTablesAction action,
+                                                                         Observable<Response<Tables>> responses) {
+        return responses.map(new Function<Response<Tables>, FetchTablesViewState>() {
+            @Override
+            public FetchTablesViewState apply(Response<Tables> response) {
+                if (!response.isSuccessful()) {
+                    throw new HttpException(response);
+                }
+                return new FetchTablesViewState.SuccessFetchingTables(action, response.body().getTables())
+                    .setCacheOutcome(CacheOutcome.of(response));
+            }
+        }).onErrorReturn(new Function<Throwable, FetchTablesViewState>() {
+            @Override
+            public FetchTablesViewState apply(Throwable throwable) {
+                return new FetchTablesViewState.ErrorFetchingTables(action, throwable);
+            }
+        });
+    }
+
     private Observable<FetchTablesViewState> mapListOfTablesToStates(final FetchTablesAction action,
                                                                      Observable<List<Table>> tables,
                                                                      final boolean localSource) {
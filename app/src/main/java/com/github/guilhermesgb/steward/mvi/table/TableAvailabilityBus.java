@@ -0,0 +1,26 @@
+package com.github.guilhermesgb.steward.mvi.table;
+
+import com.github.guilhermesgb.steward.mvi.table.schema.Table;
+
+import io.reactivex.Observable;
+import io.reactivex.subjects.PublishSubject;
+import io.reactivex.subjects.Subject;
+
+/**
+ * Carries table availability changes made locally (e.g. tables released once their reservations
+ * expire) to whichever FetchTablesUseCase is following table changes at the time. Changes are
+ * published only after being persisted, so they are never ahead of the local database.
+ */
+public class TableAvailabilityBus {
+
+    private static final Subject<Table> changes = PublishSubject.<Table>create().toSerialized();
+
+    public static void publish(Table change) {
+        changes.onNext(change);
+    }
+
+    public static Observable<Table> changes() {
+        return changes;
+    }
+
+}
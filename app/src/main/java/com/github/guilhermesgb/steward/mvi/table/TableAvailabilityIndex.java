@@ -0,0 +1,123 @@
+package com.github.guilhermesgb.steward.mvi.table;
+
+import com.github.guilhermesgb.steward.mvi.table.schema.Table;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Mirrors the availability of every local table in memory, one bit per table number, along
+ * with how many tables are free and how many are occupied, so that both may be read without
+ * going to the local database. It is loaded from the tables read from the database and kept
+ * up to date by every write path that changes their availability afterwards; until loaded
+ * (or once invalidated), it knows nothing and callers must go to the database instead.
+ */
+public class TableAvailabilityIndex {
+
+    private static final TableAvailabilityIndex instance = new TableAvailabilityIndex();
+
+    public static TableAvailabilityIndex getInstance() {
+        return instance;
+    }
+
+    private final BitSet known = new BitSet();
+    private final BitSet available = new BitSet();
+    private int availableCount;
+    private int knownCount;
+    private boolean loaded;
+
+    /**
+     * Replaces whatever is indexed with the given tables, which must be all local tables there are.
+     * @param tables every local table, as just read from (or written to) the local database.
+     */
+    public synchronized void load(List<Table> tables) {
+        known.clear();
+        available.clear();
+        for (Table table : tables) {
+            if (table.getNumber() < 0) {
+                continue;
+            }
+            known.set(table.getNumber());
+            available.set(table.getNumber(), table.isAvailable());
+        }
+        knownCount = known.cardinality();
+        availableCount = available.cardinality();
+        loaded = true;
+    }
+
+    /**
+     * Reflects a change to a single table, already persisted. Ignored while not loaded, as the
+     * next load reads it from the database anyway.
+     * @param number the number of the table changed.
+     * @param isAvailable whether the table is now available.
+     */
+    public synchronized void update(int number, boolean isAvailable) {
+        if (!loaded || number < 0) {
+            return;
+        }
+        if (!known.get(number)) {
+            known.set(number);
+            knownCount++;
+        } else if (available.get(number)) {
+            availableCount--;
+        }
+        available.set(number, isAvailable);
+        if (isAvailable) {
+            availableCount++;
+        }
+    }
+
+    //For when tables change in ways not worth tracking one by one, the next load taking over.
+    public synchronized void invalidate() {
+        loaded = false;
+    }
+
+    public synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * @param number the number of the table in question.
+     * @return whether the table is available, or null if that's not known (i.e. the index is not
+     * loaded or there's no such table in it), in which case the local database has the answer.
+     */
+    public synchronized Boolean isAvailable(int number) {
+        if (!loaded || number < 0 || !known.get(number)) {
+            return null;
+        }
+        return available.get(number);
+    }
+
+    //Both counts below are -1 while not loaded.
+
+    public synchronized int getAvailableCount() {
+        return loaded ? availableCount : -1;
+    }
+
+    public synchronized int getOccupiedCount() {
+        return loaded ? knownCount - availableCount : -1;
+    }
+
+    /**
+     * Tells whether what is indexed is exactly what the given tables hold, which is how the index
+     * is checked against the local database in debug builds.
+     * @param tables every local table, as just read from the local database.
+     * @return whether the index agrees with the given tables.
+     */
+    public synchronized boolean matches(List<Table> tables) {
+        if (!loaded) {
+            return false;
+        }
+        BitSet knownThere = new BitSet();
+        BitSet availableThere = new BitSet();
+        for (Table table : tables) {
+            if (table.getNumber() < 0) {
+                continue;
+            }
+            knownThere.set(table.getNumber());
+            availableThere.set(table.getNumber(), table.isAvailable());
+        }
+        return known.equals(knownThere) && available.equals(availableThere);
+    }
+
+}
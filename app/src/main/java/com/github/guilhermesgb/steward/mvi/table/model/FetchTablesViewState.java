@@ -2,6 +2,8 @@ package com.github.guilhermesgb.steward.mvi.table.model;
 
 import com.github.guilhermesgb.steward.mvi.table.intent.FetchTablesAction;
 import com.github.guilhermesgb.steward.mvi.table.schema.Table;
+import com.github.guilhermesgb.steward.network.CacheOutcome;
+import com.github.guilhermesgb.steward.network.CircuitBreaker;
 import com.github.guilhermesgb.steward.utils.ViewStateOption;
 import com.pacoworks.rxsealedunions2.Union4;
 
@@ -88,6 +90,14 @@ public interface FetchTablesViewState extends Union4<FetchTablesViewState.Initia
 
         private final FetchTablesAction action;
         private List<Table> tables;
+        private CacheOutcome cacheOutcome = CacheOutcome.MISS;
+        private CircuitBreaker.State circuitState = CircuitBreaker.State.CLOSED;
+        //Both -1 when unknown (see TableAvailabilityIndex).
+        private int availableTableCount = -1;
+        private int occupiedTableCount = -1;
+        //Set when tables changed after being fetched (see setFollowingTableChanges and
+        // setObservingLocalChanges), rather than being asked for.
+        private boolean update = false;
 
         public SuccessFetchingTables(FetchTablesAction action, List<Table> tables) {
             this.action = action;
@@ -107,6 +117,47 @@ public interface FetchTablesViewState extends Union4<FetchTablesViewState.Initia
             return this;
         }
 
+        public CacheOutcome getCacheOutcome() {
+            return cacheOutcome;
+        }
+
+        public SuccessFetchingTables setCacheOutcome(CacheOutcome cacheOutcome) {
+            this.cacheOutcome = cacheOutcome;
+            return this;
+        }
+
+        public CircuitBreaker.State getCircuitState() {
+            return circuitState;
+        }
+
+        public SuccessFetchingTables setCircuitState(CircuitBreaker.State circuitState) {
+            this.circuitState = circuitState;
+            return this;
+        }
+
+        public int getAvailableTableCount() {
+            return availableTableCount;
+        }
+
+        public int getOccupiedTableCount() {
+            return occupiedTableCount;
+        }
+
+        public SuccessFetchingTables setAvailabilityCounts(int availableTableCount, int occupiedTableCount) {
+            this.availableTableCount = availableTableCount;
+            this.occupiedTableCount = occupiedTableCount;
+            return this;
+        }
+
+        public boolean isUpdate() {
+            return update;
+        }
+
+        public SuccessFetchingTables setUpdate(boolean update) {
+            this.update = update;
+            return this;
+        }
+
         @Override
         public void continued(Consumer<Initial> initial,
                               Consumer<FetchingTables> fetchingTables,
@@ -135,6 +186,8 @@ public interface FetchTablesViewState extends Union4<FetchTablesViewState.Initia
         private final FetchTablesAction action;
         private final Throwable throwable;
         private List<Table> cachedTables;
+        //Whenever the circuit is open, no call was even attempted (the cached tables being all there is).
+        private CircuitBreaker.State circuitState = CircuitBreaker.State.CLOSED;
 
         public ErrorFetchingTables(FetchTablesAction action, Throwable throwable) {
             this.action = action;
@@ -158,6 +211,15 @@ public interface FetchTablesViewState extends Union4<FetchTablesViewState.Initia
             return this;
         }
 
+        public CircuitBreaker.State getCircuitState() {
+            return circuitState;
+        }
+
+        public ErrorFetchingTables setCircuitState(CircuitBreaker.State circuitState) {
+            this.circuitState = circuitState;
+            return this;
+        }
+
         @Override
         public void continued(Consumer<Initial> initial,
                               Consumer<FetchingTables> fetchingTables,
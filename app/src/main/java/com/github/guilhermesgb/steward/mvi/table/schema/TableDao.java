@@ -4,6 +4,7 @@ import android.arch.persistence.room.Dao;
 import android.arch.persistence.room.Insert;
 import android.arch.persistence.room.OnConflictStrategy;
 import android.arch.persistence.room.Query;
+import android.arch.persistence.room.Update;
 
 import java.util.List;
 
@@ -15,6 +16,10 @@ public interface TableDao {
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     void insertAll(List<Table> tables);
 
+    //Unlike REPLACE, rows are changed in place, rather than deleted and then inserted again.
+    @Update
+    int updateAll(List<Table> tables);
+
     @Query("SELECT * FROM stand")
     Single<List<Table>> findAll();
 
@@ -24,4 +29,8 @@ public interface TableDao {
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     void insert(Table table);
 
+    //Returns -1 whenever a table with the same number is already there, leaving it untouched.
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    long insertIfAbsent(Table table);
+
 }
@@ -4,11 +4,22 @@ import android.os.Parcel;
 import android.os.Parcelable;
 
 import com.google.gson.JsonArray;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
+import okio.BufferedSink;
+import okio.BufferedSource;
+
+import static com.github.guilhermesgb.steward.utils.BinaryUtils.checkCount;
+import static com.github.guilhermesgb.steward.utils.JsonUtils.nextBoolean;
+
 public class Tables implements Serializable, Parcelable {
 
     private List<Table> tables;
@@ -58,6 +69,57 @@ public class Tables implements Serializable, Parcelable {
         return new Tables(tables);
     }
 
+    public static Tables readFrom(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return null;
+        }
+        List<Table> tables = new ArrayList<>();
+        reader.beginArray();
+        for (int i=0; reader.hasNext(); i++) {
+            tables.add(new Table(i, nextBoolean(reader, false)));
+        }
+        reader.endArray();
+        return new Tables(tables);
+    }
+
+    public static void writeTo(JsonWriter writer, Tables tables) throws IOException {
+        if (tables == null) {
+            writer.nullValue();
+            return;
+        }
+        writer.beginArray();
+        for (Table table : tables.tables) {
+            writer.value(table.isAvailable());
+        }
+        writer.endArray();
+    }
+
+    //Availability of all tables packed as bits: the table count as an unsigned 32-bit integer,
+    // then one bit per table (least significant bit first), set whenever the table is available.
+    public static Tables unpackFrom(BufferedSource source) throws IOException {
+        long count = checkCount(source.readInt() & 0xFFFFFFFFL, "tables");
+        byte[] bits = source.readByteArray((count + 7) / 8);
+        List<Table> tables = new ArrayList<>();
+        for (int i=0; i<count; i++) {
+            tables.add(new Table(i, (bits[i >>> 3] & (1 << (i & 7))) != 0));
+        }
+        return new Tables(tables);
+    }
+
+    public static void packInto(BufferedSink sink, Tables tables) throws IOException {
+        byte[] bits = new byte[(tables.tables.size() + 7) / 8];
+        int i = 0;
+        for (Table table : tables.tables) {
+            if (table.isAvailable()) {
+                bits[i >>> 3] |= 1 << (i & 7);
+            }
+            i++;
+        }
+        sink.writeInt(tables.tables.size());
+        sink.write(bits);
+    }
+
     private static JsonArray jsonizeFrom(Tables tables) {
         if (tables == null) {
             return null;
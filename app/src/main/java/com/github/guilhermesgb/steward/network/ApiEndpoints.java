@@ -1,19 +1,84 @@
 package com.github.guilhermesgb.steward.network;
 
 import com.github.guilhermesgb.steward.mvi.customer.schema.Customer;
+import com.github.guilhermesgb.steward.mvi.customer.schema.CustomerBucketHashes;
+import com.github.guilhermesgb.steward.mvi.customer.schema.CustomerChanges;
+import com.github.guilhermesgb.steward.mvi.reservation.schema.ReservationMutation;
 import com.github.guilhermesgb.steward.mvi.table.schema.Tables;
 
 import java.util.List;
 
 import io.reactivex.Single;
+import okhttp3.ResponseBody;
+import retrofit2.Response;
+import retrofit2.http.Body;
 import retrofit2.http.GET;
+import retrofit2.http.Header;
+import retrofit2.http.Headers;
+import retrofit2.http.POST;
+import retrofit2.http.Query;
+import retrofit2.http.Streaming;
 
 public interface ApiEndpoints {
 
+    //Both lists are always revalidated against the server: max-age=0 makes every call a conditional
+    // request for our cached copy (see ApiResource), which the server answers with a 304 whenever
+    // that copy is still good, saving the download. (A no-cache request would bypass the cache
+    // altogether, never sending If-None-Match and thus never getting a 304 back.)
+    //Both lists also prefer their compact binary encodings (see CompactWireConverterFactory),
+    // which servers unaware of them simply ignore, answering with JSON as they always did.
+
+    String REVALIDATE = "Cache-Control: max-age=0";
+
+    String ACCEPT_CUSTOMERS = "Accept: " + CompactWireConverterFactory.MEDIA_TYPE_CUSTOMERS
+        + ", application/json;q=0.5";
+    String ACCEPT_TABLES = "Accept: " + CompactWireConverterFactory.MEDIA_TYPE_TABLES
+        + ", application/json;q=0.5";
+
+    @Headers({REVALIDATE, ACCEPT_CUSTOMERS})
     @GET("quandoo-assessment/customer-list.json")
-    Single<List<Customer>> fetchCustomers();
+    Single<Response<List<Customer>>> fetchCustomers();
+
+    //Same list as above, but handed over undecoded so that it can be parsed incrementally.
+    @Streaming
+    @Headers(REVALIDATE)
+    @GET("quandoo-assessment/customer-list.json")
+    Single<Response<ResponseBody>> streamCustomers();
+
+    //Only what changed since the given cursor -- if none is given (or the server no longer
+    // recognizes it, answering with 410 Gone), the whole directory comes back as a reset.
+    @GET("quandoo-assessment/customer-changes.json")
+    Single<Response<CustomerChanges>> fetchCustomerChanges(@Query("since") String since);
 
+    //Hashes over id-range buckets of the directory, so that only those buckets whose hashes
+    // differ from the ones of our local copy need to be fetched (as in the endpoint below).
+    @Headers(REVALIDATE)
+    @GET("quandoo-assessment/customer-buckets.json")
+    Single<Response<CustomerBucketHashes>> fetchCustomerBuckets();
+
+    @Headers(ACCEPT_CUSTOMERS)
+    @GET("quandoo-assessment/customer-list.json")
+    Single<Response<List<Customer>>> fetchCustomersInBuckets(@Query("width") int width,
+                                                             @Query("bucket") List<Long> buckets);
+
+    @Headers({REVALIDATE, ACCEPT_TABLES})
     @GET("quandoo-assessment/table-map.json")
-    Single<Tables> fetchTables();
+    Single<Response<Tables>> fetchTables();
+
+    //Availability changes of single tables, pushed as server-sent events for as long as the
+    // connection lasts (see ServerSentEventReader). Reconnecting with the id of the last event
+    // seen makes the server replay whatever changed since then before pushing anything new.
+    //Servers are expected to send comments as heartbeats while idle, within the read timeout.
+    //Streams are never worth caching (no-store), nor ever served from the cache.
+    @Streaming
+    @Headers({"Cache-Control: no-store", "Accept: text/event-stream"})
+    @GET("quandoo-assessment/table-availability")
+    Single<Response<ResponseBody>> streamTableAvailability(@Header("Last-Event-ID") String lastEventId);
+
+    //Reservations made locally, uploaded in batches which the server applies as a whole. Retrying
+    // a batch is safe, as both the batch and each of its mutations carry an idempotency key.
+    @POST("quandoo-assessment/reservation-mutations")
+    Single<Response<Void>> uploadReservationMutations(@Header("Idempotency-Key") String idempotencyKey,
+                                                      @Body List<ReservationMutation> mutations);
 
 }
@@ -2,21 +2,36 @@ package com.github.guilhermesgb.steward.network;
 
 import com.github.guilhermesgb.steward.BuildConfig;
 import com.github.guilhermesgb.steward.mvi.customer.schema.Customer;
+import com.github.guilhermesgb.steward.mvi.customer.schema.CustomerBucketHashes;
+import com.github.guilhermesgb.steward.mvi.customer.schema.CustomerChanges;
+import com.github.guilhermesgb.steward.mvi.reservation.schema.Reservation;
+import com.github.guilhermesgb.steward.mvi.reservation.schema.ReservationMutation;
 import com.github.guilhermesgb.steward.mvi.table.schema.Tables;
 import com.google.gson.GsonBuilder;
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
-import java.lang.reflect.Type;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
+import okhttp3.Cache;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.HttpUrl;
 import okhttp3.OkHttpClient;
+import okhttp3.Request;
 import okhttp3.logging.HttpLoggingInterceptor;
 import retrofit2.Retrofit;
 import retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory;
 import retrofit2.converter.gson.GsonConverterFactory;
 import retrofit2.converter.scalars.ScalarsConverterFactory;
+import timber.log.Timber;
 
 import static com.github.guilhermesgb.steward.utils.StringUtils.isEmpty;
 
@@ -24,33 +39,193 @@ public class ApiResource {
 
     public static final String WILL_USE_REAL_API = null; //For better code readability semantically-wise.
 
-    private static final OkHttpClient.Builder client = new OkHttpClient.Builder();
+    private static final long CACHE_MAX_SIZE_IN_BYTES = 10 * 1024 * 1024; //Way more than both lists need.
+    private static final int DEFAULT_MAX_IDLE_CONNECTIONS = 5;
+    private static final long DEFAULT_KEEP_ALIVE_IN_MINUTES = 5;
+
+    //Every access point, whatever its base URL, shares the very same connection pool and
+    // dispatcher, so that pooled connections (and their TLS sessions) survive the creation
+    // of new access points, as happens when the base URL or the cache directory changes.
+    //Timings of every call are recorded regardless of build type, as that is cheap enough --
+    // whereas logging stops at headers in debug builds, as logging bodies means buffering them.
+    private static final NetworkMetrics networkMetrics = new NetworkMetrics();
+    private static final Dispatcher dispatcher = new Dispatcher();
     private static final HttpLoggingInterceptor logging = new HttpLoggingInterceptor();
+    private static volatile OkHttpClient client;
     static {
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+            .connectionPool(new ConnectionPool(DEFAULT_MAX_IDLE_CONNECTIONS,
+                DEFAULT_KEEP_ALIVE_IN_MINUTES, TimeUnit.MINUTES))
+            .dispatcher(dispatcher)
+            .eventListenerFactory(networkMetrics.getEventListenerFactory());
         if (BuildConfig.DEBUG) {
-            logging.setLevel(HttpLoggingInterceptor.Level.BODY);
-            client.addInterceptor(logging);
+            logging.setLevel(HttpLoggingInterceptor.Level.HEADERS);
+            builder.addInterceptor(logging);
         }
+        client = builder.build();
+    }
+
+    //Shared by every access point, so identical calls coalesce no matter who makes them.
+    private static final RequestCoalescer requestCoalescer = new RequestCoalescer();
+    static {
+        requestCoalescer.setSharingWindow("fetchCustomers", 0, TimeUnit.MILLISECONDS);
+        requestCoalescer.setSharingWindow("fetchTables", 0, TimeUnit.MILLISECONDS);
+    }
+
+    //Also shared by every access point, table refreshes (which block the table grid while a
+    // reservation is being made) being bounded and hedged once enough latencies are observed.
+    static final long DEFAULT_TABLES_MIN_BUDGET_IN_MILLIS = 3000;
+    static final long DEFAULT_TABLES_MAX_BUDGET_IN_MILLIS = 15000;
+    static final double DEFAULT_TABLES_HEDGING_PERCENTILE = 0.95;
+    static final int DEFAULT_TABLES_HEDGING_MIN_SAMPLES = 20;
+    private static final LatencyBudgets latencyBudgets = new LatencyBudgets();
+    static {
+        latencyBudgets.setTimeoutBudget("fetchTables", DEFAULT_TABLES_MIN_BUDGET_IN_MILLIS,
+            DEFAULT_TABLES_MAX_BUDGET_IN_MILLIS, TimeUnit.MILLISECONDS);
+        latencyBudgets.setHedging("fetchTables", DEFAULT_TABLES_HEDGING_PERCENTILE,
+            DEFAULT_TABLES_HEDGING_MIN_SAMPLES);
     }
 
-    private static ApiEndpoints apiService;
-    private static String apiBaseUrl;
+    //Also shared by every access point, keeping a circuit breaker per base URL.
+    private static final ResiliencePolicy resiliencePolicy = new ResiliencePolicy();
+
+    //Also shared by every access point, so background calls give way to user-initiated ones
+    // no matter which server either of them goes to (as they all share the same client).
+    private static final RequestPrioritizer requestPrioritizer = new RequestPrioritizer();
+
+    //One access point per base URL and priority, all of them built upon the client above.
+    private static final Map<String, ApiEndpoints> apiServices = new ConcurrentHashMap<>();
 
     private ApiResource() {}
 
+    /**
+     * Installs a bounded on-disk HTTP cache so that responses carrying ETag/Last-Modified
+     * validators can be revalidated with conditional requests, unchanged payloads then
+     * coming back as a 304 and being served from disk instead of downloaded again.
+     * @param cacheDirectory the directory the cache should live in -- if null is passed,
+     *                       the cache is removed and every call downloads its full payload.
+     */
+    public static synchronized void setCacheDirectory(final File cacheDirectory) {
+        client = client.newBuilder().cache(cacheDirectory == null ? null
+            : new Cache(cacheDirectory, CACHE_MAX_SIZE_IN_BYTES)).build();
+        apiServices.clear(); //Forcing access points to be recreated with the new client.
+    }
+
+    /**
+     * Replaces the connection pool shared by all access points with one of the given limits.
+     * @param maxIdleConnections how many idle connections are kept around for reuse.
+     * @param keepAlive for how long an idle connection is kept around before being closed.
+     * @param unit the time unit of the keep alive duration.
+     */
+    public static synchronized void setConnectionPoolLimits(int maxIdleConnections, long keepAlive, TimeUnit unit) {
+        ConnectionPool previousConnectionPool = client.connectionPool();
+        client = client.newBuilder().connectionPool
+            (new ConnectionPool(maxIdleConnections, keepAlive, unit)).build();
+        apiServices.clear(); //Forcing access points to be recreated with the new client.
+        previousConnectionPool.evictAll();
+    }
+
+    /**
+     * Tunes how many calls the shared dispatcher runs at once, in total and per host.
+     * Calls beyond these limits wait in line until running ones complete.
+     * @param maxRequests the maximum number of calls running at once.
+     * @param maxRequestsPerHost the maximum number of calls running at once against a single host.
+     */
+    public static void setDispatcherLimits(int maxRequests, int maxRequestsPerHost) {
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+    }
+
+    /**
+     * Warms up the connection to the given server ahead of its first actual call, resolving
+     * its host and connecting (TLS handshake included) in the background, the connection then
+     * being left in the shared pool for that first call to pick up.
+     * @param baseUrl the URL of the server to be warmed up -- if null or empty string is
+     *                passed, the live server is the one warmed up.
+     */
+    public static void prewarm(final String baseUrl) {
+        final HttpUrl url = HttpUrl.parse(isEmpty(baseUrl) ? BuildConfig.API_BASE_URL : baseUrl);
+        if (url == null) {
+            return;
+        }
+        client.newCall(new Request.Builder().url(url).head().build()).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException exception) {
+                Timber.d(exception, "Could not pre-warm connection to %s.", url.host());
+            }
+
+            @Override
+            public void onResponse(Call call, okhttp3.Response response) {
+                response.close(); //All that matters is the connection now sitting in the pool.
+            }
+        });
+    }
+
+    /**
+     * Returns the coalescing layer every endpoint call goes through, so that the sharing
+     * window of each endpoint can be tuned and the saved request counters inspected.
+     * @return the request coalescer shared by all API endpoints access points
+     */
+    public static RequestCoalescer getRequestCoalescer() {
+        return requestCoalescer;
+    }
+
+    /**
+     * Returns the latency budgets every endpoint call goes through, so that timeout budgets
+     * and hedging can be tuned per endpoint and the observed latencies inspected.
+     * @return the latency budgets shared by all API endpoints access points
+     */
+    public static LatencyBudgets getLatencyBudgets() {
+        return latencyBudgets;
+    }
+
+    /**
+     * Returns the timings recorded for every phase (DNS, connect, TLS, time to first byte,
+     * body read and decoding) of each endpoint's calls, to be snapshot and reset at will.
+     * @return the network metrics shared by all API endpoints access points
+     */
+    public static NetworkMetrics getNetworkMetrics() {
+        return networkMetrics;
+    }
+
+    /**
+     * Returns the resilience layer every endpoint call goes through, so that retries can be
+     * tuned and the circuit breakers kept for each server inspected.
+     * @return the resilience policy shared by all API endpoints access points
+     */
+    public static ResiliencePolicy getResiliencePolicy() {
+        return resiliencePolicy;
+    }
+
+    /**
+     * Returns the prioritization layer every endpoint call goes through, so that the number
+     * of background calls allowed at once can be tuned and preempted calls inspected.
+     * @return the request prioritizer shared by all API endpoints access points
+     */
+    public static RequestPrioritizer getRequestPrioritizer() {
+        return requestPrioritizer;
+    }
+
+    /**
+     * Returns the circuit breaker of the server at the given base URL.
+     * @param overrideBaseUrl the URL of the mocked server -- if null or empty
+     *                        string is passed, the live server's breaker is returned.
+     * @return the circuit breaker guarding calls to the desired server
+     */
+    public static CircuitBreaker getCircuitBreaker(final String overrideBaseUrl) {
+        return resiliencePolicy.getCircuitBreaker(isEmpty(overrideBaseUrl)
+            ? BuildConfig.API_BASE_URL : overrideBaseUrl);
+    }
+
     /**
      * Returns the API endpoints access point object. The API_BASE_URL will depend
      * upon whether this is a debug or release version of the application, pointing
      * either to production or to the test version of the live API server.
+     * @param priority the priority of every call made through this access point.
      * @return an object providing access to all the live server's endpoints
      */
-    private static ApiEndpoints getInstance() {
-        if (apiService == null || isEmpty(apiBaseUrl)
-                || !BuildConfig.API_BASE_URL.equals(apiBaseUrl)) {
-            apiBaseUrl = BuildConfig.API_BASE_URL;
-            apiService = createInstance(apiBaseUrl);
-        }
-        return apiService;
+    private static ApiEndpoints getInstance(RequestPriority priority) {
+        return obtainInstance(BuildConfig.API_BASE_URL, priority);
     }
 
     /**
@@ -64,13 +239,35 @@ public class ApiResource {
      * @return an object providing access to all the mocked server's endpoints
      */
     public static ApiEndpoints getInstance(final String overrideBaseUrl) {
+        return getInstance(overrideBaseUrl, RequestPriority.USER_INITIATED);
+    }
+
+    /**
+     * Returns the API endpoints access point object whose calls are made with the given priority.
+     * @param overrideBaseUrl the URL of the mocked server -- beware that if null or
+     *                        empty string is passed, the live server access point
+     *                        will be created instead.
+     * @param priority the priority of every call made through this access point.
+     * @return an object providing access to all the desired server's endpoints
+     */
+    public static ApiEndpoints getInstance(final String overrideBaseUrl, final RequestPriority priority) {
         if (isEmpty(overrideBaseUrl)) {
-            return getInstance();
+            return getInstance(priority);
         }
-        if (apiService == null || isEmpty(apiBaseUrl)
-                || !overrideBaseUrl.equals(apiBaseUrl)) {
-            apiBaseUrl = overrideBaseUrl;
-            apiService = createInstance(apiBaseUrl);
+        return obtainInstance(overrideBaseUrl, priority);
+    }
+
+    private static ApiEndpoints obtainInstance(final String apiBaseUrl, final RequestPriority priority) {
+        String key = priority + " " + apiBaseUrl;
+        ApiEndpoints apiService = apiServices.get(key);
+        if (apiService == null) {
+            synchronized (ApiResource.class) {
+                apiService = apiServices.get(key);
+                if (apiService == null) {
+                    apiService = createInstance(apiBaseUrl, priority);
+                    apiServices.put(key, apiService);
+                }
+            }
         }
         return apiService;
     }
@@ -78,31 +275,93 @@ public class ApiResource {
     /**
      * Creates the actual instance of the API endpoints access point object,
      * configuring it to talk to a live or mocked server located at API_BASE_URL.
-     * This is where all JSON deserializers (for each entity type) shall be located.
+     * This is where all JSON type adapters (for each entity type) shall be located.
+     * They read straight from the response's token stream into the entities, so no
+     * intermediate JsonElement tree (nor reflection) is involved when decoding payloads.
      * @param apiBaseUrl the URL of the live (test or production) or mocked server.
+     * @param priority the priority of every call made through this access point.
      * @return an object providing access to all the desired server's endpoints
      */
-    private static ApiEndpoints createInstance(final String apiBaseUrl) {
+    private static ApiEndpoints createInstance(final String apiBaseUrl, final RequestPriority priority) {
         GsonBuilder registeredTypeAdapters = new GsonBuilder();
-        registeredTypeAdapters.registerTypeAdapter(Customer.class, new JsonDeserializer<Customer>() {
+        registeredTypeAdapters.registerTypeAdapter(Customer.class, new TypeAdapter<Customer>() {
+            @Override
+            public void write(JsonWriter out, Customer customer) throws IOException {
+                Customer.writeTo(out, customer);
+            }
+
+            @Override
+            public Customer read(JsonReader in) throws IOException {
+                return Customer.readFrom(in);
+            }
+        });
+        registeredTypeAdapters.registerTypeAdapter(CustomerChanges.class, new TypeAdapter<CustomerChanges>() {
+            @Override
+            public void write(JsonWriter out, CustomerChanges changes) throws IOException {
+                CustomerChanges.writeTo(out, changes);
+            }
+
             @Override
-            public Customer deserialize(JsonElement json, Type typeOfT,
-                    JsonDeserializationContext context) throws JsonParseException {
-                return Customer.dejsonizeFrom(json.getAsJsonObject());
+            public CustomerChanges read(JsonReader in) throws IOException {
+                return CustomerChanges.readFrom(in);
             }
         });
-        registeredTypeAdapters.registerTypeAdapter(Tables.class, new JsonDeserializer<Tables>() {
+        registeredTypeAdapters.registerTypeAdapter(CustomerBucketHashes.class, new TypeAdapter<CustomerBucketHashes>() {
             @Override
-            public Tables deserialize(JsonElement json, Type typeOfT,
-                    JsonDeserializationContext context) throws JsonParseException {
-                return Tables.dejsonizeFrom(json.getAsJsonArray());
+            public void write(JsonWriter out, CustomerBucketHashes bucketHashes) throws IOException {
+                CustomerBucketHashes.writeTo(out, bucketHashes);
+            }
+
+            @Override
+            public CustomerBucketHashes read(JsonReader in) throws IOException {
+                return CustomerBucketHashes.readFrom(in);
             }
         });
-        return new Retrofit.Builder().baseUrl(apiBaseUrl)
+        registeredTypeAdapters.registerTypeAdapter(Tables.class, new TypeAdapter<Tables>() {
+            @Override
+            public void write(JsonWriter out, Tables tables) throws IOException {
+                Tables.writeTo(out, tables);
+            }
+
+            @Override
+            public Tables read(JsonReader in) throws IOException {
+                return Tables.readFrom(in);
+            }
+        });
+        registeredTypeAdapters.registerTypeAdapter(Reservation.class, new TypeAdapter<Reservation>() {
+            @Override
+            public void write(JsonWriter out, Reservation reservation) throws IOException {
+                Reservation.writeTo(out, reservation);
+            }
+
+            @Override
+            public Reservation read(JsonReader in) throws IOException {
+                return Reservation.readFrom(in);
+            }
+        });
+        registeredTypeAdapters.registerTypeAdapter(ReservationMutation.class, new TypeAdapter<ReservationMutation>() {
+            @Override
+            public void write(JsonWriter out, ReservationMutation mutation) throws IOException {
+                ReservationMutation.writeTo(out, mutation);
+            }
+
+            @Override
+            public ReservationMutation read(JsonReader in) throws IOException {
+                return ReservationMutation.readFrom(in);
+            }
+        });
+        return EndpointCallHandler.wrap(apiBaseUrl, priority, new Retrofit.Builder().baseUrl(apiBaseUrl)
             .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
+            .addConverterFactory(networkMetrics.getTimedConverterFactory())
             .addConverterFactory(ScalarsConverterFactory.create())
+            .addConverterFactory(CompactWireConverterFactory.create())
             .addConverterFactory(GsonConverterFactory.create(registeredTypeAdapters.create()))
-            .client(client.build()).build().create(ApiEndpoints.class);
+            .client(client).build().create(ApiEndpoints.class), requestCoalescer,
+            latencyBudgets, resiliencePolicy, networkMetrics, requestPrioritizer);
+    }
+
+    static OkHttpClient getClient() {
+        return client;
     }
 
 }
@@ -0,0 +1,42 @@
+package com.github.guilhermesgb.steward.network;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exponential backoff with full jitter: the n-th delay is drawn uniformly between zero and
+ * the base delay doubled n-1 times (capped at the maximum delay), so that clients failing
+ * together don't all come back at the very same moment.
+ */
+public class Backoff {
+
+    private static final Random random = new Random();
+
+    private final long baseDelayInMillis;
+    private final long maxDelayInMillis;
+
+    public Backoff(long baseDelay, long maxDelay, TimeUnit unit) {
+        this.baseDelayInMillis = Math.max(1, unit.toMillis(baseDelay));
+        this.maxDelayInMillis = Math.max(baseDelayInMillis, unit.toMillis(maxDelay));
+    }
+
+    /**
+     * @param attempt how many times in a row it has been backed off, this time included.
+     * @return the delay in milliseconds to be waited before the next attempt.
+     */
+    public long delayFor(int attempt) {
+        return (long) (random.nextDouble() * ceilingFor(attempt));
+    }
+
+    /**
+     * @param attempt how many times in a row it has been backed off, this time included.
+     * @return the greatest delay in milliseconds that might be drawn for the given attempt.
+     */
+    public long ceilingFor(int attempt) {
+        int doublings = Math.max(0, Math.min(attempt - 1, 62));
+        long ceiling = baseDelayInMillis << doublings;
+        return ceiling <= 0 || (ceiling >> doublings) != baseDelayInMillis
+            ? maxDelayInMillis : Math.min(maxDelayInMillis, ceiling);
+    }
+
+}
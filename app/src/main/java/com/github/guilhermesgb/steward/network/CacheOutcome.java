@@ -0,0 +1,33 @@
+package com.github.guilhermesgb.steward.network;
+
+import java.net.HttpURLConnection;
+
+import retrofit2.Response;
+
+/**
+ * Tells how a response got to us with regard to the on-disk HTTP cache, so that callers
+ * may skip redoing work (e.g. database rewrites) whenever the payload is known to be unchanged.
+ */
+public enum CacheOutcome {
+
+    HIT,         //Served straight from the cache, no network involved.
+    REVALIDATED, //Server answered our conditional request with a 304, so cached copy was served.
+    MISS;        //Full payload downloaded from the server.
+
+    public boolean isUnchanged() {
+        return this != MISS;
+    }
+
+    public static CacheOutcome of(Response<?> response) {
+        okhttp3.Response rawResponse = response.raw();
+        if (rawResponse.cacheResponse() == null) {
+            return MISS;
+        }
+        okhttp3.Response networkResponse = rawResponse.networkResponse();
+        if (networkResponse == null) {
+            return HIT;
+        }
+        return networkResponse.code() == HttpURLConnection.HTTP_NOT_MODIFIED ? REVALIDATED : MISS;
+    }
+
+}
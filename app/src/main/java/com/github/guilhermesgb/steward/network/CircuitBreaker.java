@@ -0,0 +1,111 @@
+package com.github.guilhermesgb.steward.network;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps calls from going out to a server that keeps failing. After enough consecutive
+ * failures the circuit opens and calls fail fast for a while, after which a single call
+ * is let through as a probe (the circuit is then half-open): if it succeeds, the circuit
+ * closes again, otherwise it opens once more, for longer each time (jittered exponentially).
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    private static final long DEFAULT_MIN_OPEN_DURATION_IN_SECONDS = 5;
+    private static final long DEFAULT_MAX_OPEN_DURATION_IN_SECONDS = 120;
+
+    private int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+    private Backoff openDurations = new Backoff(DEFAULT_MIN_OPEN_DURATION_IN_SECONDS,
+        DEFAULT_MAX_OPEN_DURATION_IN_SECONDS, TimeUnit.SECONDS);
+    private long minOpenDurationInMillis = TimeUnit.SECONDS.toMillis(DEFAULT_MIN_OPEN_DURATION_IN_SECONDS);
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private int consecutiveOpenings = 0;
+    private long openUntil = 0;
+    private long probeDeadline = 0;
+
+    public synchronized void setFailureThreshold(int failureThreshold) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+    }
+
+    /**
+     * Tunes for how long the circuit stays open: never less than the minimum, and growing
+     * (jittered exponentially) every time a probe fails, up to the given maximum.
+     * @param minOpenDuration for how long the circuit stays open at least.
+     * @param maxOpenDuration for how long the circuit stays open at most.
+     * @param unit the time unit of both durations.
+     */
+    public synchronized void setOpenDurations(long minOpenDuration, long maxOpenDuration, TimeUnit unit) {
+        this.openDurations = new Backoff(minOpenDuration, maxOpenDuration, unit);
+        this.minOpenDurationInMillis = Math.max(1, unit.toMillis(minOpenDuration));
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && now() >= openUntil) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    //For how long calls keep failing fast, zero meaning that a call may go out right away.
+    public synchronized long getRemainingOpenMillis() {
+        return state != State.OPEN ? 0 : Math.max(0, openUntil - now());
+    }
+
+    /**
+     * Asks the breaker whether a call may go out now. Whenever the circuit is half-open, only a
+     * single call (the probe) is let through until it reports back or its chance runs out.
+     * @return whether the call may go out -- if not, it should fail fast.
+     */
+    public synchronized boolean allowRequest() {
+        long now = now();
+        switch (state) {
+            case OPEN:
+                if (now < openUntil) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probeDeadline = now + minOpenDurationInMillis;
+                return true;
+            case HALF_OPEN:
+                if (now < probeDeadline) {
+                    return false;
+                }
+                //The previous probe never reported back (e.g. it got cancelled), so here goes another one.
+                probeDeadline = now + minOpenDurationInMillis;
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        consecutiveOpenings = 0;
+    }
+
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            consecutiveOpenings++;
+            state = State.OPEN;
+            openUntil = now() + Math.max(minOpenDurationInMillis,
+                openDurations.delayFor(consecutiveOpenings));
+        }
+    }
+
+    public synchronized void reset() {
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        consecutiveOpenings = 0;
+    }
+
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+}
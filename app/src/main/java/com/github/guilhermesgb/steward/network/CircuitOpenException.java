@@ -0,0 +1,20 @@
+package com.github.guilhermesgb.steward.network;
+
+import java.io.IOException;
+
+//Raised instead of making calls to a server whose circuit breaker is currently open.
+public class CircuitOpenException extends IOException {
+
+    private final long retryAfterInMillis;
+
+    public CircuitOpenException(String apiBaseUrl, long retryAfterInMillis) {
+        super("Circuit open for " + apiBaseUrl + ", no calls made for the next "
+            + retryAfterInMillis + " ms.");
+        this.retryAfterInMillis = retryAfterInMillis;
+    }
+
+    public long getRetryAfterInMillis() {
+        return retryAfterInMillis;
+    }
+
+}
@@ -0,0 +1,111 @@
+package com.github.guilhermesgb.steward.network;
+
+import com.github.guilhermesgb.steward.mvi.customer.schema.Customer;
+import com.github.guilhermesgb.steward.mvi.table.schema.Tables;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+
+import static com.github.guilhermesgb.steward.utils.BinaryUtils.readCount;
+import static com.github.guilhermesgb.steward.utils.BinaryUtils.writeVarint;
+
+/**
+ * Decodes table maps and customer lists sent in their compact binary encodings, which the
+ * endpoints ask for through their Accept headers. Whenever the server answers with anything
+ * else (e.g. JSON, which remains the fallback), decoding is left to the next converter in line.
+ */
+public class CompactWireConverterFactory extends Converter.Factory {
+
+    public static final String MEDIA_TYPE_TABLES = "application/vnd.steward.tables+bitset";
+    public static final String MEDIA_TYPE_CUSTOMERS = "application/vnd.steward.customers+records";
+
+    private static final MediaType TABLES = MediaType.parse(MEDIA_TYPE_TABLES);
+    private static final MediaType CUSTOMERS = MediaType.parse(MEDIA_TYPE_CUSTOMERS);
+
+    private CompactWireConverterFactory() {}
+
+    public static CompactWireConverterFactory create() {
+        return new CompactWireConverterFactory();
+    }
+
+    @Override
+    public Converter<ResponseBody, ?> responseBodyConverter(Type type, Annotation[] annotations, Retrofit retrofit) {
+        if (type == Tables.class) {
+            final Converter<ResponseBody, ?> fallback = retrofit.nextResponseBodyConverter(this, type, annotations);
+            return new Converter<ResponseBody, Object>() {
+                @Override
+                public Object convert(ResponseBody body) throws IOException {
+                    if (!isOfMediaType(body, TABLES)) {
+                        return fallback.convert(body);
+                    }
+                    try {
+                        return Tables.unpackFrom(body.source());
+                    } finally {
+                        body.close();
+                    }
+                }
+            };
+        }
+        if (isListOf(type, Customer.class)) {
+            final Converter<ResponseBody, ?> fallback = retrofit.nextResponseBodyConverter(this, type, annotations);
+            return new Converter<ResponseBody, Object>() {
+                @Override
+                public Object convert(ResponseBody body) throws IOException {
+                    if (!isOfMediaType(body, CUSTOMERS)) {
+                        return fallback.convert(body);
+                    }
+                    try {
+                        return unpackCustomers(body.source());
+                    } finally {
+                        body.close();
+                    }
+                }
+            };
+        }
+        return null;
+    }
+
+    //The list goes as its size (as a varint) followed by that many customer records.
+    public static List<Customer> unpackCustomers(BufferedSource source) throws IOException {
+        long count = readCount(source, "customers");
+        List<Customer> customers = new ArrayList<>();
+        for (long i=0; i<count; i++) {
+            customers.add(Customer.unpackFrom(source));
+        }
+        return customers;
+    }
+
+    public static void packCustomers(BufferedSink sink, List<Customer> customers) throws IOException {
+        writeVarint(sink, customers.size());
+        for (Customer customer : customers) {
+            Customer.packInto(sink, customer);
+        }
+    }
+
+    private static boolean isOfMediaType(ResponseBody body, MediaType expected) {
+        MediaType actual = body.contentType();
+        return actual != null && actual.type().equals(expected.type())
+            && actual.subtype().equals(expected.subtype());
+    }
+
+    private static boolean isListOf(Type type, Class<?> elementType) {
+        if (!(type instanceof ParameterizedType)) {
+            return false;
+        }
+        ParameterizedType parameterizedType = (ParameterizedType) type;
+        return parameterizedType.getRawType() == List.class
+            && parameterizedType.getActualTypeArguments()[0] == elementType;
+    }
+
+}
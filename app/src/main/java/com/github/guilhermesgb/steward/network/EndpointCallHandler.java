@@ -0,0 +1,79 @@
+package com.github.guilhermesgb.steward.network;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+
+import io.reactivex.Single;
+import retrofit2.http.Streaming;
+
+//Sits between callers and the Retrofit-generated endpoints, so that every call made through
+// ApiEndpoints goes through the same policies (e.g. request coalescing, latency budgets,
+// retries and circuit breaking) regardless of caller. Coalesced calls share a single call,
+// retried as a whole, each of its attempts being hedged and time-bounded on its own, while
+// the timings of every request going out are attributed to the endpoint it was made for.
+//Calls are prioritized as a whole, so background ones give way before anything else happens.
+class EndpointCallHandler implements InvocationHandler {
+
+    private final String apiBaseUrl;
+    private final RequestPriority priority;
+    private final ApiEndpoints delegate;
+    private final RequestCoalescer requestCoalescer;
+    private final LatencyBudgets latencyBudgets;
+    private final ResiliencePolicy resiliencePolicy;
+    private final NetworkMetrics networkMetrics;
+    private final RequestPrioritizer requestPrioritizer;
+
+    private EndpointCallHandler(String apiBaseUrl, RequestPriority priority, ApiEndpoints delegate,
+                                RequestCoalescer requestCoalescer, LatencyBudgets latencyBudgets,
+                                ResiliencePolicy resiliencePolicy, NetworkMetrics networkMetrics,
+                                RequestPrioritizer requestPrioritizer) {
+        this.apiBaseUrl = apiBaseUrl;
+        this.priority = priority;
+        this.delegate = delegate;
+        this.requestCoalescer = requestCoalescer;
+        this.latencyBudgets = latencyBudgets;
+        this.resiliencePolicy = resiliencePolicy;
+        this.networkMetrics = networkMetrics;
+        this.requestPrioritizer = requestPrioritizer;
+    }
+
+    static ApiEndpoints wrap(String apiBaseUrl, RequestPriority priority, ApiEndpoints delegate,
+                             RequestCoalescer requestCoalescer, LatencyBudgets latencyBudgets,
+                             ResiliencePolicy resiliencePolicy, NetworkMetrics networkMetrics,
+                             RequestPrioritizer requestPrioritizer) {
+        return (ApiEndpoints) Proxy.newProxyInstance(ApiEndpoints.class.getClassLoader(),
+            new Class<?>[] { ApiEndpoints.class }, new EndpointCallHandler(apiBaseUrl, priority,
+                delegate, requestCoalescer, latencyBudgets, resiliencePolicy, networkMetrics,
+                requestPrioritizer));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            return method.invoke(this, args);
+        }
+        Object call;
+        try {
+            call = method.invoke(delegate, args);
+        } catch (InvocationTargetException exception) {
+            throw exception.getCause();
+        }
+        String endpoint = method.getName();
+        if (!(call instanceof Single)) {
+            return call;
+        }
+        Single<?> attributedCall = networkMetrics.attribute(endpoint, (Single<?>) call);
+        //Streamed bodies can only be read once, so these are never shared (nor hedged).
+        if (method.isAnnotationPresent(Streaming.class)) {
+            return requestPrioritizer.apply(priority, resiliencePolicy.apply(apiBaseUrl, attributedCall));
+        }
+        //Calls of different priorities are never coalesced, lest user-initiated ones get preempted.
+        return requestPrioritizer.apply(priority, requestCoalescer.coalesce(endpoint,
+            apiBaseUrl + " " + priority + " " + endpoint + Arrays.deepToString(args),
+            resiliencePolicy.apply(apiBaseUrl, latencyBudgets.apply(endpoint, attributedCall))));
+    }
+
+}
@@ -0,0 +1,239 @@
+package com.github.guilhermesgb.steward.network;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.Single;
+import io.reactivex.SingleSource;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Consumer;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Keeps a latency histogram per endpoint, built from the calls actually made, and uses it to
+ * bound how long calls may take (their timeout budget) and to hedge slow calls: whenever a
+ * call has not answered within a given percentile of its endpoint's observed latencies,
+ * an identical call is made alongside it, whichever one answers first being the one used.
+ * Until enough latencies are observed, budgets stay at their maximum and no call is hedged.
+ */
+public class LatencyBudgets {
+
+    private static final int MIN_SAMPLES_FOR_BUDGET = 20;
+    private static final double BUDGET_PERCENTILE = 0.99;
+    private static final int BUDGET_MULTIPLIER = 4;
+    //Never hedging sooner than this, so that tiny latencies don't turn every hiccup into two calls.
+    private static final long MIN_HEDGE_DELAY_IN_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, TimeoutBudget> timeoutBudgets = new ConcurrentHashMap<>();
+    private final Map<String, Hedging> hedgingPolicies = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> hedgedRequests = new ConcurrentHashMap<>();
+
+    /**
+     * Bounds how long calls to the given endpoint may take, hedged attempts included, before
+     * failing with a TimeoutException. The budget follows the endpoint's observed latencies
+     * (four times their 99th percentile), but never goes beyond the given bounds.
+     * @param endpoint the name of the endpoint's method in ApiEndpoints.
+     * @param minBudget the budget is never tighter than this.
+     * @param maxBudget the budget is never looser than this, being the one used until
+     *                  enough latencies are observed.
+     * @param unit the time unit of both bounds.
+     */
+    public void setTimeoutBudget(String endpoint, long minBudget, long maxBudget, TimeUnit unit) {
+        long maxBudgetInNanos = unit.toNanos(Math.max(1, maxBudget));
+        timeoutBudgets.put(endpoint, new TimeoutBudget
+            (Math.min(unit.toNanos(Math.max(1, minBudget)), maxBudgetInNanos), maxBudgetInNanos));
+    }
+
+    public void removeTimeoutBudget(String endpoint) {
+        timeoutBudgets.remove(endpoint);
+    }
+
+    /**
+     * Hedges calls to the given endpoint once they take longer than the given percentile of
+     * its observed latencies, as long as at least the given amount of latencies is observed.
+     * @param endpoint the name of the endpoint's method in ApiEndpoints.
+     * @param percentile the fraction of calls expected to answer before being hedged
+     *                   (e.g. 0.95 hedges the slowest 5% of calls).
+     * @param minSamples how many latencies must be observed before any call gets hedged.
+     */
+    public void setHedging(String endpoint, double percentile, int minSamples) {
+        hedgingPolicies.put(endpoint, new Hedging(percentile, Math.max(1, minSamples), -1));
+    }
+
+    /**
+     * Hedges calls to the given endpoint after a fixed delay, regardless of observed latencies.
+     * @param endpoint the name of the endpoint's method in ApiEndpoints.
+     * @param delay for how long a call may go unanswered before being hedged.
+     * @param unit the time unit of the delay.
+     */
+    public void setHedgeDelay(String endpoint, long delay, TimeUnit unit) {
+        hedgingPolicies.put(endpoint, new Hedging(0, 0, unit.toNanos(Math.max(0, delay))));
+    }
+
+    public void disableHedging(String endpoint) {
+        hedgingPolicies.remove(endpoint);
+    }
+
+    public LatencyHistogram getHistogram(String endpoint) {
+        LatencyHistogram histogram = histograms.get(endpoint);
+        if (histogram == null) {
+            synchronized (histograms) {
+                histogram = histograms.get(endpoint);
+                if (histogram == null) {
+                    histogram = new LatencyHistogram();
+                    histograms.put(endpoint, histogram);
+                }
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * @param endpoint the name of the endpoint's method in ApiEndpoints.
+     * @return the current timeout budget of the endpoint in nanoseconds, or -1 if it has none.
+     */
+    public long getTimeoutBudgetInNanos(String endpoint) {
+        TimeoutBudget timeoutBudget = timeoutBudgets.get(endpoint);
+        if (timeoutBudget == null) {
+            return -1;
+        }
+        LatencyHistogram histogram = getHistogram(endpoint);
+        if (histogram.getCount() < MIN_SAMPLES_FOR_BUDGET) {
+            return timeoutBudget.maxInNanos;
+        }
+        long observed = histogram.getPercentile(BUDGET_PERCENTILE, TimeUnit.NANOSECONDS);
+        return Math.max(timeoutBudget.minInNanos, Math.min(timeoutBudget.maxInNanos,
+            observed > Long.MAX_VALUE / BUDGET_MULTIPLIER ? Long.MAX_VALUE : observed * BUDGET_MULTIPLIER));
+    }
+
+    /**
+     * @param endpoint the name of the endpoint's method in ApiEndpoints.
+     * @return for how long a call to the endpoint would currently go unanswered before being
+     * hedged in nanoseconds, or -1 if calls to the endpoint are currently not hedged.
+     */
+    public long getHedgeDelayInNanos(String endpoint) {
+        Hedging hedging = hedgingPolicies.get(endpoint);
+        if (hedging == null) {
+            return -1;
+        }
+        if (hedging.fixedDelayInNanos >= 0) {
+            return hedging.fixedDelayInNanos;
+        }
+        LatencyHistogram histogram = getHistogram(endpoint);
+        if (histogram.getCount() < hedging.minSamples) {
+            return -1;
+        }
+        return Math.max(MIN_HEDGE_DELAY_IN_NANOS,
+            histogram.getPercentile(hedging.percentile, TimeUnit.NANOSECONDS));
+    }
+
+    public long getHedgedRequestCount(String endpoint) {
+        AtomicLong counter = hedgedRequests.get(endpoint);
+        return counter == null ? 0 : counter.get();
+    }
+
+    //Forgets every latency observed and every hedged request counted so far.
+    public void reset() {
+        histograms.clear();
+        hedgedRequests.clear();
+    }
+
+    /**
+     * Subjects a call to the endpoint's policies, its latency being recorded along the way: once per
+     * call, from the moment it's made until it's answered (by whichever attempt) or runs out of budget,
+     * so that hedged attempts never make calls look any faster than they were to the caller.
+     * @param endpoint the name of the endpoint being called.
+     * @param call the actual call, subscribed to once more for every hedged attempt.
+     * @return the given call, hedged and bounded by a timeout budget if so configured.
+     */
+    <T> Single<T> apply(final String endpoint, final Single<T> call) {
+        return Single.defer(new Callable<SingleSource<T>>() {
+            @Override
+            public SingleSource<T> call() {
+                final long startedAt = System.nanoTime();
+                Single<T> attempt = call;
+                long hedgeDelay = getHedgeDelayInNanos(endpoint);
+                if (hedgeDelay >= 0) {
+                    //Calls run on the subscribing thread, so each attempt needs a thread of its own
+                    // for both to be in flight at once -- the attempt losing the race gets cancelled.
+                    Single<T> concurrentAttempt = attempt.subscribeOn(Schedulers.io());
+                    attempt = Single.ambArray(concurrentAttempt, concurrentAttempt
+                        .doOnSubscribe(new Consumer<Disposable>() {
+                            @Override
+                            public void accept(Disposable disposable) {
+                                counter(endpoint).incrementAndGet();
+                            }
+                        })
+                        .delaySubscription(hedgeDelay, TimeUnit.NANOSECONDS));
+                }
+                final long timeoutBudget = getTimeoutBudgetInNanos(endpoint);
+                if (timeoutBudget > 0) {
+                    attempt = attempt.timeout(timeoutBudget, TimeUnit.NANOSECONDS);
+                }
+                return attempt
+                    .doOnSuccess(new Consumer<T>() {
+                        @Override
+                        public void accept(T result) {
+                            getHistogram(endpoint).record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                        }
+                    })
+                    .doOnError(new Consumer<Throwable>() {
+                        @Override
+                        public void accept(Throwable throwable) {
+                            //Calls running out of budget took at least that long, which is what's recorded.
+                            // Other failures aren't, as failing fast says nothing about how long answers take.
+                            if (timeoutBudget > 0 && throwable instanceof TimeoutException) {
+                                getHistogram(endpoint).record(timeoutBudget, TimeUnit.NANOSECONDS);
+                            }
+                        }
+                    });
+            }
+        });
+    }
+
+    private AtomicLong counter(String endpoint) {
+        AtomicLong counter = hedgedRequests.get(endpoint);
+        if (counter == null) {
+            synchronized (hedgedRequests) {
+                counter = hedgedRequests.get(endpoint);
+                if (counter == null) {
+                    counter = new AtomicLong();
+                    hedgedRequests.put(endpoint, counter);
+                }
+            }
+        }
+        return counter;
+    }
+
+    private static final class TimeoutBudget {
+
+        private final long minInNanos;
+        private final long maxInNanos;
+
+        private TimeoutBudget(long minInNanos, long maxInNanos) {
+            this.minInNanos = minInNanos;
+            this.maxInNanos = maxInNanos;
+        }
+
+    }
+
+    private static final class Hedging {
+
+        private final double percentile;
+        private final int minSamples;
+        private final long fixedDelayInNanos;
+
+        private Hedging(double percentile, int minSamples, long fixedDelayInNanos) {
+            this.percentile = percentile;
+            this.minSamples = minSamples;
+            this.fixedDelayInNanos = fixedDelayInNanos;
+        }
+
+    }
+
+}
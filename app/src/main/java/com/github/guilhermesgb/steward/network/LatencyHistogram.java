@@ -0,0 +1,99 @@
+package com.github.guilhermesgb.steward.network;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of observed latencies, with microsecond resolution. Buckets are
+ * log-linear: every power of two is split into eight equally wide buckets, so that the
+ * relative error of any percentile stays under 12.5% whatever the order of magnitude.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_MAGNITUDE = 40; //2^40 microseconds is well over a week.
+    private static final int NUMBER_OF_BUCKETS = (MAX_MAGNITUDE - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(NUMBER_OF_BUCKETS);
+
+    public void record(long latency, TimeUnit unit) {
+        counts.incrementAndGet(indexOf(Math.max(0, unit.toMicros(latency))));
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (int i=0; i<NUMBER_OF_BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Estimates the latency under which the given fraction of all recorded latencies fall.
+     * @param percentile the fraction, between 0 and 1 (e.g. 0.95 for the 95th percentile).
+     * @param unit the time unit the estimate should be given in.
+     * @return the upper bound of the bucket the percentile falls into, or -1 if nothing
+     * has been recorded so far.
+     */
+    public long getPercentile(double percentile, TimeUnit unit) {
+        long[] snapshot = new long[NUMBER_OF_BUCKETS];
+        long count = 0;
+        for (int i=0; i<NUMBER_OF_BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return -1;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(1, Math.max(0, percentile)) * count));
+        long seen = 0;
+        for (int i=0; i<NUMBER_OF_BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return unit.convert(upperBoundOf(i), TimeUnit.MICROSECONDS);
+            }
+        }
+        return unit.convert(upperBoundOf(NUMBER_OF_BUCKETS - 1), TimeUnit.MICROSECONDS);
+    }
+
+    //Copies the counts as they are now, so that they can be read while recording goes on.
+    public LatencyHistogram snapshot() {
+        LatencyHistogram snapshot = new LatencyHistogram();
+        for (int i=0; i<NUMBER_OF_BUCKETS; i++) {
+            snapshot.counts.set(i, counts.get(i));
+        }
+        return snapshot;
+    }
+
+    public void reset() {
+        for (int i=0; i<NUMBER_OF_BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+    }
+
+    //Values under eight get a bucket each, every other value goes to the sub-bucket given by
+    // the three bits that follow its most significant bit, within the bucket of its magnitude.
+    private static int indexOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(micros);
+        if (magnitude > MAX_MAGNITUDE) {
+            return NUMBER_OF_BUCKETS - 1;
+        }
+        int subBucket = (int) (micros >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBoundOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int magnitude = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int subBucket = index % SUB_BUCKETS;
+        long width = 1L << (magnitude - SUB_BUCKET_BITS);
+        return ((SUB_BUCKETS + subBucket) * width) + width - 1;
+    }
+
+}
@@ -0,0 +1,238 @@
+package com.github.guilhermesgb.steward.network;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Single;
+import io.reactivex.SingleObserver;
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+
+/**
+ * Times every phase of endpoint calls (see Phase), keeping a latency histogram per phase of
+ * each endpoint. Recording a phase costs a couple of atomic increments, and nothing at all
+ * is buffered or logged along the way, so this is meant to stay on in release builds too.
+ */
+public class NetworkMetrics {
+
+    public enum Phase {
+        DNS,
+        CONNECT, //TCP connection, TLS handshake included.
+        TLS,
+        TIME_TO_FIRST_BYTE, //From the request being fully sent to the response's headers being read.
+        BODY_READ, //From the response's headers being read to the body being fully read.
+        DECODE, //Converting the body into entities, which also reads it (overlapping BODY_READ).
+        CALL //The whole call, from start to end.
+    }
+
+    //Calls run on the thread subscribing to them (and so does their decoding), so the endpoint
+    // being called is known to whatever runs on that thread while the call is subscribed to.
+    private static final ThreadLocal<String> currentEndpoint = new ThreadLocal<>();
+
+    private final Map<String, Map<Phase, LatencyHistogram>> histograms = new ConcurrentHashMap<>();
+
+    private final EventListener.Factory eventListenerFactory = new EventListener.Factory() {
+        @Override
+        public EventListener create(Call call) {
+            String endpoint = currentEndpoint.get();
+            //Calls made outside of any endpoint (e.g. pre-warming) are not measured.
+            return endpoint == null ? EventListener.NONE : new TimingEventListener(endpoint);
+        }
+    };
+
+    /**
+     * Hands out copies of all histograms as they are now.
+     * @return the histograms of every phase, per endpoint (the name of its method in ApiEndpoints).
+     */
+    public Map<String, Map<Phase, LatencyHistogram>> snapshot() {
+        Map<String, Map<Phase, LatencyHistogram>> snapshot = new HashMap<>();
+        for (Map.Entry<String, Map<Phase, LatencyHistogram>> entry : histograms.entrySet()) {
+            Map<Phase, LatencyHistogram> phases = new EnumMap<>(Phase.class);
+            for (Map.Entry<Phase, LatencyHistogram> phase : entry.getValue().entrySet()) {
+                phases.put(phase.getKey(), phase.getValue().snapshot());
+            }
+            snapshot.put(entry.getKey(), phases);
+        }
+        return snapshot;
+    }
+
+    public void reset() {
+        for (Map<Phase, LatencyHistogram> phases : histograms.values()) {
+            for (LatencyHistogram histogram : phases.values()) {
+                histogram.reset();
+            }
+        }
+    }
+
+    EventListener.Factory getEventListenerFactory() {
+        return eventListenerFactory;
+    }
+
+    /**
+     * Attributes whatever the call does on the subscribing thread to the given endpoint.
+     * @param endpoint the name of the endpoint being called.
+     * @param call the actual call, which must run synchronously upon being subscribed to.
+     * @return the given call, attributed to the endpoint.
+     */
+    <T> Single<T> attribute(final String endpoint, final Single<T> call) {
+        return new Single<T>() {
+            @Override
+            protected void subscribeActual(SingleObserver<? super T> observer) {
+                String previousEndpoint = currentEndpoint.get();
+                currentEndpoint.set(endpoint);
+                try {
+                    call.subscribe(observer);
+                } finally {
+                    currentEndpoint.set(previousEndpoint);
+                }
+            }
+        };
+    }
+
+    //Goes ahead of every other converter factory, timing whichever converter comes next.
+    Converter.Factory getTimedConverterFactory() {
+        return new Converter.Factory() {
+            @Override
+            public Converter<ResponseBody, ?> responseBodyConverter(Type type, Annotation[] annotations,
+                                                                    Retrofit retrofit) {
+                final Converter<ResponseBody, ?> delegate
+                    = retrofit.nextResponseBodyConverter(this, type, annotations);
+                return new Converter<ResponseBody, Object>() {
+                    @Override
+                    public Object convert(ResponseBody body) throws IOException {
+                        String endpoint = currentEndpoint.get();
+                        long startedAt = System.nanoTime();
+                        try {
+                            return delegate.convert(body);
+                        } finally {
+                            if (endpoint != null) {
+                                record(endpoint, Phase.DECODE, System.nanoTime() - startedAt);
+                            }
+                        }
+                    }
+                };
+            }
+        };
+    }
+
+    private void record(String endpoint, Phase phase, long elapsedNanos) {
+        Map<Phase, LatencyHistogram> phases = histograms.get(endpoint);
+        if (phases == null) {
+            synchronized (histograms) {
+                phases = histograms.get(endpoint);
+                if (phases == null) {
+                    phases = new EnumMap<>(Phase.class);
+                    for (Phase each : Phase.values()) {
+                        phases.put(each, new LatencyHistogram());
+                    }
+                    histograms.put(endpoint, phases);
+                }
+            }
+        }
+        phases.get(phase).record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    //One per call, so its fields are only ever touched by the call's own events, in order.
+    private final class TimingEventListener extends EventListener {
+
+        private final String endpoint;
+        private long callStartedAt;
+        private long dnsStartedAt;
+        private long connectStartedAt;
+        private long tlsStartedAt;
+        private long requestSentAt;
+        private long responseStartedAt;
+
+        private TimingEventListener(String endpoint) {
+            this.endpoint = endpoint;
+        }
+
+        @Override
+        public void callStart(Call call) {
+            callStartedAt = System.nanoTime();
+        }
+
+        @Override
+        public void dnsStart(Call call, String domainName) {
+            dnsStartedAt = System.nanoTime();
+        }
+
+        @Override
+        public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+            record(endpoint, Phase.DNS, System.nanoTime() - dnsStartedAt);
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            connectStartedAt = System.nanoTime();
+        }
+
+        @Override
+        public void secureConnectStart(Call call) {
+            tlsStartedAt = System.nanoTime();
+        }
+
+        @Override
+        public void secureConnectEnd(Call call, Handshake handshake) {
+            record(endpoint, Phase.TLS, System.nanoTime() - tlsStartedAt);
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+            record(endpoint, Phase.CONNECT, System.nanoTime() - connectStartedAt);
+        }
+
+        @Override
+        public void requestHeadersEnd(Call call, Request request) {
+            requestSentAt = System.nanoTime();
+        }
+
+        //Only requests with bodies get here, after their headers went out.
+        @Override
+        public void requestBodyEnd(Call call, long byteCount) {
+            requestSentAt = System.nanoTime();
+        }
+
+        //Response headers start being read before any of them comes in (that's when the wait is),
+        // so the first byte is only known to have arrived once they've been read.
+        @Override
+        public void responseHeadersEnd(Call call, Response response) {
+            responseStartedAt = System.nanoTime();
+            record(endpoint, Phase.TIME_TO_FIRST_BYTE, responseStartedAt - requestSentAt);
+        }
+
+        @Override
+        public void responseBodyEnd(Call call, long byteCount) {
+            record(endpoint, Phase.BODY_READ, System.nanoTime() - responseStartedAt);
+        }
+
+        @Override
+        public void callEnd(Call call) {
+            record(endpoint, Phase.CALL, System.nanoTime() - callStartedAt);
+        }
+
+        @Override
+        public void callFailed(Call call, IOException ioe) {
+            record(endpoint, Phase.CALL, System.nanoTime() - callStartedAt);
+        }
+
+    }
+
+}
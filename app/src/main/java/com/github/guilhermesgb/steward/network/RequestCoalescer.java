@@ -0,0 +1,141 @@
+package com.github.guilhermesgb.steward.network;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.Single;
+import io.reactivex.functions.Consumer;
+import retrofit2.Response;
+
+/**
+ * Single-flight coalescing of endpoint calls: while a call is in flight, identical calls
+ * attach to it instead of opening another request, all of them getting the same result.
+ * Each endpoint may also keep sharing its last successful result for a while after it
+ * arrived (its sharing window). Only endpoints given a sharing window get coalesced.
+ */
+public class RequestCoalescer {
+
+    private static final long NOT_COMPLETED = Long.MIN_VALUE;
+
+    private final Map<String, Long> sharingWindowsInNanos = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> issuedRequests = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> savedRequests = new ConcurrentHashMap<>();
+    private final Map<String, Flight> flights = new HashMap<>(); //Guarded by itself.
+
+    /**
+     * Enables coalescing for the given endpoint.
+     * @param endpoint the name of the endpoint's method in ApiEndpoints.
+     * @param window for how long a successful result keeps being handed to new callers once it
+     *               arrived -- zero means calls only get coalesced while actually in flight.
+     * @param unit the time unit of the window.
+     */
+    public void setSharingWindow(String endpoint, long window, TimeUnit unit) {
+        sharingWindowsInNanos.put(endpoint, unit.toNanos(Math.max(0, window)));
+    }
+
+    public void disable(String endpoint) {
+        sharingWindowsInNanos.remove(endpoint);
+    }
+
+    public boolean isCoalesced(String endpoint) {
+        return sharingWindowsInNanos.containsKey(endpoint);
+    }
+
+    public long getIssuedRequestCount(String endpoint) {
+        AtomicLong counter = issuedRequests.get(endpoint);
+        return counter == null ? 0 : counter.get();
+    }
+
+    public long getSavedRequestCount(String endpoint) {
+        AtomicLong counter = savedRequests.get(endpoint);
+        return counter == null ? 0 : counter.get();
+    }
+
+    public void resetCounters() {
+        issuedRequests.clear();
+        savedRequests.clear();
+    }
+
+    /**
+     * Hands out a call that is shared among everyone asking for the same key.
+     * @param endpoint the name of the endpoint being called.
+     * @param key identifies identical calls (e.g. same base URL, endpoint and arguments).
+     * @param call the actual call, only ever subscribed to if no identical one can be shared.
+     * @return either the call being shared at the moment or the given one, made shareable.
+     */
+    @SuppressWarnings("unchecked")
+    <T> Single<T> coalesce(String endpoint, final String key, Single<T> call) {
+        Long window = sharingWindowsInNanos.get(endpoint);
+        if (window == null) {
+            return call;
+        }
+        synchronized (flights) {
+            Flight flight = flights.get(key);
+            if (flight != null && flight.isShareable(window, System.nanoTime())) {
+                counter(savedRequests, endpoint).incrementAndGet();
+                return (Single<T>) flight.shared;
+            }
+            final Flight newFlight = new Flight();
+            newFlight.shared = call
+                .doOnSuccess(new Consumer<T>() {
+                    @Override
+                    public void accept(T result) {
+                        if (result instanceof Response && !((Response) result).isSuccessful()) {
+                            //Unsuccessful responses are handed to those already waiting, but no one else.
+                            forget(key, newFlight);
+                        } else {
+                            newFlight.completedAt = System.nanoTime();
+                        }
+                    }
+                })
+                .doOnError(new Consumer<Throwable>() {
+                    @Override
+                    public void accept(Throwable throwable) {
+                        forget(key, newFlight);
+                    }
+                })
+                .cache();
+            flights.put(key, newFlight);
+            counter(issuedRequests, endpoint).incrementAndGet();
+            return (Single<T>) newFlight.shared;
+        }
+    }
+
+    private void forget(String key, Flight flight) {
+        synchronized (flights) {
+            if (flights.get(key) == flight) {
+                flights.remove(key);
+            }
+        }
+    }
+
+    private static AtomicLong counter(Map<String, AtomicLong> counters, String endpoint) {
+        AtomicLong counter = counters.get(endpoint);
+        if (counter == null) {
+            synchronized (counters) {
+                counter = counters.get(endpoint);
+                if (counter == null) {
+                    counter = new AtomicLong();
+                    counters.put(endpoint, counter);
+                }
+            }
+        }
+        return counter;
+    }
+
+    private static final class Flight {
+
+        private Single<?> shared;
+        private volatile long completedAt = NOT_COMPLETED;
+
+        private boolean isShareable(long windowInNanos, long now) {
+            long completedAt = this.completedAt;
+            return completedAt == NOT_COMPLETED || now - completedAt < windowInNanos;
+        }
+
+    }
+
+}
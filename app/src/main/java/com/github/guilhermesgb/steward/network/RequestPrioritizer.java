@@ -0,0 +1,159 @@
+package com.github.guilhermesgb.steward.network;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.SingleSource;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import io.reactivex.functions.Predicate;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.BehaviorSubject;
+
+/**
+ * Lets user-initiated calls go ahead of background ones. Background calls wait for as long as
+ * any user-initiated call is in flight, and those already running when a user-initiated call
+ * comes in are preempted (i.e. cancelled, to be made again once user-initiated calls are over).
+ * Background calls also run on a few low priority threads of their own, so that they never take
+ * up all threads (nor all connections, as calls hold on to theirs while running) at once.
+ */
+public class RequestPrioritizer {
+
+    static final int DEFAULT_MAX_BACKGROUND_CALLS = 2;
+    private static final long BACKGROUND_THREAD_KEEP_ALIVE_IN_SECONDS = 30;
+
+    //Counted and published under the same lock, so that counts are published in the order they
+    // were counted (otherwise a stale count could be published last, e.g. holding background
+    // calls back with no user-initiated call in flight, or letting them through with one).
+    private final Object userInitiatedCallsLock = new Object();
+    private int userInitiatedCallsInFlight = 0;
+    private final BehaviorSubject<Integer> userInitiatedCalls = BehaviorSubject.createDefault(0);
+    private final AtomicLong preemptedCalls = new AtomicLong();
+    private volatile Scheduler backgroundScheduler = createBackgroundScheduler(DEFAULT_MAX_BACKGROUND_CALLS);
+
+    /**
+     * Caps how many background calls may run at once, the ones beyond it waiting in line.
+     * @param maxBackgroundCalls the maximum number of background calls running at once.
+     */
+    public void setMaxBackgroundCalls(int maxBackgroundCalls) {
+        backgroundScheduler = createBackgroundScheduler(Math.max(1, maxBackgroundCalls));
+    }
+
+    public int getUserInitiatedCallsInFlight() {
+        synchronized (userInitiatedCallsLock) {
+            return userInitiatedCallsInFlight;
+        }
+    }
+
+    public long getPreemptedCallCount() {
+        return preemptedCalls.get();
+    }
+
+    public void resetCounters() {
+        preemptedCalls.set(0);
+    }
+
+    /**
+     * Subjects a call to the given priority.
+     * @param priority the priority of the call.
+     * @param call the actual call, subscribed to once more whenever preempted.
+     * @return the given call, made as soon as its priority allows it.
+     */
+    <T> Single<T> apply(RequestPriority priority, final Single<T> call) {
+        if (priority == RequestPriority.USER_INITIATED) {
+            return call
+                .doOnSubscribe(new Consumer<Disposable>() {
+                    @Override
+                    public void accept(Disposable disposable) {
+                        countUserInitiatedCalls(1);
+                    }
+                })
+                .doFinally(new Action() {
+                    @Override
+                    public void run() {
+                        countUserInitiatedCalls(-1);
+                    }
+                });
+        }
+        final Scheduler backgroundScheduler = this.backgroundScheduler;
+        //Fails as soon as any user-initiated call is in flight, cancelling the background call.
+        final Single<T> preemption = userInitiatedCalls
+            .filter(new Predicate<Integer>() {
+                @Override
+                public boolean test(Integer callsInFlight) {
+                    return callsInFlight > 0;
+                }
+            })
+            .firstOrError()
+            .flatMap(new Function<Integer, SingleSource<T>>() {
+                @Override
+                public SingleSource<T> apply(Integer callsInFlight) {
+                    preemptedCalls.incrementAndGet();
+                    return Single.error(new PreemptedException());
+                }
+            });
+        return userInitiatedCalls
+            .filter(new Predicate<Integer>() {
+                @Override
+                public boolean test(Integer callsInFlight) {
+                    return callsInFlight == 0;
+                }
+            })
+            .firstOrError()
+            .flatMap(new Function<Integer, SingleSource<T>>() {
+                @Override
+                public SingleSource<T> apply(Integer ignore) {
+                    return Single.ambArray(call.subscribeOn(backgroundScheduler), preemption);
+                }
+            })
+            .retry(new Predicate<Throwable>() {
+                @Override
+                public boolean test(Throwable throwable) {
+                    return throwable instanceof PreemptedException;
+                }
+            });
+    }
+
+    private void countUserInitiatedCalls(int delta) {
+        synchronized (userInitiatedCallsLock) {
+            userInitiatedCallsInFlight += delta;
+            userInitiatedCalls.onNext(userInitiatedCallsInFlight);
+        }
+    }
+
+    private static Scheduler createBackgroundScheduler(int maxBackgroundCalls) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxBackgroundCalls, maxBackgroundCalls,
+            BACKGROUND_THREAD_KEEP_ALIVE_IN_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+            new ThreadFactory() {
+                private final AtomicInteger threadCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "background-call-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+        //Idle threads go away, so that replaced schedulers (see above) wind down on their own.
+        executor.allowCoreThreadTimeOut(true);
+        return Schedulers.from(executor);
+    }
+
+    private static final class PreemptedException extends Exception {
+
+        private PreemptedException() {
+            super("Preempted by a user-initiated call.");
+        }
+
+    }
+
+}
@@ -0,0 +1,6 @@
+package com.github.guilhermesgb.steward.network;
+
+public enum RequestPriority {
+    USER_INITIATED, //Someone is waiting on it right now, so it goes out at once.
+    BACKGROUND //Nobody is waiting on it, so it gives way to user-initiated calls (see RequestPrioritizer).
+}
@@ -0,0 +1,161 @@
+package com.github.guilhermesgb.steward.network;
+
+import org.reactivestreams.Publisher;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.reactivex.SingleSource;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import retrofit2.Response;
+
+/**
+ * Retries transient failures (I/O errors, timeouts, 502, 503 and 504 answers) with jittered
+ * exponential backoff, and keeps a circuit breaker per server, so that a server that keeps
+ * failing is left alone for a while: calls then fail fast with a CircuitOpenException,
+ * letting callers fall back to whatever they have cached without any network attempt.
+ */
+public class ResiliencePolicy {
+
+    static final int DEFAULT_MAX_RETRIES = 2;
+    static final long DEFAULT_BASE_RETRY_DELAY_IN_MILLIS = 250;
+    static final long DEFAULT_MAX_RETRY_DELAY_IN_MILLIS = 2000;
+
+    private final Map<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+    private volatile int maxRetries = DEFAULT_MAX_RETRIES;
+    private volatile Backoff retryBackoff = new Backoff(DEFAULT_BASE_RETRY_DELAY_IN_MILLIS,
+        DEFAULT_MAX_RETRY_DELAY_IN_MILLIS, TimeUnit.MILLISECONDS);
+
+    /**
+     * Tunes how transient failures are retried.
+     * @param maxRetries how many times a call is retried at most -- zero disables retries.
+     * @param baseDelay the greatest delay before the first retry, doubling for each retry after it.
+     * @param maxDelay the greatest delay before any retry.
+     * @param unit the time unit of both delays.
+     */
+    public void setRetries(int maxRetries, long baseDelay, long maxDelay, TimeUnit unit) {
+        this.maxRetries = Math.max(0, maxRetries);
+        this.retryBackoff = new Backoff(baseDelay, maxDelay, unit);
+    }
+
+    public CircuitBreaker getCircuitBreaker(String apiBaseUrl) {
+        CircuitBreaker circuitBreaker = circuitBreakers.get(apiBaseUrl);
+        if (circuitBreaker == null) {
+            synchronized (circuitBreakers) {
+                circuitBreaker = circuitBreakers.get(apiBaseUrl);
+                if (circuitBreaker == null) {
+                    circuitBreaker = new CircuitBreaker();
+                    circuitBreakers.put(apiBaseUrl, circuitBreaker);
+                }
+            }
+        }
+        return circuitBreaker;
+    }
+
+    /**
+     * Subjects a call to the server's circuit breaker, retrying it on transient failures.
+     * @param apiBaseUrl the URL of the server being called.
+     * @param call the actual call, subscribed to once more for every retry.
+     * @return the given call, failing fast while the server's circuit is open.
+     */
+    <T> Single<T> apply(final String apiBaseUrl, final Single<T> call) {
+        final CircuitBreaker circuitBreaker = getCircuitBreaker(apiBaseUrl);
+        final int maxRetries = this.maxRetries;
+        final Backoff retryBackoff = this.retryBackoff;
+        Single<T> attempt = Single.defer(new Callable<SingleSource<T>>() {
+            @Override
+            public SingleSource<T> call() {
+                if (!circuitBreaker.allowRequest()) {
+                    return Single.error(new CircuitOpenException
+                        (apiBaseUrl, circuitBreaker.getRemainingOpenMillis()));
+                }
+                return call
+                    .map(new Function<T, T>() {
+                        @Override
+                        public T apply(T result) throws Exception {
+                            if (result instanceof Response && isServerFailure(((Response) result).code())) {
+                                circuitBreaker.onFailure();
+                                if (isTransient((Response) result)) {
+                                    throw new TransientResponseException((Response) result);
+                                }
+                            } else {
+                                circuitBreaker.onSuccess();
+                            }
+                            return result;
+                        }
+                    })
+                    .doOnError(new Consumer<Throwable>() {
+                        @Override
+                        public void accept(Throwable throwable) {
+                            if (isTransient(throwable)) {
+                                circuitBreaker.onFailure();
+                            }
+                        }
+                    });
+            }
+        });
+        return attempt
+            .retryWhen(new Function<Flowable<Throwable>, Publisher<Long>>() {
+                @Override
+                public Publisher<Long> apply(Flowable<Throwable> errors) {
+                    return errors.flatMap(new Function<Throwable, Publisher<Long>>() {
+                        private int retries = 0;
+
+                        @Override
+                        public Publisher<Long> apply(Throwable throwable) {
+                            if (++retries > maxRetries || !(isTransient(throwable)
+                                    || throwable instanceof TransientResponseException)) {
+                                return Flowable.error(throwable);
+                            }
+                            return Flowable.timer(retryBackoff.delayFor(retries), TimeUnit.MILLISECONDS);
+                        }
+                    });
+                }
+            })
+            .onErrorResumeNext(new Function<Throwable, SingleSource<T>>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public SingleSource<T> apply(Throwable throwable) {
+                    //Out of retries, the last answer is handed over as if it was never retried.
+                    if (throwable instanceof TransientResponseException) {
+                        return Single.just((T) ((TransientResponseException) throwable).response);
+                    }
+                    return Single.error(throwable);
+                }
+            });
+    }
+
+    private static boolean isServerFailure(int code) {
+        return code >= 500;
+    }
+
+    private static boolean isTransient(Response response) {
+        int code = response.code();
+        return code == 502 || code == 503 || code == 504;
+    }
+
+    //Failing fast because of an open circuit is not a failure of the server itself.
+    private static boolean isTransient(Throwable throwable) {
+        return (throwable instanceof IOException && !(throwable instanceof CircuitOpenException))
+            || throwable instanceof TimeoutException;
+    }
+
+    private static final class TransientResponseException extends Exception {
+
+        private final Response response;
+
+        private TransientResponseException(Response response) {
+            super("Transient failure answered: HTTP " + response.code());
+            this.response = response;
+        }
+
+    }
+
+}
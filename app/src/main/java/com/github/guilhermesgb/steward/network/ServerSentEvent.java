@@ -0,0 +1,35 @@
+package com.github.guilhermesgb.steward.network;
+
+public class ServerSentEvent {
+
+    public static final String DEFAULT_TYPE = "message";
+
+    private final String id;
+    private final String type;
+    private final String data;
+
+    ServerSentEvent(String id, String type, String data) {
+        this.id = id;
+        this.type = type;
+        this.data = data;
+    }
+
+    //The last event id seen in the stream so far, which is what resuming from this event takes.
+    public String getId() {
+        return id;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getData() {
+        return data;
+    }
+
+    @Override
+    public String toString() {
+        return "ServerSentEvent{id=" + id + ", type=" + type + ", data=" + data + "}";
+    }
+
+}
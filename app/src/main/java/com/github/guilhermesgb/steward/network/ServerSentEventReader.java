@@ -0,0 +1,95 @@
+package com.github.guilhermesgb.steward.network;
+
+import java.io.IOException;
+
+import okio.BufferedSource;
+
+/**
+ * Reads server-sent events (text/event-stream) off a streamed response body, one at a time,
+ * keeping track of the last event id and of the reconnection time asked for by the server.
+ * Comments (used by servers as heartbeats) and fields other than event, data, id and retry
+ * are skipped, as are events carrying no data, as per the event stream format.
+ */
+public class ServerSentEventReader {
+
+    private final BufferedSource source;
+    private String lastEventId;
+    private String pendingEventId; //Only becomes the last event id once its event is over.
+    private long retryInMillis = -1;
+
+    /**
+     * @param source the streamed response body to read events from.
+     * @param lastEventId the last event id sent along when connecting, if any, so that
+     *                    events lacking an id of their own are still resumable from it.
+     */
+    public ServerSentEventReader(BufferedSource source, String lastEventId) {
+        this.source = source;
+        this.lastEventId = lastEventId;
+        this.pendingEventId = lastEventId;
+    }
+
+    /**
+     * Blocks until the next event is fully read.
+     * @return the next event, or null if the stream ended before another event came in.
+     * @throws IOException if reading the stream fails.
+     */
+    public ServerSentEvent next() throws IOException {
+        String type = null;
+        StringBuilder data = null;
+        String line;
+        while ((line = source.readUtf8Line()) != null) {
+            if (line.isEmpty()) {
+                lastEventId = pendingEventId;
+                if (data != null) {
+                    data.setLength(data.length() - 1); //Trailing line feed of the last data line.
+                    return new ServerSentEvent(lastEventId,
+                        type == null ? ServerSentEvent.DEFAULT_TYPE : type, data.toString());
+                }
+                type = null;
+                continue;
+            }
+            if (line.charAt(0) == ':') {
+                continue;
+            }
+            int colon = line.indexOf(':');
+            String field = colon < 0 ? line : line.substring(0, colon);
+            String value = colon < 0 ? "" : line.substring(line.length() > colon + 1
+                && line.charAt(colon + 1) == ' ' ? colon + 2 : colon + 1);
+            switch (field) {
+                case "event":
+                    type = value;
+                    break;
+                case "data":
+                    if (data == null) {
+                        data = new StringBuilder();
+                    }
+                    data.append(value).append('\n');
+                    break;
+                case "id":
+                    if (value.indexOf('\u0000') < 0) {
+                        pendingEventId = value;
+                    }
+                    break;
+                case "retry":
+                    try {
+                        retryInMillis = Long.parseLong(value);
+                    } catch (NumberFormatException ignore) {}
+                    break;
+                default:
+                    break;
+            }
+        }
+        return null; //An event left incomplete by the end of the stream is discarded.
+    }
+
+    //Events carrying no data still count, so servers may hand out ids to resume from (e.g. upon connecting).
+    public String getLastEventId() {
+        return lastEventId;
+    }
+
+    //How long to wait before reconnecting, as last asked for by the server -- negative if it never did.
+    public long getRetryInMillis() {
+        return retryInMillis;
+    }
+
+}
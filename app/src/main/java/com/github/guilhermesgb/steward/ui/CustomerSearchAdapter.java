@@ -0,0 +1,40 @@
+package com.github.guilhermesgb.steward.ui;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.widget.ArrayAdapter;
+import android.widget.Filter;
+
+import com.github.guilhermesgb.steward.R;
+
+import java.util.List;
+
+//Customers searched for are already matched against what was typed (see CustomerSearchIndex),
+// so they're suggested as they are, rather than filtered again by the adapter.
+class CustomerSearchAdapter extends ArrayAdapter<CustomerItemView> {
+
+    private final Filter filter = new Filter() {
+        @Override
+        protected FilterResults performFiltering(CharSequence constraint) {
+            return new FilterResults();
+        }
+
+        @Override
+        protected void publishResults(CharSequence constraint, FilterResults results) {
+            //Whatever was found last stays suggested until the search for this constraint is done.
+            results.count = getCount();
+            notifyDataSetChanged();
+        }
+    };
+
+    CustomerSearchAdapter(@NonNull Context context, @NonNull List<CustomerItemView> customers) {
+        super(context, R.layout.adapter_customer, customers);
+    }
+
+    @NonNull
+    @Override
+    public Filter getFilter() {
+        return filter;
+    }
+
+}
@@ -20,6 +20,7 @@ import android.widget.TextView;
 
 import com.github.guilhermesgb.steward.R;
 import com.github.guilhermesgb.steward.mvi.customer.intent.FetchCustomersAction;
+import com.github.guilhermesgb.steward.mvi.customer.intent.SearchCustomersAction;
 import com.github.guilhermesgb.steward.mvi.customer.model.FetchCustomersViewState;
 import com.github.guilhermesgb.steward.mvi.customer.schema.Customer;
 import com.github.guilhermesgb.steward.mvi.reservation.intent.ChooseCustomerAction;
@@ -72,6 +73,7 @@ public class HomeActivity
     private static final int RENDERER_ITEM_VIEW_CODE_TABLE = 4;
     private static final int RENDERER_ITEM_VIEW_CODE_TABLE_SPACE = 5;
     private static final int RENDERER_ITEM_VIEW_CODE_TABLE_CONFIRM = 6;
+    private static final int CUSTOMERS_LEFT_BEFORE_LOADING_MORE = 10;
 
     @BindView(R.id.contentView) ViewGroup contentView;
     @BindView(R.id.toolbarView) Toolbar toolbarView;
@@ -90,12 +92,18 @@ public class HomeActivity
     private ListAdapteeCollection<RendererItemView> customersItemViews = new ListAdapteeCollection<>();
     private ArrayAdapter<CustomerItemView> customersSearchItemViewsAdapter;
     private List<CustomerItemView> customersSearchItemViews = new LinkedList<>();
+    private SearchView.SearchAutoComplete customersSearchAutoComplete;
     private RVRendererAdapter<RendererItemView> tablesItemViewsAdapter;
     private ListAdapteeCollection<RendererItemView> tablesItemViews = new ListAdapteeCollection<>();
 
     private MakeReservationsViewState lastStateWithPrecedence;
+    //Customers come a page at a time, more pages being asked for as the list is scrolled to its end.
+    private int customerPagesLoaded = 0;
+    private boolean moreCustomerPagesAvailable = false;
 
     PublishSubject<FetchCustomersAction> fetchCustomersActions = PublishSubject.create();
+    PublishSubject<FetchCustomersAction> loadMoreCustomersActions = PublishSubject.create();
+    PublishSubject<SearchCustomersAction> searchCustomersActions = PublishSubject.create();
     PublishSubject<ChooseCustomerAction> chooseCustomerActions = PublishSubject.create();
     PublishSubject<FetchTablesAction> fetchTablesActions = PublishSubject.create();
     PublishSubject<ChooseTableAction> chooseTableActions = PublishSubject.create();
@@ -205,8 +213,23 @@ public class HomeActivity
             .bind(RENDERER_ITEM_VIEW_CODE_CUSTOMER_WITH_DIVIDER, new CustomerDividerRenderer())
             .build();
         customersItemViewsAdapter = new RVRendererAdapter<>(customersRendererBuilder, customersItemViews);
-        customersView.setLayoutManager(new LinearLayoutManager(this));
+        final LinearLayoutManager customersLayoutManager = new LinearLayoutManager(this);
+        customersView.setLayoutManager(customersLayoutManager);
         customersView.setAdapter(customersItemViewsAdapter);
+        customersView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                if (dy <= 0 || !moreCustomerPagesAvailable) {
+                    return;
+                }
+                int lastVisiblePosition = customersLayoutManager.findLastVisibleItemPosition();
+                if (lastVisiblePosition >= customersLayoutManager.getItemCount() - CUSTOMERS_LEFT_BEFORE_LOADING_MORE) {
+                    //Asked for only once per page, until the page comes in.
+                    moreCustomerPagesAvailable = false;
+                    loadMoreCustomersActions.onNext(new FetchCustomersAction(customerPagesLoaded + 1));
+                }
+            }
+        });
         RendererBuilder<RendererItemView> tablesRendererBuilder = new RendererBuilderFactory<>()
             .bind(RENDERER_ITEM_VIEW_CODE_TABLE, new TableRenderer())
             .bind(RENDERER_ITEM_VIEW_CODE_TABLE_SPACE, new BasicPrototypeRenderer() {
@@ -238,9 +261,21 @@ public class HomeActivity
         }
         customersSearchView.setQuery("", false);
         customersSearchView.setIconified(true);
-        customersSearchItemViewsAdapter = new ArrayAdapter<>(this,
-            R.layout.adapter_customer, customersSearchItemViews);
-        searchViewHolder.searchAutoComplete.setAdapter(customersSearchItemViewsAdapter);
+        customersSearchItemViewsAdapter = new CustomerSearchAdapter(this, customersSearchItemViews);
+        customersSearchAutoComplete = searchViewHolder.searchAutoComplete;
+        customersSearchAutoComplete.setAdapter(customersSearchItemViewsAdapter);
+        customersSearchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                return false;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String query) {
+                searchCustomersActions.onNext(new SearchCustomersAction(query));
+                return false;
+            }
+        });
         searchViewHolder.searchAutoComplete.setOnItemClickListener(new AdapterView.OnItemClickListener() {
             @Override
             public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
@@ -372,6 +407,16 @@ public class HomeActivity
         return fetchCustomersActions;
     }
 
+    @Override
+    public Observable<FetchCustomersAction> loadMoreCustomersIntent() {
+        return loadMoreCustomersActions;
+    }
+
+    @Override
+    public Observable<SearchCustomersAction> searchCustomersIntent() {
+        return searchCustomersActions;
+    }
+
     @Override
     public Observable<ChooseCustomerAction> chooseCustomerIntent() {
         return chooseCustomerActions;
@@ -458,6 +503,14 @@ public class HomeActivity
         state.continued(new Consumer<MakeReservationsViewState.Initial>() {
             @Override
             public void accept(MakeReservationsViewState.Initial initial) {
+                if (initial.getSubstate() instanceof FetchCustomersViewState.SuccessFetchingCustomers
+                        && ((FetchCustomersViewState.SuccessFetchingCustomers) initial
+                            .getSubstate()).isSearchResult()) {
+                    //Search results are only ever suggested, leaving everything else as it is.
+                    renderCustomerSearchResults((FetchCustomersViewState
+                        .SuccessFetchingCustomers) initial.getSubstate());
+                    return;
+                }
                 renderCustomersSubstate(initial.getSubstate());
                 updateLastRenderedState(initial);
             }
@@ -557,8 +610,11 @@ public class HomeActivity
         customersItemViewsAdapter.notifyDataSetChanged();
     }
 
-    private void renderCustomers(final FetchCustomersViewState.SuccessFetchingCustomers substate,
-                                 final Customer chosenCustomer) {
+    private void renderCustomerSearchResults(FetchCustomersViewState.SuccessFetchingCustomers substate) {
+        //Results arriving after the query changed again are stale, their replacement coming next.
+        if (!substate.getSearchQuery().contentEquals(customersSearchView.getQuery())) {
+            return;
+        }
         customersSearchItemViews.clear();
         for (Customer customer : substate.getCustomers()) {
             customersSearchItemViews.add(new CustomerItemView
@@ -571,6 +627,15 @@ public class HomeActivity
             );
         }
         customersSearchItemViewsAdapter.notifyDataSetChanged();
+        if (customersSearchItemViews.isEmpty() || !customersSearchAutoComplete.hasFocus()) {
+            customersSearchAutoComplete.dismissDropDown();
+        } else {
+            customersSearchAutoComplete.showDropDown();
+        }
+    }
+
+    private void renderCustomers(final FetchCustomersViewState.SuccessFetchingCustomers substate,
+                                 final Customer chosenCustomer) {
         if (lastStateWithPrecedence != null && chosenCustomer == null) {
             lastStateWithPrecedence.continued(null, new Consumer<MakeReservationsViewState.CustomerChosen>() {
                 @Override
@@ -616,6 +681,10 @@ public class HomeActivity
         if (chosenCustomer != null) {
             customers = Collections.singletonList(chosenCustomer);
             customersSearchView.setQuery("", false);
+            moreCustomerPagesAvailable = false;
+        } else {
+            customerPagesLoaded = substate.getPagesLoaded();
+            moreCustomerPagesAvailable = substate.hasMorePages();
         }
         for (int i=0; i<customers.size(); i++) {
             final int rendererItemViewCode;
@@ -663,6 +732,14 @@ public class HomeActivity
                     }
                 });
         }
+        if (moreCustomerPagesAvailable && !customers.isEmpty()) {
+            customersItemViews.add(new RendererItemView() {
+                @Override
+                public int getItemViewCode() {
+                    return RENDERER_ITEM_VIEW_CODE_CUSTOMER_LOADING;
+                }
+            });
+        }
         if (chosenCustomer != null) {
             if (errorFeedbackViewWrapper.getVisibility() == GONE) {
                 hideErrorFeedbackViewPartially();
@@ -714,6 +791,10 @@ public class HomeActivity
                 return;
             }
         }
+        if (substate.getAvailableTableCount() >= 0) {
+            toolbarView.setSubtitle(getString(R.string.format_tables_summary,
+                substate.getAvailableTableCount(), substate.getOccupiedTableCount()));
+        }
         TransitionManager.beginDelayedTransition(tablesView);
         List<Table> tables = substate.getTables();
         if (chosenTable != null) {
@@ -0,0 +1,66 @@
+package com.github.guilhermesgb.steward.utils;
+
+import java.io.IOException;
+
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ByteString;
+
+//Helpers for the compact binary wire format: unsigned LEB128 varints and strings
+// prefixed by their length plus one in bytes, a zero length standing for null.
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class BinaryUtils {
+
+    //Far more items than any payload holds (be it tables or customers), so that only corrupt
+    // (or hostile) counts get past it. Counts come off the network, so they're bounded by this
+    // and never used to presize anything.
+    public static final long MAX_COUNT = 1 << 20;
+
+    //A count of items to follow, as a varint (see checkCount).
+    public static long readCount(BufferedSource source, String items) throws IOException {
+        return checkCount(readVarint(source), items);
+    }
+
+    public static long checkCount(long count, String items) throws IOException {
+        if (count < 0 || count > MAX_COUNT) {
+            throw new IOException("Malformed payload: " + count + " " + items + ".");
+        }
+        return count;
+    }
+
+    public static long readVarint(BufferedSource source) throws IOException {
+        long value = 0;
+        for (int shift=0; shift<64; shift+=7) {
+            byte current = source.readByte();
+            value |= (long) (current & 0x7F) << shift;
+            if ((current & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint: longer than 64 bits.");
+    }
+
+    public static void writeVarint(BufferedSink sink, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            sink.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        sink.writeByte((int) value);
+    }
+
+    public static String readOptionalString(BufferedSource source) throws IOException {
+        long length = readVarint(source);
+        return length == 0 ? null : source.readUtf8(length - 1);
+    }
+
+    public static void writeOptionalString(BufferedSink sink, String value) throws IOException {
+        if (value == null) {
+            writeVarint(sink, 0);
+            return;
+        }
+        ByteString bytes = ByteString.encodeUtf8(value);
+        writeVarint(sink, bytes.size() + 1);
+        sink.write(bytes);
+    }
+
+}
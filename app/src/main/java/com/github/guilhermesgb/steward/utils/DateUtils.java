@@ -1,20 +1,27 @@
 package com.github.guilhermesgb.steward.utils;
 
 import org.joda.time.DateTime;
-import org.joda.time.DateTimeZone;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
 
-import java.text.SimpleDateFormat;
 import java.util.Locale;
 
 public class DateUtils {
 
+    //Unlike SimpleDateFormat, Joda formatters are immutable and thus safe to share across threads.
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormat
+        .forPattern("yyyy-MM-dd'T'HH:mm:ss.SSSZ").withLocale(Locale.US).withZoneUTC();
+
     public static String formatDate(DateTime date) {
-        return formatDate(date, "yyyy-MM-dd'T'HH:mm:ss.SSSZ");
+        return date == null ? null : DATE_FORMATTER.print(date);
+    }
+
+    public static String formatDate(long millis) {
+        return DATE_FORMATTER.print(millis);
     }
 
-    private static String formatDate(DateTime date, String pattern) {
-        return date == null ? null : new SimpleDateFormat(pattern,
-            Locale.US).format(date.toDateTime(DateTimeZone.UTC).toDate());
+    public static long parseDate(String date) {
+        return DATE_FORMATTER.parseMillis(date);
     }
 
 }
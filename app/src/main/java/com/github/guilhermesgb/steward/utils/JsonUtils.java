@@ -8,9 +8,12 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonNull;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 
 import org.joda.time.DateTime;
 
+import java.io.IOException;
 import java.lang.reflect.Array;
 import java.lang.reflect.Method;
 import java.util.LinkedList;
@@ -166,6 +169,49 @@ public class JsonUtils {
         }
     }
 
+    public static String nextOptionalString(JsonReader reader) throws IOException {
+        return nextString(reader, null);
+    }
+
+    public static String nextString(JsonReader reader, String defaultValue) throws IOException {
+        switch (reader.peek()) {
+            case STRING:
+            case NUMBER:
+                return reader.nextString();
+            case BOOLEAN:
+                return String.valueOf(reader.nextBoolean());
+            default:
+                reader.skipValue();
+                return defaultValue;
+        }
+    }
+
+    public static int nextOptionalInt(JsonReader reader) throws IOException {
+        return nextInt(reader, -1);
+    }
+
+    public static int nextInt(JsonReader reader, int defaultValue) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.NUMBER || token == JsonToken.STRING) {
+            return reader.nextInt();
+        }
+        reader.skipValue();
+        return defaultValue;
+    }
+
+    public static boolean nextBoolean(JsonReader reader, boolean defaultValue) throws IOException {
+        switch (reader.peek()) {
+            case BOOLEAN:
+                return reader.nextBoolean();
+            case STRING:
+            case NUMBER:
+                return Boolean.parseBoolean(reader.nextString());
+            default:
+                reader.skipValue();
+                return defaultValue;
+        }
+    }
+
     public static <P extends Parcelable> Parcelable getOptionalParcelable(JsonObject json, String key,
                                                                           Class<P> parcelableClass) {
         return getParcelable(json, key, parcelableClass, null);
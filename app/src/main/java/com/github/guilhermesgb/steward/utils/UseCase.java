@@ -1,13 +1,25 @@
 package com.github.guilhermesgb.steward.utils;
 
+import android.arch.persistence.room.RxRoom;
 import android.content.Context;
 
 import com.github.guilhermesgb.steward.database.DatabaseResource;
+import com.github.guilhermesgb.steward.database.SyncState;
 import com.github.guilhermesgb.steward.network.ApiEndpoints;
 import com.github.guilhermesgb.steward.network.ApiResource;
+import com.github.guilhermesgb.steward.network.CircuitBreaker;
+import com.github.guilhermesgb.steward.network.RequestPriority;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.schedulers.Schedulers;
 
 public abstract class UseCase {
 
+    private static final long MIN_ERROR_BOUNCE_DELAY_IN_MILLIS = 5000;
+    private static final long LOCAL_CHANGES_DEBOUNCE_IN_MILLIS = 150;
+
     private final String apiBaseUrl; //for networking purposes (endpoint calls)
     private final Context context;  //for persistence purposes (database operations)
     //Flag to indicate whether this use case is being tested, intended so that the
@@ -16,6 +28,10 @@ public abstract class UseCase {
     // effectively making the error state only last 5 seconds at most).
     //This is done because we don't want to wait these 5 seconds when running our unit tests.
     private boolean beingTested = false;
+    //Whenever local data was synced more recently than this, foreground fetches skip the network.
+    private long freshnessThresholdInMillis = 0;
+    //Calls are made on behalf of someone waiting on them, unless told otherwise (e.g. by background jobs).
+    private RequestPriority requestPriority = RequestPriority.USER_INITIATED;
 
     public UseCase(String apiBaseUrl, Context context) {
         this.apiBaseUrl = apiBaseUrl;
@@ -23,7 +39,80 @@ public abstract class UseCase {
     }
 
     protected ApiEndpoints getApi() {
-        return ApiResource.getInstance(apiBaseUrl);
+        return ApiResource.getInstance(apiBaseUrl, requestPriority);
+    }
+
+    /**
+     * Sets the priority of every call this use case makes from now on. Background calls give
+     * way to user-initiated ones, waiting for these to be over (see RequestPrioritizer).
+     * @param requestPriority the priority of the calls.
+     */
+    public void setRequestPriority(RequestPriority requestPriority) {
+        this.requestPriority = requestPriority;
+    }
+
+    protected CircuitBreaker getCircuitBreaker() {
+        return ApiResource.getCircuitBreaker(apiBaseUrl);
+    }
+
+    /**
+     * Paces how error states fall back to the initial state: ticks twice, each tick being
+     * as far apart as the circuit breaker keeps calls from going out (so that new intents
+     * won't just bounce off an open circuit), yet never closer than 5 seconds apart.
+     * @return the ticks to be zipped with the error state and the initial state following it.
+     */
+    protected Observable<Long> errorBounceTicks() {
+        long delayInMillis = Math.max(MIN_ERROR_BOUNCE_DELAY_IN_MILLIS,
+            getCircuitBreaker().getRemainingOpenMillis());
+        //When being tested, the very same delay goes by a thousand times faster.
+        return Observable.interval(delayInMillis, !isBeingTested()
+            ? TimeUnit.MILLISECONDS : TimeUnit.MICROSECONDS).take(2);
+    }
+
+    /**
+     * Lets fetches be served from the local database alone whenever its data was brought up to
+     * date with the server (e.g. by background cache warming) within the given threshold.
+     * @param threshold for how long synced data is considered fresh -- zero (the default)
+     *                  means the server is always asked for fresh data.
+     * @param unit the time unit of the threshold.
+     */
+    public void setFreshnessThreshold(long threshold, TimeUnit unit) {
+        freshnessThresholdInMillis = unit.toMillis(Math.max(0, threshold));
+    }
+
+    protected boolean isFresh(String resource) {
+        if (freshnessThresholdInMillis <= 0) {
+            return false;
+        }
+        SyncState syncState = getDatabase().syncStateDao().findByResource(resource).blockingGet();
+        return syncState != null && syncState.getSyncedAt() != null
+            && System.currentTimeMillis() - syncState.getSyncedAt() < freshnessThresholdInMillis;
+    }
+
+    //Records that the given resource has just been brought up to date, keeping its sync cursor.
+    protected void markSynced(String resource) {
+        SyncState syncState = getDatabase().syncStateDao().findByResource(resource).blockingGet();
+        getDatabase().syncStateDao().insert(new SyncState(resource,
+            syncState == null ? null : syncState.getCursor(), System.currentTimeMillis()));
+    }
+
+    /**
+     * Ticks whenever any of the given database tables gets written to, no matter where from (e.g.
+     * reservations being confirmed, the cleanup worker, syncs). Writes coming in bursts tick only
+     * once, as soon as the burst is over, so that whatever is read again on every tick is read
+     * once per burst. Ticks come on an I/O thread, ready for database reads.
+     * @param tableNames the names of the database tables to watch.
+     * @return the ticks, one per burst of writes made after subscription.
+     */
+    protected Observable<Object> localChanges(String... tableNames) {
+        //Room ticks right away on subscription as well, which is skipped here.
+        //When being tested, the very same debounce goes by a thousand times faster.
+        return RxRoom.createFlowable(getDatabase(), tableNames)
+            .skip(1)
+            .debounce(LOCAL_CHANGES_DEBOUNCE_IN_MILLIS, !isBeingTested()
+                ? TimeUnit.MILLISECONDS : TimeUnit.MICROSECONDS)
+            .observeOn(Schedulers.io())
+            .toObservable();
     }
 
     public DatabaseResource getDatabase() {
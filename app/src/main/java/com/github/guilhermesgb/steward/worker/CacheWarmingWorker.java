@@ -0,0 +1,46 @@
+package com.github.guilhermesgb.steward.worker;
+
+import android.support.annotation.NonNull;
+
+import com.evernote.android.job.Job;
+import com.github.guilhermesgb.steward.mvi.customer.FetchCustomersUseCase;
+import com.github.guilhermesgb.steward.mvi.table.FetchTablesUseCase;
+
+import timber.log.Timber;
+
+public class CacheWarmingWorker extends Job {
+
+    //Runs every now and then whenever there's network connectivity...
+    public static final String TAG = "cache_warming_worker";
+    //...and once more while charging (e.g. overnight), so the cache is warm before the doors open.
+    public static final String TAG_WHILE_CHARGING = "cache_warming_while_charging_worker";
+
+    private final FetchCustomersUseCase fetchCustomersUseCase;
+    private final FetchTablesUseCase fetchTablesUseCase;
+
+    public CacheWarmingWorker(FetchCustomersUseCase fetchCustomersUseCase,
+                              FetchTablesUseCase fetchTablesUseCase) {
+        this.fetchCustomersUseCase = fetchCustomersUseCase;
+        this.fetchTablesUseCase = fetchTablesUseCase;
+    }
+
+    @NonNull
+    @Override
+    protected Result onRunJob(@NonNull Params params) {
+        Timber.d("Cache warming work fired!");
+        //Prefetches customers and tables into the local database, so that
+        // the first screen of the day is served without waiting on the network.
+        try {
+            boolean customersRefreshed = fetchCustomersUseCase.refreshLocalCustomers();
+            boolean tablesRefreshed = fetchTablesUseCase.refreshLocalTables();
+            Timber.d("Cache warming work finished: customers refreshed? %s; tables refreshed? %s.",
+                customersRefreshed, tablesRefreshed);
+            //Anything left unrefreshed will simply be fetched in the foreground as usual.
+            return customersRefreshed && tablesRefreshed ? Result.SUCCESS : Result.FAILURE;
+        } catch (Throwable throwable) {
+            Timber.e(throwable, "Cache warming work was marked a failure.");
+            return Result.FAILURE;
+        }
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.github.guilhermesgb.steward.worker;
+
+import android.support.annotation.NonNull;
+
+import com.evernote.android.job.Job;
+import com.evernote.android.job.JobRequest;
+import com.github.guilhermesgb.steward.mvi.reservation.SyncReservationsUseCase;
+
+import java.util.concurrent.TimeUnit;
+
+import timber.log.Timber;
+
+public class OutboxSyncWorker extends Job {
+
+    //Runs every now and then whenever there's network connectivity...
+    public static final String TAG = "outbox_sync_worker";
+    //...and shortly after new reservations get made, so the server hears of them soon enough.
+    public static final String TAG_SOON = "outbox_sync_soon_worker";
+
+    private final SyncReservationsUseCase syncReservationsUseCase;
+
+    public OutboxSyncWorker(SyncReservationsUseCase syncReservationsUseCase) {
+        this.syncReservationsUseCase = syncReservationsUseCase;
+    }
+
+    //Reservations made in a row (e.g. at rush hour) are uploaded together, as rescheduling
+    // replaces the pending one-off work, which only fires once things calm down a little.
+    public static void scheduleSoon() {
+        new JobRequest.Builder(TAG_SOON)
+            .setExecutionWindow(TimeUnit.SECONDS.toMillis(10),
+                TimeUnit.MINUTES.toMillis(1))
+            .setRequiredNetworkType(JobRequest.NetworkType.CONNECTED)
+            .setBackoffCriteria(TimeUnit.SECONDS.toMillis(30), JobRequest.BackoffPolicy.EXPONENTIAL)
+            .setUpdateCurrent(true)
+            .build()
+            .schedule();
+    }
+
+    @NonNull
+    @Override
+    protected Result onRunJob(@NonNull Params params) {
+        Timber.d("Outbox sync work fired!");
+        try {
+            boolean drained = syncReservationsUseCase.uploadPendingMutations();
+            Timber.d("Outbox sync work finished: outbox drained? %s.", drained);
+            //Whatever is left in the outbox is uploaded again later on, backing off meanwhile.
+            return drained ? Result.SUCCESS : Result.RESCHEDULE;
+        } catch (Throwable throwable) {
+            Timber.e(throwable, "Outbox sync work was marked a failure.");
+            return Result.RESCHEDULE;
+        }
+    }
+
+}
@@ -4,18 +4,21 @@ import android.support.annotation.NonNull;
 
 import com.evernote.android.job.Job;
 import com.github.guilhermesgb.steward.database.DatabaseResource;
-import com.github.guilhermesgb.steward.mvi.table.schema.Table;
+import com.github.guilhermesgb.steward.mvi.reservation.schema.Reservation;
+import com.github.guilhermesgb.steward.mvi.table.TableAvailabilityIndex;
 
+import java.util.ArrayList;
 import java.util.List;
 
-import io.reactivex.functions.Consumer;
-import io.reactivex.schedulers.Schedulers;
 import timber.log.Timber;
 
 public class ReservationsCleanupWorker extends Job {
 
     public static final String TAG = "reservations_cleanup_worker";
 
+    //Keeps every batch well under SQLite's limit of variables per statement.
+    static final int BATCH_SIZE = 200;
+
     private final DatabaseResource database;
 
     public ReservationsCleanupWorker(DatabaseResource database) {
@@ -26,30 +29,39 @@ public class ReservationsCleanupWorker extends Job {
     @Override
     protected Result onRunJob(@NonNull Params params) {
         Timber.wtf("WTF? reservations cleanup work fired!");
-        //Removes all reservations and makes all tables available all in one sweep.
+        //Removes expired reservations, a batch at a time, and makes their tables available again.
+        int expiredReservations = 0;
         try {
+            long now = System.currentTimeMillis();
             database.beginTransaction();
-            database.reservationDao().deleteAll();
-            database.tableDao().findAll().toObservable()
-                .doOnNext(new Consumer<List<Table>>() {
-                    @Override
-                    public void accept(List<Table> tables) {
-                        for (Table table : tables) {
-                            table.setAvailable(true);
-                        }
-                        database.tableDao().insertAll(tables);
-                    }
-                })
-                .subscribeOn(Schedulers.io())
-                .subscribe();
+            List<Reservation> expired;
+            do {
+                expired = database.reservationDao().findExpired(now, BATCH_SIZE);
+                if (expired.isEmpty()) {
+                    break;
+                }
+                List<Integer> tableNumbers = new ArrayList<>(expired.size());
+                for (Reservation reservation : expired) {
+                    tableNumbers.add(reservation.getTableNumber());
+                }
+                database.reservationDao().delete(expired);
+                database.reservationDao().releaseUnreservedTables(tableNumbers);
+                expiredReservations += expired.size();
+            } while (expired.size() == BATCH_SIZE);
             database.setTransactionSuccessful();
-            Timber.wtf("WTF? reservations cleanup work was marked successful.");
+            Timber.wtf("WTF? reservations cleanup work was marked successful: %d reservations expired.",
+                expiredReservations);
             return Result.SUCCESS;
         } catch (Throwable throwable) {
-            Timber.wtf("WTF? reservations cleanup work was marked a failure.");
+            Timber.wtf(throwable, "WTF? reservations cleanup work was marked a failure.");
             return Result.FAILURE;
         } finally {
             database.endTransaction();
+            //Tables released in bulk above are only known to the database, so the index is
+            // left for the next table fetch to reload.
+            if (expiredReservations > 0) {
+                TableAvailabilityIndex.getInstance().invalidate();
+            }
             Timber.wtf("WTF? reservations cleanup work finished!");
         }
     }
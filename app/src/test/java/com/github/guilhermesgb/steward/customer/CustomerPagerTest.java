@@ -0,0 +1,99 @@
+package com.github.guilhermesgb.steward.customer;
+
+import com.github.guilhermesgb.steward.mvi.customer.CustomerPager;
+import com.github.guilhermesgb.steward.mvi.customer.schema.Customer;
+import com.github.guilhermesgb.steward.mvi.customer.schema.CustomerDao;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CustomerPagerTest {
+
+    private static final Customer MARILYN = new Customer("0", "Marilyn", "Monroe");
+    private static final Customer ABRAHAM = new Customer("1", "Abraham", "Lincoln");
+    private static final Customer TERESA = new Customer("2", "Mother", "Teresa");
+    private static final Customer JOHN = new Customer("3", "John F.", "Kennedy");
+    private static final Customer ALBERT = new Customer("4", "Albert", "Einstein");
+
+    @Test
+    public void getPages_directoryOfThreePages_shouldSeekEachPageFromTheLastIdOfThePreviousOne() {
+        // ### SETUP PHASE ###
+
+        CustomerPager customerPager = new CustomerPager(2);
+        CustomerDao customerDaoMock = mockDirectory();
+
+        // ### EXECUTION PHASE ###
+
+        List<Customer> firstPage = customerPager.getPages(customerDaoMock, 1);
+        boolean morePagesAfterFirst = customerPager.hasPagesAfter(1);
+        List<Customer> allPages = customerPager.getPages(customerDaoMock, 4);
+
+        // ### VERIFICATION PHASE ###
+
+        assertThat(firstPage, contains(MARILYN, ABRAHAM));
+        assertThat(morePagesAfterFirst, is(true));
+        assertThat(allPages, contains(MARILYN, ABRAHAM, TERESA, JOHN, ALBERT));
+        assertThat(customerPager.hasPagesAfter(3), is(false));
+        assertThat(customerPager.getPage(customerDaoMock, 5), is(empty()));
+
+        //Verifying if test made expected database operations: every page was read once, by keyset.
+        verify(customerDaoMock, times(1)).findFirstPage(2);
+        verify(customerDaoMock, times(1)).findPageAfter("1", 2);
+        verify(customerDaoMock, times(1)).findPageAfter("3", 2);
+        verify(customerDaoMock, never()).findAll();
+    }
+
+    @Test
+    public void getPages_loadingMoreAndThenFewerPages_shouldReadOnlyNewPagesAndKeepOnlyThoseAskedFor() {
+        // ### SETUP PHASE ###
+
+        CustomerPager customerPager = new CustomerPager(2);
+        CustomerDao customerDaoMock = mockDirectory();
+
+        // ### EXECUTION PHASE ###
+
+        customerPager.getPages(customerDaoMock, 1);
+        customerPager.getPages(customerDaoMock, 2);
+        List<Customer> threePages = customerPager.getPages(customerDaoMock, 3);
+        int pagesKeptForThree = customerPager.getCachedPageCount();
+        List<Customer> firstPage = customerPager.getPages(customerDaoMock, 1);
+        int pagesKeptForOne = customerPager.getCachedPageCount();
+        List<Customer> twoPages = customerPager.getPages(customerDaoMock, 2);
+
+        // ### VERIFICATION PHASE ###
+
+        assertThat(threePages, contains(MARILYN, ABRAHAM, TERESA, JOHN, ALBERT));
+        assertThat(pagesKeptForThree, is(3));
+        assertThat(firstPage, contains(MARILYN, ABRAHAM));
+        assertThat(pagesKeptForOne, is(1));
+        assertThat(twoPages, contains(MARILYN, ABRAHAM, TERESA, JOHN));
+
+        //Verifying if test made expected database operations: loading more read only the new page,
+        // and only the page let go of was read again.
+        verify(customerDaoMock, times(1)).findFirstPage(2);
+        verify(customerDaoMock, times(2)).findPageAfter("1", 2);
+        verify(customerDaoMock, times(1)).findPageAfter("3", 2);
+    }
+
+    private static CustomerDao mockDirectory() {
+        CustomerDao customerDaoMock = mock(CustomerDao.class);
+        when(customerDaoMock.findFirstPage(2)).thenReturn(Arrays.asList(MARILYN, ABRAHAM));
+        when(customerDaoMock.findPageAfter("1", 2)).thenReturn(Arrays.asList(TERESA, JOHN));
+        when(customerDaoMock.findPageAfter("3", 2)).thenReturn(Collections.singletonList(ALBERT));
+        return customerDaoMock;
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.github.guilhermesgb.steward.customer;
+
+import android.arch.persistence.db.SupportSQLiteProgram;
+import android.arch.persistence.db.SupportSQLiteQuery;
+
+import com.github.guilhermesgb.steward.mvi.customer.schema.CustomerSearchIndex;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class CustomerSearchIndexTest {
+
+    @Test
+    public void newSearchQuery_wordsTyped_shouldMatchEveryOneOfThemAsQuotedPrefixes() {
+        // ### SETUP PHASE ###
+
+        SupportSQLiteProgram programMock = mock(SupportSQLiteProgram.class);
+
+        // ### EXECUTION PHASE ###
+
+        SupportSQLiteQuery query = CustomerSearchIndex.newSearchQuery("  John F. OR-", 20);
+        query.bindTo(programMock);
+
+        // ### VERIFICATION PHASE ###
+
+        assertThat(query.getSql(), containsString("MATCH ?"));
+        assertThat(query.getArgCount(), is(4));
+        verify(programMock).bindString(1, "\"john*\" \"f*\" \"or*\"");
+        verify(programMock).bindString(2, "john%");
+        verify(programMock).bindString(3, "john%");
+        verify(programMock).bindLong(4, 20);
+    }
+
+    @Test
+    public void newSearchQuery_namesBeyondAscii_shouldOnlyFoldAsciiLettersLikeTheIndexDoes() {
+        // ### SETUP PHASE ###
+
+        SupportSQLiteProgram programMock = mock(SupportSQLiteProgram.class);
+
+        // ### EXECUTION PHASE ###
+
+        SupportSQLiteQuery query = CustomerSearchIndex.newSearchQuery("\u00c9LIO M\u00fcller-\u00c7a", 20);
+        query.bindTo(programMock);
+
+        // ### VERIFICATION PHASE ###
+
+        verify(programMock).bindString(1, "\"\u00c9lio*\" \"m\u00fcller*\" \"\u00c7a*\"");
+        verify(programMock).bindString(2, "\u00c9lio%");
+        verify(programMock).bindString(3, "\u00c9lio%");
+    }
+
+    @Test
+    public void newSearchQuery_nothingButPunctuationTyped_shouldNotSearchAtAll() {
+        // ### EXECUTION PHASE ###
+
+        SupportSQLiteQuery blankQuery = CustomerSearchIndex.newSearchQuery(" .,- ", 20);
+        SupportSQLiteQuery nullQuery = CustomerSearchIndex.newSearchQuery(null, 20);
+
+        // ### VERIFICATION PHASE ###
+
+        assertThat(blankQuery, is(nullValue()));
+        assertThat(nullQuery, is(nullValue()));
+    }
+
+}
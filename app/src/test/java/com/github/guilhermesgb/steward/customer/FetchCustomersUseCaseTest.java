@@ -1,25 +1,42 @@
 package com.github.guilhermesgb.steward.customer;
 
+import android.arch.persistence.room.InvalidationTracker;
 import android.content.Context;
 
 import com.github.guilhermesgb.steward.database.DatabaseResource;
+import com.github.guilhermesgb.steward.database.SyncReport;
+import com.github.guilhermesgb.steward.database.SyncState;
+import com.github.guilhermesgb.steward.database.SyncStateDao;
 import com.github.guilhermesgb.steward.mvi.customer.FetchCustomersUseCase;
+import com.github.guilhermesgb.steward.mvi.customer.SyncStrategy;
 import com.github.guilhermesgb.steward.mvi.customer.intent.FetchCustomersAction;
 import com.github.guilhermesgb.steward.mvi.customer.model.FetchCustomersViewState;
 import com.github.guilhermesgb.steward.mvi.customer.schema.Customer;
 import com.github.guilhermesgb.steward.mvi.customer.schema.CustomerDao;
 import com.github.guilhermesgb.steward.mvi.reservation.schema.ReservationDao;
 import com.github.guilhermesgb.steward.network.ApiEndpoints;
+import com.github.guilhermesgb.steward.network.ApiResource;
+import com.github.guilhermesgb.steward.network.CacheOutcome;
+import com.github.guilhermesgb.steward.utils.CustomerDirectoryDispatcher;
 import com.github.guilhermesgb.steward.utils.IterableUtils;
 import com.github.guilhermesgb.steward.utils.MockedServerUnitTest;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatcher;
 import org.mockito.ArgumentMatchers;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
+import io.reactivex.Maybe;
 import io.reactivex.Single;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
@@ -29,6 +46,7 @@ import retrofit2.http.GET;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.allOf;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.hasProperty;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.instanceOf;
@@ -37,13 +55,18 @@ import static org.hamcrest.Matchers.isA;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class FetchCustomersUseCaseTest extends MockedServerUnitTest {
 
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @Test
     public void fetchCustomers_noLocalCustomers_noRemoteCustomers_shouldYieldEmptyResults() throws Exception {
         // ### SETUP PHASE ###
@@ -491,6 +514,1026 @@ public class FetchCustomersUseCaseTest extends MockedServerUnitTest {
         });
     }
 
+    @Test
+    public void fetchCustomers_someLocalCustomers_remoteCustomersNotModified_shouldRevalidateAndSkipDatabaseRewrite() throws Exception {
+        // ### SETUP PHASE ###
+
+        //Setting up mock server to return these two customers below tagged with an ETag,
+        // and then to tell us they haven't changed when we ask for them again.
+        List<MockResponse> expectedResponses = new LinkedList<>();
+        expectedResponses.add(new MockResponse().setResponseCode(200)
+            .setHeader("ETag", "\"v1\"").setBody("[\n" +
+                "  {\n" +
+                "    \"customerFirstName\": \"Marilyn\",\n" +
+                "    \"customerLastName\": \"Monroe\",\n" +
+                "    \"id\": 0\n" +
+                "  },\n" +
+                "  {\n" +
+                "    \"customerFirstName\": \"Abraham\",\n" +
+                "    \"customerLastName\": \"Lincoln\",\n" +
+                "    \"id\": 1\n" +
+                "  }\n" +
+                "]"));
+        expectedResponses.add(new MockResponse().setResponseCode(304));
+        ApiResource.setCacheDirectory(temporaryFolder.newFolder("http"));
+        try {
+            configureMockWebServer(expectedResponses, new MockServerCallback() {
+                @Override
+                public void onMockServerConfigured(MockWebServer server, String baseUrl) throws Exception {
+                    FetchCustomersUseCase fetchCustomersUseCase = fetchCustomersUseCase(baseUrl);
+
+                    CustomerDao customerDaoMock = mock(CustomerDao.class);
+                    ReservationDao reservationDaoMock = mock(ReservationDao.class);
+                    //Mocking database to return the very same customers the server knows about.
+                    List<Customer> customersExpectedToHaveBeenStoredThen = new LinkedList<>();
+                    customersExpectedToHaveBeenStoredThen.add(new Customer("0", "Marilyn", "Monroe"));
+                    customersExpectedToHaveBeenStoredThen.add(new Customer("1", "Abraham", "Lincoln"));
+                    when(customerDaoMock.findAll()).thenReturn
+                        (Single.just(customersExpectedToHaveBeenStoredThen));
+                    //Turning database writes into no-ops.
+                    doNothing().when(customerDaoMock).insertAll(ArgumentMatchers.<Customer>anyList());
+                    doNothing().when(reservationDaoMock).deleteUnusedCustomers();
+                    DatabaseResource databaseMock = mock(DatabaseResource.class);
+                    when(databaseMock.customerDao()).thenReturn(customerDaoMock);
+                    when(databaseMock.reservationDao()).thenReturn(reservationDaoMock);
+                    doReturn(databaseMock).when(fetchCustomersUseCase).getDatabase();
+
+                    // ### EXECUTION PHASE ###
+
+                    final List<FetchCustomersViewState> firstStates = new LinkedList<>();
+                    new IterableUtils<FetchCustomersViewState>()
+                        .forEach(fetchCustomersUseCase.doFetchCustomers(new FetchCustomersAction()).blockingIterable(),
+                            new IterableUtils.IterableCallback<FetchCustomersViewState>() {
+                                @Override
+                                public void doForEach(FetchCustomersViewState state) {
+                                    firstStates.add(state);
+                                }
+                            }
+                        );
+                    final List<FetchCustomersViewState> secondStates = new LinkedList<>();
+                    new IterableUtils<FetchCustomersViewState>()
+                        .forEach(fetchCustomersUseCase.doFetchCustomers(new FetchCustomersAction()).blockingIterable(),
+                            new IterableUtils.IterableCallback<FetchCustomersViewState>() {
+                                @Override
+                                public void doForEach(FetchCustomersViewState state) {
+                                    secondStates.add(state);
+                                }
+                            }
+                        );
+
+                    // ### VERIFICATION PHASE ###
+
+                    assertThat(firstStates, hasSize(3));
+                    assertThat(firstStates.get(2), instanceOf(FetchCustomersViewState.SuccessFetchingCustomers.class));
+                    FetchCustomersViewState.SuccessFetchingCustomers firstRemoteSuccess
+                        = (FetchCustomersViewState.SuccessFetchingCustomers) firstStates.get(2);
+                    assertThat(firstRemoteSuccess.getCacheOutcome(), is(CacheOutcome.MISS));
+                    assertThat(firstRemoteSuccess.getCustomers(), hasSize(2));
+
+                    assertThat(secondStates, hasSize(3));
+                    assertThat(secondStates.get(2), instanceOf(FetchCustomersViewState.SuccessFetchingCustomers.class));
+                    FetchCustomersViewState.SuccessFetchingCustomers secondRemoteSuccess
+                        = (FetchCustomersViewState.SuccessFetchingCustomers) secondStates.get(2);
+                    assertThat(secondRemoteSuccess.getCacheOutcome(), is(CacheOutcome.REVALIDATED));
+                    assertThat(secondRemoteSuccess.getCustomers(), hasSize(2));
+                    assertThat(secondRemoteSuccess.getCustomers().get(0), allOf(isA(Customer.class),
+                        hasProperty("id", equalTo("0")),
+                        hasProperty("firstName", equalTo("Marilyn")),
+                        hasProperty("lastName", equalTo("Monroe"))
+                    ));
+                    assertThat(secondRemoteSuccess.getCustomers().get(1), allOf(isA(Customer.class),
+                        hasProperty("id", equalTo("1")),
+                        hasProperty("firstName", equalTo("Abraham")),
+                        hasProperty("lastName", equalTo("Lincoln"))
+                    ));
+
+                    //Verifying if test made expected API calls, the second one being a conditional request.
+                    assertThat(server.getRequestCount(), is(2));
+                    String expectedEndpoint = "/" + ApiEndpoints.class
+                        .getMethod("fetchCustomers").getAnnotation(GET.class).value();
+                    RecordedRequest firstRequest = server.takeRequest();
+                    assertThat(firstRequest.getPath(), is(expectedEndpoint));
+                    RecordedRequest secondRequest = server.takeRequest();
+                    assertThat(secondRequest.getPath(), is(expectedEndpoint));
+                    assertThat(secondRequest.getHeader("If-None-Match"), is("\"v1\""));
+                    server.shutdown();
+
+                    //Verifying if test made expected database operations: only the first fetch rewrites customers.
+                    verify(customerDaoMock, times(2)).findAll();
+                    verify(customerDaoMock, times(1))
+                        .insertAll(ArgumentMatchers.<Customer>anyList());
+                    verify(reservationDaoMock, times(1))
+                        .deleteUnusedCustomers();
+                }
+            });
+        } finally {
+            ApiResource.setCacheDirectory(null);
+        }
+    }
+
+    @Test
+    public void fetchCustomers_noLocalCustomers_someRemoteCustomers_chunkedIngestion_shouldYieldCustomersProgressively() throws Exception {
+        // ### SETUP PHASE ###
+
+        //Setting up mock server to return these four customers below.
+        List<MockResponse> expectedResponses = Collections.singletonList
+            (new MockResponse().setResponseCode(200).setBody("[\n" +
+                "  {\n" +
+                "    \"customerFirstName\": \"Marilyn\",\n" +
+                "    \"customerLastName\": \"Monroe\",\n" +
+                "    \"id\": 0\n" +
+                "  },\n" +
+                "  {\n" +
+                "    \"customerFirstName\": \"Abraham\",\n" +
+                "    \"customerLastName\": \"Lincoln\",\n" +
+                "    \"id\": 1\n" +
+                "  },\n" +
+                "  {\n" +
+                "    \"customerFirstName\": \"Mother\",\n" +
+                "    \"customerLastName\": \"Teresa\",\n" +
+                "    \"id\": 2\n" +
+                "  },\n" +
+                "  {\n" +
+                "    \"customerFirstName\": \"John F.\",\n" +
+                "    \"customerLastName\": \"Kennedy\",\n" +
+                "    \"id\": 3\n" +
+                "  }\n" +
+                "]"));
+        configureMockWebServer(expectedResponses, new MockServerCallback() {
+            @Override
+            public void onMockServerConfigured(MockWebServer server, String baseUrl) throws Exception {
+                FetchCustomersUseCase fetchCustomersUseCase = fetchCustomersUseCase(baseUrl);
+                //Ingesting customers two at a time.
+                fetchCustomersUseCase.setIngestionChunkSize(2);
+
+                CustomerDao customerDaoMock = mock(CustomerDao.class);
+                ReservationDao reservationDaoMock = mock(ReservationDao.class);
+                //Mocking database to return empty list of customers.
+                when(customerDaoMock.findAll()).thenReturn
+                    (Single.<List<Customer>>just(new LinkedList<Customer>()));
+                //Turning database writes into no-ops.
+                doNothing().when(customerDaoMock).insertAll(ArgumentMatchers.<Customer>anyList());
+                doNothing().when(reservationDaoMock).deleteUnusedCustomers();
+                DatabaseResource databaseMock = mock(DatabaseResource.class);
+                when(databaseMock.customerDao()).thenReturn(customerDaoMock);
+                when(databaseMock.reservationDao()).thenReturn(reservationDaoMock);
+                doReturn(databaseMock).when(fetchCustomersUseCase).getDatabase();
+
+                // ### EXECUTION PHASE ###
+
+                final List<FetchCustomersViewState> states = new LinkedList<>();
+                new IterableUtils<FetchCustomersViewState>()
+                    .forEach(fetchCustomersUseCase.doFetchCustomers(new FetchCustomersAction()).blockingIterable(),
+                        new IterableUtils.IterableCallback<FetchCustomersViewState>() {
+                            @Override
+                            public void doForEach(FetchCustomersViewState state) {
+                                states.add(state);
+                            }
+                        }
+                    );
+
+                // ### VERIFICATION PHASE ###
+
+                assertThat(states, hasSize(4));
+                assertThat(states.get(0), instanceOf(FetchCustomersViewState.FetchingCustomers.class));
+                assertThat(states.get(1), instanceOf(FetchCustomersViewState.SuccessFetchingCustomers.class));
+                assertThat(states.get(2), instanceOf(FetchCustomersViewState.SuccessFetchingCustomers.class));
+                assertThat(states.get(3), instanceOf(FetchCustomersViewState.SuccessFetchingCustomers.class));
+
+                FetchCustomersViewState.SuccessFetchingCustomers localSuccess
+                    = (FetchCustomersViewState.SuccessFetchingCustomers) states.get(1);
+                FetchCustomersViewState.SuccessFetchingCustomers partialRemoteSuccess
+                    = (FetchCustomersViewState.SuccessFetchingCustomers) states.get(2);
+                FetchCustomersViewState.SuccessFetchingCustomers remoteSuccess
+                    = (FetchCustomersViewState.SuccessFetchingCustomers) states.get(3);
+
+                assertThat(localSuccess.getCustomers(), hasSize(0));
+
+                assertThat(partialRemoteSuccess.isPartial(), is(true));
+                assertThat(partialRemoteSuccess.getCustomers(), hasSize(2));
+                assertThat(partialRemoteSuccess.getCustomers().get(0), allOf(isA(Customer.class),
+                    hasProperty("id", equalTo("0")),
+                    hasProperty("firstName", equalTo("Marilyn")),
+                    hasProperty("lastName", equalTo("Monroe"))
+                ));
+                assertThat(partialRemoteSuccess.getCustomers().get(1), allOf(isA(Customer.class),
+                    hasProperty("id", equalTo("1")),
+                    hasProperty("firstName", equalTo("Abraham")),
+                    hasProperty("lastName", equalTo("Lincoln"))
+                ));
+
+                assertThat(remoteSuccess.isPartial(), is(false));
+                assertThat(remoteSuccess.getCustomers(), hasSize(4));
+                assertThat(remoteSuccess.getCustomers().get(2), allOf(isA(Customer.class),
+                    hasProperty("id", equalTo("2")),
+                    hasProperty("firstName", equalTo("Mother")),
+                    hasProperty("lastName", equalTo("Teresa"))
+                ));
+                assertThat(remoteSuccess.getCustomers().get(3), allOf(isA(Customer.class),
+                    hasProperty("id", equalTo("3")),
+                    hasProperty("firstName", equalTo("John F.")),
+                    hasProperty("lastName", equalTo("Kennedy"))
+                ));
+
+                //Verifying if test made expected API calls.
+                assertThat(server.getRequestCount(), is(1));
+                String expectedEndpoint = "/" + ApiEndpoints.class
+                    .getMethod("streamCustomers").getAnnotation(GET.class).value();
+                RecordedRequest request = server.takeRequest();
+                assertThat(request.getPath(), is(expectedEndpoint));
+                server.shutdown();
+
+                //Verifying if test made expected database operations: one transaction per chunk.
+                verify(customerDaoMock).findAll();
+                List<Customer> firstChunkExpectedToBeingStoredNow = new LinkedList<>();
+                firstChunkExpectedToBeingStoredNow.add(new Customer("0", "Marilyn", "Monroe"));
+                firstChunkExpectedToBeingStoredNow.add(new Customer("1", "Abraham", "Lincoln"));
+                List<Customer> secondChunkExpectedToBeingStoredNow = new LinkedList<>();
+                secondChunkExpectedToBeingStoredNow.add(new Customer("2", "Mother", "Teresa"));
+                secondChunkExpectedToBeingStoredNow.add(new Customer("3", "John F.", "Kennedy"));
+                verify(customerDaoMock).insertAll(firstChunkExpectedToBeingStoredNow);
+                verify(customerDaoMock).insertAll(secondChunkExpectedToBeingStoredNow);
+                //Customers no longer around are only looked for along with the last chunk.
+                verify(customerDaoMock, times(1)).findAllIds();
+                verify(reservationDaoMock, never()).deleteUnusedCustomers();
+                verify(databaseMock, times(2)).setTransactionSuccessful();
+            }
+        });
+    }
+
+    @Test
+    public void fetchCustomers_someLocalCustomers_chunkedIngestionFailingMidway_shouldKeepLocalCustomersWhole() throws Exception {
+        // ### SETUP PHASE ###
+
+        //Setting up mock server to return two customers and then a broken third one.
+        List<MockResponse> expectedResponses = Collections.singletonList
+            (new MockResponse().setResponseCode(200).setBody("[\n" +
+                "  {\n" +
+                "    \"customerFirstName\": \"Marilyn\",\n" +
+                "    \"customerLastName\": \"Monroe\",\n" +
+                "    \"id\": 0\n" +
+                "  },\n" +
+                "  {\n" +
+                "    \"customerFirstName\": \"Abraham\",\n" +
+                "    \"customerLastName\": \"Lincoln\",\n" +
+                "    \"id\": 1\n" +
+                "  },\n" +
+                "  {\n" +
+                "    \"customerFirstName\": \"Mother\",\n"));
+        configureMockWebServer(expectedResponses, new MockServerCallback() {
+            @Override
+            public void onMockServerConfigured(MockWebServer server, String baseUrl) throws Exception {
+                FetchCustomersUseCase fetchCustomersUseCase = fetchCustomersUseCase(baseUrl);
+                //Ingesting customers two at a time.
+                fetchCustomersUseCase.setIngestionChunkSize(2);
+
+                CustomerDao customerDaoMock = mock(CustomerDao.class);
+                ReservationDao reservationDaoMock = mock(ReservationDao.class);
+                //Mocking database to return these two previously stored customers.
+                List<Customer> customersExpectedToHaveBeenStoredThen = new LinkedList<>();
+                customersExpectedToHaveBeenStoredThen.add(new Customer("4", "Martin Luther", "King"));
+                customersExpectedToHaveBeenStoredThen.add(new Customer("5", "Nelson", "Mandela"));
+                when(customerDaoMock.findAll()).thenReturn
+                    (Single.just(customersExpectedToHaveBeenStoredThen));
+                //Turning database writes into no-ops.
+                doNothing().when(customerDaoMock).insertAll(ArgumentMatchers.<Customer>anyList());
+                DatabaseResource databaseMock = mock(DatabaseResource.class);
+                when(databaseMock.customerDao()).thenReturn(customerDaoMock);
+                when(databaseMock.reservationDao()).thenReturn(reservationDaoMock);
+                doReturn(databaseMock).when(fetchCustomersUseCase).getDatabase();
+
+                // ### EXECUTION PHASE ###
+
+                final List<FetchCustomersViewState> states = new LinkedList<>();
+                new IterableUtils<FetchCustomersViewState>()
+                    .forEach(fetchCustomersUseCase.doFetchCustomers(new FetchCustomersAction()).blockingIterable(),
+                        new IterableUtils.IterableCallback<FetchCustomersViewState>() {
+                            @Override
+                            public void doForEach(FetchCustomersViewState state) {
+                                states.add(state);
+                            }
+                        }
+                    );
+
+                // ### VERIFICATION PHASE ###
+
+                assertThat(states, hasSize(5));
+                assertThat(states.get(0), instanceOf(FetchCustomersViewState.FetchingCustomers.class));
+                assertThat(states.get(1), instanceOf(FetchCustomersViewState.SuccessFetchingCustomers.class));
+                assertThat(states.get(2), instanceOf(FetchCustomersViewState.SuccessFetchingCustomers.class));
+                assertThat(states.get(3), instanceOf(FetchCustomersViewState.ErrorFetchingCustomers.class));
+                assertThat(states.get(4), instanceOf(FetchCustomersViewState.Initial.class));
+
+                FetchCustomersViewState.SuccessFetchingCustomers partialRemoteSuccess
+                    = (FetchCustomersViewState.SuccessFetchingCustomers) states.get(2);
+                FetchCustomersViewState.ErrorFetchingCustomers remoteError
+                    = (FetchCustomersViewState.ErrorFetchingCustomers) states.get(3);
+
+                assertThat(partialRemoteSuccess.isPartial(), is(true));
+                assertThat(partialRemoteSuccess.getCustomers(), hasSize(2));
+                //Nothing was deleted, so the customers stored before are still the ones to fall back on.
+                assertThat(remoteError.getCachedCustomers(), is(customersExpectedToHaveBeenStoredThen));
+
+                server.shutdown();
+
+                //Verifying if test made expected database operations: the first chunk was committed,
+                // but customers no longer around were never even looked for.
+                verify(customerDaoMock, times(1)).insertAll(ArgumentMatchers.<Customer>anyList());
+                verify(customerDaoMock, never()).findAllIds();
+                verify(reservationDaoMock, never()).deleteUnusedCustomers();
+                verify(reservationDaoMock, never()).deleteUnusedCustomers(ArgumentMatchers.<String>anyList());
+            }
+        });
+    }
+
+    @Test
+    public void fetchCustomers_deltaSync_knownCursor_shouldApplyOnlyChangesAndAdvanceCursor() throws Exception {
+        // ### SETUP PHASE ###
+
+        //Setting up stand-in server with four customers (version 4) which then sees one of
+        // them being renamed and another one being removed (version 6).
+        final CustomerDirectoryDispatcher dispatcher = new CustomerDirectoryDispatcher()
+            .put(new Customer("0", "Marilyn", "Monroe"))
+            .put(new Customer("1", "Abraham", "Lincoln"))
+            .put(new Customer("2", "Mother", "Teresa"))
+            .put(new Customer("3", "John F.", "Kennedy"))
+            .put(new Customer("1", "Abe", "Lincoln"))
+            .remove("2");
+        configureMockWebServer(dispatcher, new MockServerCallback() {
+            @Override
+            public void onMockServerConfigured(MockWebServer server, String baseUrl) throws Exception {
+                FetchCustomersUseCase fetchCustomersUseCase = fetchCustomersUseCase(baseUrl);
+                fetchCustomersUseCase.setSyncStrategy(SyncStrategy.DELTA);
+
+                List<Customer> localCustomers = new LinkedList<>();
+                localCustomers.add(new Customer("0", "Marilyn", "Monroe"));
+                localCustomers.add(new Customer("1", "Abraham", "Lincoln"));
+                localCustomers.add(new Customer("2", "Mother", "Teresa"));
+                localCustomers.add(new Customer("3", "John F.", "Kennedy"));
+                List<Customer> syncedCustomers = new LinkedList<>();
+                syncedCustomers.add(new Customer("0", "Marilyn", "Monroe"));
+                syncedCustomers.add(new Customer("1", "Abe", "Lincoln"));
+                syncedCustomers.add(new Customer("3", "John F.", "Kennedy"));
+
+                CustomerDao customerDaoMock = mock(CustomerDao.class);
+                ReservationDao reservationDaoMock = mock(ReservationDao.class);
+                SyncStateDao syncStateDaoMock = mock(SyncStateDao.class);
+                //Mocking database to return the four customers, synced up to version 4,
+                // then the directory as it should look like once changes are applied.
+                when(customerDaoMock.findAll()).thenReturn(Single.just(localCustomers),
+                    Single.just(syncedCustomers));
+                when(syncStateDaoMock.findByResource(FetchCustomersUseCase.SYNC_RESOURCE))
+                    .thenReturn(Maybe.just(new SyncState(FetchCustomersUseCase.SYNC_RESOURCE, "4")));
+                //Turning database writes into no-ops.
+                doNothing().when(customerDaoMock).insertAll(ArgumentMatchers.<Customer>anyList());
+                when(reservationDaoMock.deleteUnusedCustomers(ArgumentMatchers.<String>anyList())).thenReturn(1);
+                doNothing().when(syncStateDaoMock).insert(ArgumentMatchers.any(SyncState.class));
+                DatabaseResource databaseMock = mock(DatabaseResource.class);
+                when(databaseMock.customerDao()).thenReturn(customerDaoMock);
+                when(databaseMock.reservationDao()).thenReturn(reservationDaoMock);
+                when(databaseMock.syncStateDao()).thenReturn(syncStateDaoMock);
+                doReturn(databaseMock).when(fetchCustomersUseCase).getDatabase();
+
+                // ### EXECUTION PHASE ###
+
+                final List<FetchCustomersViewState> states = new LinkedList<>();
+                new IterableUtils<FetchCustomersViewState>()
+                    .forEach(fetchCustomersUseCase.doFetchCustomers(new FetchCustomersAction()).blockingIterable(),
+                        new IterableUtils.IterableCallback<FetchCustomersViewState>() {
+                            @Override
+                            public void doForEach(FetchCustomersViewState state) {
+                                states.add(state);
+                            }
+                        }
+                    );
+
+                // ### VERIFICATION PHASE ###
+
+                assertThat(states, hasSize(3));
+                assertThat(states.get(0), instanceOf(FetchCustomersViewState.FetchingCustomers.class));
+                assertThat(states.get(1), instanceOf(FetchCustomersViewState.SuccessFetchingCustomers.class));
+                assertThat(states.get(2), instanceOf(FetchCustomersViewState.SuccessFetchingCustomers.class));
+
+                FetchCustomersViewState.SuccessFetchingCustomers localSuccess
+                    = (FetchCustomersViewState.SuccessFetchingCustomers) states.get(1);
+                FetchCustomersViewState.SuccessFetchingCustomers remoteSuccess
+                    = (FetchCustomersViewState.SuccessFetchingCustomers) states.get(2);
+
+                assertThat(localSuccess.getCustomers(), hasSize(4));
+                assertThat(remoteSuccess.getCustomers(), hasSize(3));
+                assertThat(remoteSuccess.getCustomers().get(1), allOf(isA(Customer.class),
+                    hasProperty("id", equalTo("1")),
+                    hasProperty("firstName", equalTo("Abe")),
+                    hasProperty("lastName", equalTo("Lincoln"))
+                ));
+
+                //Verifying if test made expected API calls: only changes since the cursor were asked for.
+                assertThat(server.getRequestCount(), is(1));
+                String expectedEndpoint = "/" + ApiEndpoints.class.getMethod("fetchCustomerChanges",
+                    String.class).getAnnotation(GET.class).value();
+                RecordedRequest request = server.takeRequest();
+                assertThat(request.getPath(), is(expectedEndpoint + "?since=4"));
+                server.shutdown();
+
+                //Verifying if test made expected database operations: just the changes were written.
+                verify(customerDaoMock).insertAll(Collections.singletonList(new Customer("1", "Abe", "Lincoln")));
+                verify(reservationDaoMock).deleteUnusedCustomers(Collections.singletonList("2"));
+                verify(reservationDaoMock, never()).deleteUnusedCustomers();
+                verify(syncStateDaoMock).insert(new SyncState(FetchCustomersUseCase.SYNC_RESOURCE, "6"));
+            }
+        });
+    }
+
+    @Test
+    public void fetchCustomers_deltaSync_rejectedCursor_shouldFallBackToFullSync() throws Exception {
+        // ### SETUP PHASE ###
+
+        //Setting up stand-in server with four customers (version 4) and no change log
+        // prior to that, so that older cursors get rejected.
+        final CustomerDirectoryDispatcher dispatcher = new CustomerDirectoryDispatcher()
+            .put(new Customer("0", "Marilyn", "Monroe"))
+            .put(new Customer("1", "Abraham", "Lincoln"))
+            .put(new Customer("2", "Mother", "Teresa"))
+            .put(new Customer("3", "John F.", "Kennedy"))
+            .compact();
+        configureMockWebServer(dispatcher, new MockServerCallback() {
+            @Override
+            public void onMockServerConfigured(MockWebServer server, String baseUrl) throws Exception {
+                FetchCustomersUseCase fetchCustomersUseCase = fetchCustomersUseCase(baseUrl);
+                fetchCustomersUseCase.setSyncStrategy(SyncStrategy.DELTA);
+
+                List<Customer> localCustomers = new LinkedList<>();
+                localCustomers.add(new Customer("0", "Marilyn", "Monroe"));
+                List<Customer> syncedCustomers = new LinkedList<>();
+                syncedCustomers.add(new Customer("0", "Marilyn", "Monroe"));
+                syncedCustomers.add(new Customer("1", "Abraham", "Lincoln"));
+                syncedCustomers.add(new Customer("2", "Mother", "Teresa"));
+                syncedCustomers.add(new Customer("3", "John F.", "Kennedy"));
+
+                CustomerDao customerDaoMock = mock(CustomerDao.class);
+                ReservationDao reservationDaoMock = mock(ReservationDao.class);
+                SyncStateDao syncStateDaoMock = mock(SyncStateDao.class);
+                //Mocking database to return a single customer, synced up to version 1 only.
+                when(customerDaoMock.findAll()).thenReturn(Single.just(localCustomers),
+                    Single.just(syncedCustomers));
+                when(syncStateDaoMock.findByResource(FetchCustomersUseCase.SYNC_RESOURCE))
+                    .thenReturn(Maybe.just(new SyncState(FetchCustomersUseCase.SYNC_RESOURCE, "1")));
+                //Turning database writes into no-ops.
+                doNothing().when(customerDaoMock).insertAll(ArgumentMatchers.<Customer>anyList());
+                doNothing().when(reservationDaoMock).deleteUnusedCustomers();
+                doNothing().when(syncStateDaoMock).insert(ArgumentMatchers.any(SyncState.class));
+                DatabaseResource databaseMock = mock(DatabaseResource.class);
+                when(databaseMock.customerDao()).thenReturn(customerDaoMock);
+                when(databaseMock.reservationDao()).thenReturn(reservationDaoMock);
+                when(databaseMock.syncStateDao()).thenReturn(syncStateDaoMock);
+                doReturn(databaseMock).when(fetchCustomersUseCase).getDatabase();
+
+                // ### EXECUTION PHASE ###
+
+                final List<FetchCustomersViewState> states = new LinkedList<>();
+                new IterableUtils<FetchCustomersViewState>()
+                    .forEach(fetchCustomersUseCase.doFetchCustomers(new FetchCustomersAction()).blockingIterable(),
+                        new IterableUtils.IterableCallback<FetchCustomersViewState>() {
+                            @Override
+                            public void doForEach(FetchCustomersViewState state) {
+                                states.add(state);
+                            }
+                        }
+                    );
+
+                // ### VERIFICATION PHASE ###
+
+                assertThat(states, hasSize(3));
+                assertThat(states.get(2), instanceOf(FetchCustomersViewState.SuccessFetchingCustomers.class));
+                FetchCustomersViewState.SuccessFetchingCustomers remoteSuccess
+                    = (FetchCustomersViewState.SuccessFetchingCustomers) states.get(2);
+                assertThat(remoteSuccess.getCustomers(), hasSize(4));
+
+                //Verifying if test made expected API calls: the rejected cursor was followed by a full sync.
+                assertThat(server.getRequestCount(), is(2));
+                String expectedEndpoint = "/" + ApiEndpoints.class.getMethod("fetchCustomerChanges",
+                    String.class).getAnnotation(GET.class).value();
+                assertThat(server.takeRequest().getPath(), is(expectedEndpoint + "?since=1"));
+                assertThat(server.takeRequest().getPath(), is(expectedEndpoint));
+                server.shutdown();
+
+                //Verifying if test made expected database operations: the whole directory was replaced.
+                verify(reservationDaoMock).deleteUnusedCustomers();
+                verify(customerDaoMock).insertAll(syncedCustomers);
+                verify(syncStateDaoMock).insert(new SyncState(FetchCustomersUseCase.SYNC_RESOURCE, "4"));
+            }
+        });
+    }
+
+    @Test
+    public void fetchCustomers_merkleSync_someBucketsDiffer_shouldFetchAndWriteOnlyThoseBuckets() throws Exception {
+        // ### SETUP PHASE ###
+
+        //Setting up stand-in server with six customers split in buckets of two, one
+        // of them (bucket 1) holding a customer that was renamed in the meantime.
+        final CustomerDirectoryDispatcher dispatcher = new CustomerDirectoryDispatcher()
+            .setBucketWidth(2)
+            .put(new Customer("0", "Marilyn", "Monroe"))
+            .put(new Customer("1", "Abraham", "Lincoln"))
+            .put(new Customer("2", "Mother", "Teresa"))
+            .put(new Customer("3", "Jack", "Kennedy"))
+            .put(new Customer("4", "Albert", "Einstein"))
+            .put(new Customer("5", "Martin", "Luther King"));
+        configureMockWebServer(dispatcher, new MockServerCallback() {
+            @Override
+            public void onMockServerConfigured(MockWebServer server, String baseUrl) throws Exception {
+                FetchCustomersUseCase fetchCustomersUseCase = fetchCustomersUseCase(baseUrl);
+                fetchCustomersUseCase.setSyncStrategy(SyncStrategy.MERKLE);
+
+                List<Customer> localCustomers = new LinkedList<>();
+                localCustomers.add(new Customer("0", "Marilyn", "Monroe"));
+                localCustomers.add(new Customer("1", "Abraham", "Lincoln"));
+                localCustomers.add(new Customer("2", "Mother", "Teresa"));
+                localCustomers.add(new Customer("3", "John F.", "Kennedy"));
+                localCustomers.add(new Customer("4", "Albert", "Einstein"));
+                localCustomers.add(new Customer("5", "Martin", "Luther King"));
+                localCustomers.add(new Customer("7", "Elvis", "Presley"));
+                List<Customer> syncedCustomers = new LinkedList<>(localCustomers);
+                syncedCustomers.set(3, new Customer("3", "Jack", "Kennedy"));
+                syncedCustomers.remove(6);
+
+                CustomerDao customerDaoMock = mock(CustomerDao.class);
+                ReservationDao reservationDaoMock = mock(ReservationDao.class);
+                //Mocking database to return the outdated customers, then the synced ones.
+                when(customerDaoMock.findAll()).thenReturn(Single.just(localCustomers),
+                    Single.just(localCustomers), Single.just(syncedCustomers));
+                //Turning database writes into no-ops.
+                doNothing().when(customerDaoMock).insertAll(ArgumentMatchers.<Customer>anyList());
+                when(reservationDaoMock.deleteUnusedCustomers(ArgumentMatchers.<String>anyList())).thenReturn(1);
+                DatabaseResource databaseMock = mock(DatabaseResource.class);
+                when(databaseMock.customerDao()).thenReturn(customerDaoMock);
+                when(databaseMock.reservationDao()).thenReturn(reservationDaoMock);
+                doReturn(databaseMock).when(fetchCustomersUseCase).getDatabase();
+
+                // ### EXECUTION PHASE ###
+
+                final List<FetchCustomersViewState> states = new LinkedList<>();
+                new IterableUtils<FetchCustomersViewState>()
+                    .forEach(fetchCustomersUseCase.doFetchCustomers(new FetchCustomersAction()).blockingIterable(),
+                        new IterableUtils.IterableCallback<FetchCustomersViewState>() {
+                            @Override
+                            public void doForEach(FetchCustomersViewState state) {
+                                states.add(state);
+                            }
+                        }
+                    );
+
+                // ### VERIFICATION PHASE ###
+
+                assertThat(states, hasSize(3));
+                assertThat(states.get(2), instanceOf(FetchCustomersViewState.SuccessFetchingCustomers.class));
+                FetchCustomersViewState.SuccessFetchingCustomers remoteSuccess
+                    = (FetchCustomersViewState.SuccessFetchingCustomers) states.get(2);
+                assertThat(remoteSuccess.getCustomers(), hasSize(6));
+                assertThat(remoteSuccess.getCustomers().get(3), allOf(isA(Customer.class),
+                    hasProperty("id", equalTo("3")),
+                    hasProperty("firstName", equalTo("Jack")),
+                    hasProperty("lastName", equalTo("Kennedy"))
+                ));
+
+                //Verifying if test made expected API calls: bucket hashes, then the single stale bucket.
+                assertThat(server.getRequestCount(), is(2));
+                String expectedHashesEndpoint = "/" + ApiEndpoints.class
+                    .getMethod("fetchCustomerBuckets").getAnnotation(GET.class).value();
+                assertThat(server.takeRequest().getPath(), is(expectedHashesEndpoint));
+                RecordedRequest bucketsRequest = server.takeRequest();
+                assertThat(bucketsRequest.getRequestUrl().queryParameter("width"), is("2"));
+                assertThat(bucketsRequest.getRequestUrl().queryParameterValues("bucket"),
+                    is(Collections.singletonList("1")));
+                server.shutdown();
+
+                //Verifying if test made expected database operations: only what differs was written.
+                verify(customerDaoMock).insertAll(Collections.singletonList(new Customer("3", "Jack", "Kennedy")));
+                verify(reservationDaoMock).deleteUnusedCustomers(Collections.singletonList("7"));
+                verify(reservationDaoMock, never()).deleteUnusedCustomers();
+            }
+        });
+    }
+
+    @Test
+    public void fetchCustomers_writingDiffsOnly_shouldOnlyWriteCustomersThatDiffer() throws Exception {
+        // ### SETUP PHASE ###
+
+        //Setting up mock server to return a directory where one customer changed, one is new and one is gone.
+        List<MockResponse> expectedResponses = Collections.singletonList
+            (new MockResponse().setResponseCode(200).setBody("[\n" +
+                "  {\"customerFirstName\": \"Marilyn\", \"customerLastName\": \"Monroe\", \"id\": 0},\n" +
+                "  {\"customerFirstName\": \"Abraham\", \"customerLastName\": \"Lincoln\", \"id\": 1},\n" +
+                "  {\"customerFirstName\": \"Teresa\", \"customerLastName\": \"of Calcutta\", \"id\": 2},\n" +
+                "  {\"customerFirstName\": \"John F.\", \"customerLastName\": \"Kennedy\", \"id\": 3}\n" +
+                "]"));
+        configureMockWebServer(expectedResponses, new MockServerCallback() {
+            @Override
+            public void onMockServerConfigured(MockWebServer server, String baseUrl) throws Exception {
+                FetchCustomersUseCase fetchCustomersUseCase = fetchCustomersUseCase(baseUrl);
+                fetchCustomersUseCase.setWritingDiffsOnly(true);
+
+                List<Customer> localCustomers = new LinkedList<>();
+                localCustomers.add(new Customer("0", "Marilyn", "Monroe"));
+                localCustomers.add(new Customer("1", "Abraham", "Lincoln"));
+                localCustomers.add(new Customer("2", "Mother", "Teresa"));
+                localCustomers.add(new Customer("7", "Elvis", "Presley"));
+
+                CustomerDao customerDaoMock = mock(CustomerDao.class);
+                ReservationDao reservationDaoMock = mock(ReservationDao.class);
+                //Mocking database to return the outdated customers.
+                when(customerDaoMock.findAll()).thenReturn(Single.just(localCustomers));
+                //Turning database writes into no-ops.
+                doNothing().when(customerDaoMock).insertAll(ArgumentMatchers.<Customer>anyList());
+                when(customerDaoMock.updateAll(ArgumentMatchers.<Customer>anyList())).thenReturn(1);
+                when(reservationDaoMock.deleteUnusedCustomers(ArgumentMatchers.<String>anyList())).thenReturn(1);
+                DatabaseResource databaseMock = mock(DatabaseResource.class);
+                when(databaseMock.customerDao()).thenReturn(customerDaoMock);
+                when(databaseMock.reservationDao()).thenReturn(reservationDaoMock);
+                doReturn(databaseMock).when(fetchCustomersUseCase).getDatabase();
+
+                // ### EXECUTION PHASE ###
+
+                final List<FetchCustomersViewState> states = new LinkedList<>();
+                new IterableUtils<FetchCustomersViewState>()
+                    .forEach(fetchCustomersUseCase.doFetchCustomers(new FetchCustomersAction()).blockingIterable(),
+                        new IterableUtils.IterableCallback<FetchCustomersViewState>() {
+                            @Override
+                            public void doForEach(FetchCustomersViewState state) {
+                                states.add(state);
+                            }
+                        }
+                    );
+
+                // ### VERIFICATION PHASE ###
+
+                assertThat(states, hasSize(3));
+                assertThat(states.get(2), instanceOf(FetchCustomersViewState.SuccessFetchingCustomers.class));
+                FetchCustomersViewState.SuccessFetchingCustomers remoteSuccess
+                    = (FetchCustomersViewState.SuccessFetchingCustomers) states.get(2);
+                assertThat(remoteSuccess.getCustomers(), hasSize(4));
+
+                //Verifying if test made expected API calls.
+                assertThat(server.getRequestCount(), is(1));
+                server.shutdown();
+
+                //Verifying if test made expected database operations: only what differs was written.
+                verify(customerDaoMock).updateAll(Collections.singletonList(new Customer("2", "Teresa", "of Calcutta")));
+                verify(customerDaoMock).insertAll(Collections.singletonList(new Customer("3", "John F.", "Kennedy")));
+                verify(reservationDaoMock).deleteUnusedCustomers(Collections.singletonList("7"));
+                verify(reservationDaoMock, never()).deleteUnusedCustomers();
+                SyncReport syncReport = fetchCustomersUseCase.getLastSyncReport();
+                assertThat(syncReport.getIncomingRows(), is(4));
+                assertThat(syncReport.getInsertedRows(), is(1));
+                assertThat(syncReport.getUpdatedRows(), is(1));
+                assertThat(syncReport.getDeletedRows(), is(1));
+            }
+        });
+    }
+
+    @Test
+    public void fetchCustomers_writingDiffsOnly_chunkedIngestion_shouldOnlyWriteAndCountCustomersThatDiffer() throws Exception {
+        // ### SETUP PHASE ###
+
+        //Setting up mock server to return a directory where one customer changed, two are new and two are gone.
+        List<MockResponse> expectedResponses = Collections.singletonList
+            (new MockResponse().setResponseCode(200).setBody("[\n" +
+                "  {\"customerFirstName\": \"Marilyn\", \"customerLastName\": \"Monroe\", \"id\": 0},\n" +
+                "  {\"customerFirstName\": \"Honest\", \"customerLastName\": \"Abe\", \"id\": 1},\n" +
+                "  {\"customerFirstName\": \"Mother\", \"customerLastName\": \"Teresa\", \"id\": 2},\n" +
+                "  {\"customerFirstName\": \"John F.\", \"customerLastName\": \"Kennedy\", \"id\": 3}\n" +
+                "]"));
+        configureMockWebServer(expectedResponses, new MockServerCallback() {
+            @Override
+            public void onMockServerConfigured(MockWebServer server, String baseUrl) throws Exception {
+                FetchCustomersUseCase fetchCustomersUseCase = fetchCustomersUseCase(baseUrl);
+                //Ingesting customers two at a time, writing only those that differ.
+                fetchCustomersUseCase.setIngestionChunkSize(2);
+                fetchCustomersUseCase.setWritingDiffsOnly(true);
+
+                List<Customer> localCustomers = new LinkedList<>();
+                localCustomers.add(new Customer("0", "Marilyn", "Monroe"));
+                localCustomers.add(new Customer("1", "Abraham", "Lincoln"));
+                localCustomers.add(new Customer("7", "Elvis", "Presley"));
+                localCustomers.add(new Customer("8", "Nelson", "Mandela"));
+
+                CustomerDao customerDaoMock = mock(CustomerDao.class);
+                ReservationDao reservationDaoMock = mock(ReservationDao.class);
+                //Mocking database to return the outdated customers, looked up chunk by chunk.
+                when(customerDaoMock.findAll()).thenReturn(Single.just(localCustomers));
+                when(customerDaoMock.findByIds(Arrays.asList("0", "1"))).thenReturn(localCustomers.subList(0, 2));
+                when(customerDaoMock.findByIds(Arrays.asList("2", "3"))).thenReturn(new LinkedList<Customer>());
+                when(customerDaoMock.findAllIds()).thenReturn(Arrays.asList("0", "1", "2", "3", "7", "8"));
+                //Turning database writes into no-ops, where one of the customers gone is held by a reservation.
+                doNothing().when(customerDaoMock).insertAll(ArgumentMatchers.<Customer>anyList());
+                when(customerDaoMock.updateAll(ArgumentMatchers.<Customer>anyList())).thenReturn(1);
+                when(reservationDaoMock.deleteUnusedCustomers(ArgumentMatchers.<String>anyList())).thenReturn(1);
+                DatabaseResource databaseMock = mock(DatabaseResource.class);
+                when(databaseMock.customerDao()).thenReturn(customerDaoMock);
+                when(databaseMock.reservationDao()).thenReturn(reservationDaoMock);
+                doReturn(databaseMock).when(fetchCustomersUseCase).getDatabase();
+
+                // ### EXECUTION PHASE ###
+
+                final List<FetchCustomersViewState> states = new LinkedList<>();
+                new IterableUtils<FetchCustomersViewState>()
+                    .forEach(fetchCustomersUseCase.doFetchCustomers(new FetchCustomersAction()).blockingIterable(),
+                        new IterableUtils.IterableCallback<FetchCustomersViewState>() {
+                            @Override
+                            public void doForEach(FetchCustomersViewState state) {
+                                states.add(state);
+                            }
+                        }
+                    );
+
+                // ### VERIFICATION PHASE ###
+
+                assertThat(states, hasSize(4));
+                assertThat(states.get(2), instanceOf(FetchCustomersViewState.SuccessFetchingCustomers.class));
+                assertThat(((FetchCustomersViewState.SuccessFetchingCustomers) states.get(2)).isPartial(), is(true));
+                assertThat(states.get(3), instanceOf(FetchCustomersViewState.SuccessFetchingCustomers.class));
+                assertThat(((FetchCustomersViewState.SuccessFetchingCustomers) states.get(3)).isPartial(), is(false));
+
+                //Verifying if test made expected API calls.
+                assertThat(server.getRequestCount(), is(1));
+                server.shutdown();
+
+                //Verifying if test made expected database operations: only what differs was written,
+                // and customers no longer around were deleted along with the last chunk.
+                verify(customerDaoMock).updateAll(Collections.singletonList(new Customer("1", "Honest", "Abe")));
+                List<Customer> customersExpectedToBeInserted = new LinkedList<>();
+                customersExpectedToBeInserted.add(new Customer("2", "Mother", "Teresa"));
+                customersExpectedToBeInserted.add(new Customer("3", "John F.", "Kennedy"));
+                verify(customerDaoMock).insertAll(customersExpectedToBeInserted);
+                verify(customerDaoMock, times(1)).insertAll(ArgumentMatchers.<Customer>anyList());
+                verify(customerDaoMock, times(1)).findAllIds();
+                verify(reservationDaoMock).deleteUnusedCustomers(Arrays.asList("7", "8"));
+                verify(reservationDaoMock, never()).deleteUnusedCustomers();
+                verify(databaseMock, times(2)).setTransactionSuccessful();
+                //The customer held by a reservation stays, so only the other one counts as deleted.
+                SyncReport syncReport = fetchCustomersUseCase.getLastSyncReport();
+                assertThat(syncReport.getIncomingRows(), is(4));
+                assertThat(syncReport.getInsertedRows(), is(2));
+                assertThat(syncReport.getUpdatedRows(), is(1));
+                assertThat(syncReport.getDeletedRows(), is(1));
+            }
+        });
+    }
+
+    @Test
+    public void fetchCustomers_writingDiffsOnly_sameCustomersInAnotherOrder_shouldWriteNothing() throws Exception {
+        // ### SETUP PHASE ###
+
+        //Setting up mock server to return the very customers stored locally, in another order.
+        List<MockResponse> expectedResponses = Collections.singletonList
+            (new MockResponse().setResponseCode(200).setBody("[\n" +
+                "  {\"customerFirstName\": \"Abraham\", \"customerLastName\": \"Lincoln\", \"id\": 1},\n" +
+                "  {\"customerFirstName\": \"Marilyn\", \"customerLastName\": \"Monroe\", \"id\": 0}\n" +
+                "]"));
+        configureMockWebServer(expectedResponses, new MockServerCallback() {
+            @Override
+            public void onMockServerConfigured(MockWebServer server, String baseUrl) throws Exception {
+                FetchCustomersUseCase fetchCustomersUseCase = fetchCustomersUseCase(baseUrl);
+                fetchCustomersUseCase.setWritingDiffsOnly(true);
+
+                List<Customer> localCustomers = new LinkedList<>();
+                localCustomers.add(new Customer("0", "Marilyn", "Monroe"));
+                localCustomers.add(new Customer("1", "Abraham", "Lincoln"));
+
+                CustomerDao customerDaoMock = mock(CustomerDao.class);
+                ReservationDao reservationDaoMock = mock(ReservationDao.class);
+                //Mocking database to return the very same customers.
+                when(customerDaoMock.findAll()).thenReturn(Single.just(localCustomers));
+                DatabaseResource databaseMock = mock(DatabaseResource.class);
+                when(databaseMock.customerDao()).thenReturn(customerDaoMock);
+                when(databaseMock.reservationDao()).thenReturn(reservationDaoMock);
+                doReturn(databaseMock).when(fetchCustomersUseCase).getDatabase();
+
+                // ### EXECUTION PHASE ###
+
+                final List<FetchCustomersViewState> states = new LinkedList<>();
+                new IterableUtils<FetchCustomersViewState>()
+                    .forEach(fetchCustomersUseCase.doFetchCustomers(new FetchCustomersAction()).blockingIterable(),
+                        new IterableUtils.IterableCallback<FetchCustomersViewState>() {
+                            @Override
+                            public void doForEach(FetchCustomersViewState state) {
+                                states.add(state);
+                            }
+                        }
+                    );
+
+                // ### VERIFICATION PHASE ###
+
+                assertThat(states, hasSize(3));
+                server.shutdown();
+
+                //Verifying if test made expected database operations: nothing was written at all.
+                verify(customerDaoMock, never()).insertAll(ArgumentMatchers.<Customer>anyList());
+                verify(customerDaoMock, never()).updateAll(ArgumentMatchers.<Customer>anyList());
+                verify(reservationDaoMock, never()).deleteUnusedCustomers(ArgumentMatchers.<String>anyList());
+                verify(reservationDaoMock, never()).deleteUnusedCustomers();
+                assertThat(fetchCustomersUseCase.getLastSyncReport().getWrittenRows(), is(0));
+            }
+        });
+    }
+
+    @Test
+    public void fetchCustomers_observingLocalChanges_customerWrittenElsewhere_shouldReadCustomersAgainAsUpdate() throws Exception {
+        // ### SETUP PHASE ###
+
+        //Setting up mock server to return the very customers stored locally.
+        List<MockResponse> expectedResponses = Collections.singletonList
+            (new MockResponse().setResponseCode(200).setBody("[\n" +
+                "  {\"customerFirstName\": \"Marilyn\", \"customerLastName\": \"Monroe\", \"id\": 0},\n" +
+                "  {\"customerFirstName\": \"Abraham\", \"customerLastName\": \"Lincoln\", \"id\": 1}\n" +
+                "]"));
+        configureMockWebServer(expectedResponses, new MockServerCallback() {
+            @Override
+            public void onMockServerConfigured(MockWebServer server, String baseUrl) throws Exception {
+                FetchCustomersUseCase fetchCustomersUseCase = fetchCustomersUseCase(baseUrl);
+                fetchCustomersUseCase.setObservingLocalChanges(true);
+
+                final List<Customer> storedCustomers = new LinkedList<>();
+                storedCustomers.add(new Customer("0", "Marilyn", "Monroe"));
+                storedCustomers.add(new Customer("1", "Abraham", "Lincoln"));
+
+                CustomerDao customerDaoMock = mock(CustomerDao.class);
+                ReservationDao reservationDaoMock = mock(ReservationDao.class);
+                //Mocking database to return whatever customers are stored by the time they're read.
+                when(customerDaoMock.findAll()).thenAnswer(new Answer<Single<List<Customer>>>() {
+                    @Override
+                    public Single<List<Customer>> answer(InvocationOnMock invocation) {
+                        return Single.<List<Customer>>just(new LinkedList<>(storedCustomers));
+                    }
+                });
+                //Turning database writes into no-ops.
+                doNothing().when(customerDaoMock).insertAll(ArgumentMatchers.<Customer>anyList());
+                doNothing().when(reservationDaoMock).deleteUnusedCustomers();
+                //Mocking database to hand out an invalidation tracker whose observers are captured.
+                final InvalidationTracker invalidationTrackerMock = mock(InvalidationTracker.class);
+                DatabaseResource databaseMock = mock(DatabaseResource.class);
+                when(databaseMock.customerDao()).thenReturn(customerDaoMock);
+                when(databaseMock.reservationDao()).thenReturn(reservationDaoMock);
+                when(databaseMock.getInvalidationTracker()).thenReturn(invalidationTrackerMock);
+                doReturn(databaseMock).when(fetchCustomersUseCase).getDatabase();
+
+                // ### EXECUTION PHASE ###
+
+                final List<FetchCustomersViewState> states = new LinkedList<>();
+                new IterableUtils<FetchCustomersViewState>()
+                    .forEach(fetchCustomersUseCase.doFetchCustomers(new FetchCustomersAction())
+                            .take(4).timeout(5, TimeUnit.SECONDS).blockingIterable(),
+                        new IterableUtils.IterableCallback<FetchCustomersViewState>() {
+                            @Override
+                            public void doForEach(FetchCustomersViewState state) {
+                                states.add(state);
+                                if (states.size() == 3) {
+                                    //Once local customers are observed, another customer is written elsewhere.
+                                    ArgumentCaptor<InvalidationTracker.Observer> observer
+                                        = ArgumentCaptor.forClass(InvalidationTracker.Observer.class);
+                                    verify(invalidationTrackerMock, timeout(5000)).addObserver(observer.capture());
+                                    storedCustomers.add(new Customer("2", "Mother", "Teresa"));
+                                    observer.getValue().onInvalidated(Collections.singleton("customer"));
+                                }
+                            }
+                        }
+                    );
+
+                // ### VERIFICATION PHASE ###
+
+                assertThat(states, hasSize(4));
+                assertThat(states.get(2), instanceOf(FetchCustomersViewState.SuccessFetchingCustomers.class));
+                assertThat(((FetchCustomersViewState.SuccessFetchingCustomers) states.get(2)).isUpdate(), is(false));
+                assertThat(states.get(3), instanceOf(FetchCustomersViewState.SuccessFetchingCustomers.class));
+                FetchCustomersViewState.SuccessFetchingCustomers update
+                    = (FetchCustomersViewState.SuccessFetchingCustomers) states.get(3);
+                assertThat(update.isUpdate(), is(true));
+                assertThat(update.isPersisted(), is(true));
+                assertThat(update.getCustomers(), is(storedCustomers));
+
+                //Verifying if test made expected API calls: none at all for the update.
+                assertThat(server.getRequestCount(), is(1));
+                server.shutdown();
+            }
+        });
+    }
+
+    @Test
+    public void fetchCustomers_recentlyWarmedCache_shouldServeLocalCustomersWithoutNetwork() throws Exception {
+        // ### SETUP PHASE ###
+
+        //Setting up mock server to return a customer, which should never be asked for.
+        List<MockResponse> expectedResponses = Collections.singletonList(new MockResponse()
+            .setResponseCode(200).setBody("[{\"customerFirstName\": \"Marilyn\", "
+                + "\"customerLastName\": \"Monroe\", \"id\": 0}]"));
+        configureMockWebServer(expectedResponses, new MockServerCallback() {
+            @Override
+            public void onMockServerConfigured(MockWebServer server, String baseUrl) throws Exception {
+                FetchCustomersUseCase fetchCustomersUseCase = fetchCustomersUseCase(baseUrl);
+                fetchCustomersUseCase.setFreshnessThreshold(5, TimeUnit.MINUTES);
+
+                CustomerDao customerDaoMock = mock(CustomerDao.class);
+                SyncStateDao syncStateDaoMock = mock(SyncStateDao.class);
+                //Mocking database to return a local customer, synced with the server a minute ago.
+                when(customerDaoMock.findAll()).thenReturn(Single.<List<Customer>>just
+                    (Collections.singletonList(new Customer("1", "Elvis", "Presley"))));
+                when(syncStateDaoMock.findByResource(FetchCustomersUseCase.SYNC_RESOURCE))
+                    .thenReturn(Maybe.just(new SyncState(FetchCustomersUseCase.SYNC_RESOURCE, null,
+                        System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(1))));
+                DatabaseResource databaseMock = mock(DatabaseResource.class);
+                when(databaseMock.customerDao()).thenReturn(customerDaoMock);
+                when(databaseMock.syncStateDao()).thenReturn(syncStateDaoMock);
+                doReturn(databaseMock).when(fetchCustomersUseCase).getDatabase();
+
+                // ### EXECUTION PHASE ###
+
+                final List<FetchCustomersViewState> states = new LinkedList<>();
+                new IterableUtils<FetchCustomersViewState>()
+                    .forEach(fetchCustomersUseCase.doFetchCustomers(new FetchCustomersAction()).blockingIterable(),
+                        new IterableUtils.IterableCallback<FetchCustomersViewState>() {
+                            @Override
+                            public void doForEach(FetchCustomersViewState state) {
+                                states.add(state);
+                            }
+                        }
+                    );
+
+                // ### VERIFICATION PHASE ###
+
+                assertThat(states, hasSize(2));
+                assertThat(states.get(0), instanceOf(FetchCustomersViewState.FetchingCustomers.class));
+                assertThat(states.get(1), instanceOf(FetchCustomersViewState.SuccessFetchingCustomers.class));
+                assertThat(((FetchCustomersViewState.SuccessFetchingCustomers) states.get(1))
+                    .getCustomers(), hasSize(1));
+
+                //Verifying if test made no API calls at all.
+                assertThat(server.getRequestCount(), is(0));
+                server.shutdown();
+
+                //Verifying if test made no database writes either.
+                verify(customerDaoMock, never()).insertAll(ArgumentMatchers.<Customer>anyList());
+            }
+        });
+    }
+
+    @Test
+    public void refreshLocalCustomers_someRemoteCustomers_shouldPersistThemAndMarkSyncTime() throws Exception {
+        // ### SETUP PHASE ###
+
+        //Setting up mock server to return a couple of customers.
+        List<MockResponse> expectedResponses = Collections.singletonList(new MockResponse()
+            .setResponseCode(200).setBody("[{\"customerFirstName\": \"Marilyn\", "
+                + "\"customerLastName\": \"Monroe\", \"id\": 0}, {\"customerFirstName\": \"Elvis\", "
+                + "\"customerLastName\": \"Presley\", \"id\": 1}]"));
+        configureMockWebServer(expectedResponses, new MockServerCallback() {
+            @Override
+            public void onMockServerConfigured(MockWebServer server, String baseUrl) throws Exception {
+                FetchCustomersUseCase fetchCustomersUseCase = fetchCustomersUseCase(baseUrl);
+
+                CustomerDao customerDaoMock = mock(CustomerDao.class);
+                ReservationDao reservationDaoMock = mock(ReservationDao.class);
+                SyncStateDao syncStateDaoMock = mock(SyncStateDao.class);
+                //Mocking database as if customers were never synced before.
+                when(syncStateDaoMock.findByResource(FetchCustomersUseCase.SYNC_RESOURCE))
+                    .thenReturn(Maybe.<SyncState>empty());
+                //Turning database writes into no-ops.
+                doNothing().when(customerDaoMock).insertAll(ArgumentMatchers.<Customer>anyList());
+                doNothing().when(reservationDaoMock).deleteUnusedCustomers();
+                doNothing().when(syncStateDaoMock).insert(ArgumentMatchers.any(SyncState.class));
+                DatabaseResource databaseMock = mock(DatabaseResource.class);
+                when(databaseMock.customerDao()).thenReturn(customerDaoMock);
+                when(databaseMock.reservationDao()).thenReturn(reservationDaoMock);
+                when(databaseMock.syncStateDao()).thenReturn(syncStateDaoMock);
+                doReturn(databaseMock).when(fetchCustomersUseCase).getDatabase();
+
+                // ### EXECUTION PHASE ###
+
+                long startedAt = System.currentTimeMillis();
+                boolean refreshed = fetchCustomersUseCase.refreshLocalCustomers();
+
+                // ### VERIFICATION PHASE ###
+
+                assertThat(refreshed, is(true));
+                assertThat(server.getRequestCount(), is(1));
+                server.shutdown();
+
+                //Verifying if test made expected database operations, sync time included.
+                verify(reservationDaoMock).deleteUnusedCustomers();
+                verify(customerDaoMock).insertAll(ArgumentMatchers.<List<Customer>>argThat
+                    (new ArgumentMatcher<List<Customer>>() {
+                        @Override
+                        public boolean matches(List<Customer> customers) {
+                            return customers.size() == 2;
+                        }
+                    }));
+                ArgumentCaptor<SyncState> syncState = ArgumentCaptor.forClass(SyncState.class);
+                verify(syncStateDaoMock).insert(syncState.capture());
+                assertThat(syncState.getValue().getResource(), is(FetchCustomersUseCase.SYNC_RESOURCE));
+                assertThat(syncState.getValue().getSyncedAt(), greaterThanOrEqualTo(startedAt));
+            }
+        });
+    }
+
     private FetchCustomersUseCase fetchCustomersUseCase(String baseUrl) {
         FetchCustomersUseCase fetchCustomersUseCase
             = new FetchCustomersUseCase(baseUrl,
@@ -0,0 +1,69 @@
+package com.github.guilhermesgb.steward.network;
+
+import com.github.guilhermesgb.steward.utils.MockedServerUnitTest;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class ApiResourceTest extends MockedServerUnitTest {
+
+    @Test
+    public void getInstance_sameBaseUrl_shouldReuseAccessPoint() throws Exception {
+        List<MockResponse> expectedResponses = Collections.emptyList();
+        configureMockWebServer(expectedResponses, new MockServerCallback() {
+            @Override
+            public void onMockServerConfigured(MockWebServer server, String baseUrl) throws Exception {
+                assertThat(ApiResource.getInstance(baseUrl), sameInstance(ApiResource.getInstance(baseUrl)));
+                server.shutdown();
+            }
+        });
+    }
+
+    @Test
+    public void prewarm_thenFetchCustomers_shouldReusePrewarmedConnection() throws Exception {
+        // ### SETUP PHASE ###
+
+        //Setting up mock server to answer the pre-warming request, then the actual one.
+        List<MockResponse> expectedResponses = Arrays.asList
+            (new MockResponse().setResponseCode(200),
+                new MockResponse().setResponseCode(200).setBody("[]"));
+        configureMockWebServer(expectedResponses, new MockServerCallback() {
+            @Override
+            public void onMockServerConfigured(MockWebServer server, String baseUrl) throws Exception {
+
+                // ### EXECUTION PHASE ###
+
+                int idleConnections = ApiResource.getClient().connectionPool().idleConnectionCount();
+                ApiResource.prewarm(baseUrl);
+                RecordedRequest prewarmRequest = server.takeRequest();
+                //Giving the pre-warmed connection the chance to be released back into the pool.
+                for (int i=0; i<100 && ApiResource.getClient().connectionPool()
+                        .idleConnectionCount() <= idleConnections; i++) {
+                    Thread.sleep(10);
+                }
+                ApiResource.getInstance(baseUrl).fetchCustomers().blockingGet();
+                RecordedRequest actualRequest = server.takeRequest();
+
+                // ### VERIFICATION PHASE ###
+
+                assertThat(prewarmRequest.getMethod(), is("HEAD"));
+                assertThat(prewarmRequest.getSequenceNumber(), is(0));
+                //Second request made over the very same connection.
+                assertThat(actualRequest.getSequenceNumber(), is(1));
+                server.shutdown();
+            }
+        });
+    }
+
+}
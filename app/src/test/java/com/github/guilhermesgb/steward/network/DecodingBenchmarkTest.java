@@ -0,0 +1,338 @@
+package com.github.guilhermesgb.steward.network;
+
+import com.github.guilhermesgb.steward.mvi.customer.schema.Customer;
+import com.github.guilhermesgb.steward.mvi.table.schema.Tables;
+import com.github.guilhermesgb.steward.utils.MockedServerUnitTest;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonDeserializationContext;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import retrofit2.Retrofit;
+import retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory;
+import retrofit2.converter.gson.GsonConverterFactory;
+import retrofit2.converter.scalars.ScalarsConverterFactory;
+import timber.log.Timber;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assume.assumeTrue;
+
+//Benchmarks take long and only tell something on a quiet machine, so they're kept out of the
+// regular unit test runs, only running when asked for (e.g. STEWARD_BENCHMARKS=true ./gradlew test).
+public class DecodingBenchmarkTest extends MockedServerUnitTest {
+
+    private static final String BENCHMARKS_FLAG = "STEWARD_BENCHMARKS";
+
+    private static final int NUMBER_OF_CUSTOMERS = 50000;
+    private static final int NUMBER_OF_TABLES = 10000;
+    private static final int WARM_UP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+
+    @Before
+    public void setUp() {
+        assumeTrue(Boolean.parseBoolean(System.getenv(BENCHMARKS_FLAG)));
+    }
+
+    @After
+    public void tearDown() {
+        //Latencies observed here are not representative, so they are kept from driving hedging.
+        ApiResource.getLatencyBudgets().reset();
+    }
+
+    @Test
+    public void decodeCustomers_fiftyThousandRemoteCustomers_streamingAdaptersShouldAllocateLessThanTreeDeserializers() throws Exception {
+        // ### SETUP PHASE ###
+
+        final com.sun.management.ThreadMXBean threadBean = threadBean();
+        assumeTrue(threadBean != null);
+
+        //Setting up mock server to serve the very same big list of customers over and over again.
+        final Buffer payload = new Buffer().writeUtf8(customersPayload());
+        configureMockWebServer(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setResponseCode(200).setBody(payload.clone());
+            }
+        }, new MockServerCallback() {
+            @Override
+            public void onMockServerConfigured(MockWebServer server, String baseUrl) throws Exception {
+                ApiEndpoints streamingApi = ApiResource.getInstance(baseUrl);
+                ApiEndpoints treeApi = treeBasedInstance(baseUrl);
+
+                // ### EXECUTION PHASE ###
+
+                long[] tree = measure(threadBean, treeApi);
+                long[] streaming = measure(threadBean, streamingApi);
+
+                // ### VERIFICATION PHASE ###
+
+                Timber.i(String.format(Locale.US, "Decoding %d customers, averaged over"
+                        + " %d rounds:%n  tree-based: %,d bytes allocated, %.1f ms%n"
+                        + "  streaming:  %,d bytes allocated, %.1f ms", NUMBER_OF_CUSTOMERS,
+                    MEASURED_ROUNDS, tree[0], tree[1] / 1e6, streaming[0], streaming[1] / 1e6));
+
+                //Both decoders went through the network the same amount of times.
+                assertThat(server.getRequestCount(),
+                    equalTo(2 * (WARM_UP_ROUNDS + MEASURED_ROUNDS)));
+                //Skipping the intermediate JsonElement tree must show up in the allocation figures.
+                assertThat(streaming[0], lessThan(tree[0]));
+                server.shutdown();
+            }
+        });
+    }
+
+    @Test
+    public void fetchCustomers_fiftyThousandRemoteCustomers_compactRecordsShouldBeSmallerThanJson() throws Exception {
+        // ### SETUP PHASE ###
+
+        //Setting up mock server to serve the same big list of customers either as JSON or
+        // as compact records, depending on which one of them the test currently asks for.
+        final Buffer jsonPayload = new Buffer().writeUtf8(customersPayload());
+        final Buffer compactPayload = new Buffer();
+        CompactWireConverterFactory.packCustomers(compactPayload, customersFrom(jsonPayload.clone()));
+        final AtomicBoolean serveCompact = new AtomicBoolean();
+        configureMockWebServer(encodingSwitchingDispatcher(serveCompact, jsonPayload,
+            compactPayload, CompactWireConverterFactory.MEDIA_TYPE_CUSTOMERS), new MockServerCallback() {
+            @Override
+            public void onMockServerConfigured(MockWebServer server, String baseUrl) throws Exception {
+                final ApiEndpoints api = ApiResource.getInstance(baseUrl);
+                Decoder<List<Customer>> decoder = new Decoder<List<Customer>>() {
+                    @Override
+                    public List<Customer> decode() {
+                        return api.fetchCustomers().blockingGet().body();
+                    }
+                };
+
+                // ### EXECUTION PHASE ###
+
+                serveCompact.set(false);
+                long jsonNanos = time(decoder);
+                List<Customer> jsonCustomers = decoder.decode();
+                serveCompact.set(true);
+                long compactNanos = time(decoder);
+                List<Customer> compactCustomers = decoder.decode();
+
+                // ### VERIFICATION PHASE ###
+
+                report("customers", jsonPayload.size(), jsonNanos, compactPayload.size(), compactNanos);
+
+                //Both encodings must decode into the very same customers.
+                assertThat(jsonCustomers, hasSize(NUMBER_OF_CUSTOMERS));
+                assertThat(compactCustomers, equalTo(jsonCustomers));
+                //The compact encoding was asked for, JSON being accepted as a fallback.
+                assertThat(server.takeRequest().getHeader("Accept"), allOf(containsString
+                    (CompactWireConverterFactory.MEDIA_TYPE_CUSTOMERS), containsString("application/json")));
+                assertThat(compactPayload.size(), lessThan(jsonPayload.size()));
+                server.shutdown();
+            }
+        });
+    }
+
+    @Test
+    public void fetchTables_largeTableMap_bitsetShouldBeSmallerThanJson() throws Exception {
+        // ### SETUP PHASE ###
+
+        //Setting up mock server to serve the same big table map either as JSON or as a bitset.
+        final Buffer jsonPayload = new Buffer().writeUtf8(tablesPayload());
+        final Buffer compactPayload = new Buffer();
+        Tables.packInto(compactPayload, Tables.readFrom(new JsonReader
+            (new InputStreamReader(jsonPayload.clone().inputStream(), "UTF-8"))));
+        final AtomicBoolean serveCompact = new AtomicBoolean();
+        configureMockWebServer(encodingSwitchingDispatcher(serveCompact, jsonPayload,
+            compactPayload, CompactWireConverterFactory.MEDIA_TYPE_TABLES), new MockServerCallback() {
+            @Override
+            public void onMockServerConfigured(MockWebServer server, String baseUrl) throws Exception {
+                final ApiEndpoints api = ApiResource.getInstance(baseUrl);
+                Decoder<Tables> decoder = new Decoder<Tables>() {
+                    @Override
+                    public Tables decode() {
+                        return api.fetchTables().blockingGet().body();
+                    }
+                };
+
+                // ### EXECUTION PHASE ###
+
+                serveCompact.set(false);
+                long jsonNanos = time(decoder);
+                Tables jsonTables = decoder.decode();
+                serveCompact.set(true);
+                long compactNanos = time(decoder);
+                Tables compactTables = decoder.decode();
+
+                // ### VERIFICATION PHASE ###
+
+                report("tables", jsonPayload.size(), jsonNanos, compactPayload.size(), compactNanos);
+
+                //Both encodings must decode into the very same table map.
+                assertThat(jsonTables.getTables(), hasSize(NUMBER_OF_TABLES));
+                assertThat(compactTables.toString(), equalTo(jsonTables.toString()));
+                assertThat(server.takeRequest().getHeader("Accept"),
+                    containsString(CompactWireConverterFactory.MEDIA_TYPE_TABLES));
+                assertThat(compactPayload.size(), lessThan(jsonPayload.size()));
+                server.shutdown();
+            }
+        });
+    }
+
+    private interface Decoder<T> {
+        T decode();
+    }
+
+    private static <T> long time(Decoder<T> decoder) {
+        for (int i=0; i<WARM_UP_ROUNDS; i++) {
+            decoder.decode();
+        }
+        long nanosBefore = System.nanoTime();
+        for (int i=0; i<MEASURED_ROUNDS; i++) {
+            decoder.decode();
+        }
+        return (System.nanoTime() - nanosBefore) / MEASURED_ROUNDS;
+    }
+
+    private static void report(String what, long jsonBytes, long jsonNanos,
+                               long compactBytes, long compactNanos) {
+        Timber.i(String.format(Locale.US, "Fetching %s, averaged over %d rounds:%n"
+                + "  JSON:    %,d bytes, %.1f ms%n  compact: %,d bytes, %.1f ms", what,
+            MEASURED_ROUNDS, jsonBytes, jsonNanos / 1e6, compactBytes, compactNanos / 1e6));
+    }
+
+    private static Dispatcher encodingSwitchingDispatcher(final AtomicBoolean serveCompact,
+                                                          final Buffer jsonPayload,
+                                                          final Buffer compactPayload,
+                                                          final String compactMediaType) {
+        return new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return serveCompact.get()
+                    ? new MockResponse().setResponseCode(200).setBody(compactPayload.clone())
+                        .setHeader("Content-Type", compactMediaType)
+                    : new MockResponse().setResponseCode(200).setBody(jsonPayload.clone())
+                        .setHeader("Content-Type", "application/json");
+            }
+        };
+    }
+
+    private static long[] measure(com.sun.management.ThreadMXBean threadBean,
+                                  ApiEndpoints api) throws Exception {
+        for (int i=0; i<WARM_UP_ROUNDS; i++) {
+            assertThat(decode(api), hasSize(NUMBER_OF_CUSTOMERS));
+        }
+        //The Retrofit call adapter executes calls synchronously on the subscribing thread,
+        // so this thread's allocation counter covers both the transfer and the decoding.
+        long threadId = Thread.currentThread().getId();
+        long allocatedBytes = 0, elapsedNanos = 0;
+        for (int i=0; i<MEASURED_ROUNDS; i++) {
+            long bytesBefore = threadBean.getThreadAllocatedBytes(threadId);
+            long nanosBefore = System.nanoTime();
+            List<Customer> customers = decode(api);
+            elapsedNanos += System.nanoTime() - nanosBefore;
+            allocatedBytes += threadBean.getThreadAllocatedBytes(threadId) - bytesBefore;
+            assertThat(customers, hasSize(NUMBER_OF_CUSTOMERS));
+        }
+        return new long[] { allocatedBytes / MEASURED_ROUNDS, elapsedNanos / MEASURED_ROUNDS };
+    }
+
+    private static List<Customer> decode(ApiEndpoints api) {
+        return api.fetchCustomers().blockingGet().body();
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (!(threadBean instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean allocationAwareBean
+            = (com.sun.management.ThreadMXBean) threadBean;
+        if (!allocationAwareBean.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        allocationAwareBean.setThreadAllocatedMemoryEnabled(true);
+        return allocationAwareBean;
+    }
+
+    private static List<Customer> customersFrom(Buffer jsonPayload) throws IOException {
+        List<Customer> customers = new ArrayList<>();
+        JsonReader reader = new JsonReader(new InputStreamReader(jsonPayload.inputStream(), "UTF-8"));
+        reader.beginArray();
+        while (reader.hasNext()) {
+            customers.add(Customer.readFrom(reader));
+        }
+        reader.endArray();
+        return customers;
+    }
+
+    private static String tablesPayload() {
+        StringBuilder payload = new StringBuilder("[");
+        for (int i=0; i<NUMBER_OF_TABLES; i++) {
+            if (i > 0) {
+                payload.append(',');
+            }
+            payload.append(i % 3 != 0);
+        }
+        return payload.append(']').toString();
+    }
+
+    private static String customersPayload() {
+        StringBuilder payload = new StringBuilder("[");
+        for (int i=0; i<NUMBER_OF_CUSTOMERS; i++) {
+            if (i > 0) {
+                payload.append(',');
+            }
+            payload.append("{\"customerFirstName\":\"First").append(i)
+                .append("\",\"customerLastName\":\"Last").append(i)
+                .append("\",\"id\":").append(i).append('}');
+        }
+        return payload.append(']').toString();
+    }
+
+    //This is how the access point used to decode payloads, kept here as the baseline.
+    // It shares the very same HTTP client so that only decoding differs between both.
+    private static ApiEndpoints treeBasedInstance(String baseUrl) {
+        GsonBuilder registeredTypeAdapters = new GsonBuilder();
+        registeredTypeAdapters.registerTypeAdapter(Customer.class, new JsonDeserializer<Customer>() {
+            @Override
+            public Customer deserialize(JsonElement json, Type typeOfT,
+                    JsonDeserializationContext context) throws JsonParseException {
+                return Customer.dejsonizeFrom(json.getAsJsonObject());
+            }
+        });
+        registeredTypeAdapters.registerTypeAdapter(Tables.class, new JsonDeserializer<Tables>() {
+            @Override
+            public Tables deserialize(JsonElement json, Type typeOfT,
+                    JsonDeserializationContext context) throws JsonParseException {
+                return Tables.dejsonizeFrom(json.getAsJsonArray());
+            }
+        });
+        return new Retrofit.Builder().baseUrl(baseUrl)
+            .addCallAdapterFactory(RxJava2CallAdapterFactory.create())
+            .addConverterFactory(ScalarsConverterFactory.create())
+            .addConverterFactory(GsonConverterFactory.create(registeredTypeAdapters.create()))
+            .client(ApiResource.getClient()).build().create(ApiEndpoints.class);
+    }
+
+}
@@ -0,0 +1,220 @@
+package com.github.guilhermesgb.steward.network;
+
+import com.github.guilhermesgb.steward.mvi.table.schema.Tables;
+import com.github.guilhermesgb.steward.utils.MockedServerUnitTest;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import retrofit2.Response;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class LatencyBudgetsTest extends MockedServerUnitTest {
+
+    @After
+    public void tearDown() {
+        LatencyBudgets latencyBudgets = ApiResource.getLatencyBudgets();
+        latencyBudgets.setTimeoutBudget("fetchTables", ApiResource.DEFAULT_TABLES_MIN_BUDGET_IN_MILLIS,
+            ApiResource.DEFAULT_TABLES_MAX_BUDGET_IN_MILLIS, TimeUnit.MILLISECONDS);
+        latencyBudgets.setHedging("fetchTables", ApiResource.DEFAULT_TABLES_HEDGING_PERCENTILE,
+            ApiResource.DEFAULT_TABLES_HEDGING_MIN_SAMPLES);
+        latencyBudgets.reset();
+    }
+
+    @Test
+    public void latencyHistogram_recordedLatencies_shouldEstimatePercentilesWithinBucketPrecision() {
+        // ### SETUP PHASE ###
+
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        // ### EXECUTION PHASE ###
+
+        for (int i=1; i<=100; i++) {
+            histogram.record(i, TimeUnit.MILLISECONDS);
+        }
+
+        // ### VERIFICATION PHASE ###
+
+        assertThat(histogram.getCount(), is(100L));
+        //Log-linear buckets keep estimates within 12.5% above the actual percentile.
+        assertThat(histogram.getPercentile(0.5, TimeUnit.MICROSECONDS),
+            greaterThanOrEqualTo(50000L));
+        assertThat(histogram.getPercentile(0.5, TimeUnit.MICROSECONDS),
+            lessThanOrEqualTo(56250L));
+        assertThat(histogram.getPercentile(0.95, TimeUnit.MICROSECONDS),
+            greaterThanOrEqualTo(95000L));
+        assertThat(histogram.getPercentile(0.95, TimeUnit.MICROSECONDS),
+            lessThanOrEqualTo(106875L));
+        histogram.reset();
+        assertThat(histogram.getPercentile(0.5, TimeUnit.MICROSECONDS), is(-1L));
+    }
+
+    @Test
+    public void fetchTables_firstAttemptThrottled_shouldBeHedgedBySecondAttempt() throws Exception {
+        // ### SETUP PHASE ###
+
+        //Setting up mock server so that the first attempt takes way longer than the second one.
+        List<MockResponse> expectedResponses = Arrays.asList
+            (new MockResponse().setResponseCode(200).setBody("[true, true]")
+                .setHeadersDelay(3, TimeUnit.SECONDS),
+             new MockResponse().setResponseCode(200).setBody("[false, true, true]"));
+        configureMockWebServer(expectedResponses, new MockServerCallback() {
+            @Override
+            public void onMockServerConfigured(MockWebServer server, String baseUrl) throws Exception {
+                ApiResource.getLatencyBudgets().setHedgeDelay("fetchTables", 100, TimeUnit.MILLISECONDS);
+                ApiEndpoints api = ApiResource.getInstance(baseUrl);
+
+                // ### EXECUTION PHASE ###
+
+                long startedAt = System.nanoTime();
+                Response<Tables> response = api.fetchTables().blockingGet();
+                long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+
+                // ### VERIFICATION PHASE ###
+
+                //The hedged attempt answered first, so its table map is the one we got.
+                assertThat(response.body().getTables(), hasSize(3));
+                assertThat(elapsedMillis, lessThan(3000L));
+                assertThat(server.getRequestCount(), is(2));
+                assertThat(ApiResource.getLatencyBudgets().getHedgedRequestCount("fetchTables"), is(1L));
+                server.shutdown();
+            }
+        });
+    }
+
+    @Test
+    public void fetchTables_enoughFastAnswersObserved_shouldHedgeAtObservedPercentile() throws Exception {
+        // ### SETUP PHASE ###
+
+        //Setting up mock server to answer promptly for a while, and then to answer slowly once.
+        final int promptAnswers = ApiResource.DEFAULT_TABLES_HEDGING_MIN_SAMPLES;
+        MockResponse[] responses = new MockResponse[promptAnswers + 2];
+        for (int i=0; i<promptAnswers; i++) {
+            responses[i] = new MockResponse().setResponseCode(200).setBody("[true]");
+        }
+        responses[promptAnswers] = new MockResponse().setResponseCode(200).setBody("[true]")
+            .setHeadersDelay(3, TimeUnit.SECONDS);
+        responses[promptAnswers + 1] = new MockResponse().setResponseCode(200).setBody("[true, false]");
+        configureMockWebServer(Arrays.asList(responses), new MockServerCallback() {
+            @Override
+            public void onMockServerConfigured(MockWebServer server, String baseUrl) throws Exception {
+                LatencyBudgets latencyBudgets = ApiResource.getLatencyBudgets();
+                latencyBudgets.reset();
+                ApiEndpoints api = ApiResource.getInstance(baseUrl);
+
+                // ### EXECUTION PHASE ###
+
+                for (int i=0; i<promptAnswers; i++) {
+                    api.fetchTables().blockingGet();
+                }
+                long hedgeDelay = latencyBudgets.getHedgeDelayInNanos("fetchTables");
+                Response<Tables> response = api.fetchTables().blockingGet();
+
+                // ### VERIFICATION PHASE ###
+
+                //Hedging only kicked in once enough latencies were observed, and way before
+                // the slow answer, so that the table grid got the hedged attempt's answer.
+                assertThat(hedgeDelay, greaterThanOrEqualTo(0L));
+                assertThat(hedgeDelay, lessThan(TimeUnit.SECONDS.toNanos(3)));
+                assertThat(response.body().getTables(), hasSize(2));
+                assertThat(server.getRequestCount(), is(promptAnswers + 2));
+                assertThat(latencyBudgets.getHedgedRequestCount("fetchTables"), is(1L));
+                server.shutdown();
+            }
+        });
+    }
+
+    @Test
+    public void fetchTables_steadySlowTailHedged_shouldRecordWholeWaitsSoThatHedgeDelayHoldsUp() throws Exception {
+        // ### SETUP PHASE ###
+
+        //Setting up mock server so that every call's first attempt is slow, whereas hedged attempts are prompt.
+        final int hedgedCalls = 6;
+        MockResponse[] responses = new MockResponse[hedgedCalls * 2];
+        for (int i=0; i<hedgedCalls; i++) {
+            responses[i * 2] = new MockResponse().setResponseCode(200).setBody("[true]")
+                .setHeadersDelay(2, TimeUnit.SECONDS);
+            responses[i * 2 + 1] = new MockResponse().setResponseCode(200).setBody("[true, false]");
+        }
+        configureMockWebServer(Arrays.asList(responses), new MockServerCallback() {
+            @Override
+            public void onMockServerConfigured(MockWebServer server, String baseUrl) throws Exception {
+                LatencyBudgets latencyBudgets = ApiResource.getLatencyBudgets();
+                latencyBudgets.reset();
+                latencyBudgets.setHedging("fetchTables", 0.5, 1);
+                //Calls observed so far took 300ms, so they're hedged once they take any longer than that.
+                for (int i=0; i<hedgedCalls - 1; i++) {
+                    latencyBudgets.getHistogram("fetchTables").record(300, TimeUnit.MILLISECONDS);
+                }
+                long hedgeDelayBefore = latencyBudgets.getHedgeDelayInNanos("fetchTables");
+                ApiEndpoints api = ApiResource.getInstance(baseUrl);
+
+                // ### EXECUTION PHASE ###
+
+                for (int i=0; i<hedgedCalls; i++) {
+                    api.fetchTables().blockingGet();
+                }
+                long hedgeDelayAfter = latencyBudgets.getHedgeDelayInNanos("fetchTables");
+
+                // ### VERIFICATION PHASE ###
+
+                //Every call was answered by its hedged attempt, yet recorded as long as the caller waited
+                // (i.e. the hedge delay and then some), rather than as long as the hedged attempt took:
+                // otherwise, prompt answers would outnumber the rest and the hedge delay would collapse.
+                assertThat(latencyBudgets.getHedgedRequestCount("fetchTables"), is((long) hedgedCalls));
+                assertThat(latencyBudgets.getHistogram("fetchTables").getCount(), is(hedgedCalls * 2L - 1));
+                assertThat(hedgeDelayBefore, greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(300)));
+                assertThat(hedgeDelayAfter, greaterThanOrEqualTo(hedgeDelayBefore));
+                server.shutdown();
+            }
+        });
+    }
+
+    @Test
+    public void fetchTables_answerSlowerThanTimeoutBudget_shouldFailWithTimeout() throws Exception {
+        // ### SETUP PHASE ###
+
+        //Setting up mock server to answer way past the timeout budget.
+        List<MockResponse> expectedResponses = Collections.singletonList(new MockResponse()
+            .setResponseCode(200).setBody("[true]").setHeadersDelay(3, TimeUnit.SECONDS));
+        configureMockWebServer(expectedResponses, new MockServerCallback() {
+            @Override
+            public void onMockServerConfigured(MockWebServer server, String baseUrl) throws Exception {
+                LatencyBudgets latencyBudgets = ApiResource.getLatencyBudgets();
+                latencyBudgets.disableHedging("fetchTables");
+                latencyBudgets.setTimeoutBudget("fetchTables", 200, 200, TimeUnit.MILLISECONDS);
+                ApiEndpoints api = ApiResource.getInstance(baseUrl);
+
+                // ### EXECUTION PHASE ###
+
+                Throwable throwable = api.fetchTables().ignoreElement().blockingGet();
+
+                // ### VERIFICATION PHASE ###
+
+                assertThat(throwable, instanceOf(TimeoutException.class));
+                assertThat(server.getRequestCount(), is(1));
+                //The call is recorded as taking its whole budget, so that slow calls still count.
+                LatencyHistogram histogram = latencyBudgets.getHistogram("fetchTables");
+                assertThat(histogram.getCount(), is(1L));
+                assertThat(histogram.getPercentile(1, TimeUnit.MILLISECONDS), greaterThanOrEqualTo(200L));
+                server.shutdown();
+            }
+        });
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.github.guilhermesgb.steward.network;
+
+import com.github.guilhermesgb.steward.utils.MockedServerUnitTest;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.is;
+
+public class NetworkMetricsTest extends MockedServerUnitTest {
+
+    @Test
+    public void fetchTables_throttledResponse_shouldRecordTimingsOfEveryPhase() throws Exception {
+        // ### SETUP PHASE ###
+
+        //Setting up mock server to take a while to answer, and then a while longer to send the body.
+        // Headers can't be delayed by the response itself (MockWebServer ignores that), hence the dispatcher.
+        Dispatcher dispatcher = new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+                Thread.sleep(100);
+                return new MockResponse().setResponseCode(200).setBody("[true, false, true]")
+                    .setBodyDelay(50, TimeUnit.MILLISECONDS);
+            }
+        };
+        configureMockWebServer(dispatcher, new MockServerCallback() {
+            @Override
+            public void onMockServerConfigured(MockWebServer server, String baseUrl) throws Exception {
+                NetworkMetrics networkMetrics = ApiResource.getNetworkMetrics();
+                networkMetrics.reset();
+
+                // ### EXECUTION PHASE ###
+
+                ApiResource.getInstance(baseUrl).fetchTables().blockingGet();
+                Map<String, Map<NetworkMetrics.Phase, LatencyHistogram>> snapshot = networkMetrics.snapshot();
+                networkMetrics.reset();
+                Map<String, Map<NetworkMetrics.Phase, LatencyHistogram>> snapshotAfterReset = networkMetrics.snapshot();
+
+                // ### VERIFICATION PHASE ###
+
+                assertThat(snapshot, hasKey("fetchTables"));
+                Map<NetworkMetrics.Phase, LatencyHistogram> phases = snapshot.get("fetchTables");
+                //A fresh server means a fresh connection, resolved and connected for this very call.
+                assertThat(phases.get(NetworkMetrics.Phase.DNS).getCount(), greaterThanOrEqualTo(1L));
+                assertThat(phases.get(NetworkMetrics.Phase.CONNECT).getCount(), greaterThanOrEqualTo(1L));
+                assertThat(phases.get(NetworkMetrics.Phase.TLS).getCount(), is(0L));
+                assertThat(phases.get(NetworkMetrics.Phase.TIME_TO_FIRST_BYTE).getCount(), is(1L));
+                assertThat(phases.get(NetworkMetrics.Phase.TIME_TO_FIRST_BYTE)
+                    .getPercentile(1, TimeUnit.MILLISECONDS), greaterThanOrEqualTo(100L));
+                assertThat(phases.get(NetworkMetrics.Phase.BODY_READ).getCount(), is(1L));
+                assertThat(phases.get(NetworkMetrics.Phase.BODY_READ)
+                    .getPercentile(1, TimeUnit.MILLISECONDS), greaterThanOrEqualTo(50L));
+                assertThat(phases.get(NetworkMetrics.Phase.DECODE).getCount(), is(1L));
+                assertThat(phases.get(NetworkMetrics.Phase.CALL).getCount(), is(1L));
+
+                assertThat(snapshotAfterReset.get("fetchTables")
+                    .get(NetworkMetrics.Phase.CALL).getCount(), is(0L));
+                server.shutdown();
+            }
+        });
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.github.guilhermesgb.steward.network;
+
+import com.github.guilhermesgb.steward.mvi.customer.schema.Customer;
+import com.github.guilhermesgb.steward.utils.MockedServerUnitTest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Single;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import retrofit2.Response;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class RequestCoalescerTest extends MockedServerUnitTest {
+
+    private static final String CUSTOMERS = "[{\"customerFirstName\": \"Marilyn\", "
+        + "\"customerLastName\": \"Monroe\", \"id\": 0}]";
+
+    @Before
+    public void setUp() {
+        ApiResource.getRequestCoalescer().resetCounters();
+    }
+
+    @After
+    public void tearDown() {
+        ApiResource.getRequestCoalescer().setSharingWindow("fetchCustomers", 0, TimeUnit.MILLISECONDS);
+        ApiResource.getRequestCoalescer().resetCounters();
+    }
+
+    @Test
+    public void fetchCustomers_concurrentCalls_shouldShareSingleRequest() throws Exception {
+        // ### SETUP PHASE ###
+
+        //Setting up mock server to return a single customer, slowly enough for calls to overlap.
+        List<MockResponse> expectedResponses = Collections.singletonList(new MockResponse()
+            .setResponseCode(200).setBody(CUSTOMERS).setBodyDelay(200, TimeUnit.MILLISECONDS));
+        configureMockWebServer(expectedResponses, new MockServerCallback() {
+            @Override
+            public void onMockServerConfigured(MockWebServer server, String baseUrl) throws Exception {
+                ApiEndpoints api = ApiResource.getInstance(baseUrl);
+
+                // ### EXECUTION PHASE ###
+
+                //Both calls are made before either one of them gets to complete.
+                Single<Response<List<Customer>>> firstCall = api.fetchCustomers();
+                Single<Response<List<Customer>>> secondCall = api.fetchCustomers();
+                List<Customer> firstCustomers = firstCall.blockingGet().body();
+                List<Customer> secondCustomers = secondCall.blockingGet().body();
+
+                // ### VERIFICATION PHASE ###
+
+                assertThat(firstCustomers, hasSize(1));
+                assertThat(secondCustomers, sameInstance(firstCustomers));
+
+                //Verifying if test made expected API calls: a single one, the other one being saved.
+                assertThat(server.getRequestCount(), is(1));
+                server.shutdown();
+                assertThat(ApiResource.getRequestCoalescer().getIssuedRequestCount("fetchCustomers"), is(1L));
+                assertThat(ApiResource.getRequestCoalescer().getSavedRequestCount("fetchCustomers"), is(1L));
+            }
+        });
+    }
+
+    @Test
+    public void fetchCustomers_sequentialCalls_withinSharingWindow_shouldReuseResult() throws Exception {
+        // ### SETUP PHASE ###
+
+        //Setting up mock server to return a single customer.
+        List<MockResponse> expectedResponses = Collections.singletonList
+            (new MockResponse().setResponseCode(200).setBody(CUSTOMERS));
+        configureMockWebServer(expectedResponses, new MockServerCallback() {
+            @Override
+            public void onMockServerConfigured(MockWebServer server, String baseUrl) throws Exception {
+                ApiResource.getRequestCoalescer().setSharingWindow("fetchCustomers", 1, TimeUnit.MINUTES);
+                ApiEndpoints api = ApiResource.getInstance(baseUrl);
+
+                // ### EXECUTION PHASE ###
+
+                List<Customer> firstCustomers = api.fetchCustomers().blockingGet().body();
+                List<Customer> secondCustomers = api.fetchCustomers().blockingGet().body();
+
+                // ### VERIFICATION PHASE ###
+
+                assertThat(secondCustomers, sameInstance(firstCustomers));
+                assertThat(server.getRequestCount(), is(1));
+                server.shutdown();
+                assertThat(ApiResource.getRequestCoalescer().getSavedRequestCount("fetchCustomers"), is(1L));
+            }
+        });
+    }
+
+    @Test
+    public void fetchCustomers_sequentialCalls_noSharingWindow_shouldIssueOneRequestEach() throws Exception {
+        // ### SETUP PHASE ###
+
+        //Setting up mock server to return a single customer, twice.
+        List<MockResponse> expectedResponses = Arrays.asList
+            (new MockResponse().setResponseCode(200).setBody(CUSTOMERS),
+                new MockResponse().setResponseCode(200).setBody(CUSTOMERS));
+        configureMockWebServer(expectedResponses, new MockServerCallback() {
+            @Override
+            public void onMockServerConfigured(MockWebServer server, String baseUrl) throws Exception {
+                ApiEndpoints api = ApiResource.getInstance(baseUrl);
+
+                // ### EXECUTION PHASE ###
+
+                api.fetchCustomers().blockingGet();
+                api.fetchCustomers().blockingGet();
+
+                // ### VERIFICATION PHASE ###
+
+                assertThat(server.getRequestCount(), is(2));
+                server.shutdown();
+                assertThat(ApiResource.getRequestCoalescer().getIssuedRequestCount("fetchCustomers"), is(2L));
+                assertThat(ApiResource.getRequestCoalescer().getSavedRequestCount("fetchCustomers"), is(0L));
+            }
+        });
+    }
+
+}
@@ -0,0 +1,183 @@
+package com.github.guilhermesgb.steward.network;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Single;
+import io.reactivex.SingleSource;
+import io.reactivex.functions.Action;
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.PublishSubject;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.startsWith;
+
+public class RequestPrioritizerTest {
+
+    @Test
+    public void backgroundCall_userInitiatedCallInFlight_shouldWaitUntilItIsOver() throws Exception {
+        // ### SETUP PHASE ###
+
+        RequestPrioritizer requestPrioritizer = new RequestPrioritizer();
+        PublishSubject<String> userInitiatedAnswer = PublishSubject.create();
+        final AtomicInteger backgroundCallsMade = new AtomicInteger();
+
+        // ### EXECUTION PHASE ###
+
+        TestObserver<String> userInitiatedCall = requestPrioritizer.apply(RequestPriority.USER_INITIATED,
+            userInitiatedAnswer.firstOrError()).test();
+        TestObserver<String> backgroundCall = requestPrioritizer.apply(RequestPriority.BACKGROUND,
+            Single.fromCallable(new Callable<String>() {
+                @Override
+                public String call() {
+                    backgroundCallsMade.incrementAndGet();
+                    return "background";
+                }
+            })).test();
+        Thread.sleep(100);
+        int backgroundCallsMadeMeanwhile = backgroundCallsMade.get();
+        userInitiatedAnswer.onNext("user");
+        backgroundCall.awaitTerminalEvent(1, TimeUnit.SECONDS);
+
+        // ### VERIFICATION PHASE ###
+
+        userInitiatedCall.assertValue("user");
+        assertThat(backgroundCallsMadeMeanwhile, is(0));
+        backgroundCall.assertValue("background");
+        assertThat(backgroundCallsMade.get(), is(1));
+        assertThat(requestPrioritizer.getUserInitiatedCallsInFlight(), is(0));
+        assertThat(requestPrioritizer.getPreemptedCallCount(), is(0L));
+    }
+
+    @Test
+    public void backgroundCall_userInitiatedCallComesIn_shouldBePreemptedAndMadeAgainLater() throws Exception {
+        // ### SETUP PHASE ###
+
+        RequestPrioritizer requestPrioritizer = new RequestPrioritizer();
+        PublishSubject<String> userInitiatedAnswer = PublishSubject.create();
+        final AtomicInteger backgroundCallsMade = new AtomicInteger();
+        final CountDownLatch firstBackgroundCallMade = new CountDownLatch(1);
+        final CountDownLatch firstBackgroundCallCancelled = new CountDownLatch(1);
+
+        // ### EXECUTION PHASE ###
+
+        //The first background call hangs for as long as it is not cancelled, whereas the next one answers at once.
+        TestObserver<String> backgroundCall = requestPrioritizer.apply(RequestPriority.BACKGROUND,
+            Single.defer(new Callable<SingleSource<String>>() {
+                @Override
+                public SingleSource<String> call() {
+                    if (backgroundCallsMade.incrementAndGet() > 1) {
+                        return Single.just("background");
+                    }
+                    firstBackgroundCallMade.countDown();
+                    return Single.<String>never().doOnDispose(new Action() {
+                        @Override
+                        public void run() {
+                            firstBackgroundCallCancelled.countDown();
+                        }
+                    });
+                }
+            })).test();
+        firstBackgroundCallMade.await(1, TimeUnit.SECONDS);
+        TestObserver<String> userInitiatedCall = requestPrioritizer.apply(RequestPriority.USER_INITIATED,
+            userInitiatedAnswer.firstOrError()).test();
+        boolean cancelled = firstBackgroundCallCancelled.await(1, TimeUnit.SECONDS);
+        int backgroundCallsMadeMeanwhile = backgroundCallsMade.get();
+        userInitiatedAnswer.onNext("user");
+        backgroundCall.awaitTerminalEvent(1, TimeUnit.SECONDS);
+
+        // ### VERIFICATION PHASE ###
+
+        assertThat(cancelled, is(true));
+        assertThat(backgroundCallsMadeMeanwhile, is(1));
+        userInitiatedCall.assertValue("user");
+        backgroundCall.assertValue("background");
+        assertThat(backgroundCallsMade.get(), is(2));
+        assertThat(requestPrioritizer.getPreemptedCallCount(), is(1L));
+    }
+
+    @Test
+    public void backgroundCalls_manyAtOnce_shouldNeverRunBeyondCap() throws Exception {
+        // ### SETUP PHASE ###
+
+        RequestPrioritizer requestPrioritizer = new RequestPrioritizer();
+        requestPrioritizer.setMaxBackgroundCalls(2);
+        final AtomicInteger backgroundCallsRunning = new AtomicInteger();
+        final AtomicInteger mostBackgroundCallsRunning = new AtomicInteger();
+        Single<String> call = Single.fromCallable(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                int running = backgroundCallsRunning.incrementAndGet();
+                while (true) {
+                    int mostRunning = mostBackgroundCallsRunning.get();
+                    if (running <= mostRunning || mostBackgroundCallsRunning.compareAndSet(mostRunning, running)) {
+                        break;
+                    }
+                }
+                Thread.sleep(50);
+                backgroundCallsRunning.decrementAndGet();
+                return Thread.currentThread().getName();
+            }
+        });
+
+        // ### EXECUTION PHASE ###
+
+        List<TestObserver<String>> backgroundCalls = new ArrayList<>();
+        for (int i=0; i<6; i++) {
+            backgroundCalls.add(requestPrioritizer.apply(RequestPriority.BACKGROUND, call).test());
+        }
+        for (TestObserver<String> backgroundCall : backgroundCalls) {
+            backgroundCall.awaitTerminalEvent(1, TimeUnit.SECONDS);
+        }
+
+        // ### VERIFICATION PHASE ###
+
+        for (TestObserver<String> backgroundCall : backgroundCalls) {
+            backgroundCall.assertValueCount(1);
+            assertThat(backgroundCall.values().get(0), startsWith("background-call-"));
+        }
+        assertThat(mostBackgroundCallsRunning.get(), lessThanOrEqualTo(2));
+    }
+
+    @Test
+    public void backgroundCall_manyUserInitiatedCallsOverAtOnce_shouldNotBeHeldBack() throws Exception {
+        // ### SETUP PHASE ###
+
+        RequestPrioritizer requestPrioritizer = new RequestPrioritizer();
+        Single<String> userInitiatedAnswer = Single.just("user").subscribeOn(Schedulers.io());
+
+        // ### EXECUTION PHASE ###
+
+        //Calls coming in and going away on many threads at once, their counts published concurrently.
+        List<TestObserver<String>> userInitiatedCalls = new ArrayList<>();
+        for (int i=0; i<200; i++) {
+            userInitiatedCalls.add(requestPrioritizer
+                .apply(RequestPriority.USER_INITIATED, userInitiatedAnswer).test());
+        }
+        for (TestObserver<String> userInitiatedCall : userInitiatedCalls) {
+            userInitiatedCall.awaitTerminalEvent(1, TimeUnit.SECONDS);
+        }
+        TestObserver<String> backgroundCall = requestPrioritizer
+            .apply(RequestPriority.BACKGROUND, Single.just("background")).test();
+        backgroundCall.awaitTerminalEvent(1, TimeUnit.SECONDS);
+
+        // ### VERIFICATION PHASE ###
+
+        for (TestObserver<String> userInitiatedCall : userInitiatedCalls) {
+            userInitiatedCall.assertValue("user");
+        }
+        assertThat(requestPrioritizer.getUserInitiatedCallsInFlight(), is(0));
+        //The last count published must be the last one counted, or else this call would wait forever.
+        backgroundCall.assertValue("background");
+    }
+
+}
@@ -0,0 +1,152 @@
+package com.github.guilhermesgb.steward.network;
+
+import com.github.guilhermesgb.steward.mvi.customer.schema.Customer;
+import com.github.guilhermesgb.steward.utils.MockedServerUnitTest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import retrofit2.Response;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class ResiliencePolicyTest extends MockedServerUnitTest {
+
+    private static final String CUSTOMERS = "[{\"customerFirstName\": \"Marilyn\", "
+        + "\"customerLastName\": \"Monroe\", \"id\": 0}]";
+
+    @Before
+    public void setUp() {
+        ApiResource.getResiliencePolicy().setRetries(2, 1, 5, TimeUnit.MILLISECONDS);
+    }
+
+    @After
+    public void tearDown() {
+        ApiResource.getResiliencePolicy().setRetries(ResiliencePolicy.DEFAULT_MAX_RETRIES,
+            ResiliencePolicy.DEFAULT_BASE_RETRY_DELAY_IN_MILLIS,
+            ResiliencePolicy.DEFAULT_MAX_RETRY_DELAY_IN_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void backoff_consecutiveAttempts_shouldGrowExponentiallyUpToMaximum() {
+        Backoff backoff = new Backoff(100, 1000, TimeUnit.MILLISECONDS);
+        assertThat(backoff.ceilingFor(1), is(100L));
+        assertThat(backoff.ceilingFor(2), is(200L));
+        assertThat(backoff.ceilingFor(4), is(800L));
+        assertThat(backoff.ceilingFor(5), is(1000L));
+        assertThat(backoff.ceilingFor(100), is(1000L));
+        for (int i=0; i<100; i++) {
+            //Jitter draws delays anywhere below the ceiling.
+            assertThat(backoff.delayFor(3), lessThanOrEqualTo(400L));
+        }
+    }
+
+    @Test
+    public void fetchCustomers_transientFailures_shouldBeRetriedUntilSuccessful() throws Exception {
+        // ### SETUP PHASE ###
+
+        //Setting up mock server to be briefly unavailable before returning a single customer.
+        List<MockResponse> expectedResponses = Arrays.asList
+            (new MockResponse().setResponseCode(503),
+                new MockResponse().setResponseCode(502),
+                new MockResponse().setResponseCode(200).setBody(CUSTOMERS));
+        configureMockWebServer(expectedResponses, new MockServerCallback() {
+            @Override
+            public void onMockServerConfigured(MockWebServer server, String baseUrl) throws Exception {
+
+                // ### EXECUTION PHASE ###
+
+                Response<List<Customer>> response = ApiResource.getInstance(baseUrl).fetchCustomers().blockingGet();
+
+                // ### VERIFICATION PHASE ###
+
+                assertThat(response.isSuccessful(), is(true));
+                assertThat(response.body(), hasSize(1));
+                assertThat(server.getRequestCount(), is(3));
+                assertThat(ApiResource.getCircuitBreaker(baseUrl).getState(), is(CircuitBreaker.State.CLOSED));
+                server.shutdown();
+            }
+        });
+    }
+
+    @Test
+    public void fetchCustomers_internalServerError_shouldNotBeRetried() throws Exception {
+        // ### SETUP PHASE ###
+
+        //Setting up mock server to fail in a way that retrying wouldn't help.
+        List<MockResponse> expectedResponses = Collections.singletonList
+            (new MockResponse().setResponseCode(500));
+        configureMockWebServer(expectedResponses, new MockServerCallback() {
+            @Override
+            public void onMockServerConfigured(MockWebServer server, String baseUrl) throws Exception {
+
+                // ### EXECUTION PHASE ###
+
+                Response<List<Customer>> response = ApiResource.getInstance(baseUrl).fetchCustomers().blockingGet();
+
+                // ### VERIFICATION PHASE ###
+
+                assertThat(response.code(), is(500));
+                assertThat(server.getRequestCount(), is(1));
+                server.shutdown();
+            }
+        });
+    }
+
+    @Test
+    public void fetchCustomers_repeatedFailures_shouldOpenCircuitThenProbeUntilClosed() throws Exception {
+        // ### SETUP PHASE ###
+
+        //Setting up mock server to fail twice, then to recover.
+        List<MockResponse> expectedResponses = Arrays.asList
+            (new MockResponse().setResponseCode(500),
+                new MockResponse().setResponseCode(500),
+                new MockResponse().setResponseCode(200).setBody(CUSTOMERS));
+        configureMockWebServer(expectedResponses, new MockServerCallback() {
+            @Override
+            public void onMockServerConfigured(MockWebServer server, String baseUrl) throws Exception {
+                CircuitBreaker circuitBreaker = ApiResource.getCircuitBreaker(baseUrl);
+                circuitBreaker.setFailureThreshold(2);
+                circuitBreaker.setOpenDurations(200, 200, TimeUnit.MILLISECONDS);
+                ApiEndpoints api = ApiResource.getInstance(baseUrl);
+
+                // ### EXECUTION PHASE ###
+
+                api.fetchCustomers().blockingGet();
+                api.fetchCustomers().blockingGet();
+                CircuitBreaker.State stateAfterFailures = circuitBreaker.getState();
+                Throwable failedFast = api.fetchCustomers().ignoreElement().blockingGet();
+                int requestsWhileOpen = server.getRequestCount();
+
+                Thread.sleep(250);
+                CircuitBreaker.State stateAfterWaiting = circuitBreaker.getState();
+                Response<List<Customer>> probe = api.fetchCustomers().blockingGet();
+
+                // ### VERIFICATION PHASE ###
+
+                assertThat(stateAfterFailures, is(CircuitBreaker.State.OPEN));
+                //No call went out while the circuit was open.
+                assertThat(failedFast, instanceOf(CircuitOpenException.class));
+                assertThat(requestsWhileOpen, is(2));
+                assertThat(stateAfterWaiting, is(CircuitBreaker.State.HALF_OPEN));
+                assertThat(probe.body(), hasSize(1));
+                assertThat(circuitBreaker.getState(), is(CircuitBreaker.State.CLOSED));
+                assertThat(server.getRequestCount(), is(3));
+                server.shutdown();
+            }
+        });
+    }
+
+}
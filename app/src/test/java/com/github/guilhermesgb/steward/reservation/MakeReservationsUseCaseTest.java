@@ -12,10 +12,15 @@ import com.github.guilhermesgb.steward.mvi.reservation.MakeReservationsUseCase;
 import com.github.guilhermesgb.steward.mvi.reservation.intent.ChooseCustomerAction;
 import com.github.guilhermesgb.steward.mvi.reservation.intent.ChooseTableAction;
 import com.github.guilhermesgb.steward.mvi.reservation.intent.ConfirmReservationAction;
+import com.github.guilhermesgb.steward.mvi.reservation.intent.ConfirmReservationsAction;
+import com.github.guilhermesgb.steward.mvi.reservation.model.MakeGroupReservationsViewState;
 import com.github.guilhermesgb.steward.mvi.reservation.model.MakeReservationsViewState;
 import com.github.guilhermesgb.steward.mvi.reservation.schema.Reservation;
 import com.github.guilhermesgb.steward.mvi.reservation.schema.ReservationDao;
+import com.github.guilhermesgb.steward.mvi.reservation.schema.ReservationMutation;
 import com.github.guilhermesgb.steward.mvi.table.FetchTablesUseCase;
+import com.github.guilhermesgb.steward.mvi.table.TableAvailabilityIndex;
+import com.github.guilhermesgb.steward.mvi.table.intent.FetchTablesAction;
 import com.github.guilhermesgb.steward.mvi.table.model.FetchTablesViewState;
 import com.github.guilhermesgb.steward.mvi.table.schema.Table;
 import com.github.guilhermesgb.steward.mvi.table.schema.TableDao;
@@ -28,6 +33,7 @@ import org.junit.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatchers;
 
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -42,6 +48,7 @@ import static com.github.guilhermesgb.steward.mvi.reservation.model.ReservationE
 import static com.github.guilhermesgb.steward.mvi.reservation.model.ReservationException.Code.RESERVATION_IN_PLACE;
 import static com.github.guilhermesgb.steward.mvi.reservation.model.ReservationException.Code.TABLE_NOT_FOUND;
 import static com.github.guilhermesgb.steward.mvi.reservation.model.ReservationException.Code.TABLE_UNAVAILABLE;
+import static com.github.guilhermesgb.steward.mvi.reservation.model.ReservationException.Code.TOO_MANY_RESERVATIONS;
 import static com.github.guilhermesgb.steward.utils.StringUtils.isEmpty;
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -52,6 +59,7 @@ import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.isA;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
@@ -1063,8 +1071,8 @@ public class MakeReservationsUseCaseTest extends MockedServerUnitTest {
                     server.shutdown();
 
                     //Verifying if test made expected database operations.
-                    verify(customerDaoMock).findById(chosenCustomer.getId());
-                    verify(tableDaoMock).findByNumber(chosenTable.getNumber());
+                    verify(reservationDaoMock).findCustomer(chosenCustomer.getId());
+                    verify(reservationDaoMock).claimTable(chosenTable.getNumber());
                     verify(reservationDaoMock).deleteAllForCustomer(chosenCustomer.getId());
                     ArgumentCaptor<Reservation> captor = ArgumentCaptor.forClass(Reservation.class);
                     verify(reservationDaoMock).insert(captor.capture());
@@ -1076,6 +1084,13 @@ public class MakeReservationsUseCaseTest extends MockedServerUnitTest {
                         expirationDate.isAfter(acceptableExpirationTimeLowerBound));
                     assertThat("Expiration date is bigger than acceptable upper bound",
                         expirationDate.isBefore(acceptableExpirationTimeUpperBound));
+                    ArgumentCaptor<ReservationMutation> mutationCaptor = ArgumentCaptor.forClass(ReservationMutation.class);
+                    verify(reservationDaoMock).enqueueMutation(mutationCaptor.capture());
+                    ReservationMutation mutationExpectedToBeingQueuedNow = mutationCaptor.getValue();
+                    assertThat(mutationExpectedToBeingQueuedNow.getCustomerId(), is(chosenCustomer.getId()));
+                    assertThat(mutationExpectedToBeingQueuedNow.getTableNumber(), is(chosenTable.getNumber()));
+                    assertThat(mutationExpectedToBeingQueuedNow.getExpirationDate(),
+                        is(reservationExpectedToBeingStoredNow.getExpirationDate()));
                 }
             });
     }
@@ -1151,8 +1166,8 @@ public class MakeReservationsUseCaseTest extends MockedServerUnitTest {
                     server.shutdown();
 
                     //Verifying if test made expected database operations.
-                    verify(customerDaoMock).findById(chosenCustomer.getId());
-                    verify(tableDaoMock).findByNumber(chosenTable.getNumber());
+                    verify(reservationDaoMock).findCustomer(chosenCustomer.getId());
+                    verify(reservationDaoMock).claimTable(chosenTable.getNumber());
                     verify(reservationDaoMock).findTablesForGivenCustomer(chosenCustomer.getId());
                     verify(reservationDaoMock, times(0)).deleteAllForCustomer(chosenCustomer.getId());
                     verify(reservationDaoMock, times(0)).insert(ArgumentMatchers.<Reservation>any());
@@ -1232,9 +1247,9 @@ public class MakeReservationsUseCaseTest extends MockedServerUnitTest {
                     server.shutdown();
 
                     //Verifying if test made expected database operations.
-                    verify(customerDaoMock).findById(chosenCustomer.getId());
-                    verify(tableDaoMock, times(0))
-                        .findByNumber(chosenTable.getNumber());
+                    verify(reservationDaoMock).findCustomer(chosenCustomer.getId());
+                    verify(reservationDaoMock, times(0))
+                        .claimTable(chosenTable.getNumber());
                     verify(reservationDaoMock).findTablesForGivenCustomer(chosenCustomer.getId());
                     verify(reservationDaoMock, times(0))
                         .deleteAllForCustomer(chosenCustomer.getId());
@@ -1316,9 +1331,9 @@ public class MakeReservationsUseCaseTest extends MockedServerUnitTest {
                     server.shutdown();
 
                     //Verifying if test made expected database operations.
-                    verify(customerDaoMock).findById(chosenCustomer.getId());
-                    verify(tableDaoMock, times(0))
-                        .findByNumber(chosenTable.getNumber());
+                    verify(reservationDaoMock).findCustomer(chosenCustomer.getId());
+                    verify(reservationDaoMock, times(0))
+                        .claimTable(chosenTable.getNumber());
                     verify(reservationDaoMock).findTablesForGivenCustomer(chosenCustomer.getId());
                     verify(reservationDaoMock, times(0))
                         .deleteAllForCustomer(chosenCustomer.getId());
@@ -1399,8 +1414,8 @@ public class MakeReservationsUseCaseTest extends MockedServerUnitTest {
                     server.shutdown();
 
                     //Verifying if test made expected database operations.
-                    verify(customerDaoMock).findById(chosenCustomer.getId());
-                    verify(tableDaoMock).findByNumber(chosenTable.getNumber());
+                    verify(reservationDaoMock).findCustomer(chosenCustomer.getId());
+                    verify(reservationDaoMock).claimTable(chosenTable.getNumber());
                     verify(reservationDaoMock).findTablesForGivenCustomer(chosenCustomer.getId());
                     verify(reservationDaoMock, times(0))
                         .deleteAllForCustomer(chosenCustomer.getId());
@@ -1481,9 +1496,9 @@ public class MakeReservationsUseCaseTest extends MockedServerUnitTest {
                     server.shutdown();
 
                     //Verifying if test made expected database operations.
-                    verify(customerDaoMock).findById(chosenCustomer.getId());
-                    verify(tableDaoMock, times(0))
-                        .findByNumber(chosenTable.getNumber());
+                    verify(reservationDaoMock).findCustomer(chosenCustomer.getId());
+                    verify(reservationDaoMock, times(0))
+                        .claimTable(chosenTable.getNumber());
                     verify(reservationDaoMock, times(0))
                         .findTablesForGivenCustomer(chosenCustomer.getId());
                     verify(reservationDaoMock, times(0))
@@ -1494,6 +1509,322 @@ public class MakeReservationsUseCaseTest extends MockedServerUnitTest {
             });
     }
 
+    @Test
+    @SuppressWarnings("UnnecessaryLocalVariable, ConstantConditions")
+    public void confirmReservations_chosenTableKnownToBeTaken_shouldYieldReservationErrorRightAway() throws Exception {
+        // ### SETUP PHASE ###
+
+        final Customer chosenCustomer = new Customer("2", "Mother", "Teresa");
+        final Table chosenTable = new Table(3, true);
+        List<Table> tablesForGivenCustomerFound = new LinkedList<>();
+        final Table tableByNumberFound = new Table(3, false);
+        //The index knows the chosen table to be taken already.
+        final TableAvailabilityIndex availabilityIndex = new TableAvailabilityIndex();
+        availabilityIndex.load(Arrays.asList(new Table(2, true), new Table(3, false)));
+
+        setupConfirmReservationTest(chosenCustomer, chosenTable, tablesForGivenCustomerFound, tableByNumberFound,
+            new ConfirmReservationTestSetupCallback() {
+                @Override
+                public void onSetupAndPrerequisitesComplete(MockWebServer server,
+                                                            CustomerDao customerDaoMock,
+                                                            TableDao tableDaoMock,
+                                                            ReservationDao reservationDaoMock,
+                                                            MakeReservationsUseCase makeReservationsUseCase,
+                                                            MakeReservationsViewState.TableChosen state) throws Exception {
+                    makeReservationsUseCase.setAvailabilityIndex(availabilityIndex);
+
+                    // ### EXECUTION PHASE ###
+
+                    ConfirmReservationAction action = new ConfirmReservationAction(state);
+
+                    final List<MakeReservationsViewState> states = new LinkedList<>();
+                    new IterableUtils<MakeReservationsViewState>()
+                        .forEach(makeReservationsUseCase.confirmReservation(action).blockingIterable(),
+                            new IterableUtils.IterableCallback<MakeReservationsViewState>() {
+                                @Override
+                                public void doForEach(MakeReservationsViewState state) {
+                                    states.add(state);
+                                }
+                            }
+                        );
+
+                    // ### VERIFICATION PHASE ###
+
+                    assertThat(states, hasSize(2));
+                    assertThat(states.get(0), instanceOf(MakeReservationsViewState.MakingReservation.class));
+                    assertThat(states.get(1), instanceOf(MakeReservationsViewState.ErrorMakingReservation.class));
+                    MakeReservationsViewState.ErrorMakingReservation error
+                        = (MakeReservationsViewState.ErrorMakingReservation) states.get(1);
+                    assertThat(error.getException().getCode(), is(TABLE_UNAVAILABLE));
+                    assertThat(error.getFinalSubstate().getChosenTable(), allOf(isA(Table.class),
+                        hasProperty("number", equalTo(chosenTable.getNumber())),
+                        hasProperty("available", equalTo(false))
+                    ));
+                    assertThat(availabilityIndex.isAvailable(chosenTable.getNumber()), is(false));
+
+                    server.shutdown();
+
+                    //Verifying if test made expected database operations.
+                    verify(reservationDaoMock).findTablesForGivenCustomer(chosenCustomer.getId());
+                    verify(reservationDaoMock, times(0))
+                        .reserve(anyString(), anyInt(), anyLong());
+                    verify(reservationDaoMock, times(0))
+                        .insert(ArgumentMatchers.<Reservation>any());
+                }
+            });
+    }
+
+    @Test
+    @SuppressWarnings("UnnecessaryLocalVariable, ConstantConditions")
+    public void confirmReservations_chosenTableKnownToBeTakenByChosenCustomer_shouldYieldReservationInPlace() throws Exception {
+        // ### SETUP PHASE ###
+
+        final Customer chosenCustomer = new Customer("2", "Mother", "Teresa");
+        final Table chosenTable = new Table(3, true);
+        List<Table> tablesForGivenCustomerFound = new LinkedList<>();
+        tablesForGivenCustomerFound.add(new Table(3, false));
+        final Table tableByNumberFound = new Table(3, false);
+        //The index knows the chosen table to be taken, by the very customer chosen.
+        final TableAvailabilityIndex availabilityIndex = new TableAvailabilityIndex();
+        availabilityIndex.load(Arrays.asList(new Table(2, true), new Table(3, false)));
+
+        setupConfirmReservationTest(chosenCustomer, chosenTable, tablesForGivenCustomerFound, tableByNumberFound,
+            new ConfirmReservationTestSetupCallback() {
+                @Override
+                public void onSetupAndPrerequisitesComplete(MockWebServer server,
+                                                            CustomerDao customerDaoMock,
+                                                            TableDao tableDaoMock,
+                                                            ReservationDao reservationDaoMock,
+                                                            MakeReservationsUseCase makeReservationsUseCase,
+                                                            MakeReservationsViewState.TableChosen state) throws Exception {
+                    makeReservationsUseCase.setAvailabilityIndex(availabilityIndex);
+
+                    // ### EXECUTION PHASE ###
+
+                    ConfirmReservationAction action = new ConfirmReservationAction(state);
+
+                    final List<MakeReservationsViewState> states = new LinkedList<>();
+                    new IterableUtils<MakeReservationsViewState>()
+                        .forEach(makeReservationsUseCase.confirmReservation(action).blockingIterable(),
+                            new IterableUtils.IterableCallback<MakeReservationsViewState>() {
+                                @Override
+                                public void doForEach(MakeReservationsViewState state) {
+                                    states.add(state);
+                                }
+                            }
+                        );
+
+                    // ### VERIFICATION PHASE ###
+
+                    assertThat(states, hasSize(2));
+                    assertThat(states.get(0), instanceOf(MakeReservationsViewState.MakingReservation.class));
+                    assertThat(states.get(1), instanceOf(MakeReservationsViewState.ErrorMakingReservation.class));
+                    MakeReservationsViewState.ErrorMakingReservation error
+                        = (MakeReservationsViewState.ErrorMakingReservation) states.get(1);
+                    assertThat(error.getException().getCode(), is(RESERVATION_IN_PLACE));
+                    assertThat(error.getFinalSubstate().getChosenTable(), allOf(isA(Table.class),
+                        hasProperty("number", equalTo(chosenTable.getNumber())),
+                        hasProperty("available", equalTo(false))
+                    ));
+                    assertThat(availabilityIndex.isAvailable(chosenTable.getNumber()), is(false));
+
+                    server.shutdown();
+
+                    //Verifying if test made expected database operations.
+                    //Once by the look at the tables held, once more by the reservation transaction.
+                    verify(reservationDaoMock, times(2)).findTablesForGivenCustomer(chosenCustomer.getId());
+                    verify(reservationDaoMock, times(1))
+                        .reserve(anyString(), anyInt(), anyLong());
+                    verify(reservationDaoMock, times(0))
+                        .insert(ArgumentMatchers.<Reservation>any());
+                }
+            });
+    }
+
+    @Test
+    @SuppressWarnings("UnnecessaryLocalVariable, ConstantConditions")
+    public void confirmReservations_chosenTableTakenBehindIndexBack_shouldYieldReservationErrorAndCorrectIndex() throws Exception {
+        // ### SETUP PHASE ###
+
+        final Customer chosenCustomer = new Customer("2", "Mother", "Teresa");
+        final Table chosenTable = new Table(3, true);
+        List<Table> tablesForGivenCustomerFound = new LinkedList<>();
+        final Table tableByNumberFound = new Table(3, false);
+        //The index still thinks the chosen table is available.
+        final TableAvailabilityIndex availabilityIndex = new TableAvailabilityIndex();
+        availabilityIndex.load(Arrays.asList(new Table(2, true), new Table(3, true)));
+
+        setupConfirmReservationTest(chosenCustomer, chosenTable, tablesForGivenCustomerFound, tableByNumberFound,
+            new ConfirmReservationTestSetupCallback() {
+                @Override
+                public void onSetupAndPrerequisitesComplete(MockWebServer server,
+                                                            CustomerDao customerDaoMock,
+                                                            TableDao tableDaoMock,
+                                                            ReservationDao reservationDaoMock,
+                                                            MakeReservationsUseCase makeReservationsUseCase,
+                                                            MakeReservationsViewState.TableChosen state) throws Exception {
+                    makeReservationsUseCase.setAvailabilityIndex(availabilityIndex);
+
+                    // ### EXECUTION PHASE ###
+
+                    ConfirmReservationAction action = new ConfirmReservationAction(state);
+
+                    final List<MakeReservationsViewState> states = new LinkedList<>();
+                    new IterableUtils<MakeReservationsViewState>()
+                        .forEach(makeReservationsUseCase.confirmReservation(action).blockingIterable(),
+                            new IterableUtils.IterableCallback<MakeReservationsViewState>() {
+                                @Override
+                                public void doForEach(MakeReservationsViewState state) {
+                                    states.add(state);
+                                }
+                            }
+                        );
+
+                    // ### VERIFICATION PHASE ###
+
+                    assertThat(states, hasSize(2));
+                    assertThat(states.get(0), instanceOf(MakeReservationsViewState.MakingReservation.class));
+                    assertThat(states.get(1), instanceOf(MakeReservationsViewState.ErrorMakingReservation.class));
+                    MakeReservationsViewState.ErrorMakingReservation error
+                        = (MakeReservationsViewState.ErrorMakingReservation) states.get(1);
+                    assertThat(error.getException().getCode(), is(TABLE_UNAVAILABLE));
+                    assertThat(error.getFinalSubstate().getChosenTable(), allOf(isA(Table.class),
+                        hasProperty("number", equalTo(chosenTable.getNumber())),
+                        hasProperty("available", equalTo(false))
+                    ));
+                    assertThat(availabilityIndex.isAvailable(chosenTable.getNumber()), is(false));
+
+                    server.shutdown();
+
+                    //Verifying if test made expected database operations.
+                    verify(reservationDaoMock).findTablesForGivenCustomer(chosenCustomer.getId());
+                    verify(reservationDaoMock, times(1))
+                        .reserve(anyString(), anyInt(), anyLong());
+                    verify(reservationDaoMock, times(0))
+                        .insert(ArgumentMatchers.<Reservation>any());
+                }
+            });
+    }
+
+    @Test
+    public void confirmReservations_batchLargerThanAllowed_shouldYieldReservationsErrorWithoutTouchingDatabase() throws Exception {
+        // ### SETUP PHASE ###
+
+        ReservationDao reservationDaoMock = mock(ReservationDao.class);
+        DatabaseResource databaseMock = mock(DatabaseResource.class);
+        when(databaseMock.reservationDao()).thenReturn(reservationDaoMock);
+        MakeReservationsUseCase makeReservationsUseCase
+            = spy(new MakeReservationsUseCase(null, mock(Context.class)));
+        doReturn(databaseMock).when(makeReservationsUseCase).getDatabase();
+        ConfirmReservationsAction action
+            = new ConfirmReservationsAction(ConfirmReservationsAction.Policy.BEST_EFFORT);
+        for (int i=0; i<=ReservationDao.MAX_RESERVATIONS_PER_BATCH; i++) {
+            action.add(new Customer(String.valueOf(i), "Customer", String.valueOf(i)), new Table(i, true));
+        }
+
+        // ### EXECUTION PHASE ###
+
+        final List<MakeGroupReservationsViewState> states = new LinkedList<>();
+        new IterableUtils<MakeGroupReservationsViewState>()
+            .forEach(makeReservationsUseCase.confirmReservations(action).blockingIterable(),
+                new IterableUtils.IterableCallback<MakeGroupReservationsViewState>() {
+                    @Override
+                    public void doForEach(MakeGroupReservationsViewState state) {
+                        states.add(state);
+                    }
+                }
+            );
+
+        // ### VERIFICATION PHASE ###
+
+        assertThat(states, hasSize(2));
+        assertThat(states.get(0), instanceOf(MakeGroupReservationsViewState.MakingReservations.class));
+        assertThat(states.get(1), instanceOf(MakeGroupReservationsViewState.ErrorMakingReservations.class));
+        MakeGroupReservationsViewState.ErrorMakingReservations error
+            = (MakeGroupReservationsViewState.ErrorMakingReservations) states.get(1);
+        assertThat(error.getException().getCode(), is(TOO_MANY_RESERVATIONS));
+        assertThat(error.getAction(), is(action));
+
+        //Verifying if test made no database operations at all.
+        verify(reservationDaoMock, times(0))
+            .reserveAll(ArgumentMatchers.<Reservation>anyList(), ArgumentMatchers.anyBoolean());
+    }
+
+    @Test
+    public void reduce_customersAndTablesUpdatedAfterReservationMade_shouldKeepChoicesAndOutcome() {
+        // ### SETUP PHASE ###
+
+        MakeReservationsUseCase makeReservationsUseCase
+            = new MakeReservationsUseCase(null, mock(Context.class));
+        Customer chosenCustomer = new Customer("0", "Marilyn", "Monroe");
+        Table chosenTable = new Table(1, false);
+        FetchCustomersViewState.SuccessFetchingCustomers customers = new FetchCustomersViewState
+            .SuccessFetchingCustomers(new FetchCustomersAction(), Arrays.asList(chosenCustomer));
+        FetchTablesViewState.SuccessFetchingTables tables = new FetchTablesViewState
+            .SuccessFetchingTables(new FetchTablesAction(), Arrays.asList(new Table(0, true), new Table(1, true)));
+        MakeReservationsViewState.CustomerChosen customerChosen
+            = new MakeReservationsViewState.CustomerChosen(customers, chosenCustomer, tables);
+        MakeReservationsViewState successState = new MakeReservationsViewState.SuccessMakingReservation
+            (new MakeReservationsViewState.TableChosen(customerChosen, tables, chosenTable));
+        //Then another customer is written elsewhere, and the table just reserved is written as taken.
+        FetchCustomersViewState.SuccessFetchingCustomers updatedCustomers = new FetchCustomersViewState
+            .SuccessFetchingCustomers(new FetchCustomersAction(), Arrays.asList(chosenCustomer,
+                new Customer("1", "Abraham", "Lincoln"))).setUpdate(true);
+        FetchTablesViewState.SuccessFetchingTables updatedTables = new FetchTablesViewState
+            .SuccessFetchingTables(new FetchTablesAction(), Arrays.asList(new Table(0, true),
+                new Table(1, false))).setUpdate(true);
+
+        // ### EXECUTION PHASE ###
+
+        MakeReservationsViewState stateAfterCustomers = makeReservationsUseCase.reduce(successState,
+            new MakeReservationsViewState.Initial(updatedCustomers));
+        MakeReservationsViewState stateAfterTables = makeReservationsUseCase.reduce(stateAfterCustomers,
+            new MakeReservationsViewState.CustomerChosen(customers, chosenCustomer, updatedTables));
+
+        // ### VERIFICATION PHASE ###
+
+        assertThat(stateAfterCustomers, instanceOf(MakeReservationsViewState.SuccessMakingReservation.class));
+        assertThat(stateAfterTables, instanceOf(MakeReservationsViewState.SuccessMakingReservation.class));
+        MakeReservationsViewState.TableChosen finalSubstate
+            = ((MakeReservationsViewState.SuccessMakingReservation) stateAfterTables).getFinalSubstate();
+        assertThat(finalSubstate.getChosenTable(), is(chosenTable));
+        assertThat(finalSubstate.getSecondSubstate(), is(updatedTables));
+        assertThat(finalSubstate.getFirstSubstate().getChosenCustomer(), is(chosenCustomer));
+        assertThat(finalSubstate.getFirstSubstate().getFirstSubstate(), is(updatedCustomers));
+        assertThat(finalSubstate.getFirstSubstate().getSecondSubstate(),
+            is((FetchTablesViewState) updatedTables));
+    }
+
+    @Test
+    public void reduce_customerNoLongerChosen_shouldLeaveTablesUpdatedLaterOnOut() {
+        // ### SETUP PHASE ###
+
+        MakeReservationsUseCase makeReservationsUseCase
+            = new MakeReservationsUseCase(null, mock(Context.class));
+        Customer chosenCustomer = new Customer("0", "Marilyn", "Monroe");
+        FetchCustomersViewState.SuccessFetchingCustomers customers = new FetchCustomersViewState
+            .SuccessFetchingCustomers(new FetchCustomersAction(), Arrays.asList(chosenCustomer));
+        FetchTablesViewState.SuccessFetchingTables tables = new FetchTablesViewState
+            .SuccessFetchingTables(new FetchTablesAction(), Arrays.asList(new Table(0, true)));
+        MakeReservationsViewState customerChosen
+            = new MakeReservationsViewState.CustomerChosen(customers, chosenCustomer, tables);
+        FetchTablesViewState.SuccessFetchingTables updatedTables = new FetchTablesViewState
+            .SuccessFetchingTables(new FetchTablesAction(), Arrays.asList(new Table(0, false))).setUpdate(true);
+
+        // ### EXECUTION PHASE ###
+
+        //Customers fetched upon request (e.g. as the chosen customer is let go of) do take over.
+        MakeReservationsViewState initialState = makeReservationsUseCase.reduce(customerChosen,
+            new MakeReservationsViewState.Initial(customers));
+        MakeReservationsViewState stateAfterTables = makeReservationsUseCase.reduce(initialState,
+            new MakeReservationsViewState.CustomerChosen(customers, chosenCustomer, updatedTables));
+
+        // ### VERIFICATION PHASE ###
+
+        assertThat(initialState, instanceOf(MakeReservationsViewState.Initial.class));
+        assertThat(stateAfterTables, is(initialState));
+    }
+
     private void setupConfirmReservationTest(final Customer chosenCustomer,
                                              final Table chosenTable,
                                              final List<Table> tablesForGivenCustomerFound,
@@ -1595,23 +1926,29 @@ public class MakeReservationsUseCaseTest extends MockedServerUnitTest {
                     hasProperty("lastName", equalTo(chosenCustomer.getLastName()))
                 ));
 
+                //The reservation is made by the actual DAO transaction, on top of the mocked queries below.
+                when(reservationDaoMock.reserve(anyString(), anyInt(), anyLong())).thenCallRealMethod();
                 if (tableByNumberFound != null) {
-                    when(tableDaoMock.findByNumber(anyInt()))
-                        .thenReturn(Single.just(tableByNumberFound));
+                    when(reservationDaoMock.claimTable(anyInt()))
+                        .thenReturn(tableByNumberFound.isAvailable() ? 1 : 0);
+                    when(reservationDaoMock.findTable(anyInt()))
+                        .thenReturn(tableByNumberFound);
                 } else {
-                    when(tableDaoMock.findByNumber(anyInt()))
-                        .thenThrow(new RuntimeException("Table not found."));
+                    when(reservationDaoMock.claimTable(anyInt()))
+                        .thenReturn(0);
+                    when(reservationDaoMock.findTable(anyInt()))
+                        .thenReturn(null);
                 }
                 if (tablesForGivenCustomerFound != null) {
-                    when(customerDaoMock.findById(chosenCustomer.getId()))
-                        .thenReturn(Single.just(chosenCustomer));
+                    when(reservationDaoMock.findCustomer(chosenCustomer.getId()))
+                        .thenReturn(chosenCustomer);
                     when(reservationDaoMock.findTablesForGivenCustomer(anyString()))
-                        .thenReturn(Single.just(tablesForGivenCustomerFound));
+                        .thenReturn(tablesForGivenCustomerFound);
                 } else {
-                    when(customerDaoMock.findById(chosenCustomer.getId()))
-                        .thenThrow(new RuntimeException("Customer not found."));
+                    when(reservationDaoMock.findCustomer(chosenCustomer.getId()))
+                        .thenReturn(null);
                     when(reservationDaoMock.findTablesForGivenCustomer(anyString()))
-                        .thenReturn(Single.<List<Table>>just(new LinkedList<Table>()));
+                        .thenReturn(new LinkedList<Table>());
                 }
 
                 callback.onSetupAndPrerequisitesComplete(server, customerDaoMock,
@@ -1657,6 +1994,7 @@ public class MakeReservationsUseCaseTest extends MockedServerUnitTest {
                 doNothing().when(reservationDaoMock).insert(ArgumentMatchers.<Reservation>any());
                 doNothing().when(reservationDaoMock).deleteUnusedCustomers();
                 doNothing().when(reservationDaoMock).deleteUnusedTables();
+                doNothing().when(reservationDaoMock).enqueueMutation(ArgumentMatchers.<ReservationMutation>any());
                 DatabaseResource databaseMock = mock(DatabaseResource.class);
                 when(databaseMock.customerDao()).thenReturn(customerDaoMock);
                 when(databaseMock.tableDao()).thenReturn(tableDaoMock);
@@ -0,0 +1,124 @@
+package com.github.guilhermesgb.steward.reservation;
+
+import com.github.guilhermesgb.steward.mvi.reservation.schema.Reservation;
+import com.github.guilhermesgb.steward.mvi.reservation.schema.ReservationDao;
+import com.github.guilhermesgb.steward.mvi.reservation.schema.ReservationMutation;
+import com.github.guilhermesgb.steward.mvi.reservation.schema.ReservationOutcome;
+import com.github.guilhermesgb.steward.mvi.table.schema.Table;
+
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class ReservationDaoTest {
+
+    private static final long EXPIRES_AT = 1000L;
+
+    @Test
+    public void reserveAll_bestEffort_shouldReserveWhateverPassesAgainstTheSnapshotAndTheBatchItself() {
+        // ### SETUP PHASE ###
+
+        ReservationDao reservationDao = mockSnapshot();
+        List<Reservation> reservations = Arrays.asList(
+            new Reservation("0", 1, EXPIRES_AT),  //Goes through.
+            new Reservation("1", 1, EXPIRES_AT),  //Table 1 was just taken by the one above.
+            new Reservation("0", 2, EXPIRES_AT),  //Customer 0 was just seated by the first one.
+            new Reservation("2", 3, EXPIRES_AT),  //Customer 2 is at table 3 already.
+            new Reservation("3", 2, EXPIRES_AT),  //There's no customer 3.
+            new Reservation("1", 4, EXPIRES_AT),  //Table 4 is taken.
+            new Reservation("1", 5, EXPIRES_AT),  //There's no table 5.
+            new Reservation("1", 2, EXPIRES_AT)); //Goes through.
+
+        // ### EXECUTION PHASE ###
+
+        List<ReservationOutcome> outcomes = reservationDao.reserveAll(reservations, false);
+
+        // ### VERIFICATION PHASE ###
+
+        assertThat(statusesOf(outcomes), contains(ReservationOutcome.Status.RESERVED,
+            ReservationOutcome.Status.TABLE_UNAVAILABLE, ReservationOutcome.Status.CUSTOMER_BUSY,
+            ReservationOutcome.Status.RESERVATION_IN_PLACE, ReservationOutcome.Status.CUSTOMER_NOT_FOUND,
+            ReservationOutcome.Status.TABLE_UNAVAILABLE, ReservationOutcome.Status.TABLE_NOT_FOUND,
+            ReservationOutcome.Status.RESERVED));
+        assertThat(outcomes.get(0).getReservation(), is(reservations.get(0)));
+        assertThat(outcomes.get(7).getReservation(), is(reservations.get(7)));
+
+        //Verifying if test made expected database operations: one snapshot, then only the writes needed.
+        verify(reservationDao, times(1)).findCustomerIds(ArgumentMatchers.<String>anyList());
+        verify(reservationDao, times(1)).findAllForCustomers(ArgumentMatchers.<String>anyList());
+        verify(reservationDao, times(1)).findTables(ArgumentMatchers.<Integer>anyList());
+        verify(reservationDao, never()).findCustomer(any(String.class));
+        verify(reservationDao, never()).findTablesForGivenCustomer(any(String.class));
+        verify(reservationDao, times(1)).claimTable(1);
+        verify(reservationDao, times(1)).claimTable(2);
+        verify(reservationDao, times(2)).claimTable(anyInt());
+        verify(reservationDao, times(1)).insert(reservations.get(0));
+        verify(reservationDao, times(1)).insert(reservations.get(7));
+        verify(reservationDao, times(2)).insert(any(Reservation.class));
+        verify(reservationDao, times(2)).enqueueMutation(any(ReservationMutation.class));
+    }
+
+    @Test
+    public void reserveAll_allOrNothing_anyPairFailing_shouldReserveNothingAtAll() {
+        // ### SETUP PHASE ###
+
+        ReservationDao reservationDao = mockSnapshot();
+        List<Reservation> reservations = Arrays.asList(
+            new Reservation("0", 1, EXPIRES_AT),
+            new Reservation("1", 4, EXPIRES_AT));
+
+        // ### EXECUTION PHASE ###
+
+        List<ReservationOutcome> outcomes = reservationDao.reserveAll(reservations, true);
+
+        // ### VERIFICATION PHASE ###
+
+        assertThat(statusesOf(outcomes), contains(ReservationOutcome.Status.ABORTED,
+            ReservationOutcome.Status.TABLE_UNAVAILABLE));
+        assertThat(outcomes.get(0).getTable().isAvailable(), is(true));
+
+        //Verifying if test made expected database operations: nothing was written.
+        verify(reservationDao, never()).claimTable(anyInt());
+        verify(reservationDao, never()).deleteAllForCustomer(any(String.class));
+        verify(reservationDao, never()).insert(any(Reservation.class));
+        verify(reservationDao, never()).enqueueMutation(any(ReservationMutation.class));
+    }
+
+    //Customers 0, 1 and 2 exist, the latter at table 3; tables 1 and 2 are available, 4 is taken.
+    private static ReservationDao mockSnapshot() {
+        ReservationDao reservationDao = mock(ReservationDao.class, CALLS_REAL_METHODS);
+        doReturn(Arrays.asList("0", "1", "2"))
+            .when(reservationDao).findCustomerIds(ArgumentMatchers.<String>anyList());
+        doReturn(Collections.singletonList(new Reservation("2", 3, EXPIRES_AT)))
+            .when(reservationDao).findAllForCustomers(ArgumentMatchers.<String>anyList());
+        doReturn(Arrays.asList(new Table(1, true), new Table(2, true), new Table(3, false),
+            new Table(4, false))).when(reservationDao).findTables(ArgumentMatchers.<Integer>anyList());
+        doReturn(1).when(reservationDao).claimTable(anyInt());
+        return reservationDao;
+    }
+
+    private static List<ReservationOutcome.Status> statusesOf(List<ReservationOutcome> outcomes) {
+        List<ReservationOutcome.Status> statuses = new ArrayList<>();
+        for (ReservationOutcome outcome : outcomes) {
+            statuses.add(outcome.getStatus());
+        }
+        return statuses;
+    }
+
+}
@@ -0,0 +1,100 @@
+package com.github.guilhermesgb.steward.reservation;
+
+import com.github.guilhermesgb.steward.database.DatabaseResource;
+import com.github.guilhermesgb.steward.mvi.reservation.ReservationExpiryScheduler;
+import com.github.guilhermesgb.steward.mvi.reservation.schema.Reservation;
+import com.github.guilhermesgb.steward.mvi.reservation.schema.ReservationDao;
+import com.github.guilhermesgb.steward.mvi.table.TableAvailabilityBus;
+import com.github.guilhermesgb.steward.mvi.table.schema.Table;
+
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.observers.TestObserver;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ReservationExpirySchedulerTest {
+
+    @Test
+    public void start_someReservationsInDatabase_shouldReleaseEachTableRightAsItExpires() throws Exception {
+        // ### SETUP PHASE ###
+
+        long now = System.currentTimeMillis();
+        //Setting up database to hold these three reservations below, the first one having expired already.
+        Reservation expired = new Reservation("0", 1, now - TimeUnit.MINUTES.toMillis(1));
+        Reservation expiringSoon = new Reservation("1", 2, now + 200);
+        Reservation expiringLater = new Reservation("2", 3, now + TimeUnit.MINUTES.toMillis(10));
+
+        ReservationDao reservationDaoMock = mock(ReservationDao.class);
+        when(reservationDaoMock.findAllByExpiration())
+            .thenReturn(Arrays.asList(expired, expiringSoon, expiringLater));
+        when(reservationDaoMock.deleteIfExpired(anyString(), anyInt(), anyLong())).thenReturn(1);
+        when(reservationDaoMock.releaseUnreservedTables(ArgumentMatchers.<Integer>anyList())).thenReturn(1);
+        DatabaseResource databaseMock = mock(DatabaseResource.class);
+        when(databaseMock.reservationDao()).thenReturn(reservationDaoMock);
+
+        TestObserver<Table> releasedTables = TableAvailabilityBus.changes().test();
+
+        // ### EXECUTION PHASE ###
+
+        new ReservationExpiryScheduler(databaseMock).start();
+        releasedTables.awaitCount(2);
+        long releasedAt = System.currentTimeMillis();
+
+        // ### VERIFICATION PHASE ###
+
+        releasedTables.assertValues(new Table(1, true), new Table(2, true));
+        assertThat(releasedAt, greaterThanOrEqualTo(expiringSoon.getExpiresAt()));
+
+        //Verifying if test made expected database operations.
+        verify(reservationDaoMock).deleteIfExpired(eq("0"), eq(1), anyLong());
+        verify(reservationDaoMock).releaseUnreservedTables(Collections.singletonList(1));
+        verify(reservationDaoMock).deleteIfExpired(eq("1"), eq(2), anyLong());
+        verify(reservationDaoMock).releaseUnreservedTables(Collections.singletonList(2));
+        verify(reservationDaoMock, never()).deleteIfExpired(eq("2"), anyInt(), anyLong());
+        verify(databaseMock, timeout(1000).times(2)).setTransactionSuccessful();
+    }
+
+    @Test
+    public void schedule_reservationRenewedMeanwhile_shouldNotReleaseItsTable() throws Exception {
+        // ### SETUP PHASE ###
+
+        //Setting up database to tell the reservation below no longer expires by now.
+        Reservation renewed = new Reservation("0", 1, System.currentTimeMillis() + 50);
+
+        ReservationDao reservationDaoMock = mock(ReservationDao.class);
+        when(reservationDaoMock.deleteIfExpired(anyString(), anyInt(), anyLong())).thenReturn(0);
+        DatabaseResource databaseMock = mock(DatabaseResource.class);
+        when(databaseMock.reservationDao()).thenReturn(reservationDaoMock);
+
+        TestObserver<Table> releasedTables = TableAvailabilityBus.changes().test();
+
+        // ### EXECUTION PHASE ###
+
+        new ReservationExpiryScheduler(databaseMock).schedule(renewed);
+
+        // ### VERIFICATION PHASE ###
+
+        verify(reservationDaoMock, timeout(1000)).deleteIfExpired(eq("0"), eq(1), anyLong());
+        verify(databaseMock, timeout(1000)).endTransaction();
+        assertThat(releasedTables.valueCount(), is(0));
+        verify(reservationDaoMock, never()).releaseUnreservedTables(ArgumentMatchers.<Integer>anyList());
+    }
+
+}
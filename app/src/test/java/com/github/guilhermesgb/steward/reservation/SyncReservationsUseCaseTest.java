@@ -0,0 +1,237 @@
+package com.github.guilhermesgb.steward.reservation;
+
+import android.content.Context;
+
+import com.github.guilhermesgb.steward.database.DatabaseResource;
+import com.github.guilhermesgb.steward.database.SyncState;
+import com.github.guilhermesgb.steward.database.SyncStateDao;
+import com.github.guilhermesgb.steward.mvi.reservation.SyncReservationsUseCase;
+import com.github.guilhermesgb.steward.mvi.reservation.schema.ReservationMutation;
+import com.github.guilhermesgb.steward.mvi.reservation.schema.ReservationOutboxDao;
+import com.github.guilhermesgb.steward.utils.MockedServerUnitTest;
+
+import org.junit.Test;
+import org.mockito.ArgumentMatchers;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+import io.reactivex.Maybe;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SyncReservationsUseCaseTest extends MockedServerUnitTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void uploadPendingMutations_someQueuedMutations_shouldUploadThemInBatchesAndEmptyOutbox() throws Exception {
+        // ### SETUP PHASE ###
+
+        //Setting up outbox to hold these three mutations below, to be uploaded two at a time.
+        final ReservationMutation first = new ReservationMutation(1, "key-1", "0", 3, "2018-03-01T10:00:00.000Z", 1L);
+        final ReservationMutation second = new ReservationMutation(2, "key-2", "1", 4, "2018-03-01T10:05:00.000Z", 2L);
+        final ReservationMutation third = new ReservationMutation(3, "key-3", "2", 0, "2018-03-01T10:10:00.000Z", 3L);
+
+        List<MockResponse> expectedResponses = new LinkedList<>();
+        expectedResponses.add(new MockResponse().setResponseCode(202));
+        expectedResponses.add(new MockResponse().setResponseCode(202));
+        configureMockWebServer(expectedResponses, new MockServerCallback() {
+            @Override
+            public void onMockServerConfigured(MockWebServer server, String baseUrl) throws Exception {
+                SyncReservationsUseCase syncReservationsUseCase
+                    = spy(new SyncReservationsUseCase(baseUrl, mock(Context.class)));
+                syncReservationsUseCase.setBatchSize(2);
+
+                ReservationOutboxDao reservationOutboxDaoMock = mock(ReservationOutboxDao.class);
+                when(reservationOutboxDaoMock.peek(anyInt())).thenReturn(Arrays.asList(first, second),
+                    Collections.singletonList(third), Collections.<ReservationMutation>emptyList());
+                SyncStateDao syncStateDaoMock = mock(SyncStateDao.class);
+                when(syncStateDaoMock.findByResource(SyncReservationsUseCase.SYNC_RESOURCE))
+                    .thenReturn(Maybe.<SyncState>empty());
+
+                //Turning database writes into no-ops.
+                doNothing().when(reservationOutboxDaoMock).remove(ArgumentMatchers.<Long>anyList());
+                doNothing().when(syncStateDaoMock).insert(ArgumentMatchers.any(SyncState.class));
+                DatabaseResource databaseMock = mock(DatabaseResource.class);
+                when(databaseMock.reservationOutboxDao()).thenReturn(reservationOutboxDaoMock);
+                when(databaseMock.syncStateDao()).thenReturn(syncStateDaoMock);
+                doReturn(databaseMock).when(syncReservationsUseCase).getDatabase();
+
+                // ### EXECUTION PHASE ###
+
+                boolean drained = syncReservationsUseCase.uploadPendingMutations();
+
+                // ### VERIFICATION PHASE ###
+
+                assertThat(drained, is(true));
+                assertThat(server.getRequestCount(), is(2));
+                RecordedRequest firstBatch = server.takeRequest();
+                assertThat(firstBatch.getMethod(), is("POST"));
+                assertThat(firstBatch.getPath(), is("/quandoo-assessment/reservation-mutations"));
+                String firstBatchBody = firstBatch.getBody().readUtf8();
+                assertThat(firstBatchBody, containsString("\"idempotency_key\":\"key-1\""));
+                assertThat(firstBatchBody, containsString("\"idempotency_key\":\"key-2\""));
+                assertThat(firstBatchBody, not(containsString("key-3")));
+                RecordedRequest secondBatch = server.takeRequest();
+                assertThat(secondBatch.getBody().readUtf8(), containsString("\"idempotency_key\":\"key-3\""));
+                assertThat(firstBatch.getHeader("Idempotency-Key"), notNullValue());
+                //Batches are told apart by their idempotency keys, which stay the same when retried.
+                assertThat(firstBatch.getHeader("Idempotency-Key"), not(secondBatch.getHeader("Idempotency-Key")));
+
+                server.shutdown();
+
+                //Verifying if test made expected database operations.
+                verify(reservationOutboxDaoMock).remove(Arrays.asList(1L, 2L));
+                verify(reservationOutboxDaoMock).remove(Collections.singletonList(3L));
+                verify(syncStateDaoMock).insert(ArgumentMatchers.any(SyncState.class));
+            }
+        });
+    }
+
+    @Test
+    public void uploadPendingMutations_serverUnavailable_shouldKeepMutationsForLater() throws Exception {
+        // ### SETUP PHASE ###
+
+        final ReservationMutation mutation = new ReservationMutation(1, "key-1", "0", 3, "2018-03-01T10:00:00.000Z", 1L);
+
+        //Setting up mock server to stay unavailable throughout every retry.
+        List<MockResponse> expectedResponses = new LinkedList<>();
+        for (int i=0; i<3; i++) {
+            expectedResponses.add(new MockResponse().setResponseCode(503));
+        }
+        configureMockWebServer(expectedResponses, new MockServerCallback() {
+            @Override
+            public void onMockServerConfigured(MockWebServer server, String baseUrl) throws Exception {
+                SyncReservationsUseCase syncReservationsUseCase
+                    = spy(new SyncReservationsUseCase(baseUrl, mock(Context.class)));
+
+                ReservationOutboxDao reservationOutboxDaoMock = mock(ReservationOutboxDao.class);
+                when(reservationOutboxDaoMock.peek(anyInt())).thenReturn(Collections.singletonList(mutation));
+                SyncStateDao syncStateDaoMock = mock(SyncStateDao.class);
+                DatabaseResource databaseMock = mock(DatabaseResource.class);
+                when(databaseMock.reservationOutboxDao()).thenReturn(reservationOutboxDaoMock);
+                when(databaseMock.syncStateDao()).thenReturn(syncStateDaoMock);
+                doReturn(databaseMock).when(syncReservationsUseCase).getDatabase();
+
+                // ### EXECUTION PHASE ###
+
+                boolean drained = syncReservationsUseCase.uploadPendingMutations();
+
+                // ### VERIFICATION PHASE ###
+
+                assertThat(drained, is(false));
+                String idempotencyKey = server.takeRequest().getHeader("Idempotency-Key");
+                assertThat(server.takeRequest().getHeader("Idempotency-Key"), is(idempotencyKey));
+
+                server.shutdown();
+
+                //Verifying if test made expected database operations.
+                verify(reservationOutboxDaoMock, never()).remove(ArgumentMatchers.<Long>anyList());
+                verify(syncStateDaoMock, never()).insert(ArgumentMatchers.any(SyncState.class));
+            }
+        });
+    }
+
+    @Test
+    public void uploadPendingMutations_batchRejectedForGood_shouldSetItAsideRatherThanDropIt() throws Exception {
+        // ### SETUP PHASE ###
+
+        final ReservationMutation mutation = new ReservationMutation(1, "key-1", "0", 3, "2018-03-01T10:00:00.000Z", 1L);
+
+        //Setting up mock server to turn the reservation down, as it conflicts with another one.
+        List<MockResponse> expectedResponses = Collections.singletonList(new MockResponse().setResponseCode(409));
+        configureMockWebServer(expectedResponses, new MockServerCallback() {
+            @Override
+            public void onMockServerConfigured(MockWebServer server, String baseUrl) throws Exception {
+                SyncReservationsUseCase syncReservationsUseCase
+                    = spy(new SyncReservationsUseCase(baseUrl, mock(Context.class)));
+
+                ReservationOutboxDao reservationOutboxDaoMock = mock(ReservationOutboxDao.class);
+                when(reservationOutboxDaoMock.peek(anyInt())).thenReturn(Collections.singletonList(mutation),
+                    Collections.<ReservationMutation>emptyList());
+                SyncStateDao syncStateDaoMock = mock(SyncStateDao.class);
+                when(syncStateDaoMock.findByResource(SyncReservationsUseCase.SYNC_RESOURCE))
+                    .thenReturn(Maybe.<SyncState>empty());
+                DatabaseResource databaseMock = mock(DatabaseResource.class);
+                when(databaseMock.reservationOutboxDao()).thenReturn(reservationOutboxDaoMock);
+                when(databaseMock.syncStateDao()).thenReturn(syncStateDaoMock);
+                doReturn(databaseMock).when(syncReservationsUseCase).getDatabase();
+
+                // ### EXECUTION PHASE ###
+
+                boolean drained = syncReservationsUseCase.uploadPendingMutations();
+
+                // ### VERIFICATION PHASE ###
+
+                //Nothing is left to upload, though the mutation stays in the outbox.
+                assertThat(drained, is(true));
+                assertThat(server.getRequestCount(), is(1));
+
+                server.shutdown();
+
+                //Verifying if test made expected database operations.
+                verify(reservationOutboxDaoMock).removeRejectedWithoutReservation();
+                verify(reservationOutboxDaoMock).reject(Collections.singletonList(1L));
+                verify(reservationOutboxDaoMock, never()).remove(ArgumentMatchers.<Long>anyList());
+            }
+        });
+    }
+
+    @Test
+    public void uploadPendingMutations_unauthorized_shouldKeepMutationsForLater() throws Exception {
+        // ### SETUP PHASE ###
+
+        final ReservationMutation mutation = new ReservationMutation(1, "key-1", "0", 3, "2018-03-01T10:00:00.000Z", 1L);
+
+        //Setting up mock server to turn the upload away until credentials get refreshed.
+        List<MockResponse> expectedResponses = Collections.singletonList(new MockResponse().setResponseCode(401));
+        configureMockWebServer(expectedResponses, new MockServerCallback() {
+            @Override
+            public void onMockServerConfigured(MockWebServer server, String baseUrl) throws Exception {
+                SyncReservationsUseCase syncReservationsUseCase
+                    = spy(new SyncReservationsUseCase(baseUrl, mock(Context.class)));
+
+                ReservationOutboxDao reservationOutboxDaoMock = mock(ReservationOutboxDao.class);
+                when(reservationOutboxDaoMock.peek(anyInt())).thenReturn(Collections.singletonList(mutation));
+                SyncStateDao syncStateDaoMock = mock(SyncStateDao.class);
+                DatabaseResource databaseMock = mock(DatabaseResource.class);
+                when(databaseMock.reservationOutboxDao()).thenReturn(reservationOutboxDaoMock);
+                when(databaseMock.syncStateDao()).thenReturn(syncStateDaoMock);
+                doReturn(databaseMock).when(syncReservationsUseCase).getDatabase();
+
+                // ### EXECUTION PHASE ###
+
+                boolean drained = syncReservationsUseCase.uploadPendingMutations();
+
+                // ### VERIFICATION PHASE ###
+
+                assertThat(drained, is(false));
+
+                server.shutdown();
+
+                //Verifying if test made expected database operations.
+                verify(reservationOutboxDaoMock, never()).remove(ArgumentMatchers.<Long>anyList());
+                verify(reservationOutboxDaoMock, never()).reject(ArgumentMatchers.<Long>anyList());
+                verify(syncStateDaoMock, never()).insert(ArgumentMatchers.any(SyncState.class));
+            }
+        });
+    }
+
+}
@@ -1,26 +1,46 @@
 package com.github.guilhermesgb.steward.table;
 
+import android.arch.persistence.room.InvalidationTracker;
 import android.content.Context;
 
 import com.github.guilhermesgb.steward.database.DatabaseResource;
+import com.github.guilhermesgb.steward.database.SyncState;
+import com.github.guilhermesgb.steward.database.SyncStateDao;
+import com.github.guilhermesgb.steward.database.SyncReport;
+import com.github.guilhermesgb.steward.mvi.reservation.SyncReservationsUseCase;
 import com.github.guilhermesgb.steward.mvi.reservation.schema.ReservationDao;
+import com.github.guilhermesgb.steward.mvi.reservation.schema.ReservationMutation;
+import com.github.guilhermesgb.steward.mvi.reservation.schema.ReservationOutboxDao;
 import com.github.guilhermesgb.steward.mvi.table.FetchTablesUseCase;
+import com.github.guilhermesgb.steward.mvi.table.TableAvailabilityBus;
 import com.github.guilhermesgb.steward.mvi.table.intent.FetchTablesAction;
 import com.github.guilhermesgb.steward.mvi.table.model.FetchTablesViewState;
 import com.github.guilhermesgb.steward.mvi.table.schema.Table;
 import com.github.guilhermesgb.steward.mvi.table.schema.TableDao;
 import com.github.guilhermesgb.steward.network.ApiEndpoints;
+import com.github.guilhermesgb.steward.network.ApiResource;
+import com.github.guilhermesgb.steward.network.CircuitBreaker;
+import com.github.guilhermesgb.steward.network.CircuitOpenException;
 import com.github.guilhermesgb.steward.utils.IterableUtils;
 import com.github.guilhermesgb.steward.utils.MockedServerUnitTest;
+import com.github.guilhermesgb.steward.utils.TableAvailabilityDispatcher;
 
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatchers;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import io.reactivex.Maybe;
 import io.reactivex.Single;
+import okhttp3.mockwebserver.Dispatcher;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import okhttp3.mockwebserver.RecordedRequest;
@@ -29,15 +49,22 @@ import retrofit2.http.GET;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.allOf;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.hasProperty;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.isA;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -571,6 +598,196 @@ public class FetchTablesUseCaseTest extends MockedServerUnitTest {
         });
     }
 
+    @Test
+    public void fetchTables_writingDiffsOnly_trustingServerInSync_shouldOnlyWriteAndCountTablesThatDiffer() throws Exception {
+        // ### SETUP PHASE ###
+
+        //Setting up mock server to return three tables, one of them taken in the meantime.
+        List<MockResponse> expectedResponses = Collections.singletonList
+            (new MockResponse().setResponseCode(200).setBody("[false, false, true]"));
+        configureMockWebServer(expectedResponses, new MockServerCallback() {
+            @Override
+            public void onMockServerConfigured(MockWebServer server, String baseUrl) throws Exception {
+                FetchTablesUseCase fetchTablesUseCase = fetchTablesUseCase(baseUrl);
+                fetchTablesUseCase.setWritingDiffsOnly(true);
+                fetchTablesUseCase.setTrustingServerWhenInSync(true);
+
+                ReservationDao reservationDaoMock = mock(ReservationDao.class);
+                ReservationOutboxDao reservationOutboxDaoMock = mock(ReservationOutboxDao.class);
+                TableDao tableDaoMock = mock(TableDao.class);
+                //Mocking database to return these five previously stored tables, with no reservation
+                // waiting to be sent (so that the server is trusted).
+                List<Table> tablesExpectedToHaveBeenStoredThen = new LinkedList<>();
+                tablesExpectedToHaveBeenStoredThen.add(new Table(0, false));
+                tablesExpectedToHaveBeenStoredThen.add(new Table(1, true));
+                tablesExpectedToHaveBeenStoredThen.add(new Table(2, true));
+                tablesExpectedToHaveBeenStoredThen.add(new Table(3, true));
+                tablesExpectedToHaveBeenStoredThen.add(new Table(4, false));
+                when(tableDaoMock.findAll()).thenReturn
+                    (Single.just(tablesExpectedToHaveBeenStoredThen));
+                when(reservationOutboxDaoMock.count()).thenReturn(0);
+                //Turning database writes into no-ops, where one of the tables gone is held by a reservation.
+                when(reservationDaoMock.updateUnreservedTableAvailability(1, false)).thenReturn(1);
+                when(reservationDaoMock.deleteUnusedTables(ArgumentMatchers.<Integer>anyList())).thenReturn(1);
+                DatabaseResource databaseMock = mock(DatabaseResource.class);
+                when(databaseMock.tableDao()).thenReturn(tableDaoMock);
+                when(databaseMock.reservationDao()).thenReturn(reservationDaoMock);
+                when(databaseMock.reservationOutboxDao()).thenReturn(reservationOutboxDaoMock);
+                doReturn(databaseMock).when(fetchTablesUseCase).getDatabase();
+
+                // ### EXECUTION PHASE ###
+
+                final List<FetchTablesViewState> states = new LinkedList<>();
+                new IterableUtils<FetchTablesViewState>()
+                    .forEach(fetchTablesUseCase.doFetchTables(new FetchTablesAction()).blockingIterable(),
+                        new IterableUtils.IterableCallback<FetchTablesViewState>() {
+                            @Override
+                            public void doForEach(FetchTablesViewState state) {
+                                states.add(state);
+                            }
+                        }
+                    );
+
+                // ### VERIFICATION PHASE ###
+
+                assertThat(states, hasSize(3));
+                assertThat(states.get(2), instanceOf(FetchTablesViewState.SuccessFetchingTables.class));
+                FetchTablesViewState.SuccessFetchingTables remoteSuccess
+                    = (FetchTablesViewState.SuccessFetchingTables) states.get(2);
+                assertThat(remoteSuccess.getTables(), hasSize(3));
+
+                //Verifying if test made expected API calls.
+                assertThat(server.getRequestCount(), is(1));
+                server.shutdown();
+
+                //Verifying if test made expected database operations: only what differs was written,
+                // availability going through the guard that leaves tables held by reservations alone.
+                verify(reservationDaoMock).updateUnreservedTableAvailability(1, false);
+                verify(tableDaoMock, times(0)).updateAll(ArgumentMatchers.<Table>anyList());
+                verify(tableDaoMock, times(0)).insertAll(ArgumentMatchers.<Table>anyList());
+                verify(reservationDaoMock).deleteUnusedTables(Arrays.asList(3, 4));
+                verify(reservationDaoMock, times(0)).deleteUnusedTables();
+                //The table held by a reservation stays, so only the other one counts as deleted.
+                SyncReport syncReport = fetchTablesUseCase.getLastSyncReport();
+                assertThat(syncReport.getIncomingRows(), is(3));
+                assertThat(syncReport.getInsertedRows(), is(0));
+                assertThat(syncReport.getUpdatedRows(), is(1));
+                assertThat(syncReport.getDeletedRows(), is(1));
+            }
+        });
+    }
+
+    @Test
+    public void fetchTables_trustingServerInSync_reservationRejectedByServer_shouldKeepReservedTableTaken() throws Exception {
+        // ### SETUP PHASE ###
+
+        //Setting up mock server to reject the reservation uploaded for good, then to return a table map
+        // where the table reserved locally is still available (as the server never heard of it).
+        List<MockResponse> expectedResponses = new LinkedList<>();
+        expectedResponses.add(new MockResponse().setResponseCode(409));
+        expectedResponses.add(new MockResponse().setResponseCode(200).setBody("[true, true]"));
+        configureMockWebServer(expectedResponses, new MockServerCallback() {
+            @Override
+            public void onMockServerConfigured(MockWebServer server, String baseUrl) throws Exception {
+                SyncReservationsUseCase syncReservationsUseCase
+                    = spy(new SyncReservationsUseCase(baseUrl, mock(Context.class)));
+                FetchTablesUseCase fetchTablesUseCase = fetchTablesUseCase(baseUrl);
+                fetchTablesUseCase.setWritingDiffsOnly(true);
+                fetchTablesUseCase.setTrustingServerWhenInSync(true);
+
+                ReservationDao reservationDaoMock = mock(ReservationDao.class);
+                TableDao tableDaoMock = mock(TableDao.class);
+                SyncStateDao syncStateDaoMock = mock(SyncStateDao.class);
+                when(syncStateDaoMock.findByResource(anyString())).thenReturn(Maybe.<SyncState>empty());
+                //Mocking outbox to hold the mutation for the reservation of table 0, which only ever
+                // leaves it if removed (i.e. acknowledged by the server).
+                final ReservationMutation mutation
+                    = new ReservationMutation(1, "key-1", "0", 0, "2018-03-01T10:00:00.000Z", 1L);
+                final AtomicBoolean mutationRemoved = new AtomicBoolean(false);
+                final AtomicBoolean mutationRejected = new AtomicBoolean(false);
+                ReservationOutboxDao reservationOutboxDaoMock = mock(ReservationOutboxDao.class);
+                when(reservationOutboxDaoMock.peek(anyInt())).thenAnswer(new Answer<List<ReservationMutation>>() {
+                    @Override
+                    public List<ReservationMutation> answer(InvocationOnMock invocation) {
+                        return mutationRemoved.get() || mutationRejected.get()
+                            ? Collections.<ReservationMutation>emptyList() : Collections.singletonList(mutation);
+                    }
+                });
+                doAnswer(new Answer<Void>() {
+                    @Override
+                    public Void answer(InvocationOnMock invocation) {
+                        mutationRemoved.set(true);
+                        return null;
+                    }
+                }).when(reservationOutboxDaoMock).remove(ArgumentMatchers.<Long>anyList());
+                doAnswer(new Answer<Void>() {
+                    @Override
+                    public Void answer(InvocationOnMock invocation) {
+                        mutationRejected.set(true);
+                        return null;
+                    }
+                }).when(reservationOutboxDaoMock).reject(ArgumentMatchers.<Long>anyList());
+                when(reservationOutboxDaoMock.count()).thenAnswer(new Answer<Integer>() {
+                    @Override
+                    public Integer answer(InvocationOnMock invocation) {
+                        return mutationRemoved.get() ? 0 : 1;
+                    }
+                });
+                //Mocking database to return these two previously stored tables, table 0 being reserved.
+                List<Table> tablesExpectedToHaveBeenStoredThen = new LinkedList<>();
+                tablesExpectedToHaveBeenStoredThen.add(new Table(0, false));
+                tablesExpectedToHaveBeenStoredThen.add(new Table(1, true));
+                when(tableDaoMock.findAll()).thenReturn
+                    (Single.just(tablesExpectedToHaveBeenStoredThen));
+                DatabaseResource databaseMock = mock(DatabaseResource.class);
+                when(databaseMock.tableDao()).thenReturn(tableDaoMock);
+                when(databaseMock.reservationDao()).thenReturn(reservationDaoMock);
+                when(databaseMock.reservationOutboxDao()).thenReturn(reservationOutboxDaoMock);
+                when(databaseMock.syncStateDao()).thenReturn(syncStateDaoMock);
+                doReturn(databaseMock).when(syncReservationsUseCase).getDatabase();
+                doReturn(databaseMock).when(fetchTablesUseCase).getDatabase();
+
+                // ### EXECUTION PHASE ###
+
+                boolean drained = syncReservationsUseCase.uploadPendingMutations();
+                final List<FetchTablesViewState> states = new LinkedList<>();
+                new IterableUtils<FetchTablesViewState>()
+                    .forEach(fetchTablesUseCase.doFetchTables(new FetchTablesAction()).blockingIterable(),
+                        new IterableUtils.IterableCallback<FetchTablesViewState>() {
+                            @Override
+                            public void doForEach(FetchTablesViewState state) {
+                                states.add(state);
+                            }
+                        }
+                    );
+
+                // ### VERIFICATION PHASE ###
+
+                //Nothing is left to upload, yet the rejected reservation keeps the server from being trusted.
+                assertThat(drained, is(true));
+                assertThat(states, hasSize(3));
+                FetchTablesViewState.SuccessFetchingTables remoteSuccess
+                    = (FetchTablesViewState.SuccessFetchingTables) states.get(2);
+                assertThat(remoteSuccess.getTables().get(0), allOf(isA(Table.class),
+                    hasProperty("number", equalTo(0)),
+                    hasProperty("available", equalTo(false))
+                ));
+
+                //Verifying if test made expected API calls.
+                assertThat(server.getRequestCount(), is(2));
+                server.shutdown();
+
+                //Verifying if test made expected database operations: the rejected mutation is set aside,
+                // and table 0 is never written as available.
+                verify(reservationOutboxDaoMock).reject(Collections.singletonList(1L));
+                verify(reservationOutboxDaoMock, times(0)).remove(ArgumentMatchers.<Long>anyList());
+                verify(reservationDaoMock, times(0)).updateUnreservedTableAvailability(0, true);
+                verify(tableDaoMock, times(0)).updateAll(ArgumentMatchers.<Table>anyList());
+                verify(tableDaoMock, times(0)).insertAll(ArgumentMatchers.<Table>anyList());
+            }
+        });
+    }
+
     @Test
     public void fetchTables_someLocalTables_errorFetchingRemoteTables_shouldPreserveLocalTables() throws Exception {
         // ### SETUP PHASE ###
@@ -726,6 +943,321 @@ public class FetchTablesUseCaseTest extends MockedServerUnitTest {
         });
     }
 
+    @Test
+    public void fetchTables_someLocalTables_circuitOpen_shouldServeLocalTablesWithoutCallingServer() throws Exception {
+        // ### SETUP PHASE ###
+
+        //Setting up mock server to return nothing, as it is not supposed to be called at all.
+        List<MockResponse> expectedResponses = Collections.emptyList();
+        configureMockWebServer(expectedResponses, new MockServerCallback() {
+            @Override
+            public void onMockServerConfigured(MockWebServer server, String baseUrl) throws Exception {
+                FetchTablesUseCase fetchTablesUseCase = fetchTablesUseCase(baseUrl);
+
+                //Tripping the circuit breaker of this server, as if it had been failing repeatedly.
+                CircuitBreaker circuitBreaker = ApiResource.getCircuitBreaker(baseUrl);
+                circuitBreaker.setFailureThreshold(1);
+                circuitBreaker.setOpenDurations(1, 1, TimeUnit.MINUTES);
+                circuitBreaker.onFailure();
+
+                TableDao tableDaoMock = mock(TableDao.class);
+                //Mocking database to return these two previously stored tables.
+                List<Table> tablesExpectedToHaveBeenStoredThen = new LinkedList<>();
+                tablesExpectedToHaveBeenStoredThen.add(new Table(0, false));
+                tablesExpectedToHaveBeenStoredThen.add(new Table(1, true));
+                when(tableDaoMock.findAll()).thenReturn
+                    (Single.just(tablesExpectedToHaveBeenStoredThen));
+                ReservationDao reservationDaoMock = mock(ReservationDao.class);
+                DatabaseResource databaseMock = mock(DatabaseResource.class);
+                when(databaseMock.tableDao()).thenReturn(tableDaoMock);
+                when(databaseMock.reservationDao()).thenReturn(reservationDaoMock);
+                doReturn(databaseMock).when(fetchTablesUseCase).getDatabase();
+
+                // ### EXECUTION PHASE ###
+
+                final List<FetchTablesViewState> states = new LinkedList<>();
+                new IterableUtils<FetchTablesViewState>()
+                    .forEach(fetchTablesUseCase.doFetchTables(new FetchTablesAction()).blockingIterable(),
+                        new IterableUtils.IterableCallback<FetchTablesViewState>() {
+                            @Override
+                            public void doForEach(FetchTablesViewState state) {
+                                states.add(state);
+                            }
+                        }
+                    );
+
+                // ### VERIFICATION PHASE ###
+
+                assertThat(states, hasSize(4));
+                assertThat(states.get(0), instanceOf(FetchTablesViewState.FetchingTables.class));
+                assertThat(states.get(1), instanceOf(FetchTablesViewState.SuccessFetchingTables.class));
+                assertThat(states.get(2), instanceOf(FetchTablesViewState.ErrorFetchingTables.class));
+                assertThat(states.get(3), instanceOf(FetchTablesViewState.Initial.class));
+
+                FetchTablesViewState.ErrorFetchingTables remoteError
+                    = (FetchTablesViewState.ErrorFetchingTables) states.get(2);
+                FetchTablesViewState.Initial initialShownLater
+                    = (FetchTablesViewState.Initial) states.get(3);
+
+                //The error tells the circuit is open, carrying the local tables nonetheless.
+                assertThat(remoteError.getThrowable(), instanceOf(CircuitOpenException.class));
+                assertThat(remoteError.getCircuitState(), is(CircuitBreaker.State.OPEN));
+                assertThat(remoteError.getCachedTables(), is(tablesExpectedToHaveBeenStoredThen));
+                assertThat(initialShownLater.getCachedTables(), is(tablesExpectedToHaveBeenStoredThen));
+
+                //Verifying if test made expected API calls: none at all.
+                assertThat(server.getRequestCount(), is(0));
+                server.shutdown();
+                circuitBreaker.reset();
+
+                //Verifying if test made expected database operations.
+                verify(tableDaoMock).findAll();
+                verify(tableDaoMock, times(0))
+                    .insertAll(ArgumentMatchers.<Table>anyList());
+            }
+        });
+    }
+
+    @Test
+    public void fetchTables_followingTableChanges_connectionDropped_shouldResumeAndApplyPushedChanges() throws Exception {
+        // ### SETUP PHASE ###
+
+        //Setting up mock server to return three tables, and then to push changes to them as they happen.
+        final TableAvailabilityDispatcher dispatcher = new TableAvailabilityDispatcher(true, true, true);
+        configureMockWebServer(dispatcher, new MockServerCallback() {
+            @Override
+            public void onMockServerConfigured(MockWebServer server, String baseUrl) throws Exception {
+                FetchTablesUseCase fetchTablesUseCase = fetchTablesUseCase(baseUrl);
+                fetchTablesUseCase.setFollowingTableChanges(true);
+
+                TableDao tableDaoMock = mock(TableDao.class);
+                ReservationDao reservationDaoMock = mock(ReservationDao.class);
+                //Mocking database to return the very same three tables, the last one being reserved locally.
+                List<Table> tablesExpectedToHaveBeenStoredThen = new LinkedList<>();
+                tablesExpectedToHaveBeenStoredThen.add(new Table(0, true));
+                tablesExpectedToHaveBeenStoredThen.add(new Table(1, true));
+                tablesExpectedToHaveBeenStoredThen.add(new Table(2, false));
+                when(tableDaoMock.findAll()).thenReturn
+                    (Single.just(tablesExpectedToHaveBeenStoredThen));
+                when(tableDaoMock.insertIfAbsent(ArgumentMatchers.any(Table.class))).thenReturn(-1L);
+                when(reservationDaoMock.updateUnreservedTableAvailability
+                    (ArgumentMatchers.anyInt(), ArgumentMatchers.anyBoolean())).thenReturn(1);
+                when(reservationDaoMock.updateUnreservedTableAvailability(2, true)).thenReturn(0);
+                //Turning database writes into no-ops.
+                doNothing().when(tableDaoMock).insertAll(ArgumentMatchers.<Table>anyList());
+                doNothing().when(reservationDaoMock).deleteUnusedTables();
+                DatabaseResource databaseMock = mock(DatabaseResource.class);
+                when(databaseMock.tableDao()).thenReturn(tableDaoMock);
+                when(databaseMock.reservationDao()).thenReturn(reservationDaoMock);
+                doReturn(databaseMock).when(fetchTablesUseCase).getDatabase();
+
+                // ### EXECUTION PHASE ###
+
+                final List<FetchTablesViewState> states = new LinkedList<>();
+                new IterableUtils<FetchTablesViewState>()
+                    .forEach(fetchTablesUseCase.doFetchTables(new FetchTablesAction()).take(5).blockingIterable(),
+                        new IterableUtils.IterableCallback<FetchTablesViewState>() {
+                            @Override
+                            public void doForEach(FetchTablesViewState state) {
+                                states.add(state);
+                                if (states.size() == 3) {
+                                    //Changes happen while the client keeps reconnecting to the stream.
+                                    dispatcher.push(0, false).push(2, true).push(1, false);
+                                }
+                            }
+                        }
+                    );
+
+                // ### VERIFICATION PHASE ###
+
+                assertThat(states, hasSize(5));
+                assertThat(states.get(0), instanceOf(FetchTablesViewState.FetchingTables.class));
+                for (int i=1; i<5; i++) {
+                    assertThat(states.get(i), instanceOf(FetchTablesViewState.SuccessFetchingTables.class));
+                }
+
+                //Changes got applied one by one, except the one to the table reserved locally.
+                assertThat(((FetchTablesViewState.SuccessFetchingTables) states.get(3)).getTables(),
+                    is(Arrays.asList(new Table(0, false), new Table(1, true), new Table(2, false))));
+                assertThat(((FetchTablesViewState.SuccessFetchingTables) states.get(4)).getTables(),
+                    is(Arrays.asList(new Table(0, false), new Table(1, false), new Table(2, false))));
+
+                //Verifying if test made expected API calls: the first connection was handed out
+                // the id to resume from, which every connection made afterwards resumed from.
+                List<String> lastEventIds = dispatcher.getLastEventIds();
+                assertThat(lastEventIds.get(0), is(nullValue()));
+                assertThat(lastEventIds.subList(1, lastEventIds.size()), everyItem(is("0")));
+                assertThat(lastEventIds.size(), greaterThan(1));
+                server.shutdown();
+
+                //Verifying if test made expected database operations.
+                verify(reservationDaoMock).updateUnreservedTableAvailability(0, false);
+                verify(reservationDaoMock).updateUnreservedTableAvailability(2, true);
+                verify(reservationDaoMock).updateUnreservedTableAvailability(1, false);
+            }
+        });
+    }
+
+    @Test
+    public void fetchTables_followingTableChanges_tableReleasedLocallyWhileConnected_shouldApplyRelease() throws Exception {
+        // ### SETUP PHASE ###
+
+        //Setting up mock server to return three tables, and then to keep the stream of changes open.
+        Dispatcher dispatcher = new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (request.getPath().endsWith("table-availability")) {
+                    return new MockResponse().setResponseCode(200)
+                        .setHeader("Content-Type", "text/event-stream")
+                        .setBody(": connected\nid: 0\n\n")
+                        .setBodyDelay(1, TimeUnit.MINUTES);
+                }
+                return new MockResponse().setResponseCode(200).setBody("[true, true, false]");
+            }
+        };
+        configureMockWebServer(dispatcher, new MockServerCallback() {
+            @Override
+            public void onMockServerConfigured(final MockWebServer server, String baseUrl) throws Exception {
+                FetchTablesUseCase fetchTablesUseCase = fetchTablesUseCase(baseUrl);
+                fetchTablesUseCase.setFollowingTableChanges(true);
+
+                TableDao tableDaoMock = mock(TableDao.class);
+                ReservationDao reservationDaoMock = mock(ReservationDao.class);
+                //Mocking database to return the very same three tables, the last one being reserved locally.
+                List<Table> tablesExpectedToHaveBeenStoredThen = new LinkedList<>();
+                tablesExpectedToHaveBeenStoredThen.add(new Table(0, true));
+                tablesExpectedToHaveBeenStoredThen.add(new Table(1, true));
+                tablesExpectedToHaveBeenStoredThen.add(new Table(2, false));
+                when(tableDaoMock.findAll()).thenReturn
+                    (Single.just(tablesExpectedToHaveBeenStoredThen));
+                //Turning database writes into no-ops.
+                doNothing().when(tableDaoMock).insertAll(ArgumentMatchers.<Table>anyList());
+                doNothing().when(reservationDaoMock).deleteUnusedTables();
+                DatabaseResource databaseMock = mock(DatabaseResource.class);
+                when(databaseMock.tableDao()).thenReturn(tableDaoMock);
+                when(databaseMock.reservationDao()).thenReturn(reservationDaoMock);
+                doReturn(databaseMock).when(fetchTablesUseCase).getDatabase();
+
+                // ### EXECUTION PHASE ###
+
+                final List<FetchTablesViewState> states = new LinkedList<>();
+                new IterableUtils<FetchTablesViewState>()
+                    .forEach(fetchTablesUseCase.doFetchTables(new FetchTablesAction())
+                            .take(4).timeout(5, TimeUnit.SECONDS).blockingIterable(),
+                        new IterableUtils.IterableCallback<FetchTablesViewState>() {
+                            @Override
+                            public void doForEach(FetchTablesViewState state) {
+                                states.add(state);
+                                if (states.size() == 3) {
+                                    try {
+                                        //Once the stream of changes is open, the reservation of the last table expires.
+                                        server.takeRequest();
+                                        server.takeRequest();
+                                    } catch (InterruptedException exception) {
+                                        throw new IllegalStateException(exception);
+                                    }
+                                    TableAvailabilityBus.publish(new Table(2, true));
+                                }
+                            }
+                        }
+                    );
+
+                // ### VERIFICATION PHASE ###
+
+                assertThat(states, hasSize(4));
+                assertThat(states.get(0), instanceOf(FetchTablesViewState.FetchingTables.class));
+                for (int i=1; i<4; i++) {
+                    assertThat(states.get(i), instanceOf(FetchTablesViewState.SuccessFetchingTables.class));
+                }
+
+                //The release came in while the stream of changes was still open.
+                assertThat(((FetchTablesViewState.SuccessFetchingTables) states.get(3)).getTables(),
+                    is(Arrays.asList(new Table(0, true), new Table(1, true), new Table(2, true))));
+                assertThat(server.getRequestCount(), is(2));
+                server.shutdown();
+            }
+        });
+    }
+
+    @Test
+    public void fetchTables_observingLocalChanges_tableWrittenElsewhere_shouldReadTablesAgainAsUpdate() throws Exception {
+        // ### SETUP PHASE ###
+
+        //Setting up mock server to return the very tables stored locally.
+        List<MockResponse> expectedResponses = Collections.singletonList
+            (new MockResponse().setResponseCode(200).setBody("[true, true, true]"));
+        configureMockWebServer(expectedResponses, new MockServerCallback() {
+            @Override
+            public void onMockServerConfigured(MockWebServer server, String baseUrl) throws Exception {
+                FetchTablesUseCase fetchTablesUseCase = fetchTablesUseCase(baseUrl);
+                fetchTablesUseCase.setObservingLocalChanges(true);
+
+                final List<Table> storedTables = new LinkedList<>();
+                storedTables.add(new Table(0, true));
+                storedTables.add(new Table(1, true));
+                storedTables.add(new Table(2, true));
+
+                ReservationDao reservationDaoMock = mock(ReservationDao.class);
+                TableDao tableDaoMock = mock(TableDao.class);
+                //Mocking database to return whatever tables are stored by the time they're read.
+                when(tableDaoMock.findAll()).thenAnswer(new Answer<Single<List<Table>>>() {
+                    @Override
+                    public Single<List<Table>> answer(InvocationOnMock invocation) {
+                        return Single.<List<Table>>just(new LinkedList<>(storedTables));
+                    }
+                });
+                //Turning database writes into no-ops.
+                doNothing().when(tableDaoMock).insertAll(ArgumentMatchers.<Table>anyList());
+                doNothing().when(reservationDaoMock).deleteUnusedTables();
+                //Mocking database to hand out an invalidation tracker whose observers are captured.
+                final InvalidationTracker invalidationTrackerMock = mock(InvalidationTracker.class);
+                DatabaseResource databaseMock = mock(DatabaseResource.class);
+                when(databaseMock.tableDao()).thenReturn(tableDaoMock);
+                when(databaseMock.reservationDao()).thenReturn(reservationDaoMock);
+                when(databaseMock.getInvalidationTracker()).thenReturn(invalidationTrackerMock);
+                doReturn(databaseMock).when(fetchTablesUseCase).getDatabase();
+
+                // ### EXECUTION PHASE ###
+
+                final List<FetchTablesViewState> states = new LinkedList<>();
+                new IterableUtils<FetchTablesViewState>()
+                    .forEach(fetchTablesUseCase.doFetchTables(new FetchTablesAction())
+                            .take(4).timeout(5, TimeUnit.SECONDS).blockingIterable(),
+                        new IterableUtils.IterableCallback<FetchTablesViewState>() {
+                            @Override
+                            public void doForEach(FetchTablesViewState state) {
+                                states.add(state);
+                                if (states.size() == 3) {
+                                    //Once local tables are observed, one of them is taken elsewhere.
+                                    ArgumentCaptor<InvalidationTracker.Observer> observer
+                                        = ArgumentCaptor.forClass(InvalidationTracker.Observer.class);
+                                    verify(invalidationTrackerMock, timeout(5000)).addObserver(observer.capture());
+                                    storedTables.set(1, new Table(1, false));
+                                    observer.getValue().onInvalidated(Collections.singleton("stand"));
+                                }
+                            }
+                        }
+                    );
+
+                // ### VERIFICATION PHASE ###
+
+                assertThat(states, hasSize(4));
+                assertThat(states.get(2), instanceOf(FetchTablesViewState.SuccessFetchingTables.class));
+                assertThat(((FetchTablesViewState.SuccessFetchingTables) states.get(2)).isUpdate(), is(false));
+                assertThat(states.get(3), instanceOf(FetchTablesViewState.SuccessFetchingTables.class));
+                FetchTablesViewState.SuccessFetchingTables update
+                    = (FetchTablesViewState.SuccessFetchingTables) states.get(3);
+                assertThat(update.isUpdate(), is(true));
+                assertThat(update.getTables(),
+                    is(Arrays.asList(new Table(0, true), new Table(1, false), new Table(2, true))));
+
+                //Verifying if test made expected API calls: none at all for the update.
+                assertThat(server.getRequestCount(), is(1));
+                server.shutdown();
+            }
+        });
+    }
+
     private FetchTablesUseCase fetchTablesUseCase(String baseUrl) {
         FetchTablesUseCase fetchTablesUseCase
             = new FetchTablesUseCase(baseUrl,
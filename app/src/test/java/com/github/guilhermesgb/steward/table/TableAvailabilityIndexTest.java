@@ -0,0 +1,68 @@
+package com.github.guilhermesgb.steward.table;
+
+import com.github.guilhermesgb.steward.mvi.table.TableAvailabilityIndex;
+import com.github.guilhermesgb.steward.mvi.table.schema.Table;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class TableAvailabilityIndexTest {
+
+    @Test
+    public void updates_afterLoading_shouldKeepCountsAndMatchTheTablesWritten() {
+        // ### SETUP PHASE ###
+
+        TableAvailabilityIndex availabilityIndex = new TableAvailabilityIndex();
+        List<Table> tables = Arrays.asList(new Table(0, true), new Table(1, false),
+            new Table(2, true), new Table(3, true));
+
+        // ### EXECUTION PHASE ###
+
+        availabilityIndex.load(tables);
+        availabilityIndex.update(2, false);
+        availabilityIndex.update(1, true);
+        availabilityIndex.update(3, true);
+        availabilityIndex.update(4, false);
+
+        // ### VERIFICATION PHASE ###
+
+        assertThat(availabilityIndex.isAvailable(1), is(true));
+        assertThat(availabilityIndex.isAvailable(2), is(false));
+        assertThat(availabilityIndex.isAvailable(4), is(false));
+        assertThat(availabilityIndex.isAvailable(5), is(nullValue()));
+        assertThat(availabilityIndex.getAvailableCount(), is(3));
+        assertThat(availabilityIndex.getOccupiedCount(), is(2));
+        assertThat(availabilityIndex.matches(Arrays.asList(new Table(0, true), new Table(1, true),
+            new Table(2, false), new Table(3, true), new Table(4, false))), is(true));
+        assertThat(availabilityIndex.matches(tables), is(false));
+    }
+
+    @Test
+    public void lookups_notLoadedOrInvalidated_shouldKnowNothing() {
+        // ### SETUP PHASE ###
+
+        TableAvailabilityIndex availabilityIndex = new TableAvailabilityIndex();
+
+        // ### EXECUTION PHASE ###
+
+        availabilityIndex.update(0, false);
+        Boolean availableBeforeLoading = availabilityIndex.isAvailable(0);
+        availabilityIndex.load(Arrays.asList(new Table(0, true), new Table(1, false)));
+        availabilityIndex.invalidate();
+
+        // ### VERIFICATION PHASE ###
+
+        assertThat(availableBeforeLoading, is(nullValue()));
+        assertThat(availabilityIndex.isLoaded(), is(false));
+        assertThat(availabilityIndex.isAvailable(1), is(nullValue()));
+        assertThat(availabilityIndex.getAvailableCount(), is(-1));
+        assertThat(availabilityIndex.getOccupiedCount(), is(-1));
+    }
+
+}
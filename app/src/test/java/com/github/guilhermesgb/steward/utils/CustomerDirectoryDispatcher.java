@@ -0,0 +1,170 @@
+package com.github.guilhermesgb.steward.utils;
+
+import com.github.guilhermesgb.steward.mvi.customer.CustomerBuckets;
+import com.github.guilhermesgb.steward.mvi.customer.schema.Customer;
+import com.github.guilhermesgb.steward.mvi.customer.schema.CustomerBucketHashes;
+import com.github.guilhermesgb.steward.mvi.customer.schema.CustomerChanges;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+//Stand-in for a server that keeps the customer directory along with a log of its changes,
+// every change bumping the directory version, which is what goes out as the sync cursor.
+// It also digests the directory over id-range buckets, serving customers of given buckets.
+public class CustomerDirectoryDispatcher extends Dispatcher {
+
+    private final Map<String, Customer> customers = new LinkedHashMap<>();
+    private final List<String> changeLog = new ArrayList<>(); //id of the customer touched by each version
+    private int oldestKnownVersion = 0;
+    private int bucketWidth = 100;
+
+    public synchronized CustomerDirectoryDispatcher put(Customer customer) {
+        customers.put(customer.getId(), customer);
+        changeLog.add(customer.getId());
+        return this;
+    }
+
+    public synchronized CustomerDirectoryDispatcher remove(String customerId) {
+        customers.remove(customerId);
+        changeLog.add(customerId);
+        return this;
+    }
+
+    //Forgets the change log so far, so older cursors can no longer be served a delta.
+    public synchronized CustomerDirectoryDispatcher compact() {
+        oldestKnownVersion = getVersion();
+        return this;
+    }
+
+    public synchronized CustomerDirectoryDispatcher setBucketWidth(int bucketWidth) {
+        this.bucketWidth = bucketWidth;
+        return this;
+    }
+
+    public synchronized int getVersion() {
+        return changeLog.size();
+    }
+
+    @Override
+    public synchronized MockResponse dispatch(RecordedRequest request) {
+        HttpUrl url = request.getRequestUrl();
+        switch (url.encodedPath()) {
+            case "/quandoo-assessment/customer-list.json":
+                return dispatchCustomers(url.queryParameterValues("bucket"), url.queryParameter("width"));
+            case "/quandoo-assessment/customer-buckets.json":
+                return new MockResponse().setResponseCode(200).setBody(json(new CustomerBucketHashes(bucketWidth,
+                    CustomerBuckets.hash(CustomerBuckets.group(customers.values(), bucketWidth)))));
+            case "/quandoo-assessment/customer-changes.json":
+                return dispatchChanges(url.queryParameter("since"));
+            default:
+                return new MockResponse().setResponseCode(404);
+        }
+    }
+
+    private MockResponse dispatchCustomers(List<String> buckets, String width) {
+        if (buckets.isEmpty()) {
+            return new MockResponse().setResponseCode(200)
+                .setBody(json(new ArrayList<>(customers.values())));
+        }
+        if (width == null || Integer.parseInt(width) != bucketWidth) {
+            return new MockResponse().setResponseCode(400);
+        }
+        Set<Long> requestedBuckets = new HashSet<>();
+        for (String bucket : buckets) {
+            requestedBuckets.add(Long.parseLong(bucket));
+        }
+        List<Customer> bucketCustomers = new LinkedList<>();
+        for (Customer customer : customers.values()) {
+            if (requestedBuckets.contains(CustomerBuckets.bucketOf(customer.getId(), bucketWidth))) {
+                bucketCustomers.add(customer);
+            }
+        }
+        return new MockResponse().setResponseCode(200).setBody(json(bucketCustomers));
+    }
+
+    private MockResponse dispatchChanges(String since) {
+        String cursor = String.valueOf(getVersion());
+        if (since == null) {
+            return new MockResponse().setResponseCode(200).setBody(json(new CustomerChanges
+                (cursor, true, new ArrayList<>(customers.values()), new LinkedList<String>())));
+        }
+        int sinceVersion;
+        try {
+            sinceVersion = Integer.parseInt(since);
+        } catch (NumberFormatException exception) {
+            sinceVersion = -1;
+        }
+        if (sinceVersion < oldestKnownVersion || sinceVersion > getVersion()) {
+            return new MockResponse().setResponseCode(410);
+        }
+        Map<String, Customer> touched = new LinkedHashMap<>();
+        for (String customerId : changeLog.subList(sinceVersion, getVersion())) {
+            touched.put(customerId, customers.get(customerId));
+        }
+        List<Customer> changed = new LinkedList<>();
+        List<String> deleted = new LinkedList<>();
+        for (Map.Entry<String, Customer> entry : touched.entrySet()) {
+            if (entry.getValue() != null) {
+                changed.add(entry.getValue());
+            } else {
+                deleted.add(entry.getKey());
+            }
+        }
+        return new MockResponse().setResponseCode(200)
+            .setBody(json(new CustomerChanges(cursor, false, changed, deleted)));
+    }
+
+    private static String json(List<Customer> customers) {
+        try {
+            StringWriter body = new StringWriter();
+            JsonWriter writer = new JsonWriter(body);
+            writer.beginArray();
+            for (Customer customer : customers) {
+                Customer.writeTo(writer, customer);
+            }
+            writer.endArray();
+            writer.close();
+            return body.toString();
+        } catch (IOException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    private static String json(CustomerBucketHashes bucketHashes) {
+        try {
+            StringWriter body = new StringWriter();
+            JsonWriter writer = new JsonWriter(body);
+            CustomerBucketHashes.writeTo(writer, bucketHashes);
+            writer.close();
+            return body.toString();
+        } catch (IOException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    private static String json(CustomerChanges changes) {
+        try {
+            StringWriter body = new StringWriter();
+            JsonWriter writer = new JsonWriter(body);
+            CustomerChanges.writeTo(writer, changes);
+            writer.close();
+            return body.toString();
+        } catch (IOException exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+
+}
@@ -3,6 +3,7 @@ package com.github.guilhermesgb.steward.utils;
 import java.util.List;
 
 import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 
@@ -19,6 +20,15 @@ public abstract class MockedServerUnitTest {
         callback.onMockServerConfigured(server, baseUrl.toString());
     }
 
+    protected void configureMockWebServer(Dispatcher dispatcher,
+                                          MockServerCallback callback) throws Exception {
+        MockWebServer server = new MockWebServer();
+        server.setDispatcher(dispatcher);
+        server.start();
+        HttpUrl baseUrl = server.url("");
+        callback.onMockServerConfigured(server, baseUrl.toString());
+    }
+
     protected interface MockServerCallback {
 
         void onMockServerConfigured(MockWebServer server, String baseUrl) throws Exception;
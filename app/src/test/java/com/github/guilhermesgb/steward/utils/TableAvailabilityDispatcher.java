@@ -0,0 +1,71 @@
+package com.github.guilhermesgb.steward.utils;
+
+import com.github.guilhermesgb.steward.mvi.table.schema.Table;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+
+//Stand-in for a server that keeps the table map along with a log of availability changes,
+// pushing these as server-sent events, every change being identified by its position in the log.
+// Connections replay the changes since the given Last-Event-ID and are then dropped, as if
+// the network went away, so that clients have to reconnect in order to see further changes.
+public class TableAvailabilityDispatcher extends Dispatcher {
+
+    private final List<Boolean> tables = new ArrayList<>();
+    private final List<Table> changeLog = new ArrayList<>();
+    private final List<String> lastEventIds = new ArrayList<>();
+
+    public TableAvailabilityDispatcher(Boolean... tables) {
+        Collections.addAll(this.tables, tables);
+    }
+
+    public synchronized TableAvailabilityDispatcher push(int number, boolean available) {
+        while (tables.size() <= number) {
+            tables.add(true);
+        }
+        tables.set(number, available);
+        changeLog.add(new Table(number, available));
+        return this;
+    }
+
+    //The Last-Event-ID sent along by every connection to the stream so far, in order.
+    public synchronized List<String> getLastEventIds() {
+        return new ArrayList<>(lastEventIds);
+    }
+
+    @Override
+    public synchronized MockResponse dispatch(RecordedRequest request) {
+        switch (request.getRequestUrl().encodedPath()) {
+            case "/quandoo-assessment/table-map.json":
+                return new MockResponse().setResponseCode(200).setBody(tables.toString());
+            case "/quandoo-assessment/table-availability":
+                return dispatchChanges(request.getHeader("Last-Event-ID"));
+            default:
+                return new MockResponse().setResponseCode(404);
+        }
+    }
+
+    private MockResponse dispatchChanges(String lastEventId) {
+        lastEventIds.add(lastEventId);
+        //Without a Last-Event-ID, only changes from now on are pushed, the id to resume from
+        // being handed out upfront in an event carrying no data.
+        int since = lastEventId == null ? changeLog.size() : Integer.parseInt(lastEventId);
+        StringBuilder events = new StringBuilder(": connected\n")
+            .append("id: ").append(since).append("\n\n");
+        for (int i=since; i<changeLog.size(); i++) {
+            Table change = changeLog.get(i);
+            events.append("event: availability\n")
+                .append("id: ").append(i + 1).append('\n')
+                .append("data: ").append(change).append("\n\n");
+        }
+        return new MockResponse().setResponseCode(200)
+            .setHeader("Content-Type", "text/event-stream")
+            .setBody(events.toString());
+    }
+
+}
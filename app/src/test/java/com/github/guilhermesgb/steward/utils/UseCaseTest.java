@@ -0,0 +1,71 @@
+package com.github.guilhermesgb.steward.utils;
+
+import android.arch.persistence.room.InvalidationTracker;
+import android.content.Context;
+
+import com.github.guilhermesgb.steward.database.DatabaseResource;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Collections;
+
+import io.reactivex.observers.BaseTestConsumer;
+import io.reactivex.observers.TestObserver;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class UseCaseTest {
+
+    @Test
+    public void localChanges_burstsOfWrites_shouldTickOncePerBurstAfterSubscription() throws Exception {
+        // ### SETUP PHASE ###
+
+        //Mocking database to hand out an invalidation tracker whose observers are captured.
+        InvalidationTracker invalidationTrackerMock = mock(InvalidationTracker.class);
+        final DatabaseResource databaseMock = mock(DatabaseResource.class);
+        when(databaseMock.getInvalidationTracker()).thenReturn(invalidationTrackerMock);
+        //Not being tested, so that bursts are told apart by the very same debounce used for real.
+        UseCase useCase = new UseCase(null, mock(Context.class)) {
+            @Override
+            public DatabaseResource getDatabase() {
+                return databaseMock;
+            }
+        };
+
+        // ### EXECUTION PHASE ###
+
+        TestObserver<Object> changes = useCase.localChanges("customer").test();
+        ArgumentCaptor<InvalidationTracker.Observer> observer
+            = ArgumentCaptor.forClass(InvalidationTracker.Observer.class);
+        verify(invalidationTrackerMock).addObserver(observer.capture());
+        //No writes so far, as the tick given right away on subscription is skipped.
+        changes.awaitCount(1, BaseTestConsumer.TestWaitStrategy.SLEEP_10MS, 500);
+        int ticksBeforeAnyWrites = changes.valueCount();
+        //Then a burst of three writes.
+        for (int i=0; i<3; i++) {
+            observer.getValue().onInvalidated(Collections.singleton("customer"));
+        }
+        changes.awaitCount(2, BaseTestConsumer.TestWaitStrategy.SLEEP_10MS, 500);
+        int ticksAfterFirstBurst = changes.valueCount();
+        //Then another write, well after the first burst is over.
+        observer.getValue().onInvalidated(Collections.singleton("customer"));
+        changes.awaitCount(3, BaseTestConsumer.TestWaitStrategy.SLEEP_10MS, 500);
+        int ticksAfterSecondBurst = changes.valueCount();
+        changes.dispose();
+
+        // ### VERIFICATION PHASE ###
+
+        assertThat(ticksBeforeAnyWrites, is(0));
+        assertThat(ticksAfterFirstBurst, is(1));
+        assertThat(ticksAfterSecondBurst, is(2));
+        changes.assertNoErrors();
+        //The database is no longer watched once changes are no longer observed.
+        verify(invalidationTrackerMock).removeObserver(observer.getValue());
+    }
+
+}